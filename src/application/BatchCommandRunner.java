@@ -0,0 +1,324 @@
+package application;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+
+import model.Equipment;
+import model.EquipmentOperation;
+import model.EquipmentState;
+import service.BulkOperationEngine;
+import service.BulkOperationReport;
+import service.ColumnarEquipmentService;
+import service.ConcurrentEquipmentService;
+import service.EquipmentFileService;
+import service.EquipmentService;
+import service.LogService;
+import service.query.EquipmentFilter;
+
+// Non-interactive mode: runs a file (or stdin) of commands against the inventory, one per line.
+//
+//   # comment
+//   register ROUTER;RT-1;10.0.0.1;Cisco;ON;50;24;true;300  (the fields of a line of equipments.csv)
+//   op on|off|restart <ip>
+//   op on|off|restart where <filter>                      (every equipment of the filter, see EquipmentFilter)
+//   remove <ip>
+//   report energy|state <ip>
+//   report summary [<filter>]
+//   report metrics
+//   save
+//
+// The commands run as a pipeline: a reader thread parses the input ahead in blocks while the
+// commands run, and operations are sent without waiting for the device (at most MAX_IN_FLIGHT at
+// a time; the commands of one device still run in order). Reports, bulk operations and the end
+// of the input wait for the operations sent before them. The output is buffered and the
+// inventory is saved once at the end, when something changed or a save was asked.
+public class BatchCommandRunner {
+
+	private static final int BLOCK_SIZE = 512; // lines per block handed from the reader
+	private static final int QUEUED_BLOCKS = 16;
+	private static final int MAX_IN_FLIGHT = 1024;
+	private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+
+	private final EquipmentService equipmentService;
+	private final EquipmentFileService fileService;
+
+	private final ArrayDeque<PendingOperation> inFlight = new ArrayDeque<>();
+	private int commands;
+	private int errors;
+	private int registered;
+	private int operations;
+	private int removed;
+	private int reports;
+	private boolean changed;
+	private boolean saveRequested;
+	private volatile IOException readFailure;
+
+	// an operation sent to the device, checked when it completes (in command order)
+	private record PendingOperation(int line, EquipmentOperation operation, String ip, CompletableFuture<Boolean> result) {
+	}
+
+	public BatchCommandRunner(EquipmentService equipmentService, EquipmentFileService fileService) {
+		this.equipmentService = equipmentService;
+		this.fileService = fileService;
+	}
+
+	// source: a file or "-" for stdin; returns the number of commands that failed (-1: no input)
+	public static int run(String source) {
+		return run(source, false);
+	}
+
+	// columnar: the inventory in primitive columns (see ColumnarEquipmentService)
+	public static int run(String source, boolean columnar) {
+		BufferedReader in;
+		try {
+			in = source.equals("-") ? new BufferedReader(new InputStreamReader(System.in, Charset.defaultCharset()))
+					: Files.newBufferedReader(Paths.get(source), Charset.defaultCharset());
+		} catch (IOException e) {
+			System.out.println("Error: " + e.getMessage());
+			return -1;
+		}
+
+		LogService logService = LogService.async();
+		EquipmentService equipmentService = columnar ? new ColumnarEquipmentService(logService)
+				: new ConcurrentEquipmentService(logService);
+		try (in; EquipmentFileService fileService = new EquipmentFileService(equipmentService)) {
+			fileService.loadInventory();
+			return new BatchCommandRunner(equipmentService, fileService).execute(in);
+		} catch (IOException e) {
+			System.out.println("Error: " + e.getMessage());
+			return -1;
+		} finally {
+			equipmentService.getMetrics().close();
+			logService.close();
+		}
+	}
+
+	// runs every command of the input, then saves; returns the number of commands that failed
+	public int execute(BufferedReader in) {
+		PrintStream console = System.out;
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out),
+				OUTPUT_BUFFER_SIZE), false);
+		System.setOut(out); // the reports print to System.out
+		long start = System.nanoTime();
+		try {
+			BlockingQueue<List<String>> blocks = new ArrayBlockingQueue<>(QUEUED_BLOCKS);
+			Thread reader = startReader(in, blocks);
+			int line = 0;
+			List<String> block;
+			while (!(block = blocks.take()).isEmpty()) {
+				for (String command : block) {
+					line++;
+					runCommand(line, command);
+				}
+			}
+			reader.join();
+			completeAll();
+			if (readFailure != null) {
+				System.out.println("Error reading commands: " + readFailure.getMessage());
+				errors++;
+			}
+
+			if (changed || saveRequested) {
+				fileService.saveInventory();
+			}
+			System.out.printf("Batch finished: %d commands (%d registered, %d operations, %d removed, %d reports), "
+					+ "%d errors, %d ms%n", commands, registered, operations, removed, reports, errors,
+					(System.nanoTime() - start) / 1_000_000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.out.println("Error: batch interrupted.");
+			errors++;
+		} finally {
+			out.flush();
+			System.setOut(console);
+		}
+		return errors;
+	}
+
+	// reads the input in blocks of lines; an empty block marks the end, also after a read error
+	private Thread startReader(BufferedReader in, BlockingQueue<List<String>> blocks) {
+		Thread reader = new Thread(() -> {
+			List<String> block = new ArrayList<>(BLOCK_SIZE);
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					block.add(line);
+					if (block.size() == BLOCK_SIZE) {
+						blocks.put(block);
+						block = new ArrayList<>(BLOCK_SIZE);
+					}
+				}
+				if (!block.isEmpty()) {
+					blocks.put(block);
+				}
+				blocks.put(List.of());
+			} catch (IOException e) {
+				readFailure = e;
+				try {
+					blocks.put(List.of());
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "batch-reader");
+		reader.setDaemon(true);
+		reader.start();
+		return reader;
+	}
+
+	private void runCommand(int line, String command) {
+		String text = command.trim();
+		if (text.isEmpty() || text.startsWith("#")) {
+			return;
+		}
+		commands++;
+		String[] parts = SPACES.split(text, 2);
+		String arguments = parts.length > 1 ? parts[1].trim() : "";
+		try {
+			switch (parts[0].toLowerCase()) {
+				case "register" -> register(line, arguments);
+				case "op" -> operation(line, arguments);
+				case "remove" -> remove(arguments);
+				case "report" -> report(arguments);
+				case "save" -> saveRequested = true;
+				default -> error(line, "unknown command '" + parts[0] + "' (use register, op, remove, report or save)");
+			}
+		} catch (IllegalArgumentException e) {
+			error(line, e.getMessage());
+		}
+	}
+
+	private void register(int line, String arguments) {
+		// the rejection message already has the line number
+		Equipment eq = equipmentService.parseEquipmentLine(arguments.split(";"), line, equipmentService::isDuplicateIp,
+				rejection -> {
+					errors++;
+					System.out.println("Error: " + rejection.message());
+				});
+		if (eq != null && equipmentService.addEquipment(eq)) {
+			registered++;
+			changed = true;
+		}
+	}
+
+	private void operation(int line, String arguments) {
+		String[] parts = SPACES.split(arguments, 2);
+		if (parts.length < 2) {
+			throw new IllegalArgumentException("usage: op on|off|restart <ip> or op on|off|restart where <filter>");
+		}
+		EquipmentOperation operation = EquipmentOperation.fromString(parts[0]);
+
+		if (parts[1].regionMatches(true, 0, "where ", 0, 6)) {
+			EquipmentFilter filter = EquipmentFilter.parse(parts[1].substring(6));
+			completeAll();
+			BulkOperationReport report = new BulkOperationEngine(equipmentService).execute(operation, filter,
+					BulkOperationEngine.DEFAULT_CONCURRENCY);
+			System.out.println("Line " + line + ": " + report);
+			operations += report.count(BulkOperationReport.Outcome.DONE);
+			changed |= report.count(BulkOperationReport.Outcome.DONE) > 0;
+			for (BulkOperationReport.Result failure : report.failures()) {
+				error(line, failure.ip() + ": " + failure.message());
+			}
+			return;
+		}
+
+		Equipment equipment = equipmentService.ipSearch(parts[1]);
+		if (equipment == null) {
+			throw new IllegalArgumentException("no equipment with IP " + parts[1]);
+		}
+		if (inFlight.size() == MAX_IN_FLIGHT) {
+			complete(inFlight.poll());
+		}
+		inFlight.add(new PendingOperation(line, operation, parts[1],
+				equipmentService.executeOperationAsync(operation, equipment)));
+	}
+
+	private void remove(String arguments) {
+		if (!equipmentService.removeEquipmentByIP(arguments)) {
+			throw new IllegalArgumentException("no equipment with IP " + arguments);
+		}
+		removed++;
+		changed = true;
+	}
+
+	private void report(String arguments) {
+		String[] parts = SPACES.split(arguments, 2);
+		String argument = parts.length > 1 ? parts[1].trim() : "";
+		completeAll();
+		switch (parts[0].toLowerCase()) {
+			case "energy", "state" -> {
+				Equipment equipment = equipmentService.ipSearch(argument);
+				if (equipment == null) {
+					throw new IllegalArgumentException("no equipment with IP " + argument);
+				}
+				if (parts[0].equalsIgnoreCase("energy")) {
+					equipmentService.showEnergyReport(equipment);
+				} else {
+					equipmentService.showStateReport(equipment);
+				}
+			}
+			case "summary" -> {
+				EquipmentFilter filter = EquipmentFilter.parse(argument);
+				if (filter.isAll()) {
+					equipmentService.generateSummary(equipmentService);
+				} else {
+					equipmentService.generateSummary(filter);
+				}
+			}
+			case "metrics" -> System.out.println(equipmentService.getMetrics().report());
+			default -> throw new IllegalArgumentException("unknown report '" + parts[0]
+					+ "' (use energy, state, summary or metrics)");
+		}
+		reports++;
+	}
+
+	// waits for every operation sent so far
+	private void completeAll() {
+		PendingOperation pending;
+		while ((pending = inFlight.poll()) != null) {
+			complete(pending);
+		}
+	}
+
+	private void complete(PendingOperation pending) {
+		try {
+			if (pending.result().join()) {
+				operations++;
+				changed = true;
+			} else {
+				// refused: TURN_ON only when already ON, TURN_OFF and RESTART only when OFF
+				EquipmentState refusing = pending.operation() == EquipmentOperation.TURN_ON ? EquipmentState.ON
+						: EquipmentState.OFF;
+				error(pending.line(), pending.ip() + ": " + EquipmentService.refusalReason(pending.operation(), refusing));
+			}
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			error(pending.line(), pending.ip() + ": " + cause.getMessage());
+		}
+	}
+
+	private void error(int line, String message) {
+		errors++;
+		System.out.println("Error: line " + line + ": " + message);
+	}
+
+}
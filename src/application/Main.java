@@ -1,10 +1,48 @@
 package application;
 
+import java.util.Arrays;
+
+import application.http.InventoryHttpServer;
+
 public class Main {
 
+	private static final String USAGE = "Usage: Main [--columnar] [--batch <file>|-] [--http [port]]";
+
+	// no arguments: the console menu; --http [port]: the console plus the HTTP API on localhost
+	// (default port 8080); --batch <file> or --batch - (stdin): runs the commands of the file and
+	// exits (see BatchCommandRunner): status 1 when a command failed, 2 without input.
+	// --columnar first keeps the inventory in primitive columns (see ColumnarEquipmentService)
 	public static void main(String[] args) {
 		
-		 new ManagementEquipmentApp().start();
+		boolean columnar = args.length > 0 && args[0].equals("--columnar");
+		if (columnar) {
+			args = Arrays.copyOfRange(args, 1, args.length);
+		}
+		
+		if (args.length > 0 && args[0].equals("--batch")) {
+			if (args.length != 2) {
+				System.out.println(USAGE);
+				System.exit(2);
+			}
+			int errors = BatchCommandRunner.run(args[1], columnar);
+			System.exit(errors == 0 ? 0 : errors < 0 ? 2 : 1);
+		}
+
+		if (args.length > 0 && args[0].equals("--http")) {
+			int port = InventoryHttpServer.DEFAULT_PORT;
+			try {
+				if (args.length > 1) {
+					port = Integer.parseInt(args[1]);
+				}
+			} catch (NumberFormatException e) {
+				System.out.println("Error: invalid port '" + args[1] + "'. " + USAGE);
+				System.exit(2);
+			}
+			new ManagementEquipmentApp(port, columnar).start();
+			return;
+		}
+
+		 new ManagementEquipmentApp(columnar).start();
 
 	}
 
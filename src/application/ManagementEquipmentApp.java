@@ -1,27 +1,70 @@
 package application;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
+import application.http.InventoryHttpServer;
 import model.Equipment;
 import model.EquipmentOperation;
 import model.EquipmentState;
 import model.EquipmentType;
+import service.BulkOperationEngine;
+import service.BulkOperationReport;
+import service.ColumnarEquipmentService;
+import service.ConcurrentEquipmentService;
 import service.EquipmentFileService;
 import service.EquipmentService;
 import service.LogService;
+import service.LogViewer;
+import service.driver.DeviceCommandException;
+import service.query.EquipmentFilter;
+import service.render.EquipmentColumn;
+import service.render.EquipmentTable;
+import service.render.RenderBuffer;
 
 public class ManagementEquipmentApp {
 
+	private static final long METRICS_DUMP_MINUTES = 1;
+	private static final int LOG_ENTRIES = 50;
+	private static final int SITE_PREFIX = 24;
+
 	private final Scanner sc = new Scanner(System.in);
-	private final EquipmentService equipmentService = new EquipmentService();
-	private LogService logService = new LogService();
+	private final LogService logService = LogService.async();
+	// concurrent (both kinds): the HTTP API may use the inventory at the same time as the console
+	private final EquipmentService equipmentService;
+	
+	EquipmentFileService fileService;
 	
-	EquipmentFileService fileService = new EquipmentFileService(equipmentService);
+	private InventoryHttpServer httpServer;
 				
 	public ManagementEquipmentApp() {
+		 this(false);
+	}
+	
+	// columnar: the inventory in primitive columns (see ColumnarEquipmentService)
+	public ManagementEquipmentApp(boolean columnar) {
+		 equipmentService = columnar ? new ColumnarEquipmentService(logService) : new ConcurrentEquipmentService(logService);
+		 fileService = new EquipmentFileService(equipmentService);
 		 equipmentService.clear();
-		 fileService.loadFromFile(); // loading equipments.csv
+		 fileService.setWriteRejectFile(true);
+		 fileService.loadInventory(); // loading the snapshot or equipments.csv
+		 equipmentService.getMetrics().startDump(fileService.getMetricsPath(), METRICS_DUMP_MINUTES, TimeUnit.MINUTES);
+	}
+	
+	// the console plus the HTTP API on localhost (see InventoryHttpServer)
+	public ManagementEquipmentApp(int httpPort, boolean columnar) {
+		 this(columnar);
+		 try {
+			 httpServer = InventoryHttpServer.localhost(equipmentService, httpPort);
+			 httpServer.start();
+			 System.out.println("HTTP API listening on http://127.0.0.1:" + httpServer.getPort() + "/");
+		 } catch (IOException e) {
+			 System.out.println("Error starting the HTTP API: " + e.getMessage());
+		 }
 	}
 
 	public void start() {
@@ -35,7 +78,13 @@ public class ManagementEquipmentApp {
 
 			switch (option) {
 			case 1 -> createEquipment(sc);
-			case 2 -> printListEquipments(equipmentService.getEquipments());
+			case 2 ->
+			{
+			  EquipmentFilter filter = readFilter(sc);
+			  EquipmentTable table = readTableOptions(sc);
+			  showListPages(sc, table, filter.isAll() ? equipmentService.indexedEquipments()
+			          : equipmentService.filter(filter).toList());
+			}
 			case 3 ->
 			{
 			    // === Operation ===
@@ -54,7 +103,23 @@ public class ManagementEquipmentApp {
 			    Equipment equipment = validateAndGetEquipment(sc, equipmentService);
 			
 			    // === Execute ===
-			    equipmentService.executeOperation(op, equipment);
+			    try {
+			        if (!equipmentService.executeOperation(op, equipment)) {
+			            System.out.println(EquipmentService.refusalReason(op, equipment.getState()));
+			        } else {
+			            switch (op) {
+			                case TURN_ON -> equipment.powerOn();
+			                case TURN_OFF -> equipment.powerOff();
+			                case RESTART -> {
+			                    equipment.powerOff();
+			                    equipment.powerOn();
+			                }
+			            }
+			        }
+			    } catch (DeviceCommandException e) {
+			        System.out.println("Error: " + e.getMessage());
+			        logService.saveLog(e.getMessage());
+			    }
 			}
 			case 4 ->
 			{
@@ -93,9 +158,7 @@ public class ManagementEquipmentApp {
 			  if (equipment == null) {
 			        break; // break exits menu loop and returns to main menu
 			    }
-			  int index = equipmentService.getEquipments().indexOf(equipment);
-
-			  if (equipmentService.removeEquipmentByIP(index)) {
+			  if (equipmentService.removeEquipmentByIP(equipment.getIp())) {
 					System.out.println("Equipment with IP " + equipment.getIp() + " removed successfully.");
 					break;
 				} 
@@ -105,17 +168,41 @@ public class ManagementEquipmentApp {
 				}
 
 			}
-			case 8 -> equipmentService.generateSummary(equipmentService);
+			case 8 ->
+			{
+			  EquipmentFilter filter = readFilter(sc);
+			  if (filter.isAll()) {
+			      equipmentService.generateSummary(equipmentService);
+			  } else {
+			      equipmentService.generateSummary(filter);
+			  }
+			}
 			case 9 ->
 			{
-				if (!logService.printLog()) {
-			        System.out.println("No log file found.");
-			    }
+				LogViewer.Query query = readLogQuery(sc);
+				try {
+					System.out.println("=== ERROR LOG ===");
+					if (!logService.viewer().print(query, RenderBuffer.stdout())) {
+						System.out.println("No log file found.");
+					}
+				} catch (IOException e) {
+					System.out.println("Error reading log file: " + e.getMessage());
+				}
 			}
+			case 10 -> bulkOperation(sc);
+			case 11 -> System.out.println(equipmentService.getMetrics().report());
+			case 12 -> equipmentService.getImportDiagnostics().printSummary(RenderBuffer.stdout(), true);
+			case 13 -> actualConsumptionReport(sc);
 			case 0 ->
 			{
 				System.out.println("Saving data before exit...");
-				fileService.saveToFile();
+				if (httpServer != null) {
+					httpServer.close();
+				}
+				fileService.saveInventory();
+				fileService.close();
+				equipmentService.getMetrics().close();
+				logService.close();
 				System.out.println("Application finished.");
 			}
 			default -> System.out.println("Invalid option.");
@@ -153,6 +240,10 @@ public class ManagementEquipmentApp {
 	    while (true) {
 	        System.out.print("Model: ");
 	        model = sc.nextLine();
+	        if (model.contains(";")) {
+	            System.out.println("Model cannot contain ';'.");
+	            continue;
+	        }
 	        if (!model.trim().isEmpty()) break;
 	        System.out.println("Model cannot be empty.");
 	    }
@@ -189,6 +280,10 @@ public class ManagementEquipmentApp {
 	    while (true) {
 	        System.out.print("Manufacturer: ");
 	        manufacturer = sc.nextLine();
+	        if (manufacturer.contains(";")) {
+	            System.out.println("Manufacturer cannot contain ';'.");
+	            continue;
+	        }
 	        if (!manufacturer.trim().isEmpty()) break;
 	        System.out.println("Manufacturer cannot be empty.");
 	    }
@@ -338,6 +433,10 @@ public class ManagementEquipmentApp {
 		    	 System.out.print("Operating System: ");
 			     opSystem = sc.nextLine();
 			       	       
+		         if (opSystem.contains(";")) {
+		             System.out.println("Operation System cannot contain ';'.");
+		             continue;
+		         }
 		         if (!opSystem.trim().isEmpty()) break;
 		         System.out.println("Operation System cannot be empty.");
 		    }
@@ -425,9 +524,125 @@ public class ManagementEquipmentApp {
 	    }
 	}
 	
+	// same operation on every equipment accepted by a filter
+	private void bulkOperation(Scanner sc) {
+	    System.out.println("\n=== Bulk Operation ===");
+
+	    EquipmentOperation op;
+	    while (true) {
+	        System.out.print("Operation (turn on/turn off/restart): ");
+	        try {
+	            op = EquipmentOperation.fromString(sc.nextLine());
+	            break;
+	        } catch (IllegalArgumentException e) {
+	            System.out.println("Invalid operation. Use: turn on, turn off or restart.");
+	        }
+	    }
+
+	    EquipmentFilter filter = readFilter(sc);
+
+	    int limit = BulkOperationEngine.DEFAULT_CONCURRENCY;
+	    while (true) {
+	        System.out.print("Concurrency limit (empty = " + limit + "): ");
+	        String input = sc.nextLine().trim();
+	        if (input.isEmpty()) {
+	            break;
+	        }
+	        try {
+	            limit = Integer.parseInt(input);
+	            if (limit > 0) {
+	                break;
+	            }
+	            System.out.println("Concurrency limit must be positive!");
+	        } catch (NumberFormatException e) {
+	            System.out.println("Invalid number! Enter a positive integer.");
+	        }
+	    }
+
+	    BulkOperationReport report = new BulkOperationEngine(equipmentService).execute(op, filter, limit);
+	    System.out.println("Filter: " + filter);
+	    System.out.println(report);
+	    for (BulkOperationReport.Result r : report.getResults()) {
+	        if (r.outcome() != BulkOperationReport.Outcome.DONE) {
+	            System.out.printf("  %-18s %-8s %s%n", r.ip(), r.outcome(), r.message());
+	        }
+	    }
+	}
+
+	// empty = every equipment
+	private EquipmentFilter readFilter(Scanner sc) {
+	    while (true) {
+	        System.out.print("Filter (e.g. type=SERVER and state=ON and energy>400 and ip in 10.0.0.0/8, empty = all): ");
+	        try {
+	            return EquipmentFilter.parse(sc.nextLine());
+	        } catch (IllegalArgumentException e) {
+	            System.out.println(e.getMessage());
+	        }
+	    }
+	}
+
+	// the kWh really consumed in a period, by type and by site; empty answers = the last 24 h, /24
+	private void actualConsumptionReport(Scanner sc) {
+	    while (true) {
+	        try {
+	            System.out.print("From (dd/MM/yyyy [HH:mm[:ss]], empty = 24 h ago): ");
+	            LocalDateTime from = LogViewer.Query.parseTime(sc.nextLine(), false);
+	            System.out.print("To (dd/MM/yyyy [HH:mm[:ss]], empty = now): ");
+	            LocalDateTime to = LogViewer.Query.parseTime(sc.nextLine(), true);
+	            System.out.print("Site prefix length (empty = " + SITE_PREFIX + "): ");
+	            String prefix = sc.nextLine().trim();
+
+	            long now = System.currentTimeMillis();
+	            // the end of the period is its last second, included
+	            long end = to == null ? now : toMillis(to) + 1000;
+	            long start = from == null ? end - TimeUnit.DAYS.toMillis(1) : toMillis(from);
+	            if (start >= end) {
+	                System.out.println("Start of the period is after its end.");
+	                continue;
+	            }
+	            equipmentService.showActualConsumptionReport(start, end,
+	                    prefix.isEmpty() ? SITE_PREFIX : Integer.parseInt(prefix));
+	            return;
+	        } catch (NumberFormatException e) {
+	            System.out.println("Invalid number. Try again.");
+	        } catch (IllegalArgumentException e) {
+	            System.out.println(e.getMessage());
+	        }
+	    }
+	}
+
+	private static long toMillis(LocalDateTime time) {
+	    return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	// the last entries of the error log and their filters; empty answers = no filter
+	private LogViewer.Query readLogQuery(Scanner sc) {
+	    while (true) {
+	        try {
+	            System.out.print("Last entries (empty = " + LOG_ENTRIES + ", 0 = all): ");
+	            String limit = sc.nextLine().trim();
+	            System.out.print("Import line number (empty = any): ");
+	            String line = sc.nextLine().trim();
+	            System.out.print("Reason contains (empty = any): ");
+	            String reason = sc.nextLine();
+	            System.out.print("From (dd/MM/yyyy [HH:mm[:ss]], empty = start): ");
+	            String from = sc.nextLine();
+	            System.out.print("To (dd/MM/yyyy [HH:mm[:ss]], empty = now): ");
+	            String to = sc.nextLine();
+	            return new LogViewer.Query(limit.isEmpty() ? LOG_ENTRIES : Integer.parseInt(limit),
+	                    line.isEmpty() ? 0 : Integer.parseInt(line), reason, LogViewer.Query.parseTime(from, false),
+	                    LogViewer.Query.parseTime(to, true));
+	        } catch (NumberFormatException e) {
+	            System.out.println("Invalid number. Try again.");
+	        } catch (IllegalArgumentException e) {
+	            System.out.println(e.getMessage());
+	        }
+	    }
+	}
+
 	private Equipment validateAndGetEquipment(Scanner sc, EquipmentService service) {
 
-	    if (service.getEquipments().isEmpty()) {
+	    if (service.size() == 0) {
 	        System.out.println("No equipment registered yet.");
 	        return null;
 	    }
@@ -455,29 +670,95 @@ public class ManagementEquipmentApp {
 
 	
 	public static void printListEquipments(List<Equipment> equipments) {
-		System.out.println();
-		System.out.println(
-				"================================================================EQUIPMENTS LIST========================================================================================================");
-		System.out.println();
+		RenderBuffer out = RenderBuffer.stdout();
+		printListHeader(out, equipments);
+		if (!equipments.isEmpty()) {
+			new EquipmentTable().render(equipments, out);
+		}
+		out.flush();
+	}
+
+	private static void printListHeader(RenderBuffer out, List<Equipment> equipments) {
+		out.newLine();
+		out.line("================================================================EQUIPMENTS LIST========================================================================================================");
+		out.newLine();
 		if (equipments.isEmpty()) {
-			System.out.println("No equipment registered yet.");
-		} else {
-			// Cabeçalho da tabela
-			System.out.printf("%-10s %-25s %-18s %-15s %-10s %-12s %-22s %-50s%n",
-		            "Type", "Model", "IP", "Manufacturer", "State", "Energy(W)", "Consumption/Day(KWh)", "Specific Info");
-		    System.out.println("------------------------------------------------------------------------------------------------------------------------------------------------------------------------");
-
-			// lines of table
-			for (Equipment e : equipments) {
-				// Exibe uma linha formatada
-				System.out.printf("%-10s %-25s %-18s %-15s %-10s %-12.2f %-22d %-50s%n", e.getType(), e.getModel(),
-						e.getIp(), e.getManufacturer(), e.getState(), e.getEnergyConsumption(),
-						e.getQtdHourConsumption(), e.getDetails());
+			out.line("No equipment registered yet.");
+		}
+	}
+
+	// the list one page at a time: Enter = next page, p = previous, a number = that page, q = back to the menu
+	private void showListPages(Scanner sc, EquipmentTable table, List<Equipment> equipments) {
+		RenderBuffer out = RenderBuffer.stdout();
+		printListHeader(out, equipments);
+		if (equipments.isEmpty()) {
+			out.flush();
+			return;
+		}
+		List<Equipment> rows = table.sort(equipments);
+		int pages = table.pageCount(rows.size());
+		int page = 1;
+		while (true) {
+			table.renderPage(rows, page, out);
+			out.flush();
+			if (pages == 1) {
+				return;
+			}
+			System.out.print("[Enter] next, p previous, <number> go to page, q quit: ");
+			String answer = sc.nextLine().trim();
+			if (answer.equalsIgnoreCase("q") || (answer.isEmpty() && page == pages)) {
+				return;
+			} else if (answer.isEmpty()) {
+				page++;
+			} else if (answer.equalsIgnoreCase("p")) {
+				page = Math.max(1, page - 1);
+			} else {
+				try {
+					page = Math.min(pages, Math.max(1, Integer.parseInt(answer)));
+				} catch (NumberFormatException e) {
+					System.out.println("Invalid answer.");
+				}
 			}
 		}
+	}
 
-		System.out.println(
-				"--------------------------------------------------------------------------------------------------------------------------------------------------------------------------------------");
+	// columns, sort and page size of the list; empty answers keep the defaults
+	private EquipmentTable readTableOptions(Scanner sc) {
+	    EquipmentTable table = new EquipmentTable().pageSize(EquipmentTable.DEFAULT_PAGE_SIZE);
+	    while (true) {
+	        System.out.print("Columns (" + EquipmentColumn.names() + "; empty = default): ");
+	        try {
+	            table.columns(EquipmentColumn.parseList(sc.nextLine()));
+	            break;
+	        } catch (IllegalArgumentException e) {
+	            System.out.println(e.getMessage());
+	        }
+	    }
+	    while (true) {
+	        System.out.print("Sort by (column, add desc for descending; empty = no sort): ");
+	        String[] sort = sc.nextLine().trim().split("\\s+");
+	        try {
+	            if (!sort[0].isEmpty()) {
+	                boolean descending = sort.length > 1 && sort[1].equalsIgnoreCase("desc");
+	                table.sortBy(EquipmentColumn.fromString(sort[0]), descending);
+	            }
+	            break;
+	        } catch (IllegalArgumentException e) {
+	            System.out.println(e.getMessage());
+	        }
+	    }
+	    while (true) {
+	        System.out.print("Page size (empty = " + EquipmentTable.DEFAULT_PAGE_SIZE + ", 0 = all): ");
+	        String size = sc.nextLine().trim();
+	        try {
+	            if (!size.isEmpty()) {
+	                table.pageSize(Integer.parseInt(size));
+	            }
+	            return table;
+	        } catch (IllegalArgumentException e) {
+	            System.out.println("Invalid page size.");
+	        }
+	    }
 	}
 	
 	private void showSearchResult(Equipment equipment) {
@@ -506,6 +787,10 @@ public class ManagementEquipmentApp {
 		System.out.println("7 - Remove Equipment by IP");
 		System.out.println("8 - Generic Summary Report");
 		System.out.println("9 - List error log ");
+		System.out.println("10 - Bulk Operation");
+		System.out.println("11 - Metrics");
+		System.out.println("12 - Import rejections");
+		System.out.println("13 - Actual Consumption Report");
 		System.out.println("0 - Exit");
 		System.out.print("Choose an option: ");
 	}
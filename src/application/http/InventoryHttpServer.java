@@ -0,0 +1,376 @@
+package application.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import model.Equipment;
+import model.EquipmentOperation;
+import model.EquipmentType;
+import service.EquipmentService;
+import service.EquipmentStatistics;
+import service.ThreadPools;
+import service.driver.DeviceCommandException;
+import service.metrics.LatencyHistogram;
+import service.query.EquipmentFilter;
+
+// JSON API of the inventory on the JDK HTTP server, one thread per request (virtual when the JVM
+// has them, see ThreadPools). Use it with ConcurrentEquipmentService: lookups and reports take
+// no lock, so the console and many clients can share the inventory.
+//
+//   GET  /equipments/{ip}                  the equipment (404 when there is none)
+//   GET  /equipments?filter=...&limit=N    the equipments of the filter (see EquipmentFilter), at most limit
+//   POST /equipments                       registers {"type": "ROUTER", "model": ..., "ip": ..., ...}
+//   POST /equipments/{ip}/operations       {"operation": "turn on" | "turn off" | "restart"}
+//   GET  /summary?filter=...               counts by type and state, average watts by type, top 3
+//   GET  /metrics                          the metrics report (text)
+//
+// Errors are {"error": "..."}: 400 invalid request, 404 unknown IP, 409 duplicate IP or refused
+// operation, 502 the device did not confirm.
+public class InventoryHttpServer implements AutoCloseable {
+
+	public static final int DEFAULT_PORT = 8080;
+
+	private static final int BACKLOG = 1024;
+	private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+	private static final int DEFAULT_LIMIT = 100;
+	private static final int MAX_LIMIT = 10_000;
+	private static final int MAX_BODY_SIZE = 64 * 1024;
+	private static final String[] ROUTER_FIELDS = { "supportWifi", "mbps" };
+	private static final String[] SWITCH_FIELDS = { "portCapacityGB" };
+	private static final String[] SERVER_FIELDS = { "opSystem", "ramCapacity", "diskCapacity" };
+	private static final String[] FIREWALL_FIELDS = { "statefullPacketInspection", "blockDoS" };
+	private static final String[] BASIC_FIELDS = { "type", "model", "ip", "manufacturer", "state", "energyConsumption",
+			"qtdHourConsumption" };
+
+	private final EquipmentService equipmentService;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private final LatencyHistogram lookupLatency;
+	private final LatencyHistogram listLatency;
+	private final LatencyHistogram registerLatency;
+	private final LatencyHistogram operationLatency;
+	private final LatencyHistogram summaryLatency;
+
+	// status and JSON body of a response
+	private record Response(int status, String body) {
+	}
+
+	// a request that cannot be served, with its status
+	private static class HttpError extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		final int status;
+
+		HttpError(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	public InventoryHttpServer(EquipmentService equipmentService, InetSocketAddress address) throws IOException {
+		this.equipmentService = equipmentService;
+		this.lookupLatency = equipmentService.getMetrics().histogram("http.lookup");
+		this.listLatency = equipmentService.getMetrics().histogram("http.list");
+		this.registerLatency = equipmentService.getMetrics().histogram("http.register");
+		this.operationLatency = equipmentService.getMetrics().histogram("http.operation");
+		this.summaryLatency = equipmentService.getMetrics().histogram("http.summary");
+		// small responses would otherwise wait for the delayed ACK of the client (Nagle, ~40 ms);
+		// the JDK server reads this once, when the first server is created
+		if (System.getProperty(NODELAY_PROPERTY) == null) {
+			System.setProperty(NODELAY_PROPERTY, "true");
+		}
+		this.server = HttpServer.create(address, BACKLOG);
+		this.executor = ThreadPools.newPerTaskExecutor("http");
+		server.setExecutor(executor);
+		server.createContext("/equipments", this::handleEquipments);
+		server.createContext("/summary", exchange -> handle(exchange, summaryLatency, () -> {
+			requireMethod(exchange, "GET");
+			return summary(query(exchange).get("filter"));
+		}));
+		server.createContext("/metrics", this::handleMetrics);
+	}
+
+	// the server on the loopback interface only
+	public static InventoryHttpServer localhost(EquipmentService equipmentService, int port) throws IOException {
+		return new InventoryHttpServer(equipmentService, new InetSocketAddress("127.0.0.1", port));
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	// the port really used (when 0 was asked)
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	private void handleEquipments(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath().substring("/equipments".length());
+		String[] segments = path.isEmpty() || path.equals("/") ? new String[0] : path.substring(1).split("/");
+
+		if (segments.length == 0) {
+			if (exchange.getRequestMethod().equals("POST")) {
+				handle(exchange, registerLatency, () -> register(readBody(exchange)));
+			} else {
+				handle(exchange, listLatency, () -> {
+					requireMethod(exchange, "GET");
+					Map<String, String> query = query(exchange);
+					return list(query.get("filter"), query.get("limit"));
+				});
+			}
+		} else if (segments.length == 1) {
+			handle(exchange, lookupLatency, () -> {
+				requireMethod(exchange, "GET");
+				return lookup(segments[0]);
+			});
+		} else if (segments.length == 2 && segments[1].equals("operations")) {
+			handle(exchange, operationLatency, () -> {
+				requireMethod(exchange, "POST");
+				return operation(segments[0], readBody(exchange));
+			});
+		} else {
+			handle(exchange, null, () -> {
+				throw new HttpError(404, "Unknown path " + exchange.getRequestURI().getPath());
+			});
+		}
+	}
+
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			byte[] body = equipmentService.getMetrics().report().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	}
+
+	private Response lookup(String ip) {
+		Equipment e = equipmentService.ipSearch(ip);
+		if (e == null) {
+			throw new HttpError(404, "No equipment with IP " + ip);
+		}
+		return new Response(200, Json.equipment(new StringBuilder(), e).toString());
+	}
+
+	private Response list(String filterText, String limitText) {
+		EquipmentFilter filter = EquipmentFilter.parse(filterText);
+		int limit = DEFAULT_LIMIT;
+		if (limitText != null) {
+			try {
+				limit = Integer.parseInt(limitText.trim());
+			} catch (NumberFormatException e) {
+				throw new HttpError(400, "Invalid limit '" + limitText + "'");
+			}
+			if (limit <= 0 || limit > MAX_LIMIT) {
+				throw new HttpError(400, "The limit must be from 1 to " + MAX_LIMIT);
+			}
+		}
+		List<Equipment> rows;
+		try (Stream<Equipment> stream = equipmentService.filter(filter)) {
+			rows = stream.limit(limit + 1L).toList();
+		}
+
+		StringBuilder sb = new StringBuilder(128 + Math.min(rows.size(), limit) * 192);
+		Json.string(sb.append("{\"filter\":"), filter.toString());
+		sb.append(",\"count\":").append(Math.min(rows.size(), limit));
+		sb.append(",\"truncated\":").append(rows.size() > limit);
+		sb.append(",\"equipments\":[");
+		for (int i = 0; i < rows.size() && i < limit; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			Json.equipment(sb, rows.get(i));
+		}
+		return new Response(200, sb.append("]}").toString());
+	}
+
+	// the JSON fields become the fields of a line of the file, so the validation is the one of the load
+	private Response register(String body) {
+		Map<String, String> fields = Json.parseObject(body);
+		String typeText = required(fields, "type");
+		EquipmentType type;
+		try {
+			type = EquipmentType.fromString(typeText);
+		} catch (IllegalArgumentException e) {
+			throw new HttpError(400, "Invalid equipment type '" + typeText + "'");
+		}
+		String[] specific = switch (type) {
+			case ROUTER -> ROUTER_FIELDS;
+			case SWITCH -> SWITCH_FIELDS;
+			case SERVER -> SERVER_FIELDS;
+			case FIREWALL -> FIREWALL_FIELDS;
+		};
+		String[] line = new String[BASIC_FIELDS.length + specific.length];
+		for (int i = 0; i < BASIC_FIELDS.length; i++) {
+			line[i] = required(fields, BASIC_FIELDS[i]);
+		}
+		for (int i = 0; i < specific.length; i++) {
+			line[BASIC_FIELDS.length + i] = required(fields, specific[i]);
+		}
+
+		if (equipmentService.ipSearch(line[2]) != null) {
+			throw new HttpError(409, "IP " + line[2] + " already was registered");
+		}
+		StringBuilder reasons = new StringBuilder();
+		Equipment e = equipmentService.parseEquipmentLine(line, 0, equipmentService::isDuplicateIp,
+				rejection -> reasons.append(rejection.description()));
+		if (e == null) {
+			throw new HttpError(400, reasons.toString());
+		}
+		if (!equipmentService.addEquipment(e)) {
+			throw new HttpError(409, "IP " + e.getIp() + " already was registered");
+		}
+		return new Response(201, Json.equipment(new StringBuilder(), e).toString());
+	}
+
+	private Response operation(String ip, String body) {
+		Equipment e = equipmentService.ipSearch(ip);
+		if (e == null) {
+			throw new HttpError(404, "No equipment with IP " + ip);
+		}
+		EquipmentOperation operation;
+		String operationText = required(Json.parseObject(body), "operation");
+		try {
+			operation = EquipmentOperation.fromString(operationText);
+		} catch (IllegalArgumentException ex) {
+			throw new HttpError(400, "Invalid operation '" + operationText + "' (use turn on, turn off or restart)");
+		}
+		try {
+			if (!equipmentService.executeOperation(operation, e)) {
+				throw new HttpError(409, EquipmentService.refusalReason(operation, e.getState()));
+			}
+		} catch (DeviceCommandException ex) {
+			throw new HttpError(502, ex.getMessage());
+		}
+		StringBuilder sb = new StringBuilder("{\"ip\":\"").append(e.getIp()).append('"');
+		sb.append(",\"operation\":\"").append(operation).append('"');
+		sb.append(",\"state\":\"").append(e.getState()).append("\"}");
+		return new Response(200, sb.toString());
+	}
+
+	private Response summary(String filterText) {
+		EquipmentFilter filter = EquipmentFilter.parse(filterText);
+		EquipmentStatistics statistics = equipmentService.statistics(filter);
+		Map<EquipmentType, Long> byType = statistics.countByType();
+
+		StringBuilder sb = new StringBuilder();
+		Json.string(sb.append("{\"filter\":"), filter.toString());
+		sb.append(",\"total\":").append(byType.values().stream().mapToLong(Long::longValue).sum());
+		appendMap(sb.append(",\"countByType\":"), byType);
+		appendMap(sb.append(",\"countByState\":"), statistics.countByState());
+		appendMap(sb.append(",\"averageWattsByType\":"), statistics.averageEnergyByType());
+		sb.append(",\"top3\":[");
+		List<Equipment> top = statistics.top(3);
+		for (int i = 0; i < top.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			Json.equipment(sb, top.get(i));
+		}
+		return new Response(200, sb.append("]}").toString());
+	}
+
+	private static void appendMap(StringBuilder sb, Map<?, ?> map) {
+		sb.append('{');
+		boolean first = true;
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			if (!first) {
+				sb.append(',');
+			}
+			first = false;
+			sb.append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+		}
+		sb.append('}');
+	}
+
+	private interface Action {
+		Response run() throws IOException;
+	}
+
+	// runs the action and writes its response, or the error as JSON
+	private void handle(HttpExchange exchange, LatencyHistogram latency, Action action) throws IOException {
+		long start = System.nanoTime();
+		Response response;
+		try {
+			response = action.run();
+		} catch (HttpError e) {
+			response = new Response(e.status, Json.error(e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			response = new Response(400, Json.error(e.getMessage()));
+		} catch (RuntimeException e) {
+			response = new Response(500, Json.error("Internal error: " + e));
+		}
+		try (exchange) {
+			byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(response.status(), body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+		if (latency != null) {
+			latency.recordSince(start);
+		}
+	}
+
+	private static void requireMethod(HttpExchange exchange, String method) {
+		if (!exchange.getRequestMethod().equals(method)) {
+			exchange.getResponseHeaders().set("Allow", method);
+			throw new HttpError(405, "Use " + method + " on " + exchange.getRequestURI().getPath());
+		}
+	}
+
+	private static String required(Map<String, String> fields, String name) {
+		String value = fields.get(name);
+		if (value == null) {
+			throw new HttpError(400, "Missing field '" + name + "'");
+		}
+		return value;
+	}
+
+	private static String readBody(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			byte[] body = in.readNBytes(MAX_BODY_SIZE + 1);
+			if (body.length > MAX_BODY_SIZE) {
+				throw new HttpError(413, "The body is larger than " + MAX_BODY_SIZE + " bytes");
+			}
+			return new String(body, StandardCharsets.UTF_8);
+		}
+	}
+
+	private static Map<String, String> query(HttpExchange exchange) {
+		Map<String, String> result = new HashMap<>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query == null || query.isEmpty()) {
+			return result;
+		}
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? "" : pair.substring(equals + 1);
+			result.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,176 @@
+package application.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import model.Equipment;
+import model.Firewall;
+import model.Router;
+import model.Server;
+import model.Switch;
+
+// The little JSON the HTTP API needs: writing equipments and values, and reading flat request
+// objects ({"name": value, ...} with strings, numbers, booleans and null; no nesting).
+final class Json {
+
+	private Json() {
+	}
+
+	static StringBuilder string(StringBuilder sb, String value) {
+		if (value == null) {
+			return sb.append("null");
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"' -> sb.append("\\\"");
+				case '\\' -> sb.append("\\\\");
+				case '\n' -> sb.append("\\n");
+				case '\r' -> sb.append("\\r");
+				case '\t' -> sb.append("\\t");
+				default -> {
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+				}
+			}
+		}
+		return sb.append('"');
+	}
+
+	static String error(String message) {
+		return string(new StringBuilder("{\"error\":"), message).append('}').toString();
+	}
+
+	// the fields of the file plus the ones of the type, named as in the model
+	static StringBuilder equipment(StringBuilder sb, Equipment e) {
+		sb.append("{\"type\":\"").append(e.getType()).append('"');
+		string(sb.append(",\"model\":"), e.getModel());
+		sb.append(",\"ip\":\"").append(e.getIp()).append('"');
+		string(sb.append(",\"manufacturer\":"), e.getManufacturer());
+		sb.append(",\"state\":\"").append(e.getState()).append('"');
+		sb.append(",\"energyConsumption\":").append(e.getEnergyConsumption());
+		sb.append(",\"qtdHourConsumption\":").append(e.getQtdHourConsumption());
+		if (e instanceof Router r) {
+			sb.append(",\"supportWifi\":").append(r.getSuportWifi()).append(",\"mbps\":").append(r.getMbps());
+		} else if (e instanceof Switch s) {
+			sb.append(",\"portCapacityGB\":").append(s.getPortCapacityGB());
+		} else if (e instanceof Server s) {
+			string(sb.append(",\"opSystem\":"), s.getOpSystem());
+			sb.append(",\"ramCapacity\":").append(s.getRamCapacity()).append(",\"diskCapacity\":").append(s.getDiskCapacity());
+		} else if (e instanceof Firewall f) {
+			sb.append(",\"statefullPacketInspection\":").append(f.isStatefullPacketInspection())
+					.append(",\"blockDoS\":").append(f.isBlockDoS());
+		}
+		return sb.append('}');
+	}
+
+	// name -> value as text (strings unescaped, null for null); IllegalArgumentException when invalid
+	static Map<String, String> parseObject(String text) {
+		Map<String, String> result = new LinkedHashMap<>();
+		int[] position = { skipSpaces(text, 0) };
+		expect(text, position, '{');
+		if (peek(text, position) == '}') {
+			position[0]++;
+		} else {
+			while (true) {
+				String name = readString(text, position);
+				expect(text, position, ':');
+				result.put(name, readValue(text, position));
+				if (peek(text, position) == ',') {
+					position[0]++;
+					continue;
+				}
+				expect(text, position, '}');
+				break;
+			}
+		}
+		if (skipSpaces(text, position[0]) != text.length()) {
+			throw new IllegalArgumentException("Invalid JSON: unexpected text after the object");
+		}
+		return result;
+	}
+
+	private static String readValue(String text, int[] position) {
+		char c = peek(text, position);
+		if (c == '"') {
+			return readString(text, position);
+		}
+		if (c == '{' || c == '[') {
+			throw new IllegalArgumentException("Invalid JSON: nested values are not accepted");
+		}
+		int start = position[0];
+		int end = start;
+		while (end < text.length() && ",}".indexOf(text.charAt(end)) < 0 && !Character.isWhitespace(text.charAt(end))) {
+			end++;
+		}
+		if (end == start) {
+			throw new IllegalArgumentException("Invalid JSON: missing value at " + start);
+		}
+		position[0] = end;
+		String literal = text.substring(start, end);
+		return literal.equals("null") ? null : literal;
+	}
+
+	private static String readString(String text, int[] position) {
+		expect(text, position, '"');
+		StringBuilder sb = new StringBuilder();
+		int i = position[0];
+		while (i < text.length() && text.charAt(i) != '"') {
+			char c = text.charAt(i++);
+			if (c == '\\' && i < text.length()) {
+				char escaped = text.charAt(i++);
+				switch (escaped) {
+					case 'n' -> sb.append('\n');
+					case 'r' -> sb.append('\r');
+					case 't' -> sb.append('\t');
+					case 'b' -> sb.append('\b');
+					case 'f' -> sb.append('\f');
+					case 'u' -> {
+						if (i + 4 > text.length()) {
+							throw new IllegalArgumentException("Invalid JSON: bad escape at " + i);
+						}
+						try {
+							sb.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+						} catch (NumberFormatException e) {
+							throw new IllegalArgumentException("Invalid JSON: bad escape at " + i);
+						}
+						i += 4;
+					}
+					default -> sb.append(escaped);
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+		if (i == text.length()) {
+			throw new IllegalArgumentException("Invalid JSON: missing closing quote");
+		}
+		position[0] = i + 1;
+		return sb.toString();
+	}
+
+	private static void expect(String text, int[] position, char expected) {
+		if (peek(text, position) != expected) {
+			throw new IllegalArgumentException("Invalid JSON: expected '" + expected + "' at " + position[0]);
+		}
+		position[0]++;
+	}
+
+	// the next character that is not a space (0 at the end); position is moved to it
+	private static char peek(String text, int[] position) {
+		position[0] = skipSpaces(text, position[0]);
+		return position[0] < text.length() ? text.charAt(position[0]) : 0;
+	}
+
+	private static int skipSpaces(String text, int i) {
+		while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+}
@@ -0,0 +1,88 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Minimal measuring loop: warm-up iterations first (JIT), then measured iterations, each one
+// timed on its own. Output is one JSON object per line, to compare runs across versions.
+public class BenchmarkRunner {
+
+	@FunctionalInterface
+	public interface Setup {
+		void run() throws Exception;
+	}
+
+	// one iteration; returns how many operations it did (lines, lookups, ...)
+	@FunctionalInterface
+	public interface Body {
+		long run() throws Exception;
+	}
+
+	private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+	private final int warmupIterations;
+	private final int iterations;
+	private final PrintWriter out;
+	private final String label;
+
+	public BenchmarkRunner(int warmupIterations, int iterations, PrintWriter out, String label) {
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		this.out = out;
+		this.label = label;
+	}
+
+	// setup runs before every iteration and is not timed; System.out is muted while timing
+	public void run(String name, int inventory, String rows, Setup setup, Body body) throws Exception {
+		long[] nanos = new long[iterations];
+		long operations = 0;
+		PrintStream console = System.out;
+
+		for (int i = 0; i < warmupIterations + iterations; i++) {
+			setup.run();
+			System.setOut(NULL_OUT);
+			long start = System.nanoTime();
+			long ops;
+			try {
+				ops = body.run();
+			} finally {
+				long elapsed = System.nanoTime() - start;
+				System.setOut(console);
+				if (i >= warmupIterations) {
+					nanos[i - warmupIterations] = elapsed;
+				}
+			}
+			if (i >= warmupIterations) {
+				operations += ops;
+			}
+		}
+
+		report(name, inventory, rows, nanos, operations);
+	}
+
+	private void report(String name, int inventory, String rows, long[] nanos, long operations) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		long total = 0;
+		for (long n : nanos) {
+			total += n;
+		}
+		double nsPerOp = operations == 0 ? 0 : (double) total / operations;
+		double opsPerSecond = total == 0 ? 0 : operations * 1e9 / total;
+
+		String json = String.format(Locale.ROOT,
+				"{\"label\":\"%s\",\"benchmark\":\"%s\",\"inventory\":%d,\"rows\":\"%s\",\"iterations\":%d,"
+						+ "\"operations\":%d,\"nsPerOp\":%.1f,\"opsPerSecond\":%.1f,"
+						+ "\"iterationMillis\":{\"min\":%.3f,\"p50\":%.3f,\"max\":%.3f},\"java\":\"%s\"}",
+				label, name, inventory, rows, nanos.length, operations, nsPerOp, opsPerSecond,
+				sorted[0] / 1e6, sorted[sorted.length / 2] / 1e6, sorted[sorted.length - 1] / 1e6,
+				System.getProperty("java.version"));
+		out.println(json);
+		out.flush();
+		System.out.println(json);
+	}
+
+}
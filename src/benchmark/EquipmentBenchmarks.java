@@ -0,0 +1,213 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import service.ColumnarEquipmentService;
+import service.EquipmentFileService;
+import service.EquipmentService;
+import service.LogService;
+
+// Benchmarks of the inventory services on generated inventories.
+//
+//   java benchmark.EquipmentBenchmarks [--sizes 1000,100000,1000000] [--dirty 0.1] [--warmup 3]
+//        [--iterations 5] [--dir <work directory>] [--out results.jsonl] [--label <version>]
+//        [--store list|columnar]
+//
+// Each size runs with clean rows and with the dirty ratio; every result is appended to the
+// output file as one JSON line (see BenchmarkRunner), tagged with the label. The store is the
+// EquipmentService list (default) or the columns of ColumnarEquipmentService.
+public class EquipmentBenchmarks {
+
+	private static final int LOOKUPS = 1_000_000;
+
+	private final BenchmarkRunner runner;
+	private final Path directory;
+	private final double dirtyRatio;
+	private final boolean columnar;
+
+	public EquipmentBenchmarks(BenchmarkRunner runner, Path directory, double dirtyRatio) {
+		this(runner, directory, dirtyRatio, false);
+	}
+
+	public EquipmentBenchmarks(BenchmarkRunner runner, Path directory, double dirtyRatio, boolean columnar) {
+		this.runner = runner;
+		this.directory = directory;
+		this.dirtyRatio = dirtyRatio;
+		this.columnar = columnar;
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<Integer> sizes = List.of(1_000, 100_000, 1_000_000);
+		double dirty = 0.1;
+		int warmup = 3;
+		int iterations = 5;
+		Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "equipment-benchmark");
+		Path output = Paths.get("benchmark-results.jsonl");
+		String label = "dev";
+		boolean columnar = false;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+				case "--sizes" -> {
+					List<Integer> parsed = new ArrayList<>();
+					for (String size : value.split(",")) {
+						parsed.add(Integer.parseInt(size.trim()));
+					}
+					sizes = parsed;
+				}
+				case "--dirty" -> dirty = Double.parseDouble(value);
+				case "--warmup" -> warmup = Integer.parseInt(value);
+				case "--iterations" -> iterations = Integer.parseInt(value);
+				case "--dir" -> directory = Paths.get(value);
+				case "--out" -> output = Paths.get(value);
+				case "--label" -> label = value;
+				case "--store" -> columnar = switch (value) {
+					case "list" -> false;
+					case "columnar" -> true;
+					default -> throw new IllegalArgumentException("Unknown store: " + value);
+				};
+				default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+
+		Files.createDirectories(directory);
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+			EquipmentBenchmarks benchmarks = new EquipmentBenchmarks(
+					new BenchmarkRunner(warmup, iterations, out, label), directory, dirty, columnar);
+			for (int size : sizes) {
+				benchmarks.runAll(size, 0.0);
+				if (dirty > 0) {
+					benchmarks.runAll(size, dirty);
+				}
+			}
+		}
+	}
+
+	public void runAll(int size, double dirty) throws Exception {
+		String rows = dirty == 0 ? "clean" : "dirty";
+		InventoryGenerator generator = new InventoryGenerator(42, dirty);
+		Path work = directory.resolve(size + "-" + rows);
+		Files.createDirectories(work);
+		Path logFile = work.resolve("log_equipments.txt");
+
+		EquipmentService[] service = new EquipmentService[1];
+		EquipmentFileService[] files = new EquipmentFileService[1];
+		generator.write(work.resolve("equipments.csv"), size);
+
+		// loadFromFile: the whole .csv, backup copy included
+		runner.run("loadFromFile", size, rows, () -> {
+			Files.deleteIfExists(logFile);
+			service[0] = newService(new LogService(logFile));
+			files[0] = new EquipmentFileService(service[0], work);
+		}, () -> {
+			files[0].loadFromFile();
+			return size;
+		});
+
+		// createEquipmentFromLine: validation and insert, without the file reading
+		List<String[]> lines = new ArrayList<>(size);
+		for (String line : generator.lines(size)) {
+			lines.add(line.split(";"));
+		}
+		runner.run("createEquipmentFromLine", size, rows, () -> {
+			Files.deleteIfExists(logFile);
+			service[0] = newService(new LogService(logFile));
+		}, () -> {
+			int n = 0;
+			for (String[] fields : lines) {
+				service[0].createEquipmentFromLine(fields, ++n);
+			}
+			return n;
+		});
+
+		// lookups on the loaded inventory: half of them hit, half miss
+		EquipmentService loaded = service[0];
+		String[] probes = new String[4096];
+		for (int i = 0; i < probes.length; i++) {
+			int ip = i % 2 == 0 ? InventoryGenerator.ipOf(i * 7919 % size) : (11 << 24) | i;
+			probes[i] = model.IpAddress.format(ip);
+		}
+		runner.run("ipSearch", size, rows, () -> {
+		}, () -> {
+			int found = 0;
+			for (int i = 0; i < LOOKUPS; i++) {
+				if (loaded.ipSearch(probes[i & (probes.length - 1)]) != null) {
+					found++;
+				}
+			}
+			blackhole(found);
+			return LOOKUPS;
+		});
+		runner.run("isDuplicateIp", size, rows, () -> {
+		}, () -> {
+			int found = 0;
+			for (int i = 0; i < LOOKUPS; i++) {
+				if (loaded.isDuplicateIp(probes[i & (probes.length - 1)])) {
+					found++;
+				}
+			}
+			blackhole(found);
+			return LOOKUPS;
+		});
+
+		runner.run("generateSummary", size, rows, () -> {
+		}, () -> {
+			loaded.generateSummary(loaded);
+			return 1;
+		});
+		runner.run("getTop3Consumo", size, rows, () -> {
+		}, () -> {
+			for (int i = 0; i < 1000; i++) {
+				blackhole(loaded.getTop3Consumo().size());
+			}
+			return 1000;
+		});
+
+		// saveToFile: the .csv with temp file, fsync and atomic replace
+		EquipmentFileService saver = new EquipmentFileService(loaded, work.resolve("save"));
+		runner.run("saveToFile", size, rows, () -> {
+		}, () -> {
+			saver.saveToFile();
+			return loaded.size();
+		});
+
+		loaded.getLogService().close();
+		deleteQuietly(work);
+	}
+
+	private EquipmentService newService(LogService log) {
+		return columnar ? new ColumnarEquipmentService(log) : new EquipmentService(log);
+	}
+
+	private static volatile int sink;
+
+	// keeps the JIT from removing a result
+	private static void blackhole(int value) {
+		sink += value;
+	}
+
+	private static void deleteQuietly(Path work) {
+		try (var paths = Files.walk(work)) {
+			paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> {
+				try {
+					Files.deleteIfExists(p);
+				} catch (IOException e) {
+					// left for the next run
+				}
+			});
+		} catch (IOException e) {
+			// left for the next run
+		}
+	}
+
+}
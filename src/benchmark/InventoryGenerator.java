@@ -0,0 +1,111 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.IpAddress;
+
+// Builds equipments.csv contents of any size, always the same for the same seed.
+//
+// Clean rows are valid lines of the four types with distinct IPs. With a dirty ratio, that share
+// of the rows is broken in one of the ways the loader rejects (missing fields, unknown type, bad
+// IP, repeated IP, bad state, bad numbers), so the reject path is measured too.
+public class InventoryGenerator {
+
+	private static final String[] MANUFACTURERS = { "Cisco", "HP", "Dell", "Juniper", "Fortinet", "Huawei" };
+	private static final String[] SYSTEMS = { "Linux", "Windows Server", "FreeBSD" };
+
+	private final long seed;
+	private final double dirtyRatio;
+
+	public InventoryGenerator(long seed, double dirtyRatio) {
+		if (dirtyRatio < 0 || dirtyRatio > 1) {
+			throw new IllegalArgumentException("Dirty ratio must be between 0 and 1");
+		}
+		this.seed = seed;
+		this.dirtyRatio = dirtyRatio;
+	}
+
+	// the i-th distinct address: a permutation of 10.0.0.0/8, so IPs are spread and never repeat
+	public static int ipOf(int i) {
+		return (10 << 24) | ((i * 0x9E3779B1) & 0xFFFFFF);
+	}
+
+	public List<String> lines(int count) {
+		List<String> lines = new ArrayList<>(count);
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder(128);
+		for (int i = 0; i < count; i++) {
+			sb.setLength(0);
+			if (random.nextDouble() < dirtyRatio) {
+				dirtyLine(sb, i, random);
+			} else {
+				cleanLine(sb, i, random);
+			}
+			lines.add(sb.toString());
+		}
+		return lines;
+	}
+
+	public void write(Path path, int count) throws IOException {
+		if (path.getParent() != null) {
+			Files.createDirectories(path.getParent());
+		}
+		try (BufferedWriter bw = Files.newBufferedWriter(path, Charset.defaultCharset())) {
+			for (String line : lines(count)) {
+				bw.write(line);
+				bw.newLine();
+			}
+		}
+	}
+
+	private static void cleanLine(StringBuilder sb, int i, Random random) {
+		int type = random.nextInt(4);
+		sb.append(switch (type) {
+			case 0 -> "ROUTER";
+			case 1 -> "SWITCH";
+			case 2 -> "SERVER";
+			default -> "FIREWALL";
+		});
+		sb.append(';').append("MODEL-").append(random.nextInt(500)).append(';');
+		IpAddress.appendTo(sb, ipOf(i));
+		sb.append(';').append(MANUFACTURERS[random.nextInt(MANUFACTURERS.length)])
+			.append(';').append(random.nextBoolean() ? "ON" : "OFF")
+			.append(';').append((double) (10 + random.nextInt(1500)))
+			.append(';').append(1 + random.nextInt(24));
+
+		switch (type) {
+			case 0 -> sb.append(';').append(random.nextBoolean()).append(';').append(100 * (1 + random.nextInt(100)));
+			case 1 -> sb.append(';').append((double) (1 + random.nextInt(100)));
+			case 2 -> sb.append(';').append(SYSTEMS[random.nextInt(SYSTEMS.length)])
+					.append(';').append(8 << random.nextInt(6))
+					.append(';').append(256 * (1 + random.nextInt(64)));
+			default -> sb.append(';').append(random.nextBoolean()).append(';').append(random.nextBoolean());
+		}
+	}
+
+	private static void dirtyLine(StringBuilder sb, int i, Random random) {
+		cleanLine(sb, i, random);
+		String[] fields = sb.toString().split(";");
+		sb.setLength(0);
+
+		switch (random.nextInt(8)) {
+			case 0 -> fields = new String[] { fields[0], fields[1], fields[2], fields[3], fields[4] };
+			case 1 -> fields[0] = "PRINTER";
+			case 2 -> fields[2] = "300." + random.nextInt(256) + ".0." + random.nextInt(256);
+			case 3 -> fields[2] = IpAddress.format(ipOf(Math.max(0, i - 1 - random.nextInt(Math.max(1, i)))));
+			case 4 -> fields[4] = "STANDBY";
+			case 5 -> fields[5] = "abc";
+			case 6 -> fields[6] = "25";
+			default -> fields[5] = "-" + fields[5];
+		}
+		sb.append(String.join(";", fields));
+	}
+
+}
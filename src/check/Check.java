@@ -0,0 +1,67 @@
+package check;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+// One runnable check: run() compares what the code gives with what it should give, and every
+// mismatch is kept with its description, so one run reports all of them
+public abstract class Check {
+
+	private final List<String> failures = new ArrayList<>();
+	private final List<Path> temporary = new ArrayList<>();
+
+	public String name() {
+		return getClass().getSimpleName();
+	}
+
+	protected abstract void run() throws Exception;
+
+	// the mismatches of the run (empty when it passed); an exception counts as one
+	public List<String> execute() {
+		failures.clear();
+		try {
+			run();
+		} catch (Exception | AssertionError e) {
+			failures.add("threw " + e);
+		} finally {
+			for (Path dir : temporary) {
+				delete(dir);
+			}
+			temporary.clear();
+		}
+		return List.copyOf(failures);
+	}
+
+	protected void expect(boolean condition, String what) {
+		if (!condition) {
+			failures.add(what);
+		}
+	}
+
+	protected void expectEquals(Object expected, Object actual, String what) {
+		if (!Objects.equals(expected, actual)) {
+			failures.add(what + ": expected <" + expected + "> but was <" + actual + ">");
+		}
+	}
+
+	// a directory deleted after the run
+	protected Path tempDirectory() throws IOException {
+		Path dir = Files.createTempDirectory("check");
+		temporary.add(dir);
+		return dir;
+	}
+
+	private static void delete(Path dir) {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+		} catch (IOException e) {
+			System.out.println("Error: " + e.getMessage());
+		}
+	}
+
+}
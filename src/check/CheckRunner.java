@@ -0,0 +1,59 @@
+package check;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+// Runs the checks and prints one line per check, then the mismatches of the failed ones.
+// Arguments: names of the checks to run (all of them when there is none). Exits with 1 when one
+// failed, so a script can stop on it. The console output of the code under check is muted.
+public class CheckRunner {
+
+	private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+	static List<Check> checks() {
+		return List.of(
+				new CsvRoundTripCheck(),
+				new TokenizerNumberCheck(),
+				new FixedFormatCheck(),
+				new CompressedBitmapCheck(),
+				new IpRadixTrieCheck(),
+				new JournalRecoveryCheck(),
+				new ParallelLoadCheck());
+	}
+
+	public static void main(String[] args) {
+		PrintStream console = System.out;
+		int failed = 0;
+		int run = 0;
+
+		for (Check check : checks()) {
+			if (args.length > 0 && !List.of(args).contains(check.name())) {
+				continue;
+			}
+			run++;
+			List<String> failures;
+			System.setOut(NULL_OUT);
+			try {
+				failures = check.execute();
+			} finally {
+				System.setOut(console);
+			}
+			if (failures.isEmpty()) {
+				console.println("OK   " + check.name());
+			} else {
+				failed++;
+				console.println("FAIL " + check.name());
+				for (String failure : failures) {
+					console.println("     " + failure);
+				}
+			}
+		}
+
+		console.println(run + " checks, " + failed + " failed");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,232 @@
+package check;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import service.CompressedBitmap;
+
+// CompressedBitmap holds the same values as a BitSet across the array/bitmap limit of a
+// container (4096 values): growing past it, shrinking back under it by remove, and the results of
+// AND/OR/ANDNOT that land on either side of it, in one container and across several
+public class CompressedBitmapCheck extends Check {
+
+	private static final int LIMIT = 4096;
+	private static final int CHUNK = 1 << 16;
+
+	@Override
+	protected void run() {
+		transitions();
+		operations();
+		randomOperations();
+		copies();
+
+		try {
+			new CompressedBitmap().add(-1);
+			expect(false, "add(-1) throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	// one container filled up to the limit, one value over it, then emptied again by remove
+	private void transitions() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		BitSet reference = new BitSet();
+		int base = 3 * CHUNK;
+		for (int i = 0; i < LIMIT; i++) {
+			add(bitmap, reference, base + i * 16);
+		}
+		compare(bitmap, reference, "array at the limit");
+		add(bitmap, reference, base + 5); // the first value over the limit
+		compare(bitmap, reference, "bitmap over the limit");
+		add(bitmap, reference, base + 5); // already there
+		compare(bitmap, reference, "bitmap, value added twice");
+		remove(bitmap, reference, base + 5);
+		compare(bitmap, reference, "back to the limit");
+		remove(bitmap, reference, base + 6); // not there
+		compare(bitmap, reference, "remove of a missing value");
+		add(bitmap, reference, base + 7);
+		compare(bitmap, reference, "over the limit again");
+		// the array taken from the bitmap takes values again
+		remove(bitmap, reference, base);
+		remove(bitmap, reference, base + 16);
+		add(bitmap, reference, base + 1);
+		compare(bitmap, reference, "array from a bitmap");
+		for (int i = 0; i < LIMIT; i++) {
+			remove(bitmap, reference, base + i * 16);
+		}
+		remove(bitmap, reference, base + 7);
+		remove(bitmap, reference, base + 1);
+		compare(bitmap, reference, "emptied");
+		expect(bitmap.isEmpty(), "an emptied bitmap is empty");
+
+		// the values next to the container edges
+		for (int value : new int[] { 0, CHUNK - 1, CHUNK, 2 * CHUNK - 1, Integer.MAX_VALUE, Integer.MAX_VALUE - 1 }) {
+			add(bitmap, reference, value);
+		}
+		compare(bitmap, reference, "container edges");
+		bitmap.clear();
+		reference.clear();
+		compare(bitmap, reference, "cleared");
+	}
+
+	// every pair of container kinds: sparse (array), dense (bitmap), and the results that cross
+	// the limit either way
+	private void operations() {
+		int[][] shapes = { { 0, 1 }, { 0, 16 }, { 3, 16 }, { 0, 15 }, { 1, 15 }, { 0, 8 }, { 0, 2 } };
+		for (int[] x : shapes) {
+			for (int[] y : shapes) {
+				BitSet a = new BitSet();
+				BitSet b = new BitSet();
+				// start, step: step 16 gives 4096 values (the limit), 15 gives 4370 (a bitmap)
+				fill(a, CHUNK + x[0], 2 * CHUNK, x[1]);
+				fill(b, CHUNK + y[0], 2 * CHUNK, y[1]);
+				fill(a, 5 * CHUNK, 5 * CHUNK + 100, 1); // only in a
+				fill(b, 7 * CHUNK, 7 * CHUNK + 5000, 1); // only in b
+				operate(a, b, "shapes " + x[0] + "/" + x[1] + " and " + y[0] + "/" + y[1]);
+			}
+		}
+	}
+
+	private void randomOperations() {
+		Random random = new Random(15);
+		for (int round = 0; round < 60; round++) {
+			BitSet a = new BitSet();
+			BitSet b = new BitSet();
+			randomFill(random, a);
+			randomFill(random, b);
+			operate(a, b, "round " + round);
+
+			// random adds and removes around the limit of one container
+			CompressedBitmap bitmap = of(a);
+			BitSet reference = (BitSet) a.clone();
+			for (int i = 0; i < 20_000; i++) {
+				int value = random.nextInt(4) * CHUNK + random.nextInt(9000);
+				if (random.nextBoolean()) {
+					add(bitmap, reference, value);
+				} else {
+					remove(bitmap, reference, value);
+				}
+			}
+			compare(bitmap, reference, "round " + round + " after adds and removes");
+		}
+	}
+
+	private void copies() {
+		BitSet reference = new BitSet();
+		fill(reference, 0, 3 * CHUNK, 7);
+		CompressedBitmap bitmap = of(reference);
+		CompressedBitmap copy = bitmap.copy();
+		for (int value = 0; value < 3 * CHUNK; value += 7) {
+			copy.remove(value);
+		}
+		copy.add(10 * CHUNK);
+		compare(bitmap, reference, "original after the copy changed");
+		expectEquals(1, copy.cardinality(), "cardinality of the changed copy");
+
+		// addAll copies the containers it takes, so the source is not changed through the target
+		CompressedBitmap target = new CompressedBitmap();
+		target.addAll(bitmap);
+		target.add(1);
+		target.remove(7);
+		compare(bitmap, reference, "source after addAll");
+		BitSet expected = (BitSet) reference.clone();
+		expected.set(1);
+		expected.clear(7);
+		compare(target, expected, "target of addAll");
+	}
+
+	// and, or, andNot, andCardinality and addAll of a and b against the BitSet results
+	private void operate(BitSet a, BitSet b, String what) {
+		CompressedBitmap x = of(a);
+		CompressedBitmap y = of(b);
+
+		BitSet and = (BitSet) a.clone();
+		and.and(b);
+		BitSet or = (BitSet) a.clone();
+		or.or(b);
+		BitSet andNot = (BitSet) a.clone();
+		andNot.andNot(b);
+
+		compare(CompressedBitmap.and(x, y), and, what + ", and");
+		compare(CompressedBitmap.or(x, y), or, what + ", or");
+		compare(CompressedBitmap.andNot(x, y), andNot, what + ", andNot");
+		expectEquals(and.cardinality(), CompressedBitmap.andCardinality(x, y), what + ", andCardinality");
+		CompressedBitmap union = x.copy();
+		union.addAll(y);
+		compare(union, or, what + ", addAll");
+		// the operands are left as they were
+		compare(x, a, what + ", left operand");
+		compare(y, b, what + ", right operand");
+	}
+
+	private static void randomFill(Random random, BitSet set) {
+		for (int chunk = 0; chunk < 4; chunk++) {
+			int count = switch (random.nextInt(4)) {
+				case 0 -> 0;
+				case 1 -> random.nextInt(LIMIT);
+				case 2 -> LIMIT - 50 + random.nextInt(100);
+				default -> LIMIT + random.nextInt(20_000);
+			};
+			for (int i = 0; i < count; i++) {
+				set.set(chunk * CHUNK + random.nextInt(CHUNK));
+			}
+		}
+	}
+
+	private static void fill(BitSet set, int from, int to, int step) {
+		for (int value = from; value < to; value += step) {
+			set.set(value);
+		}
+	}
+
+	private static CompressedBitmap of(BitSet set) {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		set.stream().forEach(bitmap::add);
+		return bitmap;
+	}
+
+	private static void add(CompressedBitmap bitmap, BitSet reference, int value) {
+		bitmap.add(value);
+		reference.set(value);
+	}
+
+	private static void remove(CompressedBitmap bitmap, BitSet reference, int value) {
+		bitmap.remove(value);
+		reference.clear(value);
+	}
+
+	// same values, through toArray, forEach, contains and cardinality
+	private void compare(CompressedBitmap bitmap, BitSet reference, String what) {
+		int[] expected = reference.stream().toArray();
+		int[] values = bitmap.toArray();
+		if (!Arrays.equals(expected, values)) {
+			expect(false, what + ": values differ (" + values.length + " instead of " + expected.length + ")");
+			return;
+		}
+		BitSet walked = new BitSet();
+		int[] previous = { -1 };
+		boolean[] ordered = { true };
+		bitmap.forEach(v -> {
+			ordered[0] &= v > previous[0];
+			previous[0] = v;
+			walked.set(v);
+		});
+		expect(ordered[0], what + ": forEach in ascending order");
+		expectEquals(reference, walked, what + ": forEach values");
+		expectEquals(expected.length, bitmap.cardinality(), what + ": cardinality");
+		expectEquals(expected.length == 0, bitmap.isEmpty(), what + ": isEmpty");
+		for (int value : expected) {
+			if (!bitmap.contains(value)) {
+				expect(false, what + ": contains(" + value + ")");
+				return;
+			}
+		}
+		for (int value : new int[] { 0, 1, 5, 7, CHUNK, 3 * CHUNK + 5, 7 * CHUNK + 4999, Integer.MAX_VALUE }) {
+			expectEquals(reference.get(value), bitmap.contains(value), what + ": contains(" + value + ")");
+		}
+		expect(!bitmap.contains(-1), what + ": contains(-1)");
+	}
+
+}
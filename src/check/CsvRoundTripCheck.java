@@ -0,0 +1,104 @@
+package check;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import application.http.InventoryHttpServer;
+import model.Equipment;
+import model.Server;
+import service.EquipmentFileService;
+import service.EquipmentService;
+import service.LogService;
+import service.imports.RejectReason;
+import service.imports.Rejection;
+
+// An equipment registered with already split fields (HTTP, batch) is saved to equipments.csv and
+// loaded back the same, and a field that the file cannot hold (';', line break) is refused
+public class CsvRoundTripCheck extends Check {
+
+	private static final String[][] LINES = {
+			{ "ROUTER", "Archer C6, v2", "10.0.0.1", "TP-Link", "ON", "12.5", "24", "true", "1200" },
+			{ "SWITCH", "Catalyst \"9200\"", "10.0.0.2", "Cisco", "OFF", "45", "8", "10.5" },
+			{ "SERVER", "PowerEdge R750", "10.0.1.1", "Dell", "ON", "350.25", "24", "Ubuntu 22.04 (Jammy)", "64", "2000" },
+			{ "FIREWALL", "FortiGate 60F", "10.0.2.1", "Fortinet", "ON", "30", "12", "true", "false" },
+	};
+
+	@Override
+	protected void run() throws Exception {
+		Path dir = tempDirectory();
+		roundTrip(dir);
+		refused(dir);
+		refusedOverHttp(dir);
+	}
+
+	private void roundTrip(Path dir) throws Exception {
+		EquipmentService saved = new EquipmentService(new LogService(dir.resolve("log.txt")));
+		for (String[] line : LINES) {
+			Equipment e = saved.parseEquipmentLine(line, 0, saved::isDuplicateIp, this::unexpected);
+			expect(e != null && saved.addEquipment(e), "registers " + line[1]);
+		}
+		try (EquipmentFileService files = new EquipmentFileService(saved, dir)) {
+			files.saveToFile();
+		}
+
+		EquipmentService loaded = new EquipmentService(new LogService(dir.resolve("log.txt")));
+		try (EquipmentFileService files = new EquipmentFileService(loaded, dir)) {
+			files.loadFromFile();
+		}
+		expectEquals(saved.size(), loaded.size(), "equipments loaded back");
+		for (Equipment e : saved.getEquipments()) {
+			Equipment back = loaded.ipSearch(e.getPackedIp());
+			expect(back != null, e.getIp() + " loaded back");
+			if (back != null) {
+				expectEquals(e.getDetails(), back.getDetails(), e.getIp() + " details");
+				expectEquals(e.getModel(), back.getModel(), e.getIp() + " model");
+				expectEquals(e.getManufacturer(), back.getManufacturer(), e.getIp() + " manufacturer");
+				if (e instanceof Server s && back instanceof Server b) {
+					expectEquals(s.getOpSystem(), b.getOpSystem(), e.getIp() + " operating system");
+				}
+			}
+		}
+	}
+
+	private void refused(Path dir) {
+		EquipmentService service = new EquipmentService(new LogService(dir.resolve("log.txt")));
+		String[][] forged = {
+				{ "ROUTER", "Archer;ROUTER", "10.9.0.1", "TP-Link", "ON", "12.5", "24", "true", "1200" },
+				{ "ROUTER", "Archer", "10.9.0.2", "TP-Link\nSWITCH;x;10.9.9.9;y;ON;1;1;1", "ON", "12.5", "24", "true", "1200" },
+				{ "SERVER", "R750", "10.9.0.3", "Dell", "ON", "350", "24", "Linux\r", "64", "2000" },
+		};
+		String[] fields = { "model", "manufacturer", "field8" };
+		for (int i = 0; i < forged.length; i++) {
+			List<Rejection> rejections = new ArrayList<>();
+			Equipment e = service.parseEquipmentLine(forged[i], 0, service::isDuplicateIp, rejections::add);
+			expect(e == null, "refuses " + forged[i][2]);
+			expect(rejections.size() == 1 && rejections.get(0).reason() == RejectReason.INVALID_CHARACTER
+					&& rejections.get(0).field().equals(fields[i]), "rejection of " + forged[i][2] + ": " + rejections);
+		}
+	}
+
+	private void refusedOverHttp(Path dir) throws Exception {
+		EquipmentService service = new EquipmentService(new LogService(dir.resolve("log.txt")));
+		try (InventoryHttpServer server = InventoryHttpServer.localhost(service, 0)) {
+			server.start();
+			String body = "{\"type\":\"SERVER\",\"model\":\"R750\",\"ip\":\"10.9.1.1\",\"manufacturer\":\"Dell\\n\","
+					+ "\"state\":\"ON\",\"energyConsumption\":\"350\",\"qtdHourConsumption\":\"24\","
+					+ "\"opSystem\":\"Linux;1;1\",\"ramCapacity\":\"64\",\"diskCapacity\":\"2000\"}";
+			HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/equipments"))
+					.POST(HttpRequest.BodyPublishers.ofString(body)).build();
+			HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+			expectEquals(400, response.statusCode(), "status of a POST with a line break (" + response.body() + ")");
+			expectEquals(0, service.size(), "equipments after the refused POST");
+		}
+	}
+
+	private void unexpected(Rejection rejection) {
+		expect(false, "rejected: " + rejection.message());
+	}
+
+}
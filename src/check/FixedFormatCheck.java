@@ -0,0 +1,66 @@
+package check;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Random;
+
+import service.render.RenderBuffer;
+
+// RenderBuffer.fixed writes the same text as %.Nf (with '.' as separator), including the
+// decimal ties that the binary value puts a little below or above (1.005, 2.675), the negative
+// values that round to zero and the numbers too large to be scaled in a long
+public class FixedFormatCheck extends Check {
+
+	private static final double[] VALUES = { 0, -0.0, 0.5, 1.5, 2.5, -2.5, 0.125, 0.375, 1.005, 2.675, 1.115, 8.345,
+			-1.005, 0.0049999, 0.005, -0.004, 99.995, 999999.9999995, 1234.5678, 1e-7, 0.1 + 0.2, 1e15, 9.2e17, 1e300,
+			-1e300, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	private final RenderBuffer buffer = new RenderBuffer(new PrintStream(bytes));
+
+	@Override
+	protected void run() {
+		for (double value : VALUES) {
+			for (int decimals = 0; decimals <= 6; decimals++) {
+				check(value, decimals);
+			}
+		}
+
+		// the separator does not follow the default locale
+		Locale locale = Locale.getDefault();
+		Locale.setDefault(Locale.forLanguageTag("pt-BR"));
+		try {
+			for (double value : VALUES) {
+				check(value, 2);
+			}
+		} finally {
+			Locale.setDefault(locale);
+		}
+
+		Random random = new Random(22);
+		for (int i = 0; i < 100_000; i++) {
+			int decimals = random.nextInt(7);
+			// short decimals, many of them ties for fewer decimals, like the energies of the inventory
+			check((random.nextInt(2_000_000) - 1_000_000) / 1000.0, decimals);
+			check(random.nextInt(100_000) / 8.0, decimals);
+			check((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 6), decimals);
+		}
+
+		try {
+			buffer.fixed(1, 7);
+			expect(false, "fixed(1, 7) throws IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private void check(double value, int decimals) {
+		buffer.fixed(value, decimals).flush();
+		String actual = bytes.toString();
+		bytes.reset();
+		expectEquals(String.format(Locale.ROOT, "%." + decimals + "f", value), actual,
+				"fixed(" + value + ", " + decimals + ")");
+	}
+
+}
@@ -0,0 +1,268 @@
+package check;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.EquipmentType;
+import model.IpAddress;
+import model.Router;
+import model.Subnet;
+import service.IpRadixTrie;
+
+// IpRadixTrie answers like a sorted map of the unsigned addresses after any mix of adds and
+// removes, and its path copying holds under concurrency: writers racing on the root lose no
+// change, and a query that runs meanwhile walks one whole version (sorted, inside its block, with
+// every equipment that no writer touches)
+public class IpRadixTrieCheck extends Check {
+
+	// blocks the addresses are drawn from, so the paths share long prefixes and split often
+	private static final int[] BLOCKS = { IpAddress.pack("0.0.0.0"), IpAddress.pack("10.0.0.0"),
+			IpAddress.pack("10.0.1.0"), IpAddress.pack("127.255.255.0"), IpAddress.pack("128.0.0.0"),
+			IpAddress.pack("192.168.0.0"), IpAddress.pack("255.255.255.0") };
+
+	@Override
+	protected void run() throws Exception {
+		sequential();
+		staleRemove();
+		concurrentWriters();
+		readersDuringWrites();
+	}
+
+	private void sequential() {
+		Random random = new Random(14);
+		IpRadixTrie trie = new IpRadixTrie();
+		TreeMap<Long, Equipment> reference = new TreeMap<>();
+		for (int round = 0; round < 40; round++) {
+			for (int i = 0; i < 300; i++) {
+				int ip = randomIp(random);
+				Equipment current = reference.get(unsigned(ip));
+				if (current != null && random.nextInt(3) > 0) {
+					trie.onRemoved(current);
+					reference.remove(unsigned(ip));
+				} else if (current == null) {
+					Equipment e = router(ip);
+					trie.onAdded(e);
+					reference.put(unsigned(ip), e);
+				}
+			}
+			compare(trie, reference, random, "round " + round);
+		}
+		trie.onCleared();
+		expectEquals(0, trie.size(), "size after clear");
+		expect(trie.get(BLOCKS[1]) == null && trie.nearest(BLOCKS[1]) == null, "empty after clear");
+	}
+
+	// a remove for an equipment that no longer holds the address leaves the one that does
+	private void staleRemove() {
+		IpRadixTrie trie = new IpRadixTrie();
+		int ip = IpAddress.pack("10.0.0.7");
+		Equipment old = router(ip);
+		Equipment current = router(ip);
+		trie.onAdded(old);
+		trie.onRemoved(old);
+		trie.onAdded(current);
+		trie.onAdded(router(IpAddress.pack("10.0.0.8")));
+		trie.onRemoved(old);
+		expect(trie.get(ip) == current, "stale remove keeps the current equipment");
+		expectEquals(2, trie.size(), "size after a stale remove");
+	}
+
+	// every writer adds and removes its own addresses at once: a lost compare-and-set would drop
+	// or bring back one of them
+	private void concurrentWriters() throws InterruptedException {
+		IpRadixTrie trie = new IpRadixTrie();
+		Map<Integer, Equipment> expected = new ConcurrentHashMap<>();
+		int writers = 4;
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int w = 0; w < writers; w++) {
+			int writer = w;
+			threads.add(new Thread(() -> {
+				Random random = new Random(writer);
+				Map<Integer, Equipment> mine = new TreeMap<>();
+				await(start);
+				for (int i = 0; i < 20_000; i++) {
+					// the addresses of a writer are those with its number in the lowest two bits
+					int ip = (randomIp(random) & ~3) | writer;
+					Equipment current = mine.remove(ip);
+					if (current != null) {
+						trie.onRemoved(current);
+					} else {
+						Equipment e = router(ip);
+						trie.onAdded(e);
+						mine.put(ip, e);
+					}
+				}
+				expected.putAll(mine);
+			}));
+		}
+		threads.forEach(Thread::start);
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		expectEquals(expected.size(), trie.size(), "size after concurrent writers");
+		expectEquals(expected.size(), trie.inSubnet(new Subnet(0, 0)).size(), "equipments after concurrent writers");
+		for (Map.Entry<Integer, Equipment> entry : expected.entrySet()) {
+			if (trie.get(entry.getKey()) != entry.getValue()) {
+				expect(false, "concurrent writers lost " + IpAddress.format(entry.getKey()));
+				return;
+			}
+		}
+	}
+
+	// a reader walks while two writers keep changing the odd addresses; the even ones are never
+	// touched, so every answer must hold all of those of its block, in order
+	private void readersDuringWrites() throws InterruptedException {
+		IpRadixTrie trie = new IpRadixTrie();
+		Subnet block = Subnet.parse("10.0.0.0/20");
+		List<Integer> stable = new ArrayList<>();
+		for (int host = 0; host < 4096; host += 2) {
+			int ip = block.first() + host;
+			stable.add(ip);
+			trie.onAdded(router(ip));
+		}
+		Subnet[] queries = { block, Subnet.parse("10.0.0.0/24"), Subnet.parse("10.0.8.128/25"),
+				Subnet.parse("10.0.15.0/24"), Subnet.parse("10.0.0.0/8") };
+
+		AtomicBoolean done = new AtomicBoolean();
+		List<String> problems = new ArrayList<>();
+		List<Thread> writers = new ArrayList<>();
+		for (int w = 0; w < 2; w++) {
+			int seed = w;
+			writers.add(new Thread(() -> {
+				Random random = new Random(100 + seed);
+				Map<Integer, Equipment> mine = new TreeMap<>();
+				for (int i = 0; i < 100_000; i++) {
+					// writer 0 takes hosts 1, 5, 9..., writer 1 takes 3, 7, 11...
+					int ip = block.first() + (random.nextInt(1024) * 4 + 1 + 2 * seed);
+					Equipment current = mine.remove(ip);
+					if (current != null) {
+						trie.onRemoved(current);
+					} else {
+						Equipment e = router(ip);
+						trie.onAdded(e);
+						mine.put(ip, e);
+					}
+				}
+			}));
+		}
+		Thread reader = new Thread(() -> {
+			int round = 0;
+			while (!done.get() && problems.isEmpty()) {
+				Subnet subnet = queries[round++ % queries.length];
+				String problem = checkWalk(trie.inSubnet(subnet), subnet, stable);
+				if (problem == null) {
+					problem = checkWalk(trie.inRange(subnet.first(), subnet.last()), subnet, stable);
+				}
+				if (problem == null && trie.countInSubnet(subnet) < (int) stable.stream().filter(subnet::contains).count()) {
+					problem = "count of " + subnet + " below the untouched equipments";
+				}
+				if (problem != null) {
+					synchronized (problems) {
+						problems.add(problem);
+					}
+				}
+			}
+		});
+		reader.start();
+		writers.forEach(Thread::start);
+		for (Thread t : writers) {
+			t.join();
+		}
+		done.set(true);
+		reader.join();
+		expectEquals(List.of(), problems, "walks during writes");
+	}
+
+	// null when the walk is one consistent version: ascending, inside the block, with every
+	// untouched address of the block
+	private static String checkWalk(List<Equipment> walk, Subnet subnet, List<Integer> stable) {
+		long previous = -1;
+		int untouched = 0;
+		for (Equipment e : walk) {
+			long ip = unsigned(e.getPackedIp());
+			if (ip <= previous) {
+				return subnet + ": " + e.getIp() + " out of order";
+			}
+			if (!subnet.contains(e.getPackedIp())) {
+				return subnet + ": " + e.getIp() + " outside the block";
+			}
+			if ((e.getPackedIp() & 1) == 0) {
+				untouched++;
+			}
+			previous = ip;
+		}
+		long expected = stable.stream().filter(subnet::contains).count();
+		return untouched == expected ? null : subnet + ": " + untouched + " untouched equipments instead of " + expected;
+	}
+
+	// size, get, inSubnet, countInSubnet, inRange and nearest against the map
+	private void compare(IpRadixTrie trie, TreeMap<Long, Equipment> reference, Random random, String what) {
+		expectEquals(reference.size(), trie.size(), what + ": size");
+		expectEquals(new ArrayList<>(reference.values()), trie.inSubnet(new Subnet(0, 0)), what + ": every equipment");
+		for (int i = 0; i < 200; i++) {
+			int ip = randomIp(random);
+			expect(trie.get(ip) == reference.get(unsigned(ip)), what + ": get " + IpAddress.format(ip));
+
+			Subnet subnet = new Subnet(ip, random.nextInt(33));
+			List<Equipment> inSubnet = List.copyOf(
+					reference.subMap(unsigned(subnet.first()), true, unsigned(subnet.last()), true).values());
+			expectEquals(inSubnet, trie.inSubnet(subnet), what + ": inSubnet " + subnet);
+			expectEquals(inSubnet.size(), trie.countInSubnet(subnet), what + ": countInSubnet " + subnet);
+
+			int other = randomIp(random);
+			long first = Math.min(unsigned(ip), unsigned(other));
+			long last = Math.max(unsigned(ip), unsigned(other));
+			expectEquals(List.copyOf(reference.subMap(first, true, last, true).values()),
+					trie.inRange((int) first, (int) last), what + ": inRange " + IpAddress.format((int) first) + " - "
+							+ IpAddress.format((int) last));
+			if (first != last) {
+				expectEquals(0, trie.inRange((int) last, (int) first).size(), what + ": inRange reversed");
+			}
+
+			expect(trie.nearest(ip) == nearest(reference, unsigned(ip)), what + ": nearest " + IpAddress.format(ip));
+		}
+	}
+
+	// the closest key, the lower one on a tie
+	private static Equipment nearest(TreeMap<Long, Equipment> reference, long ip) {
+		Map.Entry<Long, Equipment> below = reference.floorEntry(ip);
+		Map.Entry<Long, Equipment> above = reference.ceilingEntry(ip);
+		if (below == null || above == null) {
+			return below != null ? below.getValue() : above == null ? null : above.getValue();
+		}
+		return ip - below.getKey() <= above.getKey() - ip ? below.getValue() : above.getValue();
+	}
+
+	private static int randomIp(Random random) {
+		int block = BLOCKS[random.nextInt(BLOCKS.length)];
+		// mostly inside the block, sometimes anywhere
+		return random.nextInt(8) == 0 ? random.nextInt() : block | random.nextInt(512);
+	}
+
+	private static long unsigned(int ip) {
+		return Integer.toUnsignedLong(ip);
+	}
+
+	private static Equipment router(int ip) {
+		return new Router(EquipmentType.ROUTER, "Archer C6", ip, "TP-Link", EquipmentState.ON, 12.5, 24, true, 1200);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+package check;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.EquipmentType;
+import model.Firewall;
+import model.IpAddress;
+import model.Router;
+import model.Server;
+import model.Switch;
+import service.EquipmentJournal;
+import service.EquipmentService;
+import service.LogService;
+
+// A journal cut anywhere (a crash in the middle of an append) or with a damaged record replays
+// the records before the damage, gives the inventory of that moment, is cut back to them, and
+// takes new records after them that the next replay reads
+public class JournalRecoveryCheck extends Check {
+
+	private Path dir;
+
+	@Override
+	protected void run() throws Exception {
+		dir = tempDirectory();
+		Path full = dir.resolve("full.journal");
+
+		// the inventory after each record, from the live service
+		List<String> inventories = new ArrayList<>();
+		List<Long> ends = new ArrayList<>();
+		EquipmentService service = service();
+		try (EquipmentJournal journal = new EquipmentJournal(full, Long.MAX_VALUE)) {
+			service.addListener(journal);
+			inventories.add(describe(service));
+			ends.add(0L);
+			List<Runnable> changes = changes(service);
+			for (Runnable change : changes) {
+				change.run();
+				inventories.add(describe(service));
+				ends.add(journal.size());
+			}
+		}
+		byte[] bytes = Files.readAllBytes(full);
+		expectEquals(ends.get(ends.size() - 1), (long) bytes.length, "journal size");
+
+		// a cut at every byte: the records that end before it are kept
+		int records = 0;
+		for (int cut = 0; cut <= bytes.length; cut++) {
+			while (records + 1 < ends.size() && ends.get(records + 1) <= cut) {
+				records++;
+			}
+			recover(bytes, cut, records, ends.get(records), inventories, "cut at " + cut);
+		}
+
+		// a damaged byte in record k (length, operation, payload or checksum) drops it and the rest
+		for (int k = 0; k + 1 < ends.size(); k++) {
+			long start = ends.get(k);
+			long end = ends.get(k + 1);
+			for (long at : new long[] { start, start + 3, start + 4, start + 5, (start + end) / 2, end - 1 }) {
+				byte[] damaged = bytes.clone();
+				damaged[(int) at] ^= 0x40;
+				recover(damaged, damaged.length, k, start, inventories, "record " + k + " damaged at " + (at - start));
+			}
+		}
+
+		// a length far larger than any record does not make replay allocate or read it
+		byte[] huge = bytes.clone();
+		huge[(int) (long) ends.get(2)] = 0x7F;
+		recover(huge, huge.length, 2, ends.get(2), inventories, "huge length");
+	}
+
+	// replays the bytes up to cut, expecting the first records (ending at validEnd), then appends
+	// one more change and replays again
+	private void recover(byte[] bytes, int cut, int records, long validEnd, List<String> inventories, String what)
+			throws IOException {
+		Path path = dir.resolve("torn.journal");
+		Files.deleteIfExists(path);
+		Files.write(path, Arrays.copyOf(bytes, cut));
+
+		EquipmentService service = service();
+		try (EquipmentJournal journal = new EquipmentJournal(path, Long.MAX_VALUE)) {
+			expectEquals(records, journal.replay(service), what + ": records replayed");
+			expectEquals(inventories.get(records), describe(service), what + ": inventory");
+			expectEquals(validEnd, journal.size(), what + ": journal cut back");
+			service.addListener(journal);
+			service.addEquipment(router("10.1.1.1"));
+		}
+
+		EquipmentService again = service();
+		try (EquipmentJournal journal = new EquipmentJournal(path, Long.MAX_VALUE)) {
+			expectEquals(records + 1, journal.replay(again), what + ": records replayed after an append");
+			expectEquals(describe(service), describe(again), what + ": inventory after an append");
+		}
+	}
+
+	// every kind of record, with payloads of different lengths
+	private static List<Runnable> changes(EquipmentService service) {
+		List<Runnable> changes = new ArrayList<>();
+		changes.add(() -> service.addEquipment(router("10.0.0.1")));
+		changes.add(() -> service.addEquipment(new Switch(EquipmentType.SWITCH, "Catalyst 9200", "10.0.0.2", "Cisco",
+				EquipmentState.OFF, 45.0, 8, 10.5)));
+		changes.add(() -> service.addEquipment(new Server(EquipmentType.SERVER, "PowerEdge R750", "10.0.1.1", "Dell",
+				EquipmentState.ON, 350.25, 24, "Ubuntu 22.04 (Jammy)", 64, 2000)));
+		changes.add(() -> service.changeState(service.ipSearch(pack("10.0.0.2")), EquipmentState.ON));
+		changes.add(() -> service.changeEnergyConsumption(service.ipSearch(pack("10.0.0.1")), 99.5));
+		changes.add(() -> service.removeEquipmentByPackedIp(pack("10.0.0.1")));
+		changes.add(() -> service.addEquipment(new Firewall(EquipmentType.FIREWALL, "FortiGate 60F", "10.0.2.1",
+				"Fortinet", EquipmentState.ON, 30.0, 12, true, false)));
+		changes.add(service::clear);
+		changes.add(() -> service.addEquipment(router("10.0.0.9")));
+		return changes;
+	}
+
+	private EquipmentService service() {
+		return new EquipmentService(new LogService(dir.resolve("log.txt")));
+	}
+
+	private static String describe(EquipmentService service) {
+		return service.getEquipments().stream()
+				.sorted(Comparator.comparingLong(e -> Integer.toUnsignedLong(e.getPackedIp())))
+				.map(e -> e + "\n " + e.getDetails())
+				.collect(Collectors.joining("\n"));
+	}
+
+	private static Equipment router(String ip) {
+		return new Router(EquipmentType.ROUTER, "Archer C6", ip, "TP-Link", EquipmentState.ON, 12.5, 24, true, 1200);
+	}
+
+	private static int pack(String ip) {
+		return IpAddress.pack(ip);
+	}
+
+}
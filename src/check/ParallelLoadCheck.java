@@ -0,0 +1,120 @@
+package check;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import model.Equipment;
+import service.EquipmentFileService;
+import service.EquipmentService;
+import service.LogService;
+import service.imports.RejectReason;
+
+// The parallel load of equipments.csv gives what the sequential load gives: the same list in the
+// same order, the same log lines, reject file and rejection counts. The duplicates are the case
+// the ordered merge is for: the first line with an IP wins even when the next one is in an
+// earlier-finished chunk, and a line whose IP is taken is a duplicate whatever else is wrong
+// with it
+public class ParallelLoadCheck extends Check {
+
+	private static final String[] TYPES = { "ROUTER", "SWITCH", "SERVER", "FIREWALL" };
+
+	@Override
+	protected void run() throws IOException {
+		compare("", "empty file");
+		compare("\n\n", "blank lines");
+		compare("ROUTER;Archer;10.0.0.1;TP-Link;ON;12.5;24;true;1200", "one line without a newline");
+		compare(inventory(new Random(3), 20_000), "generated file");
+		compare(inventory(new Random(4), 3_000).replace("\n", "\r\n"), "generated file with CRLF");
+	}
+
+	private void compare(String content, String what) throws IOException {
+		Load sequential = load(content, false);
+		Load parallel = load(content, true);
+		expectEquals(sequential.equipments, parallel.equipments, what + ": equipments");
+		expectEquals(sequential.log, parallel.log, what + ": log");
+		expectEquals(sequential.rejects, parallel.rejects, what + ": reject file");
+		expectEquals(sequential.groups, parallel.groups, what + ": rejections by reason");
+		if (what.startsWith("generated")) {
+			expect(sequential.equipments.size() > 1000, what + ": equipments loaded");
+			for (RejectReason reason : new RejectReason[] { RejectReason.DUPLICATE_IP, RejectReason.INVALID_IP,
+					RejectReason.NOT_A_NUMBER, RejectReason.MISSING_FIELDS }) {
+				expect(sequential.groups.contains(reason.name()), what + ": has " + reason + " rejections");
+			}
+		}
+	}
+
+	// what one load leaves: the list, the log without timestamps, the reject file and the counts
+	private record Load(List<String> equipments, List<String> log, String rejects, String groups) {
+	}
+
+	private Load load(String content, boolean parallel) throws IOException {
+		Path dir = tempDirectory();
+		Files.writeString(dir.resolve("equipments.csv"), content, StandardCharsets.UTF_8);
+		LogService log = new LogService(dir.resolve("log.txt"));
+		EquipmentService service = new EquipmentService(log);
+		try (EquipmentFileService files = new EquipmentFileService(service, dir)) {
+			files.setParallelLoad(parallel);
+			files.setWriteRejectFile(true);
+			files.loadFromFile();
+
+			List<String> equipments = new ArrayList<>();
+			for (Equipment e : service.getEquipments()) {
+				equipments.add(e + "\n " + e.getDetails());
+			}
+			Path logFile = dir.resolve("log.txt");
+			List<String> lines = Files.exists(logFile) ? Files.readAllLines(logFile) : List.of();
+			Path rejectFile = files.getRejectPath();
+			String rejects = Files.exists(rejectFile) ? Files.readString(rejectFile) : "";
+			String groups = service.getImportDiagnostics().groups().stream()
+					.map(g -> g.reason() + " " + g.field() + " " + g.count() + " " + g.firstLine() + "-" + g.lastLine()
+							+ " " + g.samples())
+					.collect(Collectors.joining("\n"));
+			return new Load(equipments, lines.stream().map(l -> l.substring(l.indexOf("] ") + 2)).toList(), rejects,
+					groups);
+		} finally {
+			log.close();
+		}
+	}
+
+	// valid lines of every type mixed with duplicates of earlier IPs (some of them also wrong in
+	// another field), bad values, blank and short lines and one line longer than a read buffer
+	private static String inventory(Random random, int lines) {
+		StringBuilder sb = new StringBuilder();
+		List<String> ips = new ArrayList<>();
+		for (int i = 0; i < lines; i++) {
+			String ip = "10." + random.nextInt(4) + "." + random.nextInt(256) + "." + random.nextInt(256);
+			int kind = random.nextInt(40);
+			if (kind < 4 && !ips.isEmpty()) {
+				ip = ips.get(random.nextInt(ips.size())); // a duplicate, usually from another chunk
+			}
+			ips.add(ip);
+			String type = TYPES[random.nextInt(TYPES.length)];
+			String energy = kind == 1 || kind == 5 ? "lots" : String.valueOf(random.nextInt(200_000) / 100.0);
+			String base = type + ";Model " + random.nextInt(1000) + ";" + (kind == 6 ? "10.0.0.256" : ip) + ";Maker"
+					+ random.nextInt(50) + ";" + (random.nextBoolean() ? "ON" : "OFF") + ";" + energy + ";"
+					+ random.nextInt(25);
+			String line = switch (type) {
+				case "ROUTER" -> base + ";" + random.nextBoolean() + ";" + random.nextInt(2000);
+				case "SWITCH" -> base + ";" + random.nextInt(5000) / 10.0;
+				case "SERVER" -> base + ";" + (kind == 7 ? "x".repeat(200_000) : "Linux") + ";" + random.nextInt(64)
+						+ ";" + random.nextInt(4000);
+				default -> base + ";" + random.nextBoolean() + ";" + random.nextBoolean();
+			};
+			if (kind == 8) {
+				line = "";
+			} else if (kind == 9) {
+				line = type + ";Model;" + ip;
+			}
+			sb.append(line).append('\n');
+		}
+		sb.setLength(sb.length() - 1); // the last line without a newline
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,90 @@
+package check;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import service.imports.CsvFieldTokenizer;
+
+// CsvFieldTokenizer.parseInt and parseDouble read the numbers from the bytes of the line; they
+// give the same value (to the bit) as Integer.parseInt and Double.parseDouble, or throw
+// NumberFormatException when those do
+public class TokenizerNumberCheck extends Check {
+
+	private static final String[] INTS = { "0", "7", "-7", "+7", "0012", "2147483647", "-2147483648", "2147483648",
+			"-2147483649", "99999999999", "", "-", "+", " 5", "5 ", "1.0", "1e3", "12a", "\u0663", "-\u0661\u0662" };
+
+	private static final String[] DOUBLES = { "0", "-0", "0.0", "-0.0", "1500", "-0.75", "+2.5", ".5", "5.", "0.1",
+			"0.3", "123456789012345", "1234567890123456", "12345678901234567890", "0.000000000000001",
+			"3.141592653589793", "9007199254740993", "1e3", "1E-3", "-1.5e+10", " 42.5 ", "\t7\t", "NaN", "-Infinity",
+			"1.5f", "2d", "0x1p3", "", " ", "-", ".", "1..2", "1.2.3", "--1", "1-", "abc", "1,5" };
+
+	// UTF-8 whatever the default charset, so the digits of other scripts reach the tokenizer
+	private final CsvFieldTokenizer tokenizer = new CsvFieldTokenizer(StandardCharsets.UTF_8);
+
+	@Override
+	protected void run() {
+		for (String text : INTS) {
+			checkInt(text);
+		}
+		for (String text : DOUBLES) {
+			checkDouble(text);
+		}
+
+		Random random = new Random(25);
+		for (int i = 0; i < 200_000; i++) {
+			checkInt(Integer.toString(random.nextInt()));
+			checkDouble(randomDecimal(random));
+			checkDouble(Double.toString(Double.longBitsToDouble(random.nextLong())));
+		}
+	}
+
+	// up to 20 digits with the point anywhere, so both the in-place path and the fallback run
+	private static String randomDecimal(Random random) {
+		StringBuilder sb = new StringBuilder();
+		if (random.nextInt(4) == 0) {
+			sb.append('-');
+		}
+		int digits = 1 + random.nextInt(20);
+		int point = random.nextInt(digits + 1);
+		for (int d = 0; d < digits; d++) {
+			if (d == point) {
+				sb.append('.');
+			}
+			sb.append((char) ('0' + random.nextInt(10)));
+		}
+		return sb.toString();
+	}
+
+	private void checkInt(String text) {
+		Object expected;
+		try {
+			expected = Integer.parseInt(text);
+		} catch (NumberFormatException e) {
+			expected = "NumberFormatException";
+		}
+		Object actual;
+		try {
+			actual = tokenizer.reset(new String[] { text }).parseInt(0);
+		} catch (NumberFormatException e) {
+			actual = "NumberFormatException";
+		}
+		expectEquals(expected, actual, "parseInt(\"" + text + "\")");
+	}
+
+	private void checkDouble(String text) {
+		Object expected;
+		try {
+			expected = Double.doubleToRawLongBits(Double.parseDouble(text));
+		} catch (NumberFormatException e) {
+			expected = "NumberFormatException";
+		}
+		Object actual;
+		try {
+			actual = Double.doubleToRawLongBits(tokenizer.reset(new String[] { text }).parseDouble(0));
+		} catch (NumberFormatException e) {
+			actual = "NumberFormatException";
+		}
+		expectEquals(expected, actual, "parseDouble(\"" + text + "\") bits");
+	}
+
+}
@@ -1,15 +1,27 @@
 package model;
 
+import java.util.Comparator;
+
 public abstract class Equipment {
+	
+	// orders by IP address using the packed form
+	public static final Comparator<Equipment> BY_IP = (a, b) -> IpAddress.compare(a.ip, b.ip);
+	
 	private EquipmentType type;
 	private String model;
-	private String ip;
+	private int ip; // packed IPv4, see IpAddress
 	private String manufacturer;
     private EquipmentState state;
     private Double energyConsumption;
     private Integer qtdHourConsumption;
+    // where the other values are kept instead of the fields above (null: in the fields)
+    private final EquipmentRow row;
     
 	public Equipment(EquipmentType type, String model, String ip, String manufacturer, EquipmentState state, Double energyConsumption, Integer qtdHourConsumption) {
+		this(type, model, IpAddress.pack(ip), manufacturer, state, energyConsumption, qtdHourConsumption);
+	}
+	
+	public Equipment(EquipmentType type, String model, int ip, String manufacturer, EquipmentState state, Double energyConsumption, Integer qtdHourConsumption) {
 		this.type = type;
 		this.model = model;
 		this.ip = ip;
@@ -17,49 +29,89 @@ public abstract class Equipment {
 		this.state = state;
 		this.energyConsumption = energyConsumption;
 		this.qtdHourConsumption = qtdHourConsumption;
+		this.row = null;
+	}
+
+	// an equipment whose values are read and written in row
+	protected Equipment(EquipmentType type, int ip, EquipmentRow row) {
+		this.type = type;
+		this.ip = ip;
+		this.row = row;
+	}
+	public EquipmentRow getRow() {
+		return row;
 	}
 	public EquipmentType getType() {
 		return type;
 	}
 	public void setType(EquipmentType type) {
+		if (row != null) {
+			throw new UnsupportedOperationException("The type of a stored equipment cannot change");
+		}
 		this.type = type;
 	}
 	public String getModel() {
-		return model;
+		return row != null ? row.getModel() : model;
 	}
 	public void setModel(String model) {
-		this.model = model;
+		if (row != null) {
+			row.setModel(model);
+		} else {
+			this.model = model;
+		}
 	}
 	public String getIp() {
-		return ip;
+		return IpAddress.format(ip);
 	}
 	public void setIp(String ip) {
-		this.ip = ip;
+		if (row != null) {
+			throw new UnsupportedOperationException("The IP of a stored equipment cannot change");
+		}
+		this.ip = IpAddress.pack(ip);
+	}
+	public int getPackedIp() {
+		return ip;
 	}
 	public String getManufacturer() {
-		return manufacturer;
+		return row != null ? row.getManufacturer() : manufacturer;
 	}
 	public void setManufacturer(String manufacturer) {
-		this.manufacturer = manufacturer;
+		if (row != null) {
+			row.setManufacturer(manufacturer);
+		} else {
+			this.manufacturer = manufacturer;
+		}
 	}
 	public EquipmentState getState() {
-		return state;
+		return row != null ? row.getState() : state;
 	}
 	public void setState(EquipmentState state) {
-		this.state = state;
+		if (row != null) {
+			row.setState(state);
+		} else {
+			this.state = state;
+		}
 	}
 	public Double getEnergyConsumption() {
-		return energyConsumption;
+		return row != null ? row.getEnergyConsumption() : energyConsumption;
 	}
 	public void setEnergyConsumption(Double energyConsumption) {
-		this.energyConsumption = energyConsumption;
+		if (row != null) {
+			row.setEnergyConsumption(energyConsumption);
+		} else {
+			this.energyConsumption = energyConsumption;
+		}
 	}
 	
 	public Integer getQtdHourConsumption() {
-		return qtdHourConsumption;
+		return row != null ? row.getQtdHourConsumption() : qtdHourConsumption;
 	}
 	public void setQtdHourConsumption(Integer qtdHourConsumption) {
-		this.qtdHourConsumption = qtdHourConsumption;
+		if (row != null) {
+			row.setQtdHourConsumption(qtdHourConsumption);
+		} else {
+			this.qtdHourConsumption = qtdHourConsumption;
+		}
 	}
 	
 	public abstract void powerOn();
@@ -70,14 +122,25 @@ public abstract class Equipment {
     
 	@Override
 	public String toString() {
-		return " Model: " + model
-				+ "\n IP: " + ip 
-				+ "\n Manufacturer: " + manufacturer
-				+ "\n State: " + state 
-				+ "\n EnergyConsumption(Watts): " + energyConsumption
-				+ "\n Consumption/Day (kWh): " + qtdHourConsumption;
+		return " Model: " + getModel()
+				+ "\n IP: " + getIp() 
+				+ "\n Manufacturer: " + getManufacturer()
+				+ "\n State: " + getState() 
+				+ "\n EnergyConsumption(Watts): " + getEnergyConsumption()
+				+ "\n Consumption/Day (kWh): " + getQtdHourConsumption();
 				
 	}
+
+	// equipments over the same row are equal; the others only to themselves
+	@Override
+	public boolean equals(Object obj) {
+		return obj == this || (row != null && obj instanceof Equipment other && row.equals(other.row));
+	}
+
+	@Override
+	public int hashCode() {
+		return row != null ? row.hashCode() : super.hashCode();
+	}
 	
 	
     
@@ -0,0 +1,68 @@
+package model;
+
+// The values of an equipment kept outside of it, e.g. in a row of a columnar store. An equipment
+// made over a row reads and writes them there; its type and IP stay in the equipment and cannot
+// change. Each type only uses its own values.
+public interface EquipmentRow {
+
+	String getModel();
+
+	void setModel(String model);
+
+	String getManufacturer();
+
+	void setManufacturer(String manufacturer);
+
+	EquipmentState getState();
+
+	void setState(EquipmentState state);
+
+	Double getEnergyConsumption();
+
+	void setEnergyConsumption(Double energyConsumption);
+
+	Integer getQtdHourConsumption();
+
+	void setQtdHourConsumption(Integer qtdHourConsumption);
+
+	// ROUTER
+
+	Boolean getSuportWifi();
+
+	void setSuportWifi(Boolean suportWifi);
+
+	Integer getMbps();
+
+	void setMbps(Integer mbps);
+
+	// SWITCH
+
+	Double getPortCapacityGB();
+
+	void setPortCapacityGB(Double portCapacityGB);
+
+	// SERVER
+
+	String getOpSystem();
+
+	void setOpSystem(String opSystem);
+
+	int getRamCapacity();
+
+	void setRamCapacity(int ramCapacity);
+
+	int getDiskCapacity();
+
+	void setDiskCapacity(int diskCapacity);
+
+	// FIREWALL
+
+	boolean isStatefullPacketInspection();
+
+	void setStatefullPacketInspection(boolean statefullPacketInspection);
+
+	boolean isBlockDoS();
+
+	void setBlockDoS(boolean blockDoS);
+
+}
@@ -6,26 +6,44 @@ public class Firewall extends Equipment {
 	
 	public Firewall(EquipmentType type, String model, String ip, String manufacturer, EquipmentState state, Double energyConsumption,
 			Integer qtdHourConsumption, boolean statefullPacketInspection, boolean blockDoS) {
+		this(type, model, IpAddress.pack(ip), manufacturer, state, energyConsumption, qtdHourConsumption, statefullPacketInspection, blockDoS);
+	}
+
+	public Firewall(EquipmentType type, String model, int ip, String manufacturer, EquipmentState state, Double energyConsumption,
+			Integer qtdHourConsumption, boolean statefullPacketInspection, boolean blockDoS) {
 		super(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption);
 		this.statefullPacketInspection = statefullPacketInspection;
 		this.blockDoS = blockDoS;
 	}
+
+	// a firewall whose values are read and written in row
+	public Firewall(int ip, EquipmentRow row) {
+		super(EquipmentType.FIREWALL, ip, row);
+	}
 	
 
 	public boolean isStatefullPacketInspection() {
-		return statefullPacketInspection;
+		return getRow() != null ? getRow().isStatefullPacketInspection() : statefullPacketInspection;
 	}
 
 	public void setStatefullPacketInspection(boolean statefullPacketInspection) {
-		this.statefullPacketInspection = statefullPacketInspection;
+		if (getRow() != null) {
+			getRow().setStatefullPacketInspection(statefullPacketInspection);
+		} else {
+			this.statefullPacketInspection = statefullPacketInspection;
+		}
 	}
 
 	public boolean isBlockDoS() {
-		return blockDoS;
+		return getRow() != null ? getRow().isBlockDoS() : blockDoS;
 	}
 
 	public void setBlockDoS(boolean blockDoS) {
-		this.blockDoS = blockDoS;
+		if (getRow() != null) {
+			getRow().setBlockDoS(blockDoS);
+		} else {
+			this.blockDoS = blockDoS;
+		}
 	}
 
 	
@@ -47,7 +65,7 @@ public class Firewall extends Equipment {
 	//Calculating energy consumption
 	@Override
 	public Double calculateConsumption(Integer qtdHourConsumption) {
-		return (super.getEnergyConsumption() * super.getQtdHourConsumption()) / 1000;
+		return (getEnergyConsumption() * getQtdHourConsumption()) / 1000;
 	}
 	
 	@Override
@@ -0,0 +1,82 @@
+package model;
+
+// IPv4 helpers: the address is kept packed in an int (a.b.c.d -> a<<24 | b<<16 | c<<8 | d)
+public final class IpAddress {
+
+	// returned by parse when the text is not a valid IPv4 address
+	public static final long INVALID = -1L;
+
+	private IpAddress() {
+	}
+
+	// validates and packs the address in one pass, without allocation
+	public static long parse(CharSequence ip) {
+		if (ip == null) {
+			return INVALID;
+		}
+		return parse(ip, 0, ip.length());
+	}
+
+	public static long parse(CharSequence ip, int from, int to) {
+		int packed = 0;
+		int octets = 0;
+		int digits = 0;
+		int value = 0;
+
+		for (int i = from; i < to; i++) {
+			char c = ip.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (++digits > 3) {
+					return INVALID;
+				}
+				value = value * 10 + (c - '0');
+			} else if (c == '.') {
+				if (digits == 0 || value > 255 || octets == 3) {
+					return INVALID;
+				}
+				packed = (packed << 8) | value;
+				octets++;
+				digits = 0;
+				value = 0;
+			} else {
+				return INVALID;
+			}
+		}
+
+		if (digits == 0 || value > 255 || octets != 3) {
+			return INVALID;
+		}
+		return ((packed << 8) | value) & 0xFFFFFFFFL;
+	}
+
+	public static boolean isValid(CharSequence ip) {
+		return parse(ip) != INVALID;
+	}
+
+	// packs a valid address, throws IllegalArgumentException otherwise
+	public static int pack(String ip) {
+		long packed = parse(ip);
+		if (packed == INVALID) {
+			throw new IllegalArgumentException("Invalid IP: " + ip);
+		}
+		return (int) packed;
+	}
+
+	// text form, only for display and save
+	public static String format(int ip) {
+		return appendTo(new StringBuilder(15), ip).toString();
+	}
+
+	public static StringBuilder appendTo(StringBuilder sb, int ip) {
+		return sb.append(ip >>> 24).append('.')
+				.append((ip >>> 16) & 0xFF).append('.')
+				.append((ip >>> 8) & 0xFF).append('.')
+				.append(ip & 0xFF);
+	}
+
+	// addresses are compared as unsigned values (10.0.0.1 < 192.168.0.1)
+	public static int compare(int a, int b) {
+		return Integer.compareUnsigned(a, b);
+	}
+
+}
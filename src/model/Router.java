@@ -6,25 +6,43 @@ public class Router extends Equipment {
 
 	public Router(EquipmentType type, String model, String ip, String manufacturer, EquipmentState state, Double energyConsumption,
 			Integer qtdHourConsumption, Boolean suportWifi, Integer mbps) {
+		this(type, model, IpAddress.pack(ip), manufacturer, state, energyConsumption, qtdHourConsumption, suportWifi, mbps);
+	}
+
+	public Router(EquipmentType type, String model, int ip, String manufacturer, EquipmentState state, Double energyConsumption,
+			Integer qtdHourConsumption, Boolean suportWifi, Integer mbps) {
 		super(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption);
 		this.supportWifi = suportWifi;
 		Mbps = mbps;
 	}
 
+	// a router whose values are read and written in row
+	public Router(int ip, EquipmentRow row) {
+		super(EquipmentType.ROUTER, ip, row);
+	}
+
 	public Boolean getSuportWifi() {
-		return supportWifi;
+		return getRow() != null ? getRow().getSuportWifi() : supportWifi;
 	}
 
 	public void setSuportWifi(Boolean suportWifi) {
-		this.supportWifi = suportWifi;
+		if (getRow() != null) {
+			getRow().setSuportWifi(suportWifi);
+		} else {
+			this.supportWifi = suportWifi;
+		}
 	}
 
 	public Integer getMbps() {
-		return Mbps;
+		return getRow() != null ? getRow().getMbps() : Mbps;
 	}
 
 	public void setMbps(Integer mbps) {
-		Mbps = mbps;
+		if (getRow() != null) {
+			getRow().setMbps(mbps);
+		} else {
+			Mbps = mbps;
+		}
 	}
 	
 	@Override
@@ -46,7 +64,7 @@ public class Router extends Equipment {
 	@Override
 	public Double calculateConsumption(Integer qtdHourConsumption) {
 		
-		return (super.getEnergyConsumption() * super.getQtdHourConsumption()) / 1000;
+		return (getEnergyConsumption() * getQtdHourConsumption()) / 1000;
 	}
     
 	@Override
@@ -57,8 +75,8 @@ public class Router extends Equipment {
 	@Override
 	public String toString() {
 		return super.toString() 
-				+"\n Support Wifi: " + supportWifi
-				+ "\n Mbps: " + Mbps;
+				+"\n Support Wifi: " + getSuportWifi()
+				+ "\n Mbps: " + getMbps();
 	}
 	
 	
@@ -7,68 +7,90 @@ public class Server extends Equipment{
 	
 	public Server(EquipmentType type, String model, String ip, String manufacturer, EquipmentState state, Double energyConsumption,
 			Integer qtdHourConsumption, String opSystem, int ramCapacity, int diskCapacity) {
+		this(type, model, IpAddress.pack(ip), manufacturer, state, energyConsumption, qtdHourConsumption, opSystem, ramCapacity, diskCapacity);
+	}
+
+	public Server(EquipmentType type, String model, int ip, String manufacturer, EquipmentState state, Double energyConsumption,
+			Integer qtdHourConsumption, String opSystem, int ramCapacity, int diskCapacity) {
 		super(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption);
 		this.opSystem = opSystem;
 		this.ramCapacity = ramCapacity;
 		this.diskCapacity = diskCapacity;
 	}
 
+	// a server whose values are read and written in row
+	public Server(int ip, EquipmentRow row) {
+		super(EquipmentType.SERVER, ip, row);
+	}
+
 	public String getOpSystem() {
-		return opSystem;
+		return getRow() != null ? getRow().getOpSystem() : opSystem;
 	}
 
 	public void setOpSystem(String opSystem) {
-		this.opSystem = opSystem;
+		if (getRow() != null) {
+			getRow().setOpSystem(opSystem);
+		} else {
+			this.opSystem = opSystem;
+		}
 	}
 
 	public int getRamCapacity() {
-		return ramCapacity;
+		return getRow() != null ? getRow().getRamCapacity() : ramCapacity;
 	}
 
 	public void setRamCapacity(int ramCapacity) {
-		this.ramCapacity = ramCapacity;
+		if (getRow() != null) {
+			getRow().setRamCapacity(ramCapacity);
+		} else {
+			this.ramCapacity = ramCapacity;
+		}
 	}
 
 	public int getDiskCapacity() {
-		return diskCapacity;
+		return getRow() != null ? getRow().getDiskCapacity() : diskCapacity;
 	}
 
 	public void setDiskCapacity(int diskCapacity) {
-		this.diskCapacity = diskCapacity;
+		if (getRow() != null) {
+			getRow().setDiskCapacity(diskCapacity);
+		} else {
+			this.diskCapacity = diskCapacity;
+		}
 	}
 	
 	@Override
 	public void powerOn() {
-		System.out.println("The server " + super.getModel() + " initializing Network Services.");
+		System.out.println("The server " + getModel() + " initializing Network Services.");
 	}
 	
 	@Override
 	public  void powerOff() {
-		System.out.println("The server " + super.getModel() + " turning off... Disconnecting from networks.");
+		System.out.println("The server " + getModel() + " turning off... Disconnecting from networks.");
 	}
 	
 	@Override
 	public  void restart() {
-		System.out.println("Restarting the server " + super.getModel());
+		System.out.println("Restarting the server " + getModel());
 		
 	}
 	
 	@Override
 	public Double calculateConsumption(Integer qtdHourConsumption) {
-		return (super.getEnergyConsumption() * super.getQtdHourConsumption()) / 1000;
+		return (getEnergyConsumption() * getQtdHourConsumption()) / 1000;
 	}
 	
 	@Override
 	public String getDetails() {
-	    return String.format("OS: %s | RAM: %d GB | Disk: %d GB", opSystem, ramCapacity, diskCapacity);
+	    return String.format("OS: %s | RAM: %d GB | Disk: %d GB", getOpSystem(), getRamCapacity(), getDiskCapacity());
 	}
 
 	@Override
 	public String toString() {
 		return super.toString() 
-			   + "\n Operating System: " + opSystem
-			   + "\n RAM Capacity: " + ramCapacity
-			   + "\n Disk Capacity: " + diskCapacity;
+			   + "\n Operating System: " + getOpSystem()
+			   + "\n RAM Capacity: " + getRamCapacity()
+			   + "\n Disk Capacity: " + getDiskCapacity();
 	}
 	
 
@@ -0,0 +1,79 @@
+package model;
+
+// IPv4 block in CIDR notation (e.g. 10.20.0.0/16), over the packed form of IpAddress
+public final class Subnet {
+
+	private final int network;
+	private final int prefixLength;
+
+	public Subnet(int network, int prefixLength) {
+		if (prefixLength < 0 || prefixLength > 32) {
+			throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+		}
+		this.prefixLength = prefixLength;
+		this.network = network & mask(prefixLength);
+	}
+
+	// "a.b.c.d/n", or a single address ("a.b.c.d" = /32)
+	public static Subnet parse(String cidr) {
+		if (cidr == null) {
+			throw new IllegalArgumentException("Subnet cannot be null");
+		}
+		String text = cidr.trim();
+		int slash = text.indexOf('/');
+		long ip = IpAddress.parse(text, 0, slash < 0 ? text.length() : slash);
+		if (ip == IpAddress.INVALID) {
+			throw new IllegalArgumentException("Invalid subnet: " + cidr);
+		}
+		int prefix = 32;
+		if (slash >= 0) {
+			try {
+				prefix = Integer.parseInt(text.substring(slash + 1));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid subnet: " + cidr);
+			}
+		}
+		return new Subnet((int) ip, prefix);
+	}
+
+	public static int mask(int prefixLength) {
+		return prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+	}
+
+	public boolean contains(int packedIp) {
+		return (packedIp & mask(prefixLength)) == network;
+	}
+
+	public int getNetwork() {
+		return network;
+	}
+
+	public int getPrefixLength() {
+		return prefixLength;
+	}
+
+	// lowest and highest address of the block
+	public int first() {
+		return network;
+	}
+
+	public int last() {
+		return network | ~mask(prefixLength);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Subnet other && other.network == network && other.prefixLength == prefixLength;
+	}
+
+	@Override
+	public int hashCode() {
+		return network * 31 + prefixLength;
+	}
+
+	@Override
+	public String toString() {
+		return IpAddress.format(network) + "/" + prefixLength;
+	}
+
+}
@@ -5,16 +5,30 @@ public class Switch extends Equipment {
 
 	public Switch(EquipmentType type, String model, String ip, String manufacturer, EquipmentState state, Double energyConsumption,
 			Integer qtdHourConsumption, Double portCapacityGB) {
+		this(type, model, IpAddress.pack(ip), manufacturer, state, energyConsumption, qtdHourConsumption, portCapacityGB);
+	}
+
+	public Switch(EquipmentType type, String model, int ip, String manufacturer, EquipmentState state, Double energyConsumption,
+			Integer qtdHourConsumption, Double portCapacityGB) {
 		super(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption);
 		this.portCapacityGB = portCapacityGB;
 	}
 
+	// a switch whose values are read and written in row
+	public Switch(int ip, EquipmentRow row) {
+		super(EquipmentType.SWITCH, ip, row);
+	}
+
 	public Double getPortCapacityGB() {
-		return portCapacityGB;
+		return getRow() != null ? getRow().getPortCapacityGB() : portCapacityGB;
 	}
 
 	public void setPortCapacityGB(Double portCapacityGB) {
-		this.portCapacityGB = portCapacityGB;
+		if (getRow() != null) {
+			getRow().setPortCapacityGB(portCapacityGB);
+		} else {
+			this.portCapacityGB = portCapacityGB;
+		}
 	}
 	
 	@Override
@@ -34,18 +48,18 @@ public class Switch extends Equipment {
 	
 	@Override
 	public Double calculateConsumption(Integer qtdHourConsumption) {
-		return (super.getEnergyConsumption() * super.getQtdHourConsumption()) / 1000;
+		return (getEnergyConsumption() * getQtdHourConsumption()) / 1000;
 	}
 	
 	@Override
 	public String getDetails() {
-	    return String.format("Capacity: %.2f GB", portCapacityGB);
+	    return String.format("Capacity: %.2f GB", getPortCapacityGB());
 	}
  
 	@Override
 	public String toString() {
 		return super.toString() 
-			   + "\n CapacityGB Port: " + portCapacityGB;
+			   + "\n CapacityGB Port: " + getPortCapacityGB();
 	}
 
 }
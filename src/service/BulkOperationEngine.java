@@ -0,0 +1,113 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import model.Equipment;
+import model.EquipmentOperation;
+import service.query.EquipmentFilter;
+
+// Runs one operation over a set of devices at the same time (one thread per device, virtual
+// when available), at most concurrencyLimit devices in flight. The total time follows the
+// slowest device instead of the sum of all of them. Use it with ConcurrentEquipmentService.
+public class BulkOperationEngine {
+
+	public static final int DEFAULT_CONCURRENCY = 64;
+
+	private final EquipmentService equipmentService;
+
+	public BulkOperationEngine(EquipmentService equipmentService) {
+		this.equipmentService = equipmentService;
+	}
+
+	public BulkOperationReport execute(EquipmentOperation operation, Predicate<Equipment> selector, int concurrencyLimit) {
+		List<Equipment> selected = select(selector);
+		return execute(operation, selected, concurrencyLimit, selector);
+	}
+
+	public BulkOperationReport execute(EquipmentOperation operation, List<Equipment> devices, int concurrencyLimit) {
+		return execute(operation, devices, concurrencyLimit, null);
+	}
+
+	// selector (null = none): a device that no longer matches it when its turn comes is skipped
+	private BulkOperationReport execute(EquipmentOperation operation, List<Equipment> devices, int concurrencyLimit,
+			Predicate<Equipment> selector) {
+		if (concurrencyLimit <= 0) {
+			throw new IllegalArgumentException("Concurrency limit must be positive");
+		}
+		long start = System.nanoTime();
+		Semaphore permits = new Semaphore(concurrencyLimit);
+		List<Future<BulkOperationReport.Result>> futures = new ArrayList<>(devices.size());
+
+		ExecutorService executor = ThreadPools.newPerTaskExecutor("bulk-operation");
+		try {
+			for (Equipment e : devices) {
+				permits.acquire();
+				futures.add(executor.submit(() -> {
+					try {
+						return run(operation, e, selector);
+					} finally {
+						permits.release();
+					}
+				}));
+			}
+
+			List<BulkOperationReport.Result> results = new ArrayList<>(futures.size());
+			for (Future<BulkOperationReport.Result> future : futures) {
+				results.add(future.get());
+			}
+			return new BulkOperationReport(operation, results, (System.nanoTime() - start) / 1_000_000);
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Bulk operation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Bulk operation failed", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private BulkOperationReport.Result run(EquipmentOperation operation, Equipment e, Predicate<Equipment> selector) {
+		try {
+			// the device may have changed since it was selected
+			if (selector != null && !selector.test(e)) {
+				return new BulkOperationReport.Result(e.getIp(), BulkOperationReport.Outcome.SKIPPED,
+						"The equipment no longer matches the selection.");
+			}
+			if (equipmentService.executeOperation(operation, e)) {
+				return new BulkOperationReport.Result(e.getIp(), BulkOperationReport.Outcome.DONE, null);
+			}
+			return new BulkOperationReport.Result(e.getIp(), BulkOperationReport.Outcome.SKIPPED,
+					EquipmentService.refusalReason(operation, e.getState()));
+		} catch (RuntimeException ex) {
+			return new BulkOperationReport.Result(e.getIp(), BulkOperationReport.Outcome.FAILED, ex.getMessage());
+		}
+	}
+
+	// selectors and filters are answered by the indexes, any other predicate scans the inventory
+	private List<Equipment> select(Predicate<Equipment> selector) {
+		if (selector instanceof EquipmentSelector s) {
+			return equipmentService.select(s);
+		}
+		if (selector instanceof EquipmentFilter f) {
+			try (Stream<Equipment> rows = equipmentService.filter(f)) {
+				return rows.toList();
+			}
+		}
+		List<Equipment> selected = new ArrayList<>();
+		for (Equipment e : equipmentService.getEquipments()) {
+			if (selector == null || selector.test(e)) {
+				selected.add(e);
+			}
+		}
+		return selected;
+	}
+
+}
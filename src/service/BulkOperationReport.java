@@ -0,0 +1,70 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import model.EquipmentOperation;
+
+// Result of a bulk operation, one entry per selected device
+public class BulkOperationReport {
+
+	public enum Outcome {
+		DONE, // the operation was applied
+		SKIPPED, // the current state does not allow it (e.g. already ON)
+		FAILED // the device raised an error
+	}
+
+	public record Result(String ip, Outcome outcome, String message) {
+	}
+
+	private final EquipmentOperation operation;
+	private final List<Result> results;
+	private final long elapsedMillis;
+
+	public BulkOperationReport(EquipmentOperation operation, List<Result> results, long elapsedMillis) {
+		this.operation = operation;
+		this.results = Collections.unmodifiableList(new ArrayList<>(results));
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public EquipmentOperation getOperation() {
+		return operation;
+	}
+
+	public List<Result> getResults() {
+		return results;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public int count(Outcome outcome) {
+		int count = 0;
+		for (Result r : results) {
+			if (r.outcome() == outcome) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public List<Result> failures() {
+		List<Result> failures = new ArrayList<>();
+		for (Result r : results) {
+			if (r.outcome() == Outcome.FAILED) {
+				failures.add(r);
+			}
+		}
+		return failures;
+	}
+
+	@Override
+	public String toString() {
+		return operation + " on " + results.size() + " devices in " + elapsedMillis + " ms: "
+				+ count(Outcome.DONE) + " done, " + count(Outcome.SKIPPED) + " skipped, "
+				+ count(Outcome.FAILED) + " failed";
+	}
+
+}
@@ -0,0 +1,337 @@
+package service;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.EquipmentType;
+import model.IpAddress;
+import model.Subnet;
+import service.query.Condition;
+import service.query.EquipmentFilter;
+import service.query.QueryPlanner.QueryPlan;
+
+// EquipmentService backed by a ColumnarEquipmentStore: the inventory is kept in primitive columns
+// instead of one object per equipment, and the equipments handed out (ipSearch, getEquipments,
+// the queries) are views that read and write the columns.
+//
+// The summaries, the subnet queries and the type/state/manufacturer counts scan the columns, so
+// the statistics, the radix trie and the bitmap index of EquipmentService, which would keep an
+// object per equipment, are not used. A view taken before its equipment was removed throws
+// IllegalStateException. The store has its own read/write lock; the changes (add, remove, state,
+// energy, clear) also run one at a time here, so their events reach the listeners in order.
+public class ColumnarEquipmentService extends EquipmentService {
+
+	private static final EquipmentType[] TYPES = EquipmentType.values();
+	private static final EquipmentState[] STATES = EquipmentState.values();
+	private static final int SUMMARY_TOP = 3;
+
+	private final ColumnarEquipmentStore store = new ColumnarEquipmentStore();
+	private final Object changes = new Object();
+	private final List<Equipment> view = new EquipmentsView();
+
+	public ColumnarEquipmentService() {
+		this(new LogService());
+	}
+
+	public ColumnarEquipmentService(LogService log) {
+		super(log, false);
+	}
+
+	public ColumnarEquipmentStore getStore() {
+		return store;
+	}
+
+	// the live inventory, read only: get(i) is the view of row i, and rows move when an
+	// equipment is removed (the last row takes its place)
+	@Override
+	public List<Equipment> getEquipments() {
+		return view;
+	}
+
+	// a view of every equipment at the time of the call
+	@Override
+	public List<Equipment> indexedEquipments() {
+		return store.views();
+	}
+
+	@Override
+	public int size() {
+		return store.size();
+	}
+
+	@Override
+	public void setEquipments(List<Equipment> equipments) {
+		synchronized (changes) {
+			clear();
+			for (Equipment e : equipments) {
+				addEquipment(e);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		synchronized (changes) {
+			store.clear();
+			fireCleared();
+		}
+	}
+
+	// the values of the equipment are copied into the columns; the listeners get the view
+	@Override
+	public boolean addEquipment(Equipment e) {
+		synchronized (changes) {
+			if (!store.add(e)) {
+				return false;
+			}
+			fireAdded(store.get(e.getPackedIp()));
+			return true;
+		}
+	}
+
+	@Override
+	public boolean isDuplicateIp(int packedIp) {
+		return store.contains(packedIp);
+	}
+
+	@Override
+	public Equipment ipSearch(int packedIp) {
+		return store.get(packedIp);
+	}
+
+	// the listeners get a detached copy of the removed equipment
+	@Override
+	public boolean removeEquipmentByPackedIp(int packedIp) {
+		synchronized (changes) {
+			Equipment removed = store.remove(packedIp);
+			if (removed == null) {
+				return false;
+			}
+			fireRemoved(removed);
+			return true;
+		}
+	}
+
+	@Override
+	protected boolean isRegistered(Equipment equipment) {
+		return store.isLive(equipment);
+	}
+
+	@Override
+	public void changeState(Equipment equipment, EquipmentState state) {
+		synchronized (changes) {
+			super.changeState(equipment, state);
+		}
+	}
+
+	@Override
+	public boolean changeEnergyConsumption(Equipment equipment, Double energyConsumption) {
+		synchronized (changes) {
+			return super.changeEnergyConsumption(equipment, energyConsumption);
+		}
+	}
+
+	// === summaries from the columns ===
+
+	@Override
+	public Map<EquipmentType, Long> generateEqCount() {
+		long[] counts = store.countByType();
+		Map<EquipmentType, Long> result = new EnumMap<>(EquipmentType.class);
+		for (EquipmentType type : TYPES) {
+			if (counts[type.ordinal()] > 0) {
+				result.put(type, counts[type.ordinal()]);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Map<EquipmentType, Double> generateAverageConsumption() {
+		long[] counts = store.countByType();
+		double[] energy = store.energyByType();
+		Map<EquipmentType, Double> result = new EnumMap<>(EquipmentType.class);
+		for (EquipmentType type : TYPES) {
+			if (counts[type.ordinal()] > 0) {
+				result.put(type, energy[type.ordinal()] / counts[type.ordinal()]);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Map<EquipmentState, Long> generateEqState() {
+		long[] counts = store.countByState();
+		Map<EquipmentState, Long> result = new EnumMap<>(EquipmentState.class);
+		for (EquipmentState state : STATES) {
+			if (counts[state.ordinal()] > 0) {
+				result.put(state, counts[state.ordinal()]);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public List<Equipment> getTop3Consumo() {
+		return store.totals(null, 3).top();
+	}
+
+	// one scan of the columns; the ranking of the result only has the first SUMMARY_TOP equipments
+	@Override
+	public EquipmentStatistics statistics(EquipmentFilter filter) {
+		ColumnarEquipmentStore.Totals totals = store.totals(filter.isAll() ? null : filter, SUMMARY_TOP);
+		return EquipmentStatistics.of(totals.countByType(), totals.energyByType(), totals.countByState(), totals.top());
+	}
+
+	// === queries from the columns ===
+
+	@Override
+	public List<Equipment> equipmentsInSubnet(Subnet subnet) {
+		return store.select(null, null, null, subnet.first(), subnet.last(), true);
+	}
+
+	@Override
+	public int countInSubnet(Subnet subnet) {
+		return store.count(null, null, null, subnet.first(), subnet.last());
+	}
+
+	@Override
+	public List<Equipment> equipmentsInRange(String firstIp, String lastIp) {
+		int first = IpAddress.pack(firstIp);
+		int last = IpAddress.pack(lastIp);
+		return IpAddress.compare(first, last) <= 0 ? store.select(null, null, null, first, last, true) : List.of();
+	}
+
+	@Override
+	public Equipment nearestEquipment(String ip) {
+		return store.nearest(IpAddress.pack(ip));
+	}
+
+	@Override
+	public List<Equipment> select(EquipmentSelector selector) {
+		Subnet subnet = selector.getSubnet();
+		return store.select(selector.getType(), selector.getState(), blankToNull(selector.getManufacturer()),
+				subnet == null ? 0 : subnet.first(), subnet == null ? -1 : subnet.last(), false);
+	}
+
+	@Override
+	public int count(EquipmentType type, EquipmentState state, String manufacturer) {
+		return store.count(type, state, blankToNull(manufacturer), 0, -1);
+	}
+
+	@Override
+	public Stream<Equipment> filter(EquipmentFilter filter) {
+		return plan(filter).rows();
+	}
+
+	@Override
+	public String explain(EquipmentFilter filter) {
+		return plan(filter).toString();
+	}
+
+	// The equalities on type, state, manufacturer and IP and the "ip in" subnets joined by the top
+	// AND are matched on the columns by store.select, so only the rows they give become views;
+	// those are then checked against the whole filter. Without such a term every row is read.
+	private QueryPlan plan(EquipmentFilter filter) {
+		Condition condition = filter.getCondition();
+		List<Condition> terms = condition instanceof Condition.And and ? and.terms() : List.of(condition);
+		EquipmentType type = null;
+		EquipmentState state = null;
+		String manufacturer = null;
+		long first = 0;
+		long last = 0xFFFFFFFFL; // unsigned IP range
+		boolean none = false; // two equalities on the same field that cannot both hold
+		List<Condition> used = new ArrayList<>();
+
+		for (Condition term : terms) {
+			if (!(term instanceof Condition.Compare c)) {
+				continue;
+			}
+			if (c.operator() == Condition.Operator.EQ) {
+				switch (c.field()) {
+					case TYPE -> {
+						none |= type != null && type != c.value();
+						type = (EquipmentType) c.value();
+					}
+					case STATE -> {
+						none |= state != null && state != c.value();
+						state = (EquipmentState) c.value();
+					}
+					case MANUFACTURER -> {
+						none |= manufacturer != null && !manufacturer.trim().equalsIgnoreCase(((String) c.value()).trim());
+						manufacturer = (String) c.value();
+					}
+					case IP -> {
+						first = Math.max(first, Integer.toUnsignedLong((Integer) c.value()));
+						last = Math.min(last, Integer.toUnsignedLong((Integer) c.value()));
+					}
+					default -> {
+						continue;
+					}
+				}
+				used.add(c);
+			} else if (c.operator() == Condition.Operator.IN && c.field() == Condition.Field.IP) {
+				Subnet subnet = (Subnet) c.value();
+				first = Math.max(first, Integer.toUnsignedLong(subnet.first()));
+				last = Math.min(last, Integer.toUnsignedLong(subnet.last()));
+				used.add(c);
+			}
+		}
+
+		if (used.isEmpty()) {
+			List<Equipment> rows = indexedEquipments();
+			return new QueryPlan("column scan, filter " + filter, rows.size(), rows.stream().filter(filter));
+		}
+		List<Equipment> rows = none || first > last ? List.of()
+				: store.select(type, state, blankToNull(manufacturer), (int) first, (int) last, false);
+		String description = "column select " + new Condition.And(used);
+		if (used.size() < terms.size()) {
+			description += ", filter " + filter;
+		}
+		return new QueryPlan(description, rows.size(), rows.stream().filter(filter));
+	}
+
+	private static String blankToNull(String manufacturer) {
+		return manufacturer == null || manufacturer.isBlank() ? null : manufacturer;
+	}
+
+	// the rows of the store as a read-only list; a walk goes over the views of one moment, so an
+	// equipment removed meanwhile does not shift the others under it
+	private final class EquipmentsView extends AbstractList<Equipment> {
+
+		@Override
+		public Equipment get(int index) {
+			return store.getRow(index);
+		}
+
+		@Override
+		public int size() {
+			return store.size();
+		}
+
+		@Override
+		public Iterator<Equipment> iterator() {
+			return Collections.unmodifiableList(store.views()).iterator();
+		}
+
+		@Override
+		public Spliterator<Equipment> spliterator() {
+			return store.views().spliterator();
+		}
+
+		@Override
+		public void forEach(Consumer<? super Equipment> action) {
+			store.views().forEach(action);
+		}
+	}
+
+}
@@ -0,0 +1,868 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+import model.Equipment;
+import model.EquipmentRow;
+import model.EquipmentState;
+import model.EquipmentType;
+import model.Firewall;
+import model.IpAddress;
+import model.Router;
+import model.Server;
+import model.Switch;
+
+// Struct-of-arrays inventory: one primitive array per field instead of one object per equipment.
+// Rows are dense (0..size-1); removing a row moves the last row into its place.
+//
+// Common columns: type, state, flags, ip, energy, hours, model and manufacturer (dictionary ids),
+// the serial of the row and the row of the equipment in the columns of its type. Type columns:
+// ROUTER mbps, SWITCH port capacity, SERVER OS (dictionary id), RAM and disk. The booleans of
+// routers and firewalls live in the flags column.
+//
+// The equipments handed out are views: a Router, Switch, Server or Firewall made over a Row, which
+// keeps only the IP and the serial of its row and reads and writes the columns on every call. A view of an
+// equipment that was removed (even if its IP was added again) throws IllegalStateException.
+// The columns are guarded by a read/write lock, so the store may be used from several threads.
+public class ColumnarEquipmentStore {
+
+	private static final EquipmentType[] TYPES = EquipmentType.values();
+	private static final EquipmentState[] STATES = EquipmentState.values();
+
+	private static final byte FLAG_WIFI = 1;
+	private static final byte FLAG_SPI = 2;
+	private static final byte FLAG_BLOCK_DOS = 4;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private int size;
+	private int nextSerial;
+	private byte[] type;
+	private byte[] state;
+	private byte[] flags;
+	private int[] ip;
+	private int[] serial;
+	private double[] energy;
+	private int[] hours;
+	private int[] model;
+	private int[] manufacturer;
+	private int[] typeRow;
+
+	// per-type columns, indexed by typeRow; owner points back to the common row
+	private final int[] typeSize = new int[TYPES.length];
+	private final int[][] owner = new int[TYPES.length][];
+	private int[] routerMbps = new int[0];
+	private double[] switchPortCapacity = new double[0];
+	private int[] serverOs = new int[0];
+	private int[] serverRam = new int[0];
+	private int[] serverDisk = new int[0];
+
+	// strings shared by many equipments are stored once
+	private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+	private final List<String> dictionary = new ArrayList<>();
+
+	private final IpRowIndex ipIndex;
+
+	public ColumnarEquipmentStore() {
+		this(1024);
+	}
+
+	public ColumnarEquipmentStore(int capacity) {
+		capacity = Math.max(capacity, 16);
+		type = new byte[capacity];
+		state = new byte[capacity];
+		flags = new byte[capacity];
+		ip = new int[capacity];
+		serial = new int[capacity];
+		energy = new double[capacity];
+		hours = new int[capacity];
+		model = new int[capacity];
+		manufacturer = new int[capacity];
+		typeRow = new int[capacity];
+		for (int t = 0; t < TYPES.length; t++) {
+			owner[t] = new int[16];
+		}
+		ipIndex = new IpRowIndex(capacity);
+	}
+
+	// the counts, energy sums and top equipments of a scan; the top ones are detached copies, so a
+	// report can still print them when they are removed meanwhile
+	public record Totals(long[] countByType, double[] energyByType, long[] countByState, List<Equipment> top) {
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public boolean contains(int packedIp) {
+		lock.readLock().lock();
+		try {
+			return ipIndex.get(packedIp) >= 0;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// copies the equipment into a new row; false when its IP is already stored
+	public boolean add(Equipment e) {
+		lock.writeLock().lock();
+		try {
+			if (ipIndex.get(e.getPackedIp()) >= 0) {
+				return false;
+			}
+			ensureCapacity(size + 1);
+
+			int row = size++;
+			int t = e.getType().ordinal();
+			type[row] = (byte) t;
+			state[row] = (byte) e.getState().ordinal();
+			ip[row] = e.getPackedIp();
+			serial[row] = nextSerial++;
+			energy[row] = e.getEnergyConsumption();
+			hours[row] = e.getQtdHourConsumption();
+			model[row] = intern(e.getModel());
+			manufacturer[row] = intern(e.getManufacturer());
+			flags[row] = 0;
+			typeRow[row] = addTypeRow(t, row);
+
+			int sub = typeRow[row];
+			if (e instanceof Router r) {
+				routerMbps[sub] = r.getMbps();
+				if (Boolean.TRUE.equals(r.getSuportWifi())) {
+					flags[row] |= FLAG_WIFI;
+				}
+			} else if (e instanceof Switch s) {
+				switchPortCapacity[sub] = s.getPortCapacityGB();
+			} else if (e instanceof Server s) {
+				serverOs[sub] = intern(s.getOpSystem());
+				serverRam[sub] = s.getRamCapacity();
+				serverDisk[sub] = s.getDiskCapacity();
+			} else if (e instanceof Firewall f) {
+				if (f.isStatefullPacketInspection()) {
+					flags[row] |= FLAG_SPI;
+				}
+				if (f.isBlockDoS()) {
+					flags[row] |= FLAG_BLOCK_DOS;
+				}
+			}
+
+			ipIndex.put(e.getPackedIp(), row);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// removes the row of the IP and returns a detached copy of it (its views stop working), or null
+	public Equipment remove(int packedIp) {
+		lock.writeLock().lock();
+		try {
+			int row = ipIndex.get(packedIp);
+			if (row < 0) {
+				return null;
+			}
+			Equipment removed = detach(row);
+			ipIndex.remove(packedIp);
+			removeTypeRow(type[row], typeRow[row]);
+
+			int last = --size;
+			if (row != last) {
+				type[row] = type[last];
+				state[row] = state[last];
+				flags[row] = flags[last];
+				ip[row] = ip[last];
+				serial[row] = serial[last];
+				energy[row] = energy[last];
+				hours[row] = hours[last];
+				model[row] = model[last];
+				manufacturer[row] = manufacturer[last];
+				typeRow[row] = typeRow[last];
+				owner[type[row]][typeRow[row]] = row;
+				ipIndex.put(ip[row], row);
+			}
+			return removed;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			size = 0;
+			Arrays.fill(typeSize, 0);
+			ipIndex.clear();
+			dictionary.clear();
+			dictionaryIndex.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// === views ===
+
+	// the view of the IP, or null when it is not stored
+	public Equipment get(int packedIp) {
+		lock.readLock().lock();
+		try {
+			int row = ipIndex.get(packedIp);
+			return row < 0 ? null : view(row);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// the view of the row (0..size-1); rows move when equipments are removed
+	public Equipment getRow(int row) {
+		lock.readLock().lock();
+		try {
+			return view(checkRow(row));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// a view of every equipment, in row order
+	public List<Equipment> views() {
+		lock.readLock().lock();
+		try {
+			List<Equipment> result = new ArrayList<>(size);
+			for (int row = 0; row < size; row++) {
+				result.add(view(row));
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// true while the equipment is a view of a stored row
+	public boolean isLive(Equipment e) {
+		if (!(e.getRow() instanceof Row values) || values.store() != this) {
+			return false;
+		}
+		lock.readLock().lock();
+		try {
+			int row = ipIndex.get(values.packedIp);
+			return row >= 0 && serial[row] == values.rowSerial;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// === scans over the columns ===
+
+	public long[] countByType() {
+		lock.readLock().lock();
+		try {
+			long[] counts = new long[TYPES.length];
+			for (int t = 0; t < TYPES.length; t++) {
+				counts[t] = typeSize[t];
+			}
+			return counts;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public long[] countByState() {
+		lock.readLock().lock();
+		try {
+			long[] counts = new long[STATES.length];
+			for (int row = 0; row < size; row++) {
+				counts[state[row]]++;
+			}
+			return counts;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public double[] energyByType() {
+		lock.readLock().lock();
+		try {
+			double[] sums = new double[TYPES.length];
+			for (int row = 0; row < size; row++) {
+				sums[type[row]] += energy[row];
+			}
+			return sums;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public double totalDailyKwh() {
+		lock.readLock().lock();
+		try {
+			double total = 0;
+			for (int row = 0; row < size; row++) {
+				total += energy[row] * hours[row];
+			}
+			return total / 1000;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// counts, energy sums and the top equipments by energy (highest first, ties by IP) of the rows
+	// accepted by the filter (null = all). The filter gets the view of each row and runs under the
+	// read lock: it must not change the store
+	public Totals totals(Predicate<Equipment> filter, int top) {
+		lock.readLock().lock();
+		try {
+			long[] countByType = new long[TYPES.length];
+			double[] energyByType = new double[TYPES.length];
+			long[] countByState = new long[STATES.length];
+			int[] best = new int[top];
+			int bestCount = 0;
+			for (int row = 0; row < size; row++) {
+				if (filter != null && !filter.test(view(row))) {
+					continue;
+				}
+				countByType[type[row]]++;
+				energyByType[type[row]] += energy[row];
+				countByState[state[row]]++;
+				bestCount = offer(best, bestCount, row);
+			}
+			List<Equipment> topCopies = new ArrayList<>(bestCount);
+			for (int i = 0; i < bestCount; i++) {
+				topCopies.add(detach(best[i]));
+			}
+			return new Totals(countByType, energyByType, countByState, topCopies);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// the rows with type, state and manufacturer (null = any, manufacturer ignoring case) whose IP
+	// is first..last (unsigned, both included), in IP order when sorted is set
+	public List<Equipment> select(EquipmentType t, EquipmentState s, String manufacturerName, int first, int last,
+			boolean sorted) {
+		lock.readLock().lock();
+		try {
+			int[] rows = match(t, s, manufacturerName, first, last);
+			if (sorted) {
+				sortByIp(rows);
+			}
+			List<Equipment> result = new ArrayList<>(rows.length);
+			for (int row : rows) {
+				result.add(view(row));
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int count(EquipmentType t, EquipmentState s, String manufacturerName, int first, int last) {
+		lock.readLock().lock();
+		try {
+			return match(t, s, manufacturerName, first, last).length;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// the equipment with the closest IP (the lower one on a tie), or null when the store is empty
+	public Equipment nearest(int packedIp) {
+		lock.readLock().lock();
+		try {
+			long target = Integer.toUnsignedLong(packedIp);
+			int best = -1;
+			long bestDistance = Long.MAX_VALUE;
+			for (int row = 0; row < size; row++) {
+				long distance = Math.abs(Integer.toUnsignedLong(ip[row]) - target);
+				if (distance < bestDistance || (distance == bestDistance && IpAddress.compare(ip[row], ip[best]) < 0)) {
+					best = row;
+					bestDistance = distance;
+				}
+			}
+			return best < 0 ? null : view(best);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// === internals ===
+
+	// the view of a row; called holding the lock
+	private Equipment view(int row) {
+		Row values = new Row(ip[row], serial[row]);
+		return switch (TYPES[type[row]]) {
+			case ROUTER -> new Router(ip[row], values);
+			case SWITCH -> new Switch(ip[row], values);
+			case SERVER -> new Server(ip[row], values);
+			case FIREWALL -> new Firewall(ip[row], values);
+		};
+	}
+
+	// a plain Equipment with the values of the row; called holding the lock
+	private Equipment detach(int row) {
+		EquipmentType t = TYPES[type[row]];
+		EquipmentState s = STATES[state[row]];
+		String m = dictionary.get(model[row]);
+		String mf = dictionary.get(manufacturer[row]);
+		int sub = typeRow[row];
+
+		return switch (t) {
+			case ROUTER -> new Router(t, m, ip[row], mf, s, energy[row], hours[row],
+					(flags[row] & FLAG_WIFI) != 0, routerMbps[sub]);
+			case SWITCH -> new Switch(t, m, ip[row], mf, s, energy[row], hours[row], switchPortCapacity[sub]);
+			case SERVER -> new Server(t, m, ip[row], mf, s, energy[row], hours[row],
+					dictionary.get(serverOs[sub]), serverRam[sub], serverDisk[sub]);
+			case FIREWALL -> new Firewall(t, m, ip[row], mf, s, energy[row], hours[row],
+					(flags[row] & FLAG_SPI) != 0, (flags[row] & FLAG_BLOCK_DOS) != 0);
+		};
+	}
+
+	// keeps the best rows (highest energy, ties by IP) in best[0..count); returns the new count
+	private int offer(int[] best, int count, int row) {
+		int at = count;
+		while (at > 0 && ranksBefore(row, best[at - 1])) {
+			at--;
+		}
+		if (at == best.length) {
+			return count;
+		}
+		int moved = Math.min(count, best.length - 1) - at;
+		System.arraycopy(best, at, best, at + 1, moved);
+		best[at] = row;
+		return Math.min(count + 1, best.length);
+	}
+
+	private boolean ranksBefore(int row, int other) {
+		int byEnergy = Double.compare(energy[other], energy[row]);
+		return byEnergy != 0 ? byEnergy < 0 : IpAddress.compare(ip[row], ip[other]) < 0;
+	}
+
+	private int[] match(EquipmentType t, EquipmentState s, String manufacturerName, int first, int last) {
+		boolean[] manufacturers = manufacturerName == null ? null : matchingManufacturers(manufacturerName);
+		long low = Integer.toUnsignedLong(first);
+		long high = Integer.toUnsignedLong(last);
+		int[] rows = new int[t != null ? typeSize[t.ordinal()] : size];
+		int count = 0;
+		for (int row = 0; row < size; row++) {
+			if ((t == null || type[row] == t.ordinal()) && (s == null || state[row] == s.ordinal())
+					&& (manufacturers == null || manufacturers[manufacturer[row]])) {
+				long address = Integer.toUnsignedLong(ip[row]);
+				if (address >= low && address <= high) {
+					rows[count++] = row;
+				}
+			}
+		}
+		return Arrays.copyOf(rows, count);
+	}
+
+	// dictionary id -> true for the strings equal to the manufacturer ignoring case
+	private boolean[] matchingManufacturers(String manufacturerName) {
+		String key = manufacturerName.trim().toLowerCase(Locale.ROOT);
+		boolean[] matching = new boolean[dictionary.size()];
+		for (int id = 0; id < matching.length; id++) {
+			String text = dictionary.get(id);
+			matching[id] = text != null && text.trim().toLowerCase(Locale.ROOT).equals(key);
+		}
+		return matching;
+	}
+
+	private void sortByIp(int[] rows) {
+		// the IP with the sign bit flipped sorts like the unsigned one
+		long[] keys = new long[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			keys[i] = (long) (ip[rows[i]] ^ Integer.MIN_VALUE) << 32 | rows[i];
+		}
+		Arrays.sort(keys);
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = (int) keys[i];
+		}
+	}
+
+	private int checkRow(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+		}
+		return row;
+	}
+
+	private int intern(String text) {
+		Integer id = dictionaryIndex.get(text);
+		if (id == null) {
+			id = dictionary.size();
+			dictionary.add(text);
+			dictionaryIndex.put(text, id);
+		}
+		return id;
+	}
+
+	private int addTypeRow(int t, int row) {
+		int sub = typeSize[t]++;
+		if (sub == owner[t].length) {
+			owner[t] = Arrays.copyOf(owner[t], sub * 2);
+		}
+		owner[t][sub] = row;
+
+		int capacity = owner[t].length;
+		switch (TYPES[t]) {
+			case ROUTER -> {
+				if (routerMbps.length < capacity) {
+					routerMbps = Arrays.copyOf(routerMbps, capacity);
+				}
+			}
+			case SWITCH -> {
+				if (switchPortCapacity.length < capacity) {
+					switchPortCapacity = Arrays.copyOf(switchPortCapacity, capacity);
+				}
+			}
+			case SERVER -> {
+				if (serverOs.length < capacity) {
+					serverOs = Arrays.copyOf(serverOs, capacity);
+					serverRam = Arrays.copyOf(serverRam, capacity);
+					serverDisk = Arrays.copyOf(serverDisk, capacity);
+				}
+			}
+			case FIREWALL -> {
+				// only flags
+			}
+		}
+		return sub;
+	}
+
+	// the last row of the type takes the place of the removed one
+	private void removeTypeRow(int t, int sub) {
+		int last = --typeSize[t];
+		if (sub == last) {
+			return;
+		}
+		switch (TYPES[t]) {
+			case ROUTER -> routerMbps[sub] = routerMbps[last];
+			case SWITCH -> switchPortCapacity[sub] = switchPortCapacity[last];
+			case SERVER -> {
+				serverOs[sub] = serverOs[last];
+				serverRam[sub] = serverRam[last];
+				serverDisk[sub] = serverDisk[last];
+			}
+			case FIREWALL -> {
+				// only flags
+			}
+		}
+		int movedRow = owner[t][last];
+		owner[t][sub] = movedRow;
+		typeRow[movedRow] = sub;
+	}
+
+	private void ensureCapacity(int needed) {
+		if (needed <= type.length) {
+			return;
+		}
+		int capacity = Math.max(needed, type.length * 2);
+		type = Arrays.copyOf(type, capacity);
+		state = Arrays.copyOf(state, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		ip = Arrays.copyOf(ip, capacity);
+		serial = Arrays.copyOf(serial, capacity);
+		energy = Arrays.copyOf(energy, capacity);
+		hours = Arrays.copyOf(hours, capacity);
+		model = Arrays.copyOf(model, capacity);
+		manufacturer = Arrays.copyOf(manufacturer, capacity);
+		typeRow = Arrays.copyOf(typeRow, capacity);
+	}
+
+	// === the views: an equipment over a Row, whose fields stay empty ===
+
+	// the row of a view, found again by IP on every call and checked by serial, so a view taken
+	// before its equipment was removed fails instead of reading the row that took its place. Two
+	// rows (and so two views) are equal when they are of the same stored equipment
+	private final class Row implements EquipmentRow {
+		private final int packedIp;
+		private final int rowSerial;
+
+		Row(int packedIp, int rowSerial) {
+			this.packedIp = packedIp;
+			this.rowSerial = rowSerial;
+		}
+
+		private int row() {
+			int row = ipIndex.get(packedIp);
+			if (row < 0 || serial[row] != rowSerial) {
+				throw new IllegalStateException("Equipment " + IpAddress.format(packedIp) + " is no longer in the inventory");
+			}
+			return row;
+		}
+
+		private <T> T read(IntFunction<T> column) {
+			lock.readLock().lock();
+			try {
+				return column.apply(row());
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		private void write(IntConsumer column) {
+			lock.writeLock().lock();
+			try {
+				column.accept(row());
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		private boolean flag(byte flag) {
+			return read(row -> (flags[row] & flag) != 0);
+		}
+
+		private void setFlag(byte flag, boolean value) {
+			write(row -> flags[row] = (byte) (value ? flags[row] | flag : flags[row] & ~flag));
+		}
+
+		@Override
+		public String getModel() {
+			return read(row -> dictionary.get(model[row]));
+		}
+
+		@Override
+		public void setModel(String value) {
+			write(row -> model[row] = intern(value));
+		}
+
+		@Override
+		public String getManufacturer() {
+			return read(row -> dictionary.get(manufacturer[row]));
+		}
+
+		@Override
+		public void setManufacturer(String value) {
+			write(row -> manufacturer[row] = intern(value));
+		}
+
+		@Override
+		public EquipmentState getState() {
+			return read(row -> STATES[state[row]]);
+		}
+
+		@Override
+		public void setState(EquipmentState value) {
+			write(row -> state[row] = (byte) value.ordinal());
+		}
+
+		@Override
+		public Double getEnergyConsumption() {
+			return read(row -> energy[row]);
+		}
+
+		@Override
+		public void setEnergyConsumption(Double value) {
+			write(row -> energy[row] = value);
+		}
+
+		@Override
+		public Integer getQtdHourConsumption() {
+			return read(row -> hours[row]);
+		}
+
+		@Override
+		public void setQtdHourConsumption(Integer value) {
+			write(row -> hours[row] = value);
+		}
+
+		@Override
+		public Boolean getSuportWifi() {
+			return flag(FLAG_WIFI);
+		}
+
+		@Override
+		public void setSuportWifi(Boolean value) {
+			setFlag(FLAG_WIFI, Boolean.TRUE.equals(value));
+		}
+
+		@Override
+		public Integer getMbps() {
+			return read(row -> routerMbps[typeRow[row]]);
+		}
+
+		@Override
+		public void setMbps(Integer value) {
+			write(row -> routerMbps[typeRow[row]] = value);
+		}
+
+		@Override
+		public Double getPortCapacityGB() {
+			return read(row -> switchPortCapacity[typeRow[row]]);
+		}
+
+		@Override
+		public void setPortCapacityGB(Double value) {
+			write(row -> switchPortCapacity[typeRow[row]] = value);
+		}
+
+		@Override
+		public String getOpSystem() {
+			return read(row -> dictionary.get(serverOs[typeRow[row]]));
+		}
+
+		@Override
+		public void setOpSystem(String value) {
+			write(row -> serverOs[typeRow[row]] = intern(value));
+		}
+
+		@Override
+		public int getRamCapacity() {
+			return read(row -> serverRam[typeRow[row]]);
+		}
+
+		@Override
+		public void setRamCapacity(int value) {
+			write(row -> serverRam[typeRow[row]] = value);
+		}
+
+		@Override
+		public int getDiskCapacity() {
+			return read(row -> serverDisk[typeRow[row]]);
+		}
+
+		@Override
+		public void setDiskCapacity(int value) {
+			write(row -> serverDisk[typeRow[row]] = value);
+		}
+
+		@Override
+		public boolean isStatefullPacketInspection() {
+			return flag(FLAG_SPI);
+		}
+
+		@Override
+		public void setStatefullPacketInspection(boolean value) {
+			setFlag(FLAG_SPI, value);
+		}
+
+		@Override
+		public boolean isBlockDoS() {
+			return flag(FLAG_BLOCK_DOS);
+		}
+
+		@Override
+		public void setBlockDoS(boolean value) {
+			setFlag(FLAG_BLOCK_DOS, value);
+		}
+
+		private ColumnarEquipmentStore store() {
+			return ColumnarEquipmentStore.this;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Row other && other.store() == store() && other.rowSerial == rowSerial;
+		}
+
+		@Override
+		public int hashCode() {
+			return rowSerial;
+		}
+	}
+
+	// open addressing map packed IP -> row, without boxing (linear probing, -1 = empty slot)
+	private static final class IpRowIndex {
+		private int[] keys;
+		private int[] rows;
+		private int count;
+
+		IpRowIndex(int expected) {
+			int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+			keys = new int[capacity];
+			rows = new int[capacity];
+			Arrays.fill(rows, -1);
+		}
+
+		private static int hash(int key) {
+			int h = key * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+
+		int get(int key) {
+			int mask = keys.length - 1;
+			for (int i = hash(key) & mask; rows[i] >= 0; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					return rows[i];
+				}
+			}
+			return -1;
+		}
+
+		void put(int key, int row) {
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (rows[i] >= 0) {
+				if (keys[i] == key) {
+					rows[i] = row;
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			rows[i] = row;
+			if (++count * 2 > keys.length) {
+				grow();
+			}
+		}
+
+		// backward shift deletion keeps the probe chains without tombstones
+		int remove(int key) {
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (rows[i] >= 0 && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			if (rows[i] < 0) {
+				return -1;
+			}
+			int removed = rows[i];
+			count--;
+
+			int hole = i;
+			for (int j = (hole + 1) & mask; rows[j] >= 0; j = (j + 1) & mask) {
+				int home = hash(keys[j]) & mask;
+				// moves j into the hole when its home is not between the hole and j
+				if (((j - home) & mask) >= ((j - hole) & mask)) {
+					keys[hole] = keys[j];
+					rows[hole] = rows[j];
+					hole = j;
+				}
+			}
+			rows[hole] = -1;
+			return removed;
+		}
+
+		void clear() {
+			Arrays.fill(rows, -1);
+			count = 0;
+		}
+
+		private void grow() {
+			int[] oldKeys = keys;
+			int[] oldRows = rows;
+			keys = new int[oldKeys.length * 2];
+			rows = new int[oldKeys.length * 2];
+			Arrays.fill(rows, -1);
+			count = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldRows[i] >= 0) {
+					put(oldKeys[i], oldRows[i]);
+				}
+			}
+		}
+	}
+
+}
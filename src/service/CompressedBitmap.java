@@ -0,0 +1,485 @@
+package service;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Compressed set of non-negative ints (Roaring layout).
+//
+// The ints are grouped by their high 16 bits; each group is a container of the low 16 bits: a
+// sorted char array while it holds at most ARRAY_LIMIT values (2 bytes per value), a 65536-bit
+// bitmap above that (8 KB, any count). AND/OR/ANDNOT work one container pair at a time and return
+// new bitmaps; cardinality only adds the counts of the containers. Not thread safe.
+public final class CompressedBitmap {
+
+	private static final int ARRAY_LIMIT = 4096;
+	private static final int WORDS = 1024; // 65536 bits
+
+	private char[] keys = new char[4];
+	private Container[] containers = new Container[4];
+	private int size; // containers in use
+
+	private abstract static sealed class Container permits ArrayContainer, BitmapContainer {
+		int cardinality;
+
+		abstract boolean contains(char low);
+
+		abstract Container add(char low);
+
+		abstract Container remove(char low);
+
+		abstract Container copy();
+
+		abstract void forEach(int high, IntConsumer action);
+
+		abstract long[] toWords();
+	}
+
+	private static final class ArrayContainer extends Container {
+		char[] values;
+
+		ArrayContainer(char[] values, int cardinality) {
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		boolean contains(char low) {
+			return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+		}
+
+		@Override
+		Container add(char low) {
+			int i = Arrays.binarySearch(values, 0, cardinality, low);
+			if (i >= 0) {
+				return this;
+			}
+			if (cardinality == ARRAY_LIMIT) {
+				return new BitmapContainer(toWords(), cardinality).add(low);
+			}
+			i = -i - 1;
+			if (cardinality == values.length) {
+				values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, cardinality * 2)));
+			}
+			System.arraycopy(values, i, values, i + 1, cardinality - i);
+			values[i] = low;
+			cardinality++;
+			return this;
+		}
+
+		@Override
+		Container remove(char low) {
+			int i = Arrays.binarySearch(values, 0, cardinality, low);
+			if (i >= 0) {
+				System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+				cardinality--;
+			}
+			return this;
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+		}
+
+		@Override
+		void forEach(int high, IntConsumer action) {
+			for (int i = 0; i < cardinality; i++) {
+				action.accept(high | values[i]);
+			}
+		}
+
+		@Override
+		long[] toWords() {
+			long[] words = new long[WORDS];
+			for (int i = 0; i < cardinality; i++) {
+				words[values[i] >>> 6] |= 1L << values[i];
+			}
+			return words;
+		}
+	}
+
+	private static final class BitmapContainer extends Container {
+		final long[] words;
+
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		boolean contains(char low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		@Override
+		Container add(char low) {
+			long before = words[low >>> 6];
+			words[low >>> 6] = before | (1L << low);
+			if (before != words[low >>> 6]) {
+				cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(char low) {
+			long before = words[low >>> 6];
+			words[low >>> 6] = before & ~(1L << low);
+			if (before != words[low >>> 6]) {
+				cardinality--;
+			}
+			return cardinality <= ARRAY_LIMIT ? fromWords(words, cardinality) : this;
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(words.clone(), cardinality);
+		}
+
+		@Override
+		void forEach(int high, IntConsumer action) {
+			for (int w = 0; w < WORDS; w++) {
+				long word = words[w];
+				while (word != 0) {
+					action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		long[] toWords() {
+			return words;
+		}
+	}
+
+	// the smallest container for the bits, null when empty
+	private static Container fromWords(long[] words, int cardinality) {
+		if (cardinality == 0) {
+			return null;
+		}
+		if (cardinality > ARRAY_LIMIT) {
+			return new BitmapContainer(words, cardinality);
+		}
+		char[] values = new char[cardinality];
+		int n = 0;
+		for (int w = 0; w < WORDS; w++) {
+			long word = words[w];
+			while (word != 0) {
+				values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+		return new ArrayContainer(values, cardinality);
+	}
+
+	private static int cardinality(long[] words) {
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	public void add(int value) {
+		checkValue(value);
+		char high = (char) (value >>> 16);
+		int i = indexOf(high);
+		if (i < 0) {
+			i = -i - 1;
+			insertAt(i, high, new ArrayContainer(new char[4], 0));
+		}
+		containers[i] = containers[i].add((char) value);
+	}
+
+	public void remove(int value) {
+		if (value < 0) {
+			return;
+		}
+		int i = indexOf((char) (value >>> 16));
+		if (i < 0) {
+			return;
+		}
+		Container c = containers[i].remove((char) value);
+		if (c == null || c.cardinality == 0) {
+			removeAt(i);
+		} else {
+			containers[i] = c;
+		}
+	}
+
+	public boolean contains(int value) {
+		if (value < 0) {
+			return false;
+		}
+		int i = indexOf((char) (value >>> 16));
+		return i >= 0 && containers[i].contains((char) value);
+	}
+
+	public int cardinality() {
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			count += containers[i].cardinality;
+		}
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(containers, 0, size, null);
+		size = 0;
+	}
+
+	// ascending order
+	public void forEach(IntConsumer action) {
+		for (int i = 0; i < size; i++) {
+			containers[i].forEach(keys[i] << 16, action);
+		}
+	}
+
+	public int[] toArray() {
+		int[] result = new int[cardinality()];
+		int[] n = { 0 };
+		forEach(v -> result[n[0]++] = v);
+		return result;
+	}
+
+	public CompressedBitmap copy() {
+		CompressedBitmap result = new CompressedBitmap();
+		result.keys = Arrays.copyOf(keys, Math.max(4, size));
+		result.containers = new Container[result.keys.length];
+		for (int i = 0; i < size; i++) {
+			result.containers[i] = containers[i].copy();
+		}
+		result.size = size;
+		return result;
+	}
+
+	// adds every value of other, in place
+	public void addAll(CompressedBitmap other) {
+		for (int j = 0; j < other.size; j++) {
+			char high = other.keys[j];
+			int i = indexOf(high);
+			if (i < 0) {
+				insertAt(-i - 1, high, other.containers[j].copy());
+			} else {
+				containers[i] = or(containers[i], other.containers[j]);
+			}
+		}
+	}
+
+	public static CompressedBitmap and(CompressedBitmap a, CompressedBitmap b) {
+		CompressedBitmap result = new CompressedBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.size && j < b.size) {
+			if (a.keys[i] < b.keys[j]) {
+				i++;
+			} else if (a.keys[i] > b.keys[j]) {
+				j++;
+			} else {
+				result.append(a.keys[i], and(a.containers[i], b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	public static CompressedBitmap or(CompressedBitmap a, CompressedBitmap b) {
+		CompressedBitmap result = new CompressedBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.size || j < b.size) {
+			if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+				result.append(a.keys[i], a.containers[i].copy());
+				i++;
+			} else if (i == a.size || a.keys[i] > b.keys[j]) {
+				result.append(b.keys[j], b.containers[j].copy());
+				j++;
+			} else {
+				result.append(a.keys[i], or(a.containers[i], b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	// the values of a that are not in b
+	public static CompressedBitmap andNot(CompressedBitmap a, CompressedBitmap b) {
+		CompressedBitmap result = new CompressedBitmap();
+		int j = 0;
+		for (int i = 0; i < a.size; i++) {
+			while (j < b.size && b.keys[j] < a.keys[i]) {
+				j++;
+			}
+			if (j < b.size && b.keys[j] == a.keys[i]) {
+				result.append(a.keys[i], andNot(a.containers[i], b.containers[j]));
+			} else {
+				result.append(a.keys[i], a.containers[i].copy());
+			}
+		}
+		return result;
+	}
+
+	public static int andCardinality(CompressedBitmap a, CompressedBitmap b) {
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.size && j < b.size) {
+			if (a.keys[i] < b.keys[j]) {
+				i++;
+			} else if (a.keys[i] > b.keys[j]) {
+				j++;
+			} else {
+				Container x = a.containers[i++];
+				Container y = b.containers[j++];
+				if (x instanceof BitmapContainer bx && y instanceof BitmapContainer by) {
+					for (int w = 0; w < WORDS; w++) {
+						count += Long.bitCount(bx.words[w] & by.words[w]);
+					}
+				} else {
+					Container c = and(x, y);
+					count += c == null ? 0 : c.cardinality;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static Container and(Container x, Container y) {
+		if (x instanceof ArrayContainer ax && y instanceof ArrayContainer ay) {
+			char[] values = new char[Math.min(ax.cardinality, ay.cardinality)];
+			int n = 0;
+			int i = 0;
+			int j = 0;
+			while (i < ax.cardinality && j < ay.cardinality) {
+				if (ax.values[i] < ay.values[j]) {
+					i++;
+				} else if (ax.values[i] > ay.values[j]) {
+					j++;
+				} else {
+					values[n++] = ax.values[i];
+					i++;
+					j++;
+				}
+			}
+			return n == 0 ? null : new ArrayContainer(values, n);
+		}
+		if (x instanceof ArrayContainer || y instanceof ArrayContainer) {
+			ArrayContainer array = (ArrayContainer) (x instanceof ArrayContainer ? x : y);
+			Container bitmap = x instanceof ArrayContainer ? y : x;
+			char[] values = new char[array.cardinality];
+			int n = 0;
+			for (int i = 0; i < array.cardinality; i++) {
+				if (bitmap.contains(array.values[i])) {
+					values[n++] = array.values[i];
+				}
+			}
+			return n == 0 ? null : new ArrayContainer(values, n);
+		}
+		long[] a = x.toWords();
+		long[] b = y.toWords();
+		long[] words = new long[WORDS];
+		for (int w = 0; w < WORDS; w++) {
+			words[w] = a[w] & b[w];
+		}
+		return fromWords(words, cardinality(words));
+	}
+
+	private static Container or(Container x, Container y) {
+		if (x instanceof ArrayContainer ax && y instanceof ArrayContainer ay
+				&& ax.cardinality + ay.cardinality <= ARRAY_LIMIT) {
+			char[] values = new char[ax.cardinality + ay.cardinality];
+			int n = 0;
+			int i = 0;
+			int j = 0;
+			while (i < ax.cardinality || j < ay.cardinality) {
+				if (j == ay.cardinality || (i < ax.cardinality && ax.values[i] < ay.values[j])) {
+					values[n++] = ax.values[i++];
+				} else if (i == ax.cardinality || ax.values[i] > ay.values[j]) {
+					values[n++] = ay.values[j++];
+				} else {
+					values[n++] = ax.values[i];
+					i++;
+					j++;
+				}
+			}
+			return new ArrayContainer(values, n);
+		}
+		long[] words = x.toWords().clone();
+		long[] b = y.toWords();
+		for (int w = 0; w < WORDS; w++) {
+			words[w] |= b[w];
+		}
+		return fromWords(words, cardinality(words));
+	}
+
+	private static Container andNot(Container x, Container y) {
+		if (x instanceof ArrayContainer ax) {
+			char[] values = new char[ax.cardinality];
+			int n = 0;
+			for (int i = 0; i < ax.cardinality; i++) {
+				if (!y.contains(ax.values[i])) {
+					values[n++] = ax.values[i];
+				}
+			}
+			return n == 0 ? null : new ArrayContainer(values, n);
+		}
+		long[] words = x.toWords().clone();
+		long[] b = y.toWords();
+		for (int w = 0; w < WORDS; w++) {
+			words[w] &= ~b[w];
+		}
+		return fromWords(words, cardinality(words));
+	}
+
+	private int indexOf(char high) {
+		// the last container is the usual target when ids grow
+		if (size > 0 && keys[size - 1] == high) {
+			return size - 1;
+		}
+		return Arrays.binarySearch(keys, 0, size, high);
+	}
+
+	// adds a container after the last one (keys in ascending order); empty ones are skipped
+	private void append(char high, Container c) {
+		if (c != null && c.cardinality > 0) {
+			insertAt(size, high, c);
+		}
+	}
+
+	private void insertAt(int i, char high, Container c) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		keys[i] = high;
+		containers[i] = c;
+		size++;
+	}
+
+	private void removeAt(int i) {
+		System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+		System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+		containers[--size] = null;
+	}
+
+	private static void checkValue(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative value: " + value);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CompressedBitmap[cardinality=" + cardinality() + ", containers=" + size + "]";
+	}
+
+}
@@ -0,0 +1,182 @@
+package service;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import model.Equipment;
+import model.EquipmentState;
+
+// EquipmentService for many sessions at once (console, jobs, other threads).
+//
+// The inventory is a ConcurrentHashMap by packed IP, so ipSearch and isDuplicateIp take no lock,
+// and the summary reports read the statistics, which take no lock either. Every change to one
+// equipment (add, remove, state, energy) runs under the lock of its stripe, so changes to the same
+// device are atomic and their events reach the listeners in order, while devices on other stripes
+// go on in parallel; clear() takes every stripe. The indexes behind the queries follow the same
+// rule: the radix trie is swapped by compare-and-set and the bitmap index has a lock per shard, so
+// neither one is a global lock. Operations (turn on/off, restart) are already run one after the
+// other per device by the DeviceController, without holding a lock while the device answers.
+public class ConcurrentEquipmentService extends EquipmentService {
+
+	private static final int STRIPES = 256;
+
+	private final ConcurrentHashMap<Integer, Equipment> byIp = new ConcurrentHashMap<>();
+	private final Object[] stripes = new Object[STRIPES];
+	private final List<Equipment> view = new EquipmentsView();
+
+	public ConcurrentEquipmentService() {
+		this(new LogService());
+	}
+
+	public ConcurrentEquipmentService(LogService log) {
+		super(log);
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+	}
+
+	private Object stripe(int packedIp) {
+		int h = packedIp * 0x9E3779B9;
+		return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+	}
+
+	// the live inventory, read only and without a copy: a walk sees every equipment that stays in
+	// it once, and may or may not see the changes made meanwhile (weakly consistent, like the map)
+	@Override
+	public List<Equipment> getEquipments() {
+		return view;
+	}
+
+	// a copy, for the callers that index the list or read it more than once
+	@Override
+	public List<Equipment> indexedEquipments() {
+		return new ArrayList<>(byIp.values());
+	}
+
+	@Override
+	public int size() {
+		return byIp.size();
+	}
+
+	@Override
+	public void setEquipments(List<Equipment> equipments) {
+		clear();
+		for (Equipment e : equipments) {
+			addEquipment(e);
+		}
+	}
+
+	// under every stripe, so no change to a device runs between the clear and its event
+	@Override
+	public void clear() {
+		clearHolding(0);
+	}
+
+	private void clearHolding(int stripe) {
+		if (stripe == STRIPES) {
+			byIp.clear();
+			fireCleared();
+			return;
+		}
+		synchronized (stripes[stripe]) {
+			clearHolding(stripe + 1);
+		}
+	}
+
+	@Override
+	public boolean addEquipment(Equipment e) {
+		synchronized (stripe(e.getPackedIp())) {
+			if (byIp.putIfAbsent(e.getPackedIp(), e) != null) {
+				return false;
+			}
+			fireAdded(e);
+			return true;
+		}
+	}
+
+	@Override
+	public boolean isDuplicateIp(int packedIp) {
+		return byIp.containsKey(packedIp);
+	}
+
+	@Override
+	public Equipment ipSearch(int packedIp) {
+		return byIp.get(packedIp);
+	}
+
+	@Override
+	public boolean removeEquipmentByPackedIp(int packedIp) {
+		synchronized (stripe(packedIp)) {
+			Equipment removed = byIp.remove(packedIp);
+			if (removed == null) {
+				return false;
+			}
+			fireRemoved(removed);
+			return true;
+		}
+	}
+
+	@Override
+	public void changeState(Equipment equipment, EquipmentState state) {
+		synchronized (stripe(equipment.getPackedIp())) {
+			super.changeState(equipment, state);
+		}
+	}
+
+	@Override
+	public boolean changeEnergyConsumption(Equipment equipment, Double energyConsumption) {
+		synchronized (stripe(equipment.getPackedIp())) {
+			return super.changeEnergyConsumption(equipment, energyConsumption);
+		}
+	}
+
+	// the values of the map as a read-only list; iterating is the cheap way to read it, get(i)
+	// walks from the start
+	private final class EquipmentsView extends AbstractList<Equipment> {
+
+		@Override
+		public Equipment get(int index) {
+			if (index >= 0) {
+				int i = 0;
+				for (Equipment e : byIp.values()) {
+					if (i++ == index) {
+						return e;
+					}
+				}
+			}
+			throw new IndexOutOfBoundsException("Index " + index + " of " + byIp.size());
+		}
+
+		@Override
+		public int size() {
+			return byIp.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return byIp.isEmpty();
+		}
+
+		@Override
+		public Iterator<Equipment> iterator() {
+			return Collections.unmodifiableCollection(byIp.values()).iterator();
+		}
+
+		@Override
+		public Spliterator<Equipment> spliterator() {
+			return byIp.values().spliterator();
+		}
+
+		@Override
+		public void forEach(Consumer<? super Equipment> action) {
+			byIp.values().forEach(action);
+		}
+	}
+
+}
@@ -0,0 +1,337 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.EquipmentType;
+
+// Secondary indexes on type, state and manufacturer, kept in sync as a listener.
+//
+// Each equipment gets a dense id (ids of removed equipments are reused), and every value of the
+// three fields has a CompressedBitmap of the ids that have it. A filter like "OFF firewalls of
+// Cisco" is an AND of three bitmaps and its count is the cardinality of the result, without
+// looking at the equipments. Manufacturers are compared ignoring case.
+//
+// The index is split in SHARDS by IP, each with its own read/write lock, so changes to devices of
+// different shards go on in parallel and a query waits at most for the change under way in the
+// shard it is reading. A shard owns whole bitmap containers (65536 ids): ids stay dense inside
+// it, and the bitmaps of the shards are combined without overlapping.
+public class EquipmentBitmapIndex implements EquipmentListener {
+
+	private static final int SHARDS = 16;
+	private static final int CONTAINER_BITS = 16;
+	private static final int LOW_MASK = (1 << CONTAINER_BITS) - 1;
+
+	private static final EquipmentType[] TYPES = EquipmentType.values();
+	private static final EquipmentState[] STATES = EquipmentState.values();
+
+	private final Shard[] shards = new Shard[SHARDS];
+
+	public EquipmentBitmapIndex() {
+		for (int i = 0; i < SHARDS; i++) {
+			shards[i] = new Shard(i);
+		}
+	}
+
+	// the equipments of one shard; guarded by lock
+	private static final class Shard {
+		final int number;
+		final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+		final CompressedBitmap all = new CompressedBitmap();
+		final CompressedBitmap[] byType = newBitmaps(TYPES.length);
+		final CompressedBitmap[] byState = newBitmaps(STATES.length);
+		final Map<String, CompressedBitmap> byManufacturer = new HashMap<>();
+
+		final Map<Integer, Integer> idByIp = new HashMap<>();
+		Equipment[] byId = new Equipment[1024]; // by local id
+		int nextId;
+		int[] freeIds = new int[64];
+		int freeCount;
+
+		Shard(int number) {
+			this.number = number;
+		}
+
+		void add(Equipment e) {
+			Integer previous = idByIp.get(e.getPackedIp());
+			if (previous != null) {
+				unindex(previous, byId[previous]);
+			}
+			int local = previous != null ? previous : newId();
+			int id = globalId(number, local);
+			idByIp.put(e.getPackedIp(), local);
+			byId[local] = e;
+			all.add(id);
+			byType[e.getType().ordinal()].add(id);
+			byState[e.getState().ordinal()].add(id);
+			byManufacturer.computeIfAbsent(key(e.getManufacturer()), k -> new CompressedBitmap()).add(id);
+		}
+
+		void remove(Equipment e) {
+			Integer local = idByIp.get(e.getPackedIp());
+			if (local == null || byId[local] != e) {
+				return;
+			}
+			idByIp.remove(e.getPackedIp());
+			unindex(local, e);
+			byId[local] = null;
+			if (freeCount == freeIds.length) {
+				freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+			}
+			freeIds[freeCount++] = local;
+		}
+
+		void changeState(Equipment e, EquipmentState previous) {
+			Integer local = idByIp.get(e.getPackedIp());
+			if (local == null || byId[local] != e) {
+				return;
+			}
+			int id = globalId(number, local);
+			byState[previous.ordinal()].remove(id);
+			byState[e.getState().ordinal()].add(id);
+		}
+
+		void clear() {
+			all.clear();
+			for (CompressedBitmap b : byType) {
+				b.clear();
+			}
+			for (CompressedBitmap b : byState) {
+				b.clear();
+			}
+			byManufacturer.clear();
+			idByIp.clear();
+			Arrays.fill(byId, null);
+			nextId = 0;
+			freeCount = 0;
+		}
+
+		// may return one of the index bitmaps: read only
+		CompressedBitmap match(EquipmentType type, EquipmentState state, String manufacturer) {
+			CompressedBitmap result = all;
+			if (manufacturer != null) {
+				result = byManufacturer.get(key(manufacturer));
+				if (result == null) {
+					return new CompressedBitmap();
+				}
+			}
+			if (type != null) {
+				result = result == all ? byType[type.ordinal()] : CompressedBitmap.and(result, byType[type.ordinal()]);
+			}
+			if (state != null) {
+				result = result == all ? byState[state.ordinal()] : CompressedBitmap.and(result, byState[state.ordinal()]);
+			}
+			return result;
+		}
+
+		int count(EquipmentType type, EquipmentState state, String manufacturer) {
+			if (state != null && (type != null || manufacturer != null)) {
+				// the last AND is only counted, not built
+				return CompressedBitmap.andCardinality(match(type, null, manufacturer), byState[state.ordinal()]);
+			}
+			return match(type, state, manufacturer).cardinality();
+		}
+
+		Equipment equipment(int local) {
+			return local >= 0 && local < nextId ? byId[local] : null;
+		}
+
+		private void unindex(int local, Equipment e) {
+			int id = globalId(number, local);
+			all.remove(id);
+			byType[e.getType().ordinal()].remove(id);
+			byState[e.getState().ordinal()].remove(id);
+			String manufacturer = key(e.getManufacturer());
+			CompressedBitmap m = byManufacturer.get(manufacturer);
+			if (m != null) {
+				m.remove(id);
+				if (m.isEmpty()) {
+					byManufacturer.remove(manufacturer);
+				}
+			}
+		}
+
+		private int newId() {
+			if (freeCount > 0) {
+				return freeIds[--freeCount];
+			}
+			if (nextId == byId.length) {
+				byId = Arrays.copyOf(byId, byId.length * 2);
+			}
+			return nextId++;
+		}
+	}
+
+	@Override
+	public void onAdded(Equipment e) {
+		Shard shard = shardOf(e);
+		shard.lock.writeLock().lock();
+		try {
+			shard.add(e);
+		} finally {
+			shard.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void onRemoved(Equipment e) {
+		Shard shard = shardOf(e);
+		shard.lock.writeLock().lock();
+		try {
+			shard.remove(e);
+		} finally {
+			shard.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void onStateChanged(Equipment e, EquipmentState previous) {
+		Shard shard = shardOf(e);
+		shard.lock.writeLock().lock();
+		try {
+			shard.changeState(e, previous);
+		} finally {
+			shard.lock.writeLock().unlock();
+		}
+	}
+
+	// every shard at once, so no query sees half of the index cleared
+	@Override
+	public void onCleared() {
+		for (Shard shard : shards) {
+			shard.lock.writeLock().lock();
+		}
+		try {
+			for (Shard shard : shards) {
+				shard.clear();
+			}
+		} finally {
+			for (int i = SHARDS - 1; i >= 0; i--) {
+				shards[i].lock.writeLock().unlock();
+			}
+		}
+	}
+
+	// the bitmaps below are new: the caller may combine and keep them
+
+	public CompressedBitmap all() {
+		return select(null, null, null);
+	}
+
+	public CompressedBitmap ofType(EquipmentType type) {
+		return select(type, null, null);
+	}
+
+	public CompressedBitmap ofState(EquipmentState state) {
+		return select(null, state, null);
+	}
+
+	public CompressedBitmap ofManufacturer(String manufacturer) {
+		return select(null, null, manufacturer);
+	}
+
+	// AND of the criteria that are set (null = any); all equipments when none is set
+	public CompressedBitmap select(EquipmentType type, EquipmentState state, String manufacturer) {
+		CompressedBitmap result = new CompressedBitmap();
+		for (Shard shard : shards) {
+			shard.lock.readLock().lock();
+			try {
+				result.addAll(shard.match(type, state, manufacturer));
+			} finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return result;
+	}
+
+	// how many equipments match, from the bitmap cardinalities
+	public int count(EquipmentType type, EquipmentState state, String manufacturer) {
+		int count = 0;
+		for (Shard shard : shards) {
+			shard.lock.readLock().lock();
+			try {
+				count += shard.count(type, state, manufacturer);
+			} finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return count;
+	}
+
+	public Equipment equipment(int id) {
+		if (id < 0) {
+			return null;
+		}
+		Shard shard = shards[(id >>> CONTAINER_BITS) % SHARDS];
+		shard.lock.readLock().lock();
+		try {
+			return shard.equipment(localId(id));
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	// the equipments of the ids, in id order
+	public List<Equipment> equipments(CompressedBitmap ids) {
+		List<Equipment> result = new ArrayList<>(ids.cardinality());
+		// the ids of one container belong to one shard: its lock is taken once for all of them
+		Shard[] locked = new Shard[1];
+		try {
+			ids.forEach(id -> {
+				Shard shard = shards[(id >>> CONTAINER_BITS) % SHARDS];
+				if (shard != locked[0]) {
+					if (locked[0] != null) {
+						locked[0].lock.readLock().unlock();
+					}
+					locked[0] = null;
+					shard.lock.readLock().lock();
+					locked[0] = shard;
+				}
+				Equipment e = shard.equipment(localId(id));
+				if (e != null) {
+					result.add(e);
+				}
+			});
+		} finally {
+			if (locked[0] != null) {
+				locked[0].lock.readLock().unlock();
+			}
+		}
+		return result;
+	}
+
+	private Shard shardOf(Equipment e) {
+		int h = e.getPackedIp() * 0x9E3779B9;
+		return shards[(h ^ (h >>> 16)) & (SHARDS - 1)];
+	}
+
+	// local id -> id: the containers of the shards alternate (shard 1 has ids 65536..131071, ...)
+	private static int globalId(int shard, int local) {
+		return ((local >>> CONTAINER_BITS) * SHARDS + shard) << CONTAINER_BITS | (local & LOW_MASK);
+	}
+
+	private static int localId(int id) {
+		return (id >>> CONTAINER_BITS) / SHARDS << CONTAINER_BITS | (id & LOW_MASK);
+	}
+
+	private static String key(String manufacturer) {
+		return manufacturer == null ? "" : manufacturer.trim().toLowerCase(Locale.ROOT);
+	}
+
+	private static CompressedBitmap[] newBitmaps(int length) {
+		CompressedBitmap[] bitmaps = new CompressedBitmap[length];
+		for (int i = 0; i < length; i++) {
+			bitmaps[i] = new CompressedBitmap();
+		}
+		return bitmaps;
+	}
+
+}
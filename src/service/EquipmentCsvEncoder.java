@@ -0,0 +1,141 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.EnumMap;
+import java.util.Map;
+
+import model.Equipment;
+import model.EquipmentType;
+import model.Firewall;
+import model.IpAddress;
+import model.Router;
+import model.Server;
+import model.Switch;
+
+// Streams equipments as lines of equipments.csv: each line is built in one reusable
+// buffer and encoded into a byte buffer that goes to the channel in large blocks.
+public class EquipmentCsvEncoder {
+
+	private static final int BUFFER_SIZE = 256 * 1024;
+
+	// writes the fields that only exist for one type of equipment
+	@FunctionalInterface
+	private interface FieldWriter {
+		void write(Equipment e, StringBuilder line);
+	}
+
+	private static final Map<EquipmentType, FieldWriter> FIELD_WRITERS = new EnumMap<>(EquipmentType.class);
+
+	static {
+		FIELD_WRITERS.put(EquipmentType.ROUTER, (e, line) -> {
+			Router r = (Router) e;
+			line.append(';').append(r.getSuportWifi()).append(';');
+			appendInteger(line, r.getMbps());
+		});
+		FIELD_WRITERS.put(EquipmentType.SWITCH, (e, line) -> {
+			line.append(';');
+			appendDouble(line, ((Switch) e).getPortCapacityGB());
+		});
+		FIELD_WRITERS.put(EquipmentType.SERVER, (e, line) -> {
+			Server s = (Server) e;
+			line.append(';').append(s.getOpSystem())
+				.append(';').append(s.getRamCapacity())
+				.append(';').append(s.getDiskCapacity());
+		});
+		FIELD_WRITERS.put(EquipmentType.FIREWALL, (e, line) -> {
+			Firewall f = (Firewall) e;
+			line.append(';').append(f.isStatefullPacketInspection())
+				.append(';').append(f.isBlockDoS());
+		});
+	}
+
+	private final WritableByteChannel channel;
+	private final CharsetEncoder encoder;
+	private final StringBuilder line = new StringBuilder(256);
+	private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final String lineSeparator = System.lineSeparator();
+	private CharBuffer chars = CharBuffer.allocate(256);
+
+	public EquipmentCsvEncoder(WritableByteChannel channel, Charset charset) {
+		this.channel = channel;
+		this.encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	public void write(Equipment e) throws IOException {
+		line.setLength(0);
+		line.append(e.getType().name()).append(';').append(e.getModel()).append(';');
+		IpAddress.appendTo(line, e.getPackedIp());
+		line.append(';').append(e.getManufacturer())
+			.append(';').append(e.getState().name()).append(';');
+		appendDouble(line, e.getEnergyConsumption());
+		line.append(';');
+		appendInteger(line, e.getQtdHourConsumption());
+
+		FieldWriter writer = FIELD_WRITERS.get(e.getType());
+		if (writer != null) {
+			writer.write(e, line);
+		}
+		line.append(lineSeparator);
+
+		encodeLine();
+	}
+
+	// writes what is still in the buffer
+	public void finish() throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	private void encodeLine() throws IOException {
+		int length = line.length();
+		if (chars.capacity() < length) {
+			chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+		}
+		chars.clear();
+		line.getChars(0, length, chars.array(), 0);
+		chars.limit(length);
+
+		encoder.reset();
+		while (true) {
+			CoderResult result = encoder.encode(chars, out, true);
+			if (result.isOverflow()) {
+				finish();
+				continue;
+			}
+			break;
+		}
+		while (encoder.flush(out).isOverflow()) {
+			finish();
+		}
+	}
+
+	// same text as the boxed value, without building a String
+	private static void appendDouble(StringBuilder line, Double value) {
+		if (value == null) {
+			line.append("null");
+		} else {
+			line.append(value.doubleValue());
+		}
+	}
+
+	private static void appendInteger(StringBuilder line, Integer value) {
+		if (value == null) {
+			line.append("null");
+		} else {
+			line.append(value.intValue());
+		}
+	}
+
+}
@@ -1,38 +1,235 @@
 package service;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import model.Equipment;
-import model.Firewall;
-import model.Router;
-import model.Server;
-import model.Switch;
+import service.imports.CsvFieldTokenizer;
+import service.imports.ImportDiagnostics;
+import service.imports.Rejection;
+import service.render.RenderBuffer;
 
-public class EquipmentFileService {
+public class EquipmentFileService implements AutoCloseable {
 	
 	private EquipmentService equipmentService;
 	
-	private static final String FILE_PATH = "C:\\temp\\out\\equipments.csv";
-	private static final String BACKUP_PATH = "C:\\temp\\out\\equipments_backup.csv";
+	public static final String DEFAULT_DIRECTORY = "C:\\temp\\out";
+	
+	private final Path filePath; // equipments.csv
+	private final Path backupPath;
+	private final Path snapshotPath;
+	private final Path journalPath;
+	private final Path transitionsPath;
+	private final Path metricsPath;
+	private final Path rejectPath;
+	
+	// files bigger than this are loaded in parallel when there is more than one core
+	private static final long PARALLEL_LOAD_THRESHOLD = 8L * 1024 * 1024;
+	// a chunk (read whole into the heap by its task) never goes beyond this size
+	private static final long MAX_CHUNK_SIZE = 64L * 1024 * 1024;
+	// block read by the sequential load
+	private static final int READ_BUFFER_SIZE = 1024 * 1024;
+	
+	private Boolean parallelLoad; // null: decided by the file size
+	private boolean writeRejectFile;
+	private EquipmentJournal journal;
 	
 	public EquipmentFileService(EquipmentService equipmentService) {
+		this(equipmentService, Paths.get(DEFAULT_DIRECTORY));
+	}
+	
+	// every file of the inventory goes to the directory
+	public EquipmentFileService(EquipmentService equipmentService, Path directory) {
 		this.equipmentService = equipmentService;
+		this.filePath = directory.resolve("equipments.csv");
+		this.backupPath = directory.resolve("equipments_backup.csv");
+		this.snapshotPath = directory.resolve("equipments.snapshot");
+		this.journalPath = directory.resolve("equipments.journal");
+		this.transitionsPath = directory.resolve("state_transitions.seg");
+		this.metricsPath = directory.resolve("metrics.txt");
+		this.rejectPath = directory.resolve("equipments_rejects.csv");
+	}
+	
+	public Path getFilePath() {
+		return filePath;
+	}
+	
+	// where the metrics report is dumped (see MetricsRegistry.startDump)
+	public Path getMetricsPath() {
+		return metricsPath;
+	}
+	
+	// where the rejected lines of the import go, one "line;field;reason;value" row each
+	public Path getRejectPath() {
+		return rejectPath;
+	}
+	
+	public void setWriteRejectFile(boolean writeRejectFile) {
+		this.writeRejectFile = writeRejectFile;
+	}
+	
+	// forces the parallel (true) or sequential (false) load, null goes back to automatic
+	public void setParallelLoad(Boolean parallelLoad) {
+		this.parallelLoad = parallelLoad;
+	}
+
+	// Startup load: the binary snapshot when it is at least as recent as the .csv,
+	// otherwise the .csv import. The journal is replayed on top and records every change from then on.
+	public void loadInventory() {
+		if (!loadBase()) {
+			loadFromFile();
+		}
+		openJournal();
+		openTransitions();
+	}
+
+	private boolean loadBase() {
+		Path csv = filePath;
+		Path snapshot = snapshotPath;
+
+		try {
+			return Files.exists(snapshot)
+					&& (!Files.exists(csv) || Files.getLastModifiedTime(snapshot).compareTo(Files.getLastModifiedTime(csv)) >= 0)
+					&& loadSnapshot();
+		} catch (IOException e) {
+			System.out.println("Error: " + e.getMessage());
+			return false;
+		}
+	}
+
+	private void openJournal() {
+		try {
+			journal = new EquipmentJournal(journalPath, EquipmentJournal.DEFAULT_COMPACTION_THRESHOLD);
+			int replayed = journal.replay(equipmentService);
+			if (replayed > 0) {
+				System.out.println(replayed + " changes were replayed from the journal.");
+			}
+			journal.setCompaction(this::compact);
+			equipmentService.addListener(journal);
+
+		} catch (IOException e) {
+			System.out.println("Error opening journal: " + e.getMessage());
+			journal = null;
+		}
+	}
+
+	// ON/OFF history for the actual consumption reports: the state of every loaded device, then
+	// every transition from now on
+	private void openTransitions() {
+		try {
+			equipmentService.getStateHistory().openSegment(transitionsPath);
+		} catch (IOException e) {
+			System.out.println("Error opening transitions file: " + e.getMessage());
+		}
+	}
+
+	// folds the journal into a new snapshot; appends wait on the journal lock meanwhile
+	public void compact() {
+		EquipmentJournal current = journal;
+		if (current == null) {
+			return;
+		}
+		synchronized (current) {
+			if (saveSnapshot()) {
+				try {
+					current.reset();
+				} catch (IOException e) {
+					System.out.println("Error: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	// Exit save: the .csv for interchange, then the snapshot, which makes the journal empty
+	public void saveInventory() {
+		saveToFile();
+		if (journal != null) {
+			compact();
+		} else {
+			saveSnapshot();
+		}
+	}
+
+	@Override
+	public void close() {
+		equipmentService.getStateHistory().close();
+		if (journal != null) {
+			equipmentService.removeListener(journal);
+			try {
+				journal.close();
+			} catch (IOException e) {
+				System.out.println("Error: " + e.getMessage());
+			}
+			journal = null;
+		}
+	}
+
+	public boolean loadSnapshot() {
+		System.out.println("Loading the equipment snapshot...");
+		long start = System.nanoTime();
+		try {
+			int loaded = new EquipmentSnapshotCodec().read(snapshotPath, equipmentService::addEquipment);
+			equipmentService.getMetrics().recordRows("file.snapshot.load", loaded, System.nanoTime() - start);
+			System.out.println(loaded + " equipments were loaded.");
+			System.out.println();
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Error reading snapshot: " + e.getMessage());
+			equipmentService.clear();
+			return false;
+		}
+	}
+
+	public boolean saveSnapshot() {
+		long start = System.nanoTime();
+		Path target = snapshotPath;
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+		try {
+			if (target.getParent() != null) {
+				Files.createDirectories(target.getParent());
+			}
+			List<Equipment> equipments = equipmentService.indexedEquipments();
+			new EquipmentSnapshotCodec().write(temp, equipments);
+			replaceAtomically(temp, target);
+			equipmentService.getMetrics().recordRows("file.snapshot.save", equipments.size(), System.nanoTime() - start);
+			System.out.println("Equipment snapshot successfully saved.");
+			return true;
+
+		} catch (IOException e) {
+			System.out.println("Error: " + e.getMessage());
+			try {
+				Files.deleteIfExists(temp);
+			} catch (IOException ignored) {
+				// the old snapshot is still intact
+			}
+			return false;
+		}
 	}
 
 	public void loadFromFile() {
+		long start = System.nanoTime();
 
 		// making a backup of the original file before uploading
-		Path origem = Paths.get(FILE_PATH);
-		Path destino = Paths.get(BACKUP_PATH);
+		Path origem = filePath;
+		Path destino = backupPath;
 		
 		try {
 			if (Files.exists(origem)) {
@@ -42,22 +239,65 @@ public class EquipmentFileService {
 			System.out.println("Error copying file: " + e.getMessage());
 		}
 
-		try (BufferedReader br = new BufferedReader(new FileReader(origem.toString()))) {
+		ImportDiagnostics diagnostics = equipmentService.getImportDiagnostics();
+		diagnostics.begin(writeRejectFile ? rejectPath : null);
+		try {
+			if (useParallelLoad(origem)) {
+				loadFromFileParallel(origem, start);
+			} else {
+				loadFromFileSequential(origem, start);
+			}
+		} finally {
+			diagnostics.end();
+		}
 
-			System.out.println("Loading the equipment list file...");
-			String[] vetEquipment;
-			int i = 0;
+		if (diagnostics.total() > 0) {
+			diagnostics.printSummary(RenderBuffer.stdout(), false);
+			if (writeRejectFile) {
+				System.out.println("Rejected lines were written to " + rejectPath);
+			}
+			System.out.println();
+		}
+	}
 
-			String line = br.readLine();
+	// the file read in blocks into one reused heap buffer, each line tokenized in place and
+	// inserted in order. Not mapped: on Windows a mapped file stays locked until the buffer is
+	// collected, and the save on exit has to replace it
+	private void loadFromFileSequential(Path origem, long start) {
+		try (FileChannel channel = FileChannel.open(origem, StandardOpenOption.READ)) {
 
-			while (line != null) {
-				i++;
-				vetEquipment = line.split(";");
-				equipmentService.createEquipmentFromLine(vetEquipment, i);
-				line = br.readLine();
+			System.out.println("Loading the equipment list file...");
+			ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			CsvFieldTokenizer tokenizer = new CsvFieldTokenizer();
+			int i = 0;
+			boolean eof = false;
 
+			while (!eof) {
+				eof = channel.read(buffer) < 0;
+				int filled = buffer.position();
+				// the complete lines; the rest waits for the next read
+				int cut = filled;
+				if (!eof) {
+					while (cut > 0 && buffer.get(cut - 1) != '\n') {
+						cut--;
+					}
+					if (cut == 0) {
+						if (filled == buffer.capacity()) {
+							// a line longer than the buffer
+							ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+							buffer.flip();
+							buffer = larger.put(buffer);
+						}
+						continue;
+					}
+				}
+				buffer.position(0).limit(cut);
+				i += forEachLine(buffer, i + 1, tokenizer, equipmentService::createEquipmentFromLine);
+				buffer.limit(filled).position(cut);
+				buffer.compact();
 			}
 
+			equipmentService.getMetrics().recordRows("file.load", i, System.nanoTime() - start);
 			System.out.println(i + " lines were loaded.");
 			System.out.println();
 
@@ -65,43 +305,321 @@ public class EquipmentFileService {
 			System.out.println("Error: " + e.getMessage());
 		}
 	}
+
+	private interface LineHandler {
+		void accept(CsvFieldTokenizer fields, int line);
+	}
+
+	// every line of the buffer (without "\n" or "\r\n"), tokenized into fields; the number of lines,
+	// counted like BufferedReader.readLine
+	private static int forEachLine(ByteBuffer buffer, int firstLine, CsvFieldTokenizer tokenizer, LineHandler handler) {
+		int limit = buffer.limit();
+		int start = 0;
+		int line = firstLine;
+
+		while (start < limit) {
+			int end = start;
+			while (end < limit && buffer.get(end) != '\n') {
+				end++;
+			}
+			int lineEnd = end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+			handler.accept(tokenizer.reset(buffer, start, lineEnd), line);
+			line++;
+			start = end + 1;
+		}
+		return line - firstLine;
+	}
 	
 	
-	//Save the file .csv
-	public void saveToFile() {
-		
-		File file = new File(FILE_PATH);
-	    file.getParentFile().mkdirs();
-	    
-		try (BufferedWriter bw = new BufferedWriter(new FileWriter(file, false))) {
-
-			for (Equipment e : equipmentService.getEquipments()) {
-				String line = e.getType().name() + ";" + e.getModel() + ";" + e.getIp() + ";" + e.getManufacturer()
-						+ ";" + e.getState() + ";" + e.getEnergyConsumption() + ";" + e.getQtdHourConsumption();
-
-				// specific fields by type
-				if (e instanceof Router) {
-					Router r = (Router) e;
-					line += ";" + r.getSuportWifi() + ";" + r.getMbps();
-				} else if (e instanceof Switch) {
-					Switch s = (Switch) e;
-					line += ";" + s.getPortCapacityGB();
-				} else if (e instanceof Server) {
-					Server s = (Server) e;
-					line += ";" + s.getOpSystem() + ";" + s.getRamCapacity() + ";" + s.getDiskCapacity();
-				} else if (e instanceof Firewall) {
-					Firewall f = (Firewall) e;
-					line += ";" + f.isStatefullPacketInspection() + ";" + f.isBlockDoS();
+	private boolean useParallelLoad(Path path) {
+		if (parallelLoad != null) {
+			return parallelLoad && Files.exists(path);
+		}
+		try {
+			return Runtime.getRuntime().availableProcessors() > 1 && Files.exists(path)
+					&& Files.size(path) > PARALLEL_LOAD_THRESHOLD;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	// Cuts the file in newline-aligned chunks and parses them on all cores; each task reads its chunk
+	// into a heap buffer with positional reads (not mapped, for the same reason as the sequential load).
+	// The duplicate IPs are checked by the merge, which runs in file order, so the list, the log,
+	// the rejection counts and the reject file come out as in the sequential load.
+	private void loadFromFileParallel(Path path, long start) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(cores);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			System.out.println("Loading the equipment list file...");
+			long size = channel.size();
+			int chunks = (int) Math.max(cores * 4L, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+			long[] bounds = splitChunks(channel, size, chunks);
+
+			// 1st pass: counting lines, so each chunk knows the number of its first line
+			List<Future<Integer>> counts = new ArrayList<>();
+			for (int c = 0; c + 1 < bounds.length; c++) {
+				long from = bounds[c];
+				long to = bounds[c + 1];
+				counts.add(pool.submit(() -> countLines(readChunk(channel, from, to))));
+			}
+
+			// 2nd pass: parsing and validating each chunk
+			List<Future<ChunkResult>> results = new ArrayList<>();
+			int firstLine = 1;
+			for (int c = 0; c + 1 < bounds.length; c++) {
+				results.add(pool.submit(parseChunk(channel, bounds[c], bounds[c + 1], firstLine)));
+				firstLine += counts.get(c).get();
+			}
+
+			// ordered merge; a merged chunk lets go of its buffer
+			for (int c = 0; c < results.size(); c++) {
+				results.get(c).get().mergeInto(equipmentService);
+				results.set(c, null);
+			}
+
+			equipmentService.getMetrics().recordRows("file.load", firstLine - 1, System.nanoTime() - start);
+			System.out.println((firstLine - 1) + " lines were loaded.");
+			System.out.println();
+
+		} catch (IOException e) {
+			System.out.println("Error: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.out.println("Error: loading interrupted.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException re) {
+				throw re;
+			}
+			System.out.println("Error: " + e.getCause().getMessage());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// chunk boundaries, each one right after a '\n'
+	private static long[] splitChunks(FileChannel channel, long size, int chunks) throws IOException {
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(0L);
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+
+		for (int c = 1; c < chunks; c++) {
+			long pos = Math.max(size * c / chunks, bounds.get(bounds.size() - 1));
+			boolean found = false;
+			while (!found && pos < size) {
+				probe.clear();
+				int read = channel.read(probe, pos);
+				if (read <= 0) {
+					break;
 				}
+				for (int i = 0; i < read; i++) {
+					if (probe.get(i) == '\n') {
+						pos += i + 1;
+						found = true;
+						break;
+					}
+				}
+				if (!found) {
+					pos += read;
+				}
+			}
+			if (pos >= size) {
+				break;
+			}
+			if (pos > bounds.get(bounds.size() - 1)) {
+				bounds.add(pos);
+			}
+		}
+		bounds.add(size);
 
-				bw.write(line);
-				bw.newLine();
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	// the bytes [from, to) of the file in a heap buffer; positional reads leave the position of the
+	// channel alone, so the tasks share it
+	private static ByteBuffer readChunk(FileChannel channel, long from, long to) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, from + buffer.position()) < 0) {
+				throw new EOFException("The file became shorter while it was loaded");
 			}
+		}
+		return buffer.flip();
+	}
 
+	// same count as BufferedReader.readLine: a last line without '\n' still counts
+	private static int countLines(ByteBuffer buffer) {
+		int lines = 0;
+		int limit = buffer.limit();
+		for (int i = 0; i < limit; i++) {
+			if (buffer.get(i) == '\n') {
+				lines++;
+			}
+		}
+		if (limit > 0 && buffer.get(limit - 1) != '\n') {
+			lines++;
+		}
+		return lines;
+	}
+
+	private Callable<ChunkResult> parseChunk(FileChannel channel, long from, long to, int firstLine) {
+		return () -> {
+			ByteBuffer buffer = readChunk(channel, from, to);
+			ChunkResult result = new ChunkResult(buffer);
+			forEachLine(buffer, firstLine, new CsvFieldTokenizer(), (fields, line) -> {
+				// the list is only known at the merge: every valid IP is kept to be checked there
+				Equipment eq = equipmentService.parseEquipmentLine(fields, line, ip -> {
+					result.validIp(line, ip, fields.start(2), fields.end(2));
+					return false;
+				}, result::reject);
+				if (eq != null) {
+					result.accept(line, eq);
+				}
+			});
+			return result;
+		};
+	}
+
+	// equipments, rejections and valid IPs of one chunk, each in line order
+	private static class ChunkResult {
+		private final ByteBuffer buffer;
+		private final List<Equipment> equipments = new ArrayList<>();
+		private final List<Integer> equipmentLines = new ArrayList<>();
+		private final List<Rejection> rejections = new ArrayList<>();
+
+		// the lines whose IP is valid: the packed IP and where its text is in the buffer
+		private int[] ipLines = new int[1024];
+		private int[] ips = new int[1024];
+		private int[] ipStarts = new int[1024];
+		private int[] ipEnds = new int[1024];
+		private int ipCount;
+
+		ChunkResult(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		void accept(int line, Equipment eq) {
+			equipments.add(eq);
+			equipmentLines.add(line);
+		}
+
+		void reject(Rejection rejection) {
+			rejections.add(rejection);
+		}
+
+		void validIp(int line, int ip, int start, int end) {
+			if (ipCount == ipLines.length) {
+				ipLines = Arrays.copyOf(ipLines, ipCount * 2);
+				ips = Arrays.copyOf(ips, ipCount * 2);
+				ipStarts = Arrays.copyOf(ipStarts, ipCount * 2);
+				ipEnds = Arrays.copyOf(ipEnds, ipCount * 2);
+			}
+			ipLines[ipCount] = line;
+			ips[ipCount] = ip;
+			ipStarts[ipCount] = start;
+			ipEnds[ipCount] = end;
+			ipCount++;
+		}
+
+		// goes through the lines in order like the sequential load: a line with an IP already in
+		// the list is rejected as a duplicate before its other fields count, the others are added
+		// or logged with the reason found when the chunk was parsed
+		void mergeInto(EquipmentService service) {
+			int e = 0;
+			int r = 0;
+			int k = 0;
+			while (e < equipments.size() || r < rejections.size()) {
+				int line = r == rejections.size() ? equipmentLines.get(e)
+						: e == equipments.size() ? rejections.get(r).line()
+								: Math.min(equipmentLines.get(e), rejections.get(r).line());
+				boolean isEquipment = e < equipments.size() && equipmentLines.get(e) == line;
+
+				while (k < ipCount && ipLines[k] < line) {
+					k++;
+				}
+				if (k < ipCount && ipLines[k] == line && service.isDuplicateIp(ips[k])) {
+					service.rejectLine(EquipmentService.duplicateIpRejection(line, ipText(k)));
+				} else if (isEquipment) {
+					service.addEquipment(equipments.get(e));
+				} else {
+					service.rejectLine(rejections.get(r));
+				}
+				if (isEquipment) {
+					e++;
+				} else {
+					r++;
+				}
+			}
+		}
+
+		// the IP as written in the file
+		private String ipText(int k) {
+			byte[] bytes = new byte[ipEnds[k] - ipStarts[k]];
+			buffer.get(ipStarts[k], bytes);
+			return new String(bytes, Charset.defaultCharset());
+		}
+	}
+
+	//Save the file .csv: streams to a temp file, syncs it and replaces the old file at once,
+	//so an interrupted save never leaves a half-written inventory
+	public void saveToFile() {
+		long start = System.nanoTime();
+		Path target = filePath;
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		int rows = 0;
+
+		try {
+			if (target.getParent() != null) {
+				Files.createDirectories(target.getParent());
+			}
+
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				EquipmentCsvEncoder encoder = new EquipmentCsvEncoder(channel, Charset.defaultCharset());
+				for (Equipment e : equipmentService.getEquipments()) {
+					encoder.write(e);
+					rows++;
+				}
+				encoder.finish();
+				channel.force(true);
+			}
+
+			replaceAtomically(temp, target);
+			equipmentService.getMetrics().recordRows("file.save", rows, System.nanoTime() - start);
 			System.out.println("Equipments successfully saved to file.");
 
 		} catch (IOException e) {
 			System.out.println("Error: " + e.getMessage());
+			try {
+				Files.deleteIfExists(temp);
+			} catch (IOException ignored) {
+				// the old file is still intact
+			}
+		}
+	}
+
+	// moves a fully written file over the target; readers see the old or the new file, never a mix
+	static void replaceAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		// makes the rename durable where the file system allows syncing a directory
+		Path dir = target.toAbsolutePath().getParent();
+		if (dir != null) {
+			try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+				channel.force(true);
+			} catch (IOException | UnsupportedOperationException ignored) {
+				// not supported on this platform (e.g. Windows)
+			}
 		}
 	}
  
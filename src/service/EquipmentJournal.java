@@ -0,0 +1,254 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import model.Equipment;
+import model.EquipmentState;
+
+// Write-ahead journal: every change in the inventory is appended as one small record, and
+// replayed on top of the last snapshot at startup.
+//
+// Record (big endian): int payload length, byte operation, payload, int CRC32 of operation + payload
+//   ADD    payload: equipment (see EquipmentSnapshotCodec.encodeEquipment)
+//   REMOVE payload: int ip
+//   STATE  payload: int ip, byte state
+//   CLEAR  no payload
+//   ENERGY payload: int ip, double energy
+public class EquipmentJournal implements EquipmentListener, AutoCloseable {
+
+	public static final long DEFAULT_COMPACTION_THRESHOLD = 16L * 1024 * 1024;
+
+	private static final byte ADD = 1;
+	private static final byte REMOVE = 2;
+	private static final byte STATE = 3;
+	private static final byte CLEAR = 4;
+	private static final byte ENERGY = 5;
+
+	private static final int MAX_PAYLOAD = 1024 * 1024;
+	private static final EquipmentState[] STATES = EquipmentState.values();
+
+	private final Path path;
+	private final FileChannel channel;
+	private final long compactionThreshold;
+	private final CRC32 crc = new CRC32();
+	private ByteBuffer record = ByteBuffer.allocate(256);
+	private boolean syncOnAppend;
+	private Runnable compaction;
+	private boolean compacting;
+
+	public EquipmentJournal(Path path, long compactionThreshold) throws IOException {
+		this.path = path;
+		this.compactionThreshold = compactionThreshold;
+		if (path.getParent() != null) {
+			Files.createDirectories(path.getParent());
+		}
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.channel.position(channel.size());
+	}
+
+	// forces every record to disk before returning (slower, survives power loss)
+	public void setSyncOnAppend(boolean syncOnAppend) {
+		this.syncOnAppend = syncOnAppend;
+	}
+
+	// called after an append once the journal grows beyond the threshold
+	public void setCompaction(Runnable compaction) {
+		this.compaction = compaction;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public synchronized long size() throws IOException {
+		return channel.size();
+	}
+
+	// Applies the journal to the service (listeners not attached yet). A torn record at the
+	// end, left by a crash in the middle of an append, is cut off.
+	public synchronized int replay(EquipmentService service) throws IOException {
+		long size = channel.size();
+		if (size == 0) {
+			return 0;
+		}
+
+		ByteBuffer in = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+		channel.read(in, 0);
+		in.flip();
+
+		int applied = 0;
+		long validEnd = 0;
+		while (in.remaining() >= 9) {
+			int start = in.position();
+			int length = in.getInt();
+			if (length < 0 || length > MAX_PAYLOAD || in.remaining() < length + 5) {
+				break;
+			}
+			byte operation = in.get();
+			int payloadStart = in.position();
+			in.position(payloadStart + length);
+			int checksum = in.getInt();
+
+			crc.reset();
+			crc.update(operation);
+			crc.update(in.array(), payloadStart, length);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+
+			ByteBuffer payload = ByteBuffer.wrap(in.array(), payloadStart, length).slice();
+			apply(service, operation, payload);
+			applied++;
+			validEnd = start + 9L + length;
+		}
+
+		if (validEnd < size) {
+			System.out.println("Journal: discarding " + (size - validEnd) + " bytes of an incomplete record.");
+			channel.truncate(validEnd);
+		}
+		channel.position(validEnd);
+		return applied;
+	}
+
+	private void apply(EquipmentService service, byte operation, ByteBuffer payload) {
+		switch (operation) {
+			case ADD -> service.addEquipment(EquipmentSnapshotCodec.decodeEquipment(payload));
+			case REMOVE -> service.removeEquipmentByPackedIp(payload.getInt());
+			case STATE -> {
+				Equipment e = service.ipSearch(payload.getInt());
+				if (e != null) {
+					service.changeState(e, STATES[payload.get()]);
+				}
+			}
+			case CLEAR -> service.clear();
+			case ENERGY -> {
+				Equipment e = service.ipSearch(payload.getInt());
+				if (e != null) {
+					service.changeEnergyConsumption(e, payload.getDouble());
+				}
+			}
+			default -> throw new IllegalStateException("Unknown journal operation " + operation);
+		}
+	}
+
+	@Override
+	public void onAdded(Equipment e) {
+		byte[] encoded = EquipmentSnapshotCodec.encodeEquipment(e);
+		boolean compact;
+		synchronized (this) {
+			begin(ADD, encoded.length).put(encoded);
+			compact = commit();
+		}
+		compactIf(compact);
+	}
+
+	@Override
+	public void onRemoved(Equipment e) {
+		boolean compact;
+		synchronized (this) {
+			begin(REMOVE, 4).putInt(e.getPackedIp());
+			compact = commit();
+		}
+		compactIf(compact);
+	}
+
+	@Override
+	public void onStateChanged(Equipment e, EquipmentState previous) {
+		boolean compact;
+		synchronized (this) {
+			begin(STATE, 5).putInt(e.getPackedIp()).put((byte) e.getState().ordinal());
+			compact = commit();
+		}
+		compactIf(compact);
+	}
+
+	@Override
+	public void onEnergyChanged(Equipment e, Double previous) {
+		boolean compact;
+		synchronized (this) {
+			begin(ENERGY, 12).putInt(e.getPackedIp()).putDouble(e.getEnergyConsumption());
+			compact = commit();
+		}
+		compactIf(compact);
+	}
+
+	@Override
+	public void onCleared() {
+		boolean compact;
+		synchronized (this) {
+			begin(CLEAR, 0);
+			compact = commit();
+		}
+		compactIf(compact);
+	}
+
+	// the record is built in one reusable buffer
+	private ByteBuffer begin(byte operation, int length) {
+		if (record.capacity() < length + 9) {
+			record = ByteBuffer.allocate(Math.max(length + 9, record.capacity() * 2));
+		}
+		record.clear();
+		record.putInt(length).put(operation);
+		return record;
+	}
+
+	// appends the record; returns true when the journal asks for a compaction
+	private boolean commit() {
+		try {
+			crc.reset();
+			crc.update(record.array(), 4, record.position() - 4);
+			record.putInt((int) crc.getValue());
+			record.flip();
+			while (record.hasRemaining()) {
+				channel.write(record);
+			}
+			if (syncOnAppend) {
+				channel.force(false);
+			}
+			return compaction != null && !compacting && channel.size() > compactionThreshold;
+		} catch (IOException e) {
+			System.out.println("Error writing journal: " + e.getMessage());
+			return false;
+		}
+	}
+
+	// the compaction writes a snapshot and calls reset
+	private void compactIf(boolean compact) {
+		if (!compact) {
+			return;
+		}
+		// appends from other threads wait until the snapshot is written and the journal reset
+		synchronized (this) {
+			if (compacting) {
+				return;
+			}
+			compacting = true;
+			try {
+				compaction.run();
+			} finally {
+				compacting = false;
+			}
+		}
+	}
+
+	// called once the snapshot holds every change: the journal starts empty again
+	public synchronized void reset() throws IOException {
+		channel.truncate(0);
+		channel.position(0);
+		channel.force(true);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.force(true);
+		channel.close();
+	}
+
+}
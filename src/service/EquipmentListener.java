@@ -0,0 +1,25 @@
+package service;
+
+import model.Equipment;
+import model.EquipmentState;
+
+// Notified by EquipmentService after each change in the inventory
+public interface EquipmentListener {
+
+	default void onAdded(Equipment e) {
+	}
+
+	default void onRemoved(Equipment e) {
+	}
+
+	default void onStateChanged(Equipment e, EquipmentState previous) {
+	}
+
+	default void onEnergyChanged(Equipment e, Double previous) {
+	}
+
+	// every equipment was removed at once
+	default void onCleared() {
+	}
+
+}
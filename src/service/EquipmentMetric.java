@@ -0,0 +1,57 @@
+package service;
+
+import java.util.function.ToDoubleFunction;
+
+import model.Equipment;
+import model.Router;
+import model.Server;
+import model.Switch;
+
+// Numeric values used to rank equipments; NaN means the metric does not apply to the equipment
+public enum EquipmentMetric implements ToDoubleFunction<Equipment> {
+
+	WATTAGE {
+		@Override
+		public double applyAsDouble(Equipment e) {
+			return orNaN(e.getEnergyConsumption());
+		}
+	},
+	DAILY_KWH {
+		@Override
+		public double applyAsDouble(Equipment e) {
+			if (e.getEnergyConsumption() == null || e.getQtdHourConsumption() == null) {
+				return Double.NaN;
+			}
+			return e.getEnergyConsumption() * e.getQtdHourConsumption() / 1000;
+		}
+	},
+	ROUTER_MBPS {
+		@Override
+		public double applyAsDouble(Equipment e) {
+			return e instanceof Router r ? orNaN(r.getMbps()) : Double.NaN;
+		}
+	},
+	SWITCH_PORT_CAPACITY_GB {
+		@Override
+		public double applyAsDouble(Equipment e) {
+			return e instanceof Switch s ? orNaN(s.getPortCapacityGB()) : Double.NaN;
+		}
+	},
+	SERVER_RAM_GB {
+		@Override
+		public double applyAsDouble(Equipment e) {
+			return e instanceof Server s ? s.getRamCapacity() : Double.NaN;
+		}
+	},
+	SERVER_DISK_GB {
+		@Override
+		public double applyAsDouble(Equipment e) {
+			return e instanceof Server s ? s.getDiskCapacity() : Double.NaN;
+		}
+	};
+
+	private static double orNaN(Number value) {
+		return value == null ? Double.NaN : value.doubleValue();
+	}
+
+}
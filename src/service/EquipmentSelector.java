@@ -0,0 +1,75 @@
+package service;
+
+import java.util.function.Predicate;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.EquipmentType;
+import model.Subnet;
+
+// Chooses a set of equipments by type, state, manufacturer and subnet; unset criteria match everything
+public class EquipmentSelector implements Predicate<Equipment> {
+
+	private EquipmentType type;
+	private EquipmentState state;
+	private String manufacturer;
+	private Subnet subnet;
+
+	public static EquipmentSelector all() {
+		return new EquipmentSelector();
+	}
+
+	public EquipmentSelector type(EquipmentType type) {
+		this.type = type;
+		return this;
+	}
+
+	public EquipmentSelector state(EquipmentState state) {
+		this.state = state;
+		return this;
+	}
+
+	// compared ignoring case and the spaces around it, like the bitmap index
+	public EquipmentSelector manufacturer(String manufacturer) {
+		this.manufacturer = manufacturer == null || manufacturer.isBlank() ? null : manufacturer.trim();
+		return this;
+	}
+
+	public EquipmentSelector subnet(Subnet subnet) {
+		this.subnet = subnet;
+		return this;
+	}
+
+	public EquipmentType getType() {
+		return type;
+	}
+
+	public EquipmentState getState() {
+		return state;
+	}
+
+	public String getManufacturer() {
+		return manufacturer;
+	}
+
+	public Subnet getSubnet() {
+		return subnet;
+	}
+
+	@Override
+	public boolean test(Equipment e) {
+		return (type == null || e.getType() == type)
+				&& (state == null || e.getState() == state)
+				&& (manufacturer == null || (e.getManufacturer() != null && manufacturer.equalsIgnoreCase(e.getManufacturer().trim())))
+				&& (subnet == null || subnet.contains(e.getPackedIp()));
+	}
+
+	@Override
+	public String toString() {
+		return "type=" + (type == null ? "*" : type)
+				+ " state=" + (state == null ? "*" : state)
+				+ " manufacturer=" + (manufacturer == null ? "*" : manufacturer)
+				+ " subnet=" + (subnet == null ? "*" : subnet);
+	}
+
+}
@@ -1,38 +1,203 @@
 package service;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
 
 import model.Equipment;
 import model.EquipmentOperation;
 import model.EquipmentState;
 import model.EquipmentType;
 import model.Firewall;
+import model.IpAddress;
 import model.Router;
 import model.Server;
+import model.Subnet;
 import model.Switch;
+import service.driver.DeviceController;
+import service.driver.LocalDeviceDriver;
+import service.imports.CsvFieldTokenizer;
+import service.imports.ImportDiagnostics;
+import service.imports.RejectReason;
+import service.imports.Rejection;
+import service.metrics.LatencyHistogram;
+import service.metrics.MetricsRegistry;
+import service.query.EquipmentFilter;
+import service.query.QueryPlanner;
+import service.render.RenderBuffer;
 
 public class EquipmentService {
 
+	private static final EquipmentType[] TYPES = EquipmentType.values();
+	private static final EquipmentState[] STATES = EquipmentState.values();
+	// for the lines that arrive already split
+	private static final ThreadLocal<CsvFieldTokenizer> TOKENIZER = ThreadLocal.withInitial(CsvFieldTokenizer::new);
+	// the fields every line starts with, as named in the rejections
+	private static final String[] LINE_FIELDS = { "type", "model", "ip", "manufacturer", "state", "energyConsumption",
+			"qtdHourConsumption" };
+
 	List<Equipment> equipments = new ArrayList<>();
 	
+	private final LogService log;
+	
+	// primary index: packed IP -> position of the equipment in the list
+	private Map<Integer, Integer> ipIndex = new HashMap<>();
+	
+	private final List<EquipmentListener> listeners = new CopyOnWriteArrayList<>();
+	
+	// counts, energy sums and ranking, updated on every change
+	private final EquipmentStatistics statistics = new EquipmentStatistics();
+	
+	// packed IP -> equipment as a radix trie, for subnet and range queries
+	private final IpRadixTrie subnetIndex = new IpRadixTrie();
+	
+	// type, state and manufacturer -> bitmaps of dense equipment ids
+	private final EquipmentBitmapIndex bitmapIndex = new EquipmentBitmapIndex();
+	private final boolean objectIndexes;
+	
+	// ON/OFF transitions with their time, for the actual consumption
+	private final StateTimeSeries stateHistory = new StateTimeSeries();
+	
+	// sends the lifecycle commands (turn on, turn off, restart) to the devices
+	private volatile DeviceController deviceController = new DeviceController(new LocalDeviceDriver());
+	
+	// rejected lines of the last import by reason and field, with samples
+	private final ImportDiagnostics importDiagnostics = new ImportDiagnostics();
+	
+	// latencies and counters of the service (the file service records the load and the save here)
+	private final MetricsRegistry metrics = new MetricsRegistry();
+	private final LatencyHistogram registerLatency = metrics.histogram("service.registerEquipment");
+	private final LatencyHistogram ipSearchLatency = metrics.histogram("service.ipSearch");
+	private final LatencyHistogram removeLatency = metrics.histogram("service.removeEquipment");
+	private final LatencyHistogram operationLatency = metrics.histogram("service.executeOperation");
+	private final LatencyHistogram energyReportLatency = metrics.histogram("report.energy");
+	private final LatencyHistogram stateReportLatency = metrics.histogram("report.state");
+	private final LatencyHistogram summaryLatency = metrics.histogram("report.summary");
+	private final LatencyHistogram topKLatency = metrics.histogram("report.topK");
+	
 	public void clear() {
         equipments.clear();
+        ipIndex.clear();
+        fireCleared();
     }
 
 	public EquipmentService() {
-
+		this(new LogService());
+	}
+	
+	public EquipmentService(LogService log) {
+		this(log, true);
+	}
+	
+	// objectIndexes false: the statistics, the radix trie and the bitmap index, which keep the
+	// equipment objects, are not fed; the subclass answers the summaries and the queries itself
+	protected EquipmentService(LogService log, boolean objectIndexes) {
+		this.log = log;
+		this.objectIndexes = objectIndexes;
+		if (objectIndexes) {
+			addListener(statistics);
+			addListener(subnetIndex);
+			addListener(bitmapIndex);
+		}
+		addListener(stateHistory);
+	}
+	
+	public LogService getLogService() {
+		return log;
+	}
+	
+	public MetricsRegistry getMetrics() {
+		return metrics;
 	}
 
 	public List<Equipment> getEquipments() {
 		return equipments;
 	}
 
+	// the equipments as a list that does not change while it is indexed or read twice: the list
+	// itself here, a copy in ConcurrentEquipmentService and ColumnarEquipmentService
+	public List<Equipment> indexedEquipments() {
+		return equipments;
+	}
+	
+	public int size() {
+		return equipments.size();
+	}
+
 	public void setEquipments(List<Equipment> equipments) {
 		this.equipments = equipments;
+		rebuildIndex();
+		fireCleared();
+		for (Equipment e : equipments) {
+			fireAdded(e);
+		}
+	}
+	
+	public void addListener(EquipmentListener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeListener(EquipmentListener listener) {
+		listeners.remove(listener);
+	}
+	
+	protected void fireAdded(Equipment e) {
+		for (EquipmentListener l : listeners) {
+			l.onAdded(e);
+		}
+	}
+	
+	protected void fireRemoved(Equipment e) {
+		for (EquipmentListener l : listeners) {
+			l.onRemoved(e);
+		}
+	}
+	
+	protected void fireStateChanged(Equipment e, EquipmentState previous) {
+		for (EquipmentListener l : listeners) {
+			l.onStateChanged(e, previous);
+		}
+	}
+	
+	protected void fireEnergyChanged(Equipment e, Double previous) {
+		for (EquipmentListener l : listeners) {
+			l.onEnergyChanged(e, previous);
+		}
+	}
+	
+	protected void fireCleared() {
+		for (EquipmentListener l : listeners) {
+			l.onCleared();
+		}
+	}
+	
+	// rebuilds the IP index from the current list
+	private void rebuildIndex() {
+		ipIndex = new HashMap<>(Math.max(16, equipments.size() * 4 / 3 + 1));
+		for (int i = 0; i < equipments.size(); i++) {
+			ipIndex.put(equipments.get(i).getPackedIp(), i);
+		}
+	}
+	
+	//Add the equipment in the list if its IP is not registered yet
+	public boolean addEquipment(Equipment e) {
+		if (ipIndex.putIfAbsent(e.getPackedIp(), equipments.size()) != null) {
+			return false;
+		}
+		equipments.add(e);
+		fireAdded(e);
+		return true;
 	}
     
 	
@@ -41,52 +206,57 @@ public class EquipmentService {
 	        Double energyConsumption, Integer qtdHourConsumption, Boolean supportWifi, Integer mbps,
 	        Double portCapacityGB, String opSystem, Integer ramCapacity, Integer diskCapacity,
 	        Boolean statefullPacketInspection, Boolean blockDoS) {
+	    long start = System.nanoTime();
+	    try {
 	    	    
-	    // Safety validations (non-interactive)
-	    if (!validarIP(ip) || isDuplicateIp(ip)) {
-	        return false;
-	    }
+		    // Safety validations (non-interactive)
+		    long packedIp = IpAddress.parse(ip);
+		    if (packedIp == IpAddress.INVALID || isDuplicateIp((int) packedIp)) {
+		        return false;
+		    }
 
-	    if (!isValidEnergy(energyConsumption) || !isValidConsumptionHours(qtdHourConsumption)) {
-	        return false;
-	    }
+		    if (!isValidEnergy(energyConsumption) || !isValidConsumptionHours(qtdHourConsumption)) {
+		        return false;
+		    }
   
-	    // specific fields for validations
-	    if (type == EquipmentType.ROUTER && (supportWifi == null || !isValidInteger(mbps))) {
-	         return false;
-	    } else if (type == EquipmentType.SWITCH && !isValidDouble(portCapacityGB)) {
-	         return false;
-	    } else if (type == EquipmentType.SERVER
-	            && (!isRequiredFieldValid(opSystem) || !isValidInteger(ramCapacity) || !isValidInteger(diskCapacity))) {
-	         return false;
-	    } else if (type == EquipmentType.FIREWALL && (statefullPacketInspection == null || blockDoS == null)) {
-	         return false;
-	    }
+		    // specific fields for validations
+		    if (type == EquipmentType.ROUTER && (supportWifi == null || !isValidInteger(mbps))) {
+		         return false;
+		    } else if (type == EquipmentType.SWITCH && !isValidDouble(portCapacityGB)) {
+		         return false;
+		    } else if (type == EquipmentType.SERVER
+		            && (!isRequiredFieldValid(opSystem) || !isValidInteger(ramCapacity) || !isValidInteger(diskCapacity))) {
+		         return false;
+		    } else if (type == EquipmentType.FIREWALL && (statefullPacketInspection == null || blockDoS == null)) {
+		         return false;
+		    }
 
-	    // Create the equipment
-	    Equipment e = null;
-	    switch (type) {
-	        case ROUTER:
-	            e = new Router(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption,
-	                    supportWifi, mbps);
-	            break;
-	        case SWITCH:
-	            e = new Switch(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption,
-	                    portCapacityGB);
-	            break;
-	        case SERVER:
-	            e = new Server(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption,
-	                    opSystem, ramCapacity, diskCapacity);
-	            break;
-	        case FIREWALL:
-	            e = new Firewall(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption,
-	                    statefullPacketInspection, blockDoS);
-	            break;
-	    }
+		    // Create the equipment
+		    Equipment e = null;
+		    switch (type) {
+		        case ROUTER:
+		            e = new Router(type, model, (int) packedIp, manufacturer, state, energyConsumption, qtdHourConsumption,
+		                    supportWifi, mbps);
+		            break;
+		        case SWITCH:
+		            e = new Switch(type, model, (int) packedIp, manufacturer, state, energyConsumption, qtdHourConsumption,
+		                    portCapacityGB);
+		            break;
+		        case SERVER:
+		            e = new Server(type, model, (int) packedIp, manufacturer, state, energyConsumption, qtdHourConsumption,
+		                    opSystem, ramCapacity, diskCapacity);
+		            break;
+		        case FIREWALL:
+		            e = new Firewall(type, model, (int) packedIp, manufacturer, state, energyConsumption, qtdHourConsumption,
+		                    statefullPacketInspection, blockDoS);
+		            break;
+		    }
 
-	    // Add in the list
-	    equipments.add(e);
-	    return true;
+		    // Add in the list
+		    return addEquipment(e);
+	    } finally {
+	        registerLatency.recordSince(start);
+	    }
 	}
 	
 
@@ -98,17 +268,16 @@ public class EquipmentService {
 
 	// validate the IP
 	public boolean validarIP(String ip) {
-		String regex = "^((25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}" + "(25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)$";
-		return ip.matches(regex);
+		return IpAddress.isValid(ip);
 	}
 
 	public boolean isDuplicateIp(String ip) {
-		for (Equipment e : equipments) {
-			if (e.getIp().equals(ip)) {
-				return true; // there is IP in list
-			}
-		}
-		return false; // there is no IP in list
+		long packedIp = IpAddress.parse(ip);
+		return packedIp != IpAddress.INVALID && isDuplicateIp((int) packedIp);
+	}
+	
+	public boolean isDuplicateIp(int packedIp) {
+		return ipIndex.containsKey(packedIp);
 	}
 	
 	//valid Energy
@@ -139,418 +308,711 @@ public class EquipmentService {
 	
 	//Search IP
 	public Equipment ipSearch(String ip) {
-		for (Equipment e : equipments) {
-			if (e.getIp().equals(ip)) {
-				return e;
+		long start = System.nanoTime();
+		try {
+			long packedIp = IpAddress.parse(ip);
+			return packedIp == IpAddress.INVALID ? null : ipSearch((int) packedIp);
+		} finally {
+			ipSearchLatency.recordSince(start);
+		}
+	}
+	
+	public Equipment ipSearch(int packedIp) {
+		Integer index = ipIndex.get(packedIp);
+		return index == null ? null : equipments.get(index);
+	}
+	
+// why the operation cannot run on an equipment in this state, or null when it can
+	public static String refusalReason(EquipmentOperation operation, EquipmentState currentState) {
+		return switch (operation) {
+			case TURN_ON -> currentState == EquipmentState.ON ? "The equipment is already ON." : null;
+			case TURN_OFF -> currentState == EquipmentState.OFF ? "The equipment is already OFF." : null;
+			case RESTART -> currentState == EquipmentState.OFF ? "The equipment is OFF. Turn it ON before restarting." : null;
+		};
+	}
+
+	// turn on or turn off or restart the equipment; false when the current state does not allow it
+	// (the caller tells the user, see refusalReason). Waits for the device; a device that does
+	// not confirm throws DeviceCommandException and keeps its state.
+	public boolean executeOperation(EquipmentOperation operation, Equipment equipment) {
+		try {
+			return executeOperationAsync(operation, equipment).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
 			}
+			throw e;
 		}
-		return null;
+	}
+
+	// The command goes to the device driver and the state only changes when the driver
+	// confirms it. Commands for the same device run one after the other, so the state is
+	// checked after the previous command was confirmed. The latency counts from the call to the
+	// confirmation, including the wait behind the previous commands of the device.
+	public CompletableFuture<Boolean> executeOperationAsync(EquipmentOperation operation, Equipment equipment) {
+		long start = System.nanoTime();
+		DeviceController controller = deviceController;
+		CompletableFuture<Boolean> result = controller.sequence(equipment, () -> {
+			if (refusalReason(operation, equipment.getState()) != null) {
+				return CompletableFuture.completedFuture(false);
+			}
+			return controller.send(equipment, operation).thenApply(confirmed -> {
+				switch (operation) {
+					case TURN_ON -> changeState(equipment, EquipmentState.ON);
+					case TURN_OFF -> changeState(equipment, EquipmentState.OFF);
+					case RESTART -> {
+						changeState(equipment, EquipmentState.OFF);
+						changeState(equipment, EquipmentState.ON);
+					}
+				}
+				return true;
+			});
+		});
+		return result.whenComplete((done, failure) -> {
+			operationLatency.recordSince(start);
+			String outcome = failure != null ? "failed" : done ? "done" : "refused";
+			metrics.increment("operation." + operation + "." + outcome);
+		});
+	}
+
+	public DeviceController getDeviceController() {
+		return deviceController;
+	}
+
+	// the local driver (the equipment's own lifecycle methods) is used until this is called
+	public void setDeviceController(DeviceController deviceController) {
+		this.deviceController = deviceController;
 	}
 	
-// turn on or turn off or restart the equipment
-	public void executeOperation(EquipmentOperation operation, Equipment equipment) {
-		 EquipmentState currentState = equipment.getState();
-
-		    switch (operation) {
-
-		        case TURN_ON -> {
-		            if (currentState == EquipmentState.ON) {
-		                System.out.println("The equipment is already ON.");
-		                return;
-		            }
-		            equipment.setState(EquipmentState.ON);
-		            equipment.powerOn();
-		        }
-
-		        case TURN_OFF -> {
-		            if (currentState == EquipmentState.OFF) {
-		                System.out.println("The equipment is already OFF.");
-		                return;
-		            }
-		            equipment.setState(EquipmentState.OFF);
-		            equipment.powerOff();
-		        }
-
-		        case RESTART -> {
-		            if (currentState == EquipmentState.OFF) {
-		                System.out.println("The equipment is OFF. Turn it ON before restarting.");
-		                return;
-		            }
-		            equipment.setState(EquipmentState.OFF);
-			        equipment.powerOff();
-			        equipment.setState(EquipmentState.ON);
-			        equipment.powerOn();
-		        }
-		    }
-  }
 	
+	// an equipment removed from the inventory no longer produces events
+	protected boolean isRegistered(Equipment equipment) {
+		return ipSearch(equipment.getPackedIp()) == equipment;
+	}
+	
+	// sets the state and tells the listeners
+	public void changeState(Equipment equipment, EquipmentState state) {
+		EquipmentState previous = equipment.getState();
+		if (previous == state) {
+			return;
+		}
+		equipment.setState(state);
+		if (isRegistered(equipment)) {
+			fireStateChanged(equipment, previous);
+		}
+	}
+	
+	// changes the energy consumption (W) and tells the listeners
+	public boolean changeEnergyConsumption(Equipment equipment, Double energyConsumption) {
+		if (!isValidEnergy(energyConsumption)) {
+			return false;
+		}
+		Double previous = equipment.getEnergyConsumption();
+		equipment.setEnergyConsumption(energyConsumption);
+		if (isRegistered(equipment)) {
+			fireEnergyChanged(equipment, previous);
+		}
+		return true;
+	}
 	
 	//Report Consumption energy per day
 	public void showEnergyReport(Equipment equipment) {
+		long start = System.nanoTime();
+		RenderBuffer out = RenderBuffer.stdout();
 			
 		double dailyConsumption = (equipment.getEnergyConsumption() * equipment.getQtdHourConsumption()) / 1000;
 
-	    System.out.println("\n================ ENERGY CONSUMPTION REPORT ================\n");
+	    out.newLine().line("================ ENERGY CONSUMPTION REPORT ================").newLine();
 
-	    System.out.println("Equipment Information");
-	    System.out.println("-----------------------------------------------------------");
-	    System.out.println("Type           : " + equipment.getType());
-	    System.out.println("Model          : " + equipment.getModel());
-	    System.out.println("IP             : " + equipment.getIp());
-	    System.out.println("Manufacturer   : " + equipment.getManufacturer());
-	    System.out.println("State          : " + equipment.getState());
+	    out.line("Equipment Information");
+	    out.line("-----------------------------------------------------------");
+	    out.append("Type           : ").append(equipment.getType().name()).newLine();
+	    out.append("Model          : ").append(equipment.getModel()).newLine();
+	    out.append("IP             : ").append(equipment.getIp()).newLine();
+	    out.append("Manufacturer   : ").append(equipment.getManufacturer()).newLine();
+	    out.append("State          : ").append(equipment.getState().name()).newLine();
 
-	    System.out.println("\nEnergy Configuration");
-	    System.out.println("-----------------------------------------------------------");
-	    System.out.println("Power (Watts)  : " + equipment.getEnergyConsumption() + " W");
-	    System.out.println("Usage per Day  : " + equipment.getQtdHourConsumption() + " hours");
+	    out.newLine().line("Energy Configuration");
+	    out.line("-----------------------------------------------------------");
+	    out.append("Power (Watts)  : ").append(String.valueOf(equipment.getEnergyConsumption())).append(" W").newLine();
+	    out.append("Usage per Day  : ").append(String.valueOf(equipment.getQtdHourConsumption())).append(" hours").newLine();
 
-	    System.out.println("\nCalculated Consumption");
-	    System.out.println("-----------------------------------------------------------");
-	    System.out.printf("Daily Consumption : %.2f kWh%n", dailyConsumption);
+	    out.newLine().line("Calculated Consumption");
+	    out.line("-----------------------------------------------------------");
+	    out.append("Daily Consumption : ").fixed(dailyConsumption, 2).append(" kWh").newLine();
+	    long now = System.currentTimeMillis();
+	    out.append("Actual (last 24 h): ").fixed(actualKwh(equipment, now - TimeUnit.DAYS.toMillis(1), now), 2)
+	    		.append(" kWh (time really ON)").newLine();
 
-	    System.out.println("\nSpecific Information");
-	    System.out.println("-----------------------------------------------------------");
+	    out.newLine().line("Specific Information");
+	    out.line("-----------------------------------------------------------");
 
 	    if (equipment instanceof Switch s) {
-	        System.out.println("Port Capacity     : " + s.getPortCapacityGB() + " GB");
+	        out.append("Port Capacity     : ").append(String.valueOf(s.getPortCapacityGB())).append(" GB").newLine();
 	    } else if (equipment instanceof Router r) {
-	        System.out.println("WiFi Supported    : " + r.getSuportWifi());
-	        System.out.println("Speed             : " + r.getMbps() + " Mbps");
+	        out.append("WiFi Supported    : ").append(String.valueOf(r.getSuportWifi())).newLine();
+	        out.append("Speed             : ").append(String.valueOf(r.getMbps())).append(" Mbps").newLine();
 	    } else if (equipment instanceof Server s) {
-	        System.out.println("OS                : " + s.getOpSystem());
-	        System.out.println("RAM               : " + s.getRamCapacity() + " GB");
-	        System.out.println("Disk              : " + s.getDiskCapacity() + " GB");
+	        out.append("OS                : ").append(s.getOpSystem()).newLine();
+	        out.append("RAM               : ").append(s.getRamCapacity()).append(" GB").newLine();
+	        out.append("Disk              : ").append(s.getDiskCapacity()).append(" GB").newLine();
 	    } else if (equipment instanceof Firewall f) {
-	        System.out.println("SPI Enabled       : " + f.isStatefullPacketInspection());
-	        System.out.println("Block DoS         : " + f.isBlockDoS());
+	        out.append("SPI Enabled       : ").append(String.valueOf(f.isStatefullPacketInspection())).newLine();
+	        out.append("Block DoS         : ").append(String.valueOf(f.isBlockDoS())).newLine();
 	    }
 
-	    System.out.println("\n===========================================================\n");
+	    out.newLine().line("===========================================================").newLine();
+	    out.flush();
+	    energyReportLatency.recordSince(start);
 	}
 
 
 
 	//Report state
 	public void showStateReport(Equipment equipment) {
-		    System.out.println();
-		    System.out.println("==============================");
-		    System.out.println(" EQUIPMENT STATE REPORT");
-		    System.out.println("==============================");
-
-		    System.out.println(equipment.toString());
+		    long start = System.nanoTime();
+		    RenderBuffer out = RenderBuffer.stdout();
+		    out.newLine();
+		    out.line("==============================");
+		    out.line(" EQUIPMENT STATE REPORT");
+		    out.line("==============================");
+
+		    out.line(equipment.toString());
 		    
 		    String details = equipment.getDetails();
 		    if (details != null && !details.isBlank()) {
-		        System.out.println(" Details: " + details);
+		        out.append(" Details: ").line(details);
 		    }
 
-		    System.out.println("=======================================================================================");
-		    System.out.println();
+		    out.line("=======================================================================================");
+		    out.newLine();
+		    out.flush();
+		    stateReportLatency.recordSince(start);
 	}
 
 	//Remove the equipment
 	public boolean removeEquipmentByIP(Integer index) {
-		if (index >= 0 && index < equipments.size()) {
-			equipments.remove((int) index);
-			return true;
+		List<Equipment> current = indexedEquipments();
+		if (index >= 0 && index < current.size()) {
+			return removeEquipmentByPackedIp(current.get(index).getPackedIp());
 		}
 		return false;
 	}
 	
+	public boolean removeEquipmentByIP(String ip) {
+		long start = System.nanoTime();
+		try {
+			long packedIp = IpAddress.parse(ip);
+			return packedIp != IpAddress.INVALID && removeEquipmentByPackedIp((int) packedIp);
+		} finally {
+			removeLatency.recordSince(start);
+		}
+	}
+	
+	//the last equipment takes the place of the removed one
+	public boolean removeEquipmentByPackedIp(int packedIp) {
+		Integer index = ipIndex.remove(packedIp);
+		if (index == null) {
+			return false;
+		}
+		Equipment removed = equipments.get(index);
+		Equipment last = equipments.remove(equipments.size() - 1);
+		if (index < equipments.size()) {
+			equipments.set(index, last);
+			ipIndex.put(last.getPackedIp(), index);
+		}
+		fireRemoved(removed);
+		return true;
+	}
+	
 	
   //Report	generate summary
  public void generateSummary(EquipmentService eqService) {
+		long start = System.nanoTime();
+		printSummary(statistics(EquipmentFilter.all()));
+		summaryLatency.recordSince(start);
+	}
+
+	// the same summary, only for the equipments of one subnet
+	public void generateSummary(Subnet subnet) {
+		generateSummary(EquipmentFilter.parse("ip in " + subnet));
+	}
+
+	// the same summary, only for the equipments accepted by the filter
+	public void generateSummary(EquipmentFilter filter) {
+		long start = System.nanoTime();
+		EquipmentStatistics filtered = statistics(filter);
+		long count = filtered.countByType().values().stream().mapToLong(Long::longValue).sum();
+		RenderBuffer.stdout().newLine().append("=== Filter ").append(filter.toString()).append(": ").append(count)
+				.line(" equipments ===");
+		printSummary(filtered);
+		summaryLatency.recordSince(start);
+	}
+
+	// the summary figures of the equipments accepted by the filter (the live ones for all)
+	public EquipmentStatistics statistics(EquipmentFilter filter) {
+		if (filter.isAll()) {
+			return statistics;
+		}
+		EquipmentStatistics filtered = new EquipmentStatistics();
+		try (Stream<Equipment> rows = filter(filter)) {
+			rows.forEach(filtered::onAdded);
+		}
+		return filtered;
+	}
+
+	private void printSummary(EquipmentStatistics summary) {
+		RenderBuffer out = RenderBuffer.stdout();
 		
-		Map<EquipmentType, Long> eqCount = generateEqCount();
+		Map<EquipmentType, Long> eqCount = summary.countByType();
 		
-        System.out.println();
-		System.out.println("=== Number of equipment by type ===");
+		out.newLine();
+		out.line("=== Number of equipment by type ===");
 				
 		for (Map.Entry<EquipmentType, Long> entry : eqCount.entrySet()) {
-		    String typeFormatter =
-		        entry.getKey().name().substring(0, 1).toUpperCase()
-		      + entry.getKey().name().substring(1).toLowerCase();
-
-		    System.out.println(typeFormatter + ": " + entry.getValue());
+		    out.append(capitalized(entry.getKey())).append(": ").append(entry.getValue()).newLine();
 		}
 		
-		Map<EquipmentType, Double> eqAverage = generateAverageConsumption();
+		Map<EquipmentType, Double> eqAverage = summary.averageEnergyByType();
 		
-		System.out.println();
-		System.out.println("=== Average daily energy consumption by type ===");
+		out.newLine();
+		out.line("=== Average energy consumption by type (W) ===");
 		
 		for (Map.Entry<EquipmentType, Double> average : eqAverage.entrySet()) {
-		    String typeFormatter =
-		        average.getKey().name().substring(0, 1).toUpperCase()
-		      + average.getKey().name().substring(1).toLowerCase();
-
-		    System.out.printf("%s: %.2f kWh%n", typeFormatter, average.getValue());
+		    out.append(capitalized(average.getKey())).append(": ").fixed(average.getValue(), 2).append(" W").newLine();
 		 }   
 		
-        Map<EquipmentState, Long> eqState = generateEqState();
+        Map<EquipmentState, Long> eqState = summary.countByState();
 		
-        System.out.println();
-		System.out.println("=== Number of devices per state (OFF/ON) ===");
+		out.newLine();
+		out.line("=== Number of devices per state (OFF/ON) ===");
 		for (Map.Entry<EquipmentState, Long> entry : eqState.entrySet()) {
-			 String typeFormatter = 
-					 entry.getKey().name().substring(0, 1).toUpperCase()
-				      + entry.getKey().name().substring(1).toLowerCase();
-			 System.out.println(typeFormatter + ": " + entry.getValue());
+			 out.append(capitalized(entry.getKey())).append(": ").append(entry.getValue()).newLine();
 		}
-		System.out.println();
-		System.out.println("=== Top 3 equipamentos com maior consumo ===");
+		out.newLine();
+		out.line("=== Top 3 equipamentos com maior consumo (W) ===");
 
-		List<Equipment> top3 = eqService.getTop3Consumo();
+		List<Equipment> top3 = summary.top(3);
 		for (int i = 0; i < top3.size(); i++) {
 		    Equipment eq = top3.get(i);
-		    System.out.printf("%d. %s (%s) - %.2f kWh%n",
-		        i + 1,
-		        eq.getModel(),   
-		        eq.getType(),
-		        eq.getEnergyConsumption()
-		    );
+		    out.append(i + 1).append(". ").append(eq.getModel()).append(" (").append(eq.getType().name())
+		    		.append(") - ").fixed(eq.getEnergyConsumption(), 2).append(" W").newLine();
 		}
+		out.flush();
     }
+
+	// ROUTER -> Router
+	private static String capitalized(Enum<?> value) {
+		String name = value.name();
+		return name.substring(0, 1).toUpperCase() + name.substring(1).toLowerCase();
+	}
 	//create the equipment from file
 	public void createEquipmentFromLine(String[] vetEquipment, Integer line) {
-		Integer qtdHourConsumption, mbps, ramCapacity, diskCapacity;
-		String model, ip, manufacturer, opSystem;
-		Double energyConsumption, portCapacityGB;
+		createEquipmentFromLine(TOKENIZER.get().reset(vetEquipment), line);
+	}
+
+	// the same from the fields of the line in the file bytes
+	public void createEquipmentFromLine(CsvFieldTokenizer fields, int line) {
+		Equipment eq = parseEquipmentLine(fields, line, this::isDuplicateIp, this::rejectLine);
+		if (eq != null) {
+			addEquipment(eq);
+		}
+	}
+
+	// logs a rejected line of the file, counts it by reason and adds it to the import diagnostics
+	void rejectLine(Rejection rejection) {
+		log.saveLog(rejection.message());
+		metrics.increment("load.rejected");
+		metrics.increment("load.rejected." + rejection.reason() + "." + rejection.field());
+		importDiagnostics.record(rejection);
+	}
+
+	// the rejected lines of the last import, by reason
+	public ImportDiagnostics getImportDiagnostics() {
+		return importDiagnostics;
+	}
+
+	// "Line 12 ignored : This 10.0.0.1 already was registered!." -> "This # already was registered";
+	// numbers and IPs become # so that the same reason reads the same in the log viewer
+	static String rejectionReason(String message) {
+		int at = message.indexOf("ignored");
+		String reason = at < 0 ? message : message.substring(at + "ignored".length());
+		return reason.replaceAll("^[\\s:]+|[\\s.!]+$", "").replaceAll("\\d+(\\.\\d+)*", "#");
+	}
+
+	// fields that are already split (the HTTP API, the batch commands)
+	public Equipment parseEquipmentLine(String[] vetEquipment, int line, IntPredicate duplicateIp,
+			Consumer<Rejection> rejectLog) {
+		// fields already split (HTTP, batch) can hold what a line cannot: saved as they are, a ';'
+		// would shift the fields and a line break would start another line of the file
+		for (int i = 0; i < vetEquipment.length; i++) {
+			String field = vetEquipment[i];
+			if (field != null && (field.indexOf(';') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0)) {
+				return reject(rejectLog, line, i < LINE_FIELDS.length ? LINE_FIELDS[i] : "field" + (i + 1),
+						RejectReason.INVALID_CHARACTER, field, " ignored : ';' and line breaks are not allowed in a field.");
+			}
+		}
+		return parseEquipmentLine(TOKENIZER.get().reset(vetEquipment), line, duplicateIp, rejectLog);
+	}
+
+	// validates a line of the file without changing the list; each rejected line goes to
+	// rejectLog with the field and reason. The values are parsed from the field bytes and only
+	// model, manufacturer and OS become Strings. Safe to call from several threads when
+	// duplicateIp is (each thread with its own tokenizer).
+	public Equipment parseEquipmentLine(CsvFieldTokenizer fields, int line, IntPredicate duplicateIp,
+			Consumer<Rejection> rejectLog) {
+		int qtdHourConsumption, mbps, ramCapacity, diskCapacity;
+		String model, manufacturer, opSystem;
+		int ip;
+		double energyConsumption, portCapacityGB;
 		EquipmentType type;
 		EquipmentState state;
-		Boolean supportWifi, statefullPacketInspection, blockDoS;
+		boolean supportWifi, statefullPacketInspection, blockDoS;
 
 		Equipment eq = null;
-		LogService log = new LogService();
 
 		// Validate length of vector
-		if (vetEquipment.length < 7) {
-			log.saveLog("Line " + line + " ignored: missing basic fields (expected at least 7, found "
-					+ vetEquipment.length + ").");
-			return;
+		if (fields.count() < 7) {
+			return reject(rejectLog, line, "fields", RejectReason.MISSING_FIELDS, null,
+					" ignored: missing basic fields (expected at least 7, found " + fields.count() + ").");
 		}
 
 		// validate Type
 
 		try {
-			type = EquipmentType.fromString(vetEquipment[0]);
+			type = fields.parseEnum(0, TYPES);
 		} catch (IllegalArgumentException e) {
-			log.saveLog("Line " + line + " ignored: invalid equipment type.");
-			return;
+			return reject(rejectLog, line, "type", RejectReason.INVALID_TYPE, fields.string(0),
+					" ignored: invalid equipment type.");
 		}
 
 		// validate Model
-		if (isRequiredFieldValid(vetEquipment[1])) {
-			model = vetEquipment[1];
+		if (!fields.isBlank(1)) {
+			model = fields.string(1);
 		} else {
-			log.saveLog("Line " + line + " ignored : invalid Model.");
-			return;
+			return reject(rejectLog, line, "model", RejectReason.BLANK_VALUE, fields.string(1), " ignored : invalid Model.");
 		}
 
-		// validate IP
-		if (validarIP(vetEquipment[2])) {
-			ip = vetEquipment[2];
+		// validate IP (parsed once into its packed form)
+		long packedIp = fields.parseIp(2);
+		if (packedIp != IpAddress.INVALID) {
+			ip = (int) packedIp;
 
-			if (isDuplicateIp(ip)) {
-				log.saveLog("Line " + line + " ignored : This " + ip + " already was registered!.");
-				return;
+			if (duplicateIp.test(ip)) {
+				rejectLog.accept(duplicateIpRejection(line, fields.string(2)));
+				return null;
 			}
 		} else {
-			log.saveLog("Line " + line + " ignored : Invalid IP format.");
-			return;
+			return reject(rejectLog, line, "ip", RejectReason.INVALID_IP, fields.string(2), " ignored : Invalid IP format.");
 		}
 
 		// validate manufacturer
-		if (isRequiredFieldValid(vetEquipment[3])) {
-			manufacturer = vetEquipment[3];
+		if (!fields.isBlank(3)) {
+			manufacturer = fields.string(3);
 		} else {
-			log.saveLog("Line " + line + " ignored : invalid Manufacturer.");
-			return;
+			return reject(rejectLog, line, "manufacturer", RejectReason.BLANK_VALUE, fields.string(3),
+					" ignored : invalid Manufacturer.");
 		}
 
 		// validate State
 		try {
-			state = EquipmentState.fromString(vetEquipment[4]);
+			state = fields.parseEnum(4, STATES);
 		} catch (IllegalArgumentException e) {
-			log.saveLog("Line " + line + " ignored: invalid equipment state.");
-			return;
+			return reject(rejectLog, line, "state", RejectReason.INVALID_STATE, fields.string(4),
+					" ignored: invalid equipment state.");
 		}
 
 		// validate energyConsumption
 		try {
-			double energyValue = Double.parseDouble(vetEquipment[5]);
+			double energyValue = fields.parseDouble(5);
 
-			if (isValidEnergy(energyValue)) {
+			if (energyValue > 0) {
 				energyConsumption = energyValue;
 			} else {
-				log.saveLog("Line " + line + " ignored : invalid energy consumption.");
-				return;
+				return reject(rejectLog, line, "energyConsumption", RejectReason.OUT_OF_RANGE, fields.string(5),
+						" ignored : invalid energy consumption.");
 			}
 		} catch (NumberFormatException e) {
-			log.saveLog("Line " + line + " ignored : invalid energy value.");
-			return;
+			return reject(rejectLog, line, "energyConsumption", RejectReason.NOT_A_NUMBER, fields.string(5),
+					" ignored : invalid energy value.");
 		}
 
 		// validate qtdHourConsumption
 		try {
-			int qtd = Integer.parseInt(vetEquipment[6]);
+			int qtd = fields.parseInt(6);
 			if (isValidConsumptionHours(qtd)) {
 				qtdHourConsumption = qtd;
 			} else {
-				log.saveLog("Line " + line + " ignored : Invalid the number of hours of use.");
-				return;
+				return reject(rejectLog, line, "qtdHourConsumption", RejectReason.OUT_OF_RANGE, fields.string(6),
+						" ignored : Invalid the number of hours of use.");
 			}
 		} catch (NumberFormatException e) {
-			log.saveLog("Line " + line + " ignored : invalid number of hours of use value.");
-			return;
+			return reject(rejectLog, line, "qtdHourConsumption", RejectReason.NOT_A_NUMBER, fields.string(6),
+					" ignored : invalid number of hours of use value.");
 		}
 
 		if (type == EquipmentType.ROUTER) {
-			if (vetEquipment.length < 9) {
-				log.saveLog("Line " + line + " ignored: missing fields for Router.");
-				return;
+			if (fields.count() < 9) {
+				return reject(rejectLog, line, "fields", RejectReason.MISSING_FIELDS, null,
+						" ignored: missing fields for Router.");
 			}
 
 			// === Validate supportWifi ===
-			String answer = vetEquipment[7].trim().toLowerCase();
-			if (!answer.equals("true") && !answer.equals("false")) {
-				log.saveLog("Line " + line + " ignored: Invalid boolean value");
-				return;
+			try {
+				supportWifi = fields.parseBoolean(7);
+			} catch (IllegalArgumentException e) {
+				return reject(rejectLog, line, "supportWifi", RejectReason.INVALID_BOOLEAN, fields.string(7),
+						" ignored: Invalid boolean value");
 			}
-			supportWifi = Boolean.parseBoolean(answer);
 
 			// === Validate Mbps ===
 			try {
-				mbps = Integer.parseInt(vetEquipment[8]);
-				if (!isValidInteger(mbps)) {
-					log.saveLog("Line " + line + " ignored: Mbps velocity must be positive.");
-					return;
+				mbps = fields.parseInt(8);
+				if (mbps <= 0) {
+					return reject(rejectLog, line, "mbps", RejectReason.OUT_OF_RANGE, fields.string(8),
+							" ignored: Mbps velocity must be positive.");
 				}
 			} catch (NumberFormatException e) {
-				log.saveLog("Line " + line + " ignored: invalid Mbps velocity value.");
-				return;
+				return reject(rejectLog, line, "mbps", RejectReason.NOT_A_NUMBER, fields.string(8),
+						" ignored: invalid Mbps velocity value.");
 			}
 
-			// === Create and add Router ===
+			// === Create Router ===
 			eq = new Router(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption, supportWifi,
 					mbps);
-			equipments.add(eq);
 		}
 
 		else if (type == EquipmentType.SWITCH) {
-			if (vetEquipment.length < 8) {
-				log.saveLog("Line " + line + " ignored: missing fields for Switch.");
-				return;
+			if (fields.count() < 8) {
+				return reject(rejectLog, line, "fields", RejectReason.MISSING_FIELDS, null,
+						" ignored: missing fields for Switch.");
 			}
 			// validate portCapacityGB
-			portCapacityGB = Double.parseDouble(vetEquipment[7]);
 			try {
-				if (!isValidDouble(portCapacityGB)) {
-					log.saveLog("Line " + line + " ignored: portCapacityGB must be positive.");
-					return;
+				portCapacityGB = fields.parseDouble(7);
+				if (!(portCapacityGB > 0)) {
+					return reject(rejectLog, line, "portCapacityGB", RejectReason.OUT_OF_RANGE, fields.string(7),
+							" ignored: portCapacityGB must be positive.");
 				}
 			} catch (NumberFormatException e) {
-				log.saveLog("Line " + line + " ignored: portCapacityGB value.");
-				return;
+				return reject(rejectLog, line, "portCapacityGB", RejectReason.NOT_A_NUMBER, fields.string(7),
+						" ignored: invalid portCapacityGB value.");
 			}
 
 			eq = new Switch(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption,
 					portCapacityGB);
-			equipments.add(eq);
 		}
 
 		else if (type == EquipmentType.SERVER) {
 
-			if (vetEquipment.length < 10) {
-				log.saveLog("Line " + line + " ignored: missing fields for Server.");
-				return;
+			if (fields.count() < 10) {
+				return reject(rejectLog, line, "fields", RejectReason.MISSING_FIELDS, null,
+						" ignored: missing fields for Server.");
 			}
 
 			// validate opSystem
-			if (isRequiredFieldValid(vetEquipment[7])) {
-				opSystem = vetEquipment[7];
+			if (!fields.isBlank(7)) {
+				opSystem = fields.string(7);
 			} else {
-				log.saveLog("Line " + line + " ignored : Invalid Operating System.");
-				return;
+				return reject(rejectLog, line, "opSystem", RejectReason.BLANK_VALUE, fields.string(7),
+						" ignored : Invalid Operating System.");
 			}
 
 			// validate ramCapacity
-			ramCapacity = Integer.parseInt(vetEquipment[8]);
 			try {
-				if (!isValidInteger(ramCapacity)) {
-					log.saveLog("Line " + line + " ignored: ramCapacity must be positive.");
-					return;
+				ramCapacity = fields.parseInt(8);
+				if (ramCapacity <= 0) {
+					return reject(rejectLog, line, "ramCapacity", RejectReason.OUT_OF_RANGE, fields.string(8),
+							" ignored: ramCapacity must be positive.");
 				}
 			} catch (NumberFormatException e) {
-				log.saveLog("Line " + line + " ignored: ramCapacity value.");
-				return;
+				return reject(rejectLog, line, "ramCapacity", RejectReason.NOT_A_NUMBER, fields.string(8),
+						" ignored: invalid ramCapacity value.");
 			}
 			// validate diskCapacity
-			diskCapacity = Integer.parseInt(vetEquipment[9]);
 			try {
-				if (!isValidInteger(diskCapacity)) {
-					System.out.println("Line " + line + " ignored: diskCapacity must be positive.");
-					return;
+				diskCapacity = fields.parseInt(9);
+				if (diskCapacity <= 0) {
+					return reject(rejectLog, line, "diskCapacity", RejectReason.OUT_OF_RANGE, fields.string(9),
+							" ignored: diskCapacity must be positive.");
 				}
 			} catch (NumberFormatException e) {
-				log.saveLog("Line " + line + " ignored: diskCapacity value.");
-				return;
+				return reject(rejectLog, line, "diskCapacity", RejectReason.NOT_A_NUMBER, fields.string(9),
+						" ignored: invalid diskCapacity value.");
 			}
 			eq = new Server(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption, opSystem,
 					ramCapacity, diskCapacity);
-			equipments.add(eq);
 		}
 
 		else {
-			if (vetEquipment.length < 8) {
-				log.saveLog("Line " + line + " ignored: missing fields for Firewall.");
-				return;
+			if (fields.count() < 9) {
+				return reject(rejectLog, line, "fields", RejectReason.MISSING_FIELDS, null,
+						" ignored: missing fields for Firewall.");
 			}
 			// validate statefullPacketInspection
-			String answer = vetEquipment[7].trim().toLowerCase();
-			if (!answer.equals("true") && !answer.equals("false")) {
-				log.saveLog("Line " + line + " ignored: Invalid boolean value.");
-				return;
+			try {
+				statefullPacketInspection = fields.parseBoolean(7);
+			} catch (IllegalArgumentException e) {
+				return reject(rejectLog, line, "statefullPacketInspection", RejectReason.INVALID_BOOLEAN,
+						fields.string(7), " ignored: Invalid boolean value.");
 			}
-			statefullPacketInspection = Boolean.parseBoolean(answer);
 
 			// validate blockDoS
-			answer = vetEquipment[8].trim().toLowerCase();
-			if (!answer.equals("true") && !answer.equals("false")) {
-				log.saveLog("Line " + line + " ignored: Invalid boolean value.");
-				return;
+			try {
+				blockDoS = fields.parseBoolean(8);
+			} catch (IllegalArgumentException e) {
+				return reject(rejectLog, line, "blockDoS", RejectReason.INVALID_BOOLEAN, fields.string(8),
+						" ignored: Invalid boolean value.");
 			}
-			blockDoS = Boolean.parseBoolean(answer);
 
 			eq = new Firewall(type, model, ip, manufacturer, state, energyConsumption, qtdHourConsumption,
 					statefullPacketInspection, blockDoS);
-			equipments.add(eq);
 		}
+		return eq;
+	}
+
+	// a line whose IP (as written in the file) is already in the list
+	static Rejection duplicateIpRejection(int line, String ip) {
+		return new Rejection(line, "ip", RejectReason.DUPLICATE_IP, ip,
+				"Line " + line + " ignored : This " + ip + " already was registered!.");
+	}
+
+	// message = the text after "Line N"; always null, so a check can return it
+	private static Equipment reject(Consumer<Rejection> rejectLog, int line, String field, RejectReason reason,
+			String value, String message) {
+		rejectLog.accept(new Rejection(line, field, reason, value, "Line " + line + message));
+		return null;
 	}
  //Filter by equipment type
 	public Map<EquipmentType, Long> generateEqCount() {
-		return equipments.stream().collect(Collectors.groupingBy(Equipment::getType, Collectors.counting()));
+		return statistics.countByType();
 	}
 
 	//calculate average energy consumption by type
 	public Map<EquipmentType, Double> generateAverageConsumption() {
-		return equipments.stream().collect(Collectors.groupingBy(Equipment::getType, // grouping by type
-				Collectors.averagingDouble(Equipment::getEnergyConsumption) // calculate average
-		));
+		return statistics.averageEnergyByType();
 	}
 
 
 	//counting the equipment by state
 	public Map<EquipmentState, Long> generateEqState() {
-		return equipments.stream().collect(Collectors.groupingBy(Equipment::getState, // grouping by state
-				Collectors.counting())); // counting the equipment by state
+		return statistics.countByState();
 	}
 
 	//Top 3 equipment that consume the most energy
 	public List<Equipment> getTop3Consumo() {
-		return equipments.stream().sorted(Comparator.comparingDouble(Equipment::getEnergyConsumption).reversed())
-				.limit(3).collect(Collectors.toList());
+		return statistics.top(3);
+	}
+
+	//kWh really consumed between from and to (ms since the epoch), from the ON/OFF transitions
+	public double actualKwh(Equipment equipment, long from, long to) {
+		return stateHistory.kwh(equipment.getPackedIp(), from, to);
+	}
+
+	//kWh really consumed between from and to (ms since the epoch, to excluded) by type and by site,
+	//a site being the subnet of sitePrefix bits around each device (24 = one rack)
+	public void showActualConsumptionReport(long from, long to, int sitePrefix) {
+		StateTimeSeries.Consumption consumption;
+		try {
+			consumption = stateHistory.consumption(from, to, sitePrefix);
+		} catch (IOException e) {
+			System.out.println("Error reading transitions file: " + e.getMessage());
+			return;
+		}
+		RenderBuffer out = RenderBuffer.stdout();
+
+		out.newLine();
+		out.line("=== Actual energy consumption by type ===");
+		double total = 0;
+		for (Map.Entry<EquipmentType, Double> entry : consumption.byType().entrySet()) {
+			out.append(capitalized(entry.getKey())).append(": ").fixed(entry.getValue(), 2).append(" kWh").newLine();
+			total += entry.getValue();
+		}
+		out.append("Total: ").fixed(total, 2).append(" kWh").newLine();
+
+		out.newLine();
+		out.append("=== Actual energy consumption by site (/").append(sitePrefix).line(") ===");
+		for (Map.Entry<Subnet, Double> entry : consumption.bySite().entrySet()) {
+			out.append(entry.getKey().toString()).append(": ").fixed(entry.getValue(), 2).append(" kWh").newLine();
+		}
+		out.newLine();
+		out.append("Source: ").line(consumption.fromSegment() ? "transitions file" : "memory");
+		out.flush();
+	}
+
+	public StateTimeSeries getStateHistory() {
+		return stateHistory;
+	}
+
+	//every equipment of the subnet (e.g. 10.20.0.0/16), in IP order
+	public List<Equipment> equipmentsInSubnet(Subnet subnet) {
+		return subnetIndex.inSubnet(subnet);
+	}
+
+	public int countInSubnet(Subnet subnet) {
+		return subnetIndex.countInSubnet(subnet);
+	}
+
+	//every equipment from the first to the last IP (both included), in IP order
+	public List<Equipment> equipmentsInRange(String firstIp, String lastIp) {
+		return subnetIndex.inRange(IpAddress.pack(firstIp), IpAddress.pack(lastIp));
+	}
+
+	//the equipment with the closest IP (null when there is none)
+	public Equipment nearestEquipment(String ip) {
+		return subnetIndex.nearest(IpAddress.pack(ip));
+	}
+
+	//every equipment chosen by the selector: the type/state/manufacturer part is an AND of the
+	//bitmap indexes and the subnet part comes from the radix trie, whichever is smaller is walked.
+	//An id may be given to another equipment between the bitmap and the lookup (and a device may
+	//change meanwhile), so every row is checked against the whole selector
+	public List<Equipment> select(EquipmentSelector selector) {
+		CompressedBitmap ids = bitmapIndex.select(selector.getType(), selector.getState(), selector.getManufacturer());
+		Subnet subnet = selector.getSubnet();
+		List<Equipment> candidates = subnet != null && countInSubnet(subnet) < ids.cardinality()
+				? equipmentsInSubnet(subnet) : bitmapIndex.equipments(ids);
+		List<Equipment> result = new ArrayList<>(candidates.size());
+		for (Equipment e : candidates) {
+			if (selector.test(e)) {
+				result.add(e);
+			}
+		}
+		return result;
+	}
+
+	//every equipment accepted by the filter, read through the best index (see QueryPlanner)
+	public Stream<Equipment> filter(EquipmentFilter filter) {
+		return new QueryPlanner(this).plan(filter).rows();
+	}
+
+	public Stream<Equipment> filter(String expression) {
+		return filter(EquipmentFilter.parse(expression));
+	}
+
+	//how the filter would be read, without reading it
+	public String explain(EquipmentFilter filter) {
+		return new QueryPlanner(this).plan(filter).toString();
+	}
+
+	//how many equipments have the type, state and manufacturer (null = any), from bitmap cardinalities
+	public int count(EquipmentType type, EquipmentState state, String manufacturer) {
+		return bitmapIndex.count(type, state, manufacturer == null || manufacturer.isBlank() ? null : manufacturer);
+	}
+
+	// null when the subclass keeps no object indexes (see the constructor)
+	public EquipmentBitmapIndex getBitmapIndex() {
+		return objectIndexes ? bitmapIndex : null;
+	}
+
+	//Top k equipment by any metric (see EquipmentMetric), only the ones accepted by the filter (null = all)
+	public List<Equipment> topK(int k, ToDoubleFunction<Equipment> metric, Predicate<Equipment> filter) {
+		long start = System.nanoTime();
+		try {
+			return TopK.select(indexedEquipments(), k, metric, filter);
+		} finally {
+			topKLatency.recordSince(start);
+		}
 	}
 
 }
@@ -0,0 +1,309 @@
+package service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.EquipmentType;
+import model.Firewall;
+import model.Router;
+import model.Server;
+import model.Switch;
+
+// Binary snapshot of the inventory.
+//
+// Layout (big endian):
+//   header : int magic, int version, int equipment count, int string count
+//   strings: int byte length + UTF-8 bytes, for every model, manufacturer and OS
+//   records: RECORD_SIZE bytes per equipment
+//     byte type, byte state, byte flags, byte unused, int ip, double energy, int hours,
+//     int model, int manufacturer (string indexes), then 12 bytes that depend on the type:
+//     ROUTER int mbps | SWITCH double port capacity | SERVER int OS, int RAM, int disk | FIREWALL unused
+public class EquipmentSnapshotCodec {
+
+	public static final int MAGIC = 0x45515353; // "EQSS"
+	public static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 16;
+	static final int RECORD_SIZE = 40;
+
+	private static final int FLAG_WIFI = 1;
+	private static final int FLAG_SPI = 2;
+	private static final int FLAG_BLOCK_DOS = 4;
+
+	private static final int BUFFER_SIZE = 256 * 1024;
+
+	private static final EquipmentType[] TYPES = EquipmentType.values();
+	private static final EquipmentState[] STATES = EquipmentState.values();
+
+	public void write(Path path, Collection<Equipment> equipments) throws IOException {
+
+		// string table: each distinct text is stored once
+		Map<String, Integer> stringIndex = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		for (Equipment e : equipments) {
+			indexOf(e.getModel(), stringIndex, strings);
+			indexOf(e.getManufacturer(), stringIndex, strings);
+			if (e instanceof Server s) {
+				indexOf(s.getOpSystem(), stringIndex, strings);
+			}
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			out.putInt(MAGIC).putInt(VERSION).putInt(equipments.size()).putInt(strings.size());
+
+			for (String text : strings) {
+				byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+				ensureRemaining(channel, out, 4 + bytes.length);
+				out.putInt(bytes.length);
+				if (bytes.length > out.remaining()) {
+					drain(channel, out);
+					channel.write(ByteBuffer.wrap(bytes));
+				} else {
+					out.put(bytes);
+				}
+			}
+
+			for (Equipment e : equipments) {
+				ensureRemaining(channel, out, RECORD_SIZE);
+				writeRecord(out, e, stringIndex);
+			}
+
+			drain(channel, out);
+			channel.force(true);
+		}
+	}
+
+	private void writeRecord(ByteBuffer out, Equipment e, Map<String, Integer> stringIndex) {
+		int flags = 0;
+		int start = out.position();
+
+		out.put((byte) e.getType().ordinal());
+		out.put((byte) e.getState().ordinal());
+		int flagsPosition = out.position();
+		out.put((byte) 0);
+		out.put((byte) 0);
+		out.putInt(e.getPackedIp());
+		out.putDouble(e.getEnergyConsumption());
+		out.putInt(e.getQtdHourConsumption());
+		out.putInt(stringIndex.get(e.getModel()));
+		out.putInt(stringIndex.get(e.getManufacturer()));
+
+		if (e instanceof Router r) {
+			if (Boolean.TRUE.equals(r.getSuportWifi())) {
+				flags |= FLAG_WIFI;
+			}
+			out.putInt(r.getMbps());
+		} else if (e instanceof Switch s) {
+			out.putDouble(s.getPortCapacityGB());
+		} else if (e instanceof Server s) {
+			out.putInt(stringIndex.get(s.getOpSystem()));
+			out.putInt(s.getRamCapacity());
+			out.putInt(s.getDiskCapacity());
+		} else if (e instanceof Firewall f) {
+			if (f.isStatefullPacketInspection()) {
+				flags |= FLAG_SPI;
+			}
+			if (f.isBlockDoS()) {
+				flags |= FLAG_BLOCK_DOS;
+			}
+		}
+
+		out.put(flagsPosition, (byte) flags);
+		while (out.position() < start + RECORD_SIZE) {
+			out.put((byte) 0);
+		}
+	}
+
+	// reads the whole snapshot into one heap buffer; accept decides which equipments are kept. Not
+	// mapped: on Windows a mapped file stays locked until the buffer is collected, and the next
+	// snapshot has to replace it
+	public int read(Path path, Predicate<Equipment> accept) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large: " + size + " bytes");
+			}
+			if (size < HEADER_SIZE) {
+				throw new IOException("Snapshot truncated");
+			}
+
+			ByteBuffer in = ByteBuffer.allocate((int) size);
+			while (in.hasRemaining()) {
+				if (channel.read(in) < 0) {
+					throw new EOFException("Snapshot truncated");
+				}
+			}
+			in.flip();
+			if (in.getInt() != MAGIC) {
+				throw new IOException("Not an equipment snapshot");
+			}
+			int version = in.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported snapshot version " + version);
+			}
+			int count = in.getInt();
+			int stringCount = in.getInt();
+
+			String[] strings = new String[stringCount];
+			byte[] bytes = new byte[256];
+			for (int i = 0; i < stringCount; i++) {
+				int length = in.getInt();
+				if (length > bytes.length) {
+					bytes = new byte[length];
+				}
+				in.get(bytes, 0, length);
+				strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+			}
+
+			if (in.remaining() != (long) count * RECORD_SIZE) {
+				throw new IOException("Snapshot corrupted: expected " + count + " records");
+			}
+
+			int loaded = 0;
+			for (int i = 0; i < count; i++) {
+				if (accept.test(readRecord(in, strings))) {
+					loaded++;
+				}
+			}
+			return loaded;
+		}
+	}
+
+	private Equipment readRecord(ByteBuffer in, String[] strings) {
+		int start = in.position();
+
+		EquipmentType type = TYPES[in.get()];
+		EquipmentState state = STATES[in.get()];
+		int flags = in.get();
+		in.get();
+		int ip = in.getInt();
+		double energy = in.getDouble();
+		int hours = in.getInt();
+		String model = strings[in.getInt()];
+		String manufacturer = strings[in.getInt()];
+
+		Equipment e = switch (type) {
+			case ROUTER -> new Router(type, model, ip, manufacturer, state, energy, hours,
+					(flags & FLAG_WIFI) != 0, in.getInt());
+			case SWITCH -> new Switch(type, model, ip, manufacturer, state, energy, hours, in.getDouble());
+			case SERVER -> new Server(type, model, ip, manufacturer, state, energy, hours,
+					strings[in.getInt()], in.getInt(), in.getInt());
+			case FIREWALL -> new Firewall(type, model, ip, manufacturer, state, energy, hours,
+					(flags & FLAG_SPI) != 0, (flags & FLAG_BLOCK_DOS) != 0);
+		};
+
+		in.position(start + RECORD_SIZE);
+		return e;
+	}
+
+	// Self-contained form of one equipment, with the strings inline (int length + UTF-8),
+	// used by the journal where there is no string table
+	static byte[] encodeEquipment(Equipment e) {
+		byte[] model = e.getModel().getBytes(StandardCharsets.UTF_8);
+		byte[] manufacturer = e.getManufacturer().getBytes(StandardCharsets.UTF_8);
+		byte[] os = e instanceof Server s ? s.getOpSystem().getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+		ByteBuffer out = ByteBuffer.allocate(RECORD_SIZE + 12 + model.length + manufacturer.length + os.length);
+		int flags = 0;
+		out.put((byte) e.getType().ordinal());
+		out.put((byte) e.getState().ordinal());
+		out.put((byte) 0);
+		out.put((byte) 0);
+		out.putInt(e.getPackedIp());
+		out.putDouble(e.getEnergyConsumption());
+		out.putInt(e.getQtdHourConsumption());
+		out.putInt(model.length).put(model);
+		out.putInt(manufacturer.length).put(manufacturer);
+
+		if (e instanceof Router r) {
+			if (Boolean.TRUE.equals(r.getSuportWifi())) {
+				flags |= FLAG_WIFI;
+			}
+			out.putInt(r.getMbps());
+		} else if (e instanceof Switch s) {
+			out.putDouble(s.getPortCapacityGB());
+		} else if (e instanceof Server s) {
+			out.putInt(os.length).put(os);
+			out.putInt(s.getRamCapacity());
+			out.putInt(s.getDiskCapacity());
+		} else if (e instanceof Firewall f) {
+			if (f.isStatefullPacketInspection()) {
+				flags |= FLAG_SPI;
+			}
+			if (f.isBlockDoS()) {
+				flags |= FLAG_BLOCK_DOS;
+			}
+		}
+		out.put(2, (byte) flags);
+
+		byte[] bytes = new byte[out.position()];
+		out.flip();
+		out.get(bytes);
+		return bytes;
+	}
+
+	static Equipment decodeEquipment(ByteBuffer in) {
+		EquipmentType type = TYPES[in.get()];
+		EquipmentState state = STATES[in.get()];
+		int flags = in.get();
+		in.get();
+		int ip = in.getInt();
+		double energy = in.getDouble();
+		int hours = in.getInt();
+		String model = readString(in);
+		String manufacturer = readString(in);
+
+		return switch (type) {
+			case ROUTER -> new Router(type, model, ip, manufacturer, state, energy, hours,
+					(flags & FLAG_WIFI) != 0, in.getInt());
+			case SWITCH -> new Switch(type, model, ip, manufacturer, state, energy, hours, in.getDouble());
+			case SERVER -> new Server(type, model, ip, manufacturer, state, energy, hours,
+					readString(in), in.getInt(), in.getInt());
+			case FIREWALL -> new Firewall(type, model, ip, manufacturer, state, energy, hours,
+					(flags & FLAG_SPI) != 0, (flags & FLAG_BLOCK_DOS) != 0);
+		};
+	}
+
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void indexOf(String text, Map<String, Integer> stringIndex, List<String> strings) {
+		if (stringIndex.putIfAbsent(text, strings.size()) == null) {
+			strings.add(text);
+		}
+	}
+
+	private static void ensureRemaining(FileChannel channel, ByteBuffer out, int bytes) throws IOException {
+		if (out.remaining() < bytes) {
+			drain(channel, out);
+		}
+	}
+
+	private static void drain(FileChannel channel, ByteBuffer out) throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+}
@@ -0,0 +1,164 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.EquipmentType;
+import model.IpAddress;
+
+// Aggregates of the inventory kept up to date by the service events, so the summary
+// reports never scan the list. Updates may come from several threads and reads take no lock;
+// a read running together with updates sees each counter either before or after them.
+public class EquipmentStatistics implements EquipmentListener {
+
+	private static final EquipmentType[] TYPES = EquipmentType.values();
+	private static final EquipmentState[] STATES = EquipmentState.values();
+
+	private final LongAdder[] countByType = newCounters(TYPES.length);
+	private final DoubleAdder[] energyByType = new DoubleAdder[TYPES.length];
+	private final LongAdder[] countByState = newCounters(STATES.length);
+
+	// every equipment ordered by energy consumption (highest first), ties by IP
+	private final ConcurrentSkipListSet<Ranked> ranking = new ConcurrentSkipListSet<>();
+
+	public EquipmentStatistics() {
+		for (int i = 0; i < energyByType.length; i++) {
+			energyByType[i] = new DoubleAdder();
+		}
+	}
+
+	// fixed figures computed elsewhere (see ColumnarEquipmentService); the ranking holds only the
+	// equipments given as top, highest first
+	public static EquipmentStatistics of(long[] countByType, double[] energyByType, long[] countByState,
+			List<Equipment> top) {
+		EquipmentStatistics statistics = new EquipmentStatistics();
+		for (int i = 0; i < TYPES.length; i++) {
+			statistics.countByType[i].add(countByType[i]);
+			statistics.energyByType[i].add(energyByType[i]);
+		}
+		for (int i = 0; i < STATES.length; i++) {
+			statistics.countByState[i].add(countByState[i]);
+		}
+		for (Equipment e : top) {
+			statistics.ranking.add(new Ranked(energyOf(e.getEnergyConsumption()), e.getPackedIp(), e));
+		}
+		return statistics;
+	}
+
+	private record Ranked(double energy, int ip, Equipment equipment) implements Comparable<Ranked> {
+		@Override
+		public int compareTo(Ranked other) {
+			int byEnergy = Double.compare(other.energy, energy);
+			return byEnergy != 0 ? byEnergy : IpAddress.compare(ip, other.ip);
+		}
+	}
+
+	@Override
+	public void onAdded(Equipment e) {
+		int type = e.getType().ordinal();
+		countByType[type].increment();
+		energyByType[type].add(energyOf(e.getEnergyConsumption()));
+		countByState[e.getState().ordinal()].increment();
+		ranking.add(new Ranked(energyOf(e.getEnergyConsumption()), e.getPackedIp(), e));
+	}
+
+	@Override
+	public void onRemoved(Equipment e) {
+		int type = e.getType().ordinal();
+		countByType[type].decrement();
+		energyByType[type].add(-energyOf(e.getEnergyConsumption()));
+		countByState[e.getState().ordinal()].decrement();
+		ranking.remove(new Ranked(energyOf(e.getEnergyConsumption()), e.getPackedIp(), null));
+	}
+
+	@Override
+	public void onStateChanged(Equipment e, EquipmentState previous) {
+		countByState[previous.ordinal()].decrement();
+		countByState[e.getState().ordinal()].increment();
+	}
+
+	@Override
+	public void onEnergyChanged(Equipment e, Double previous) {
+		double current = energyOf(e.getEnergyConsumption());
+		energyByType[e.getType().ordinal()].add(current - energyOf(previous));
+		ranking.remove(new Ranked(energyOf(previous), e.getPackedIp(), null));
+		ranking.add(new Ranked(current, e.getPackedIp(), e));
+	}
+
+	@Override
+	public void onCleared() {
+		for (int i = 0; i < TYPES.length; i++) {
+			countByType[i].reset();
+			energyByType[i].reset();
+		}
+		for (LongAdder counter : countByState) {
+			counter.reset();
+		}
+		ranking.clear();
+	}
+
+	// only the types that have equipments, like a grouping of the list
+	public Map<EquipmentType, Long> countByType() {
+		Map<EquipmentType, Long> result = new EnumMap<>(EquipmentType.class);
+		for (EquipmentType type : TYPES) {
+			long count = countByType[type.ordinal()].sum();
+			if (count > 0) {
+				result.put(type, count);
+			}
+		}
+		return result;
+	}
+
+	public Map<EquipmentType, Double> averageEnergyByType() {
+		Map<EquipmentType, Double> result = new EnumMap<>(EquipmentType.class);
+		for (EquipmentType type : TYPES) {
+			long count = countByType[type.ordinal()].sum();
+			if (count > 0) {
+				result.put(type, energyByType[type.ordinal()].sum() / count);
+			}
+		}
+		return result;
+	}
+
+	public Map<EquipmentState, Long> countByState() {
+		Map<EquipmentState, Long> result = new EnumMap<>(EquipmentState.class);
+		for (EquipmentState state : STATES) {
+			long count = countByState[state.ordinal()].sum();
+			if (count > 0) {
+				result.put(state, count);
+			}
+		}
+		return result;
+	}
+
+	// the n equipments with the highest energy consumption
+	public List<Equipment> top(int n) {
+		List<Equipment> result = new ArrayList<>(n);
+		Iterator<Ranked> it = ranking.iterator();
+		while (result.size() < n && it.hasNext()) {
+			result.add(it.next().equipment());
+		}
+		return result;
+	}
+
+	private static LongAdder[] newCounters(int length) {
+		LongAdder[] counters = new LongAdder[length];
+		for (int i = 0; i < length; i++) {
+			counters[i] = new LongAdder();
+		}
+		return counters;
+	}
+
+	private static double energyOf(Double energy) {
+		return energy == null ? 0 : energy;
+	}
+
+}
@@ -0,0 +1,277 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.IpAddress;
+import model.Subnet;
+
+// Binary radix trie (path compressed) over the packed IPv4 addresses, kept in sync as a listener.
+//
+// Every inner node is a CIDR block with two children, the leaves are the equipments, and each node
+// knows how many equipments are below it. A subnet query walks down at most 32 levels and then
+// collects the subtree, so its cost follows the size of the answer, not of the inventory; counting
+// a subnet costs only the walk. Results come in ascending IP order.
+//
+// The nodes never change: a change copies the path from the root to the leaf (at most 32 nodes)
+// and swaps the root with a compare-and-set. A query reads the root once and walks a consistent
+// version without a lock, and changes never wait for each other or for the queries.
+public class IpRadixTrie implements EquipmentListener {
+
+	private static final class Node {
+		final int key; // network address of the block (the IP for a leaf)
+		final int bits; // prefix length of the block, 32 for a leaf
+		final Node zero;
+		final Node one;
+		final Equipment value; // leaves only
+		final int size;
+
+		// a leaf
+		Node(int ip, Equipment value) {
+			this.key = ip;
+			this.bits = 32;
+			this.zero = null;
+			this.one = null;
+			this.value = value;
+			this.size = 1;
+		}
+
+		// a block and its two children
+		Node(int key, int bits, Node zero, Node one) {
+			this.key = key;
+			this.bits = bits;
+			this.zero = zero;
+			this.one = one;
+			this.value = null;
+			this.size = zero.size + one.size;
+		}
+
+		boolean isLeaf() {
+			return bits == 32;
+		}
+
+		int last() {
+			return key | ~Subnet.mask(bits);
+		}
+	}
+
+	private final AtomicReference<Node> root = new AtomicReference<>();
+
+	@Override
+	public void onAdded(Equipment e) {
+		Node current;
+		do {
+			current = root.get();
+		} while (!root.compareAndSet(current, insert(current, e.getPackedIp(), e)));
+	}
+
+	@Override
+	public void onRemoved(Equipment e) {
+		Node current;
+		Node updated;
+		do {
+			current = root.get();
+			updated = remove(current, e.getPackedIp(), e);
+		} while (updated != current && !root.compareAndSet(current, updated));
+	}
+
+	@Override
+	public void onCleared() {
+		root.set(null);
+	}
+
+	@Override
+	public void onStateChanged(Equipment e, EquipmentState previous) {
+		// the key does not change
+	}
+
+	public int size() {
+		Node n = root.get();
+		return n == null ? 0 : n.size;
+	}
+
+	public Equipment get(int packedIp) {
+		Node n = root.get();
+		while (n != null && !n.isLeaf()) {
+			if (!covers(n, packedIp)) {
+				return null;
+			}
+			n = bit(packedIp, n.bits) == 0 ? n.zero : n.one;
+		}
+		return n != null && n.key == packedIp ? n.value : null;
+	}
+
+	// every equipment of the block, in IP order
+	public List<Equipment> inSubnet(Subnet subnet) {
+		Node n = blockRoot(root.get(), subnet);
+		List<Equipment> result = new ArrayList<>(n == null ? 0 : n.size);
+		collect(n, result);
+		return result;
+	}
+
+	public int countInSubnet(Subnet subnet) {
+		Node n = blockRoot(root.get(), subnet);
+		return n == null ? 0 : n.size;
+	}
+
+	// every equipment from first to last (both included, unsigned order)
+	public List<Equipment> inRange(int first, int last) {
+		List<Equipment> result = new ArrayList<>();
+		if (IpAddress.compare(first, last) <= 0) {
+			collectRange(root.get(), first, last, result);
+		}
+		return result;
+	}
+
+	// the registered equipment with the closest address; the lower one on a tie, null when empty
+	public Equipment nearest(int packedIp) {
+		Node version = root.get();
+		Node below = floor(version, packedIp);
+		Node above = ceiling(version, packedIp);
+		if (below == null) {
+			return above == null ? null : above.value;
+		}
+		if (above == null) {
+			return below.value;
+		}
+		long distanceBelow = Integer.toUnsignedLong(packedIp) - Integer.toUnsignedLong(below.key);
+		long distanceAbove = Integer.toUnsignedLong(above.key) - Integer.toUnsignedLong(packedIp);
+		return distanceBelow <= distanceAbove ? below.value : above.value;
+	}
+
+	// the smallest node holding every address of the subnet, or null when none is registered
+	private static Node blockRoot(Node n, Subnet subnet) {
+		int prefix = subnet.getPrefixLength();
+		int network = subnet.getNetwork();
+		while (n != null) {
+			if (n.bits >= prefix) {
+				return (n.key & Subnet.mask(prefix)) == network ? n : null;
+			}
+			if (!covers(n, network)) {
+				return null;
+			}
+			n = bit(network, n.bits) == 0 ? n.zero : n.one;
+		}
+		return null;
+	}
+
+	// the new version of n with ip; n itself is not changed
+	private static Node insert(Node n, int ip, Equipment e) {
+		if (n == null) {
+			return new Node(ip, e);
+		}
+		int common = Math.min(Integer.numberOfLeadingZeros(n.key ^ ip), n.bits);
+		if (common < n.bits) {
+			// ip leaves the block of n: a new block holds both
+			Node leaf = new Node(ip, e);
+			return bit(ip, common) == 0 ? new Node(ip & Subnet.mask(common), common, leaf, n)
+					: new Node(ip & Subnet.mask(common), common, n, leaf);
+		}
+		if (n.isLeaf()) {
+			return new Node(ip, e);
+		}
+		return bit(ip, n.bits) == 0 ? new Node(n.key, n.bits, insert(n.zero, ip, e), n.one)
+				: new Node(n.key, n.bits, n.zero, insert(n.one, ip, e));
+	}
+
+	// the new version of n without the leaf of ip when it still holds e (n itself when there is
+	// nothing to remove); a block left with one child is replaced by it
+	private static Node remove(Node n, int ip, Equipment e) {
+		if (n == null || !covers(n, ip)) {
+			return n;
+		}
+		if (n.isLeaf()) {
+			return n.value == e ? null : n;
+		}
+		Node zero = n.zero;
+		Node one = n.one;
+		if (bit(ip, n.bits) == 0) {
+			zero = remove(zero, ip, e);
+		} else {
+			one = remove(one, ip, e);
+		}
+		if (zero == n.zero && one == n.one) {
+			return n;
+		}
+		if (zero == null) {
+			return one;
+		}
+		if (one == null) {
+			return zero;
+		}
+		return new Node(n.key, n.bits, zero, one);
+	}
+
+	private static void collect(Node n, List<Equipment> result) {
+		if (n == null) {
+			return;
+		}
+		if (n.isLeaf()) {
+			result.add(n.value);
+			return;
+		}
+		collect(n.zero, result);
+		collect(n.one, result);
+	}
+
+	private static void collectRange(Node n, int first, int last, List<Equipment> result) {
+		if (n == null || IpAddress.compare(n.last(), first) < 0 || IpAddress.compare(n.key, last) > 0) {
+			return;
+		}
+		if (IpAddress.compare(n.key, first) >= 0 && IpAddress.compare(n.last(), last) <= 0) {
+			collect(n, result);
+			return;
+		}
+		collectRange(n.zero, first, last, result);
+		collectRange(n.one, first, last, result);
+	}
+
+	// highest leaf <= ip
+	private static Node floor(Node n, int ip) {
+		if (n == null || IpAddress.compare(n.key, ip) > 0) {
+			return null;
+		}
+		if (n.isLeaf()) {
+			return n;
+		}
+		if (IpAddress.compare(n.last(), ip) <= 0) {
+			while (!n.isLeaf()) {
+				n = n.one;
+			}
+			return n;
+		}
+		Node found = floor(n.one, ip);
+		return found != null ? found : floor(n.zero, ip);
+	}
+
+	// lowest leaf >= ip
+	private static Node ceiling(Node n, int ip) {
+		if (n == null || IpAddress.compare(n.last(), ip) < 0) {
+			return null;
+		}
+		if (n.isLeaf()) {
+			return n;
+		}
+		if (IpAddress.compare(n.key, ip) >= 0) {
+			while (!n.isLeaf()) {
+				n = n.zero;
+			}
+			return n;
+		}
+		Node found = ceiling(n.zero, ip);
+		return found != null ? found : ceiling(n.one, ip);
+	}
+
+	private static boolean covers(Node n, int ip) {
+		return (ip & Subnet.mask(n.bits)) == n.key;
+	}
+
+	// bit i of the address, 0 = most significant
+	private static int bit(int ip, int i) {
+		return (ip >>> (31 - i)) & 1;
+	}
+
+}
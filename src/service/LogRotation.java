@@ -0,0 +1,153 @@
+package service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// When the log file is moved aside and how many old files are kept.
+//
+// The file is rotated when it reaches maxFileSize bytes or when the day changes. The old file
+// becomes <name>.<yyyy-MM-dd>.<n><ext> next to it (log_equipments.2025-11-12.1.txt), dated by
+// the day of its entries, and only the newest maxArchives of those are kept.
+public class LogRotation {
+
+	public static final long DEFAULT_MAX_FILE_SIZE = 10L * 1024 * 1024;
+	public static final int DEFAULT_MAX_ARCHIVES = 10;
+
+	private final Path file;
+	private final long maxFileSize;
+	private final int maxArchives;
+	private final String baseName;
+	private final String extension;
+	private final Pattern archiveName;
+
+	public LogRotation(Path file) {
+		this(file, DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_ARCHIVES);
+	}
+
+	// maxFileSize 0 = no size limit; maxArchives 0 = rotated files are deleted
+	public LogRotation(Path file, long maxFileSize, int maxArchives) {
+		if (maxFileSize < 0) {
+			throw new IllegalArgumentException("Maximum log size cannot be negative");
+		}
+		if (maxArchives < 0) {
+			throw new IllegalArgumentException("Number of old logs kept cannot be negative");
+		}
+		this.file = file;
+		this.maxFileSize = maxFileSize;
+		this.maxArchives = maxArchives;
+
+		String name = file.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		this.baseName = dot > 0 ? name.substring(0, dot) : name;
+		this.extension = dot > 0 ? name.substring(dot) : "";
+		this.archiveName = Pattern
+				.compile(Pattern.quote(baseName) + "\\.(\\d{4}-\\d{2}-\\d{2})\\.(\\d+)" + Pattern.quote(extension));
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	public long getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	public int getMaxArchives() {
+		return maxArchives;
+	}
+
+	// size = bytes in the file, fileDate = day of its entries (null when it is empty)
+	public boolean isDue(long size, LocalDate fileDate, LocalDate today) {
+		if (size == 0) {
+			return false;
+		}
+		return (maxFileSize > 0 && size >= maxFileSize) || (fileDate != null && !fileDate.equals(today));
+	}
+
+	// the day of the entries of the current file, from its last change (null when there is none)
+	public LocalDate fileDate() throws IOException {
+		if (!Files.exists(file) || Files.size(file) == 0) {
+			return null;
+		}
+		Instant modified = Files.getLastModifiedTime(file).toInstant();
+		return LocalDate.ofInstant(modified, ZoneId.systemDefault());
+	}
+
+	// rotates the closed file when it is due
+	public void rotateIfDue(LocalDate today) throws IOException {
+		if (Files.exists(file) && isDue(Files.size(file), fileDate(), today)) {
+			rotate(fileDate());
+		}
+	}
+
+	// moves the file aside as the next archive of the day and drops the oldest archives
+	public void rotate(LocalDate fileDate) throws IOException {
+		if (!Files.exists(file)) {
+			return;
+		}
+		if (maxArchives == 0) {
+			Files.delete(file);
+			return;
+		}
+		int next = 1;
+		for (Path archive : archives()) {
+			Matcher m = archiveName.matcher(archive.getFileName().toString());
+			if (m.matches() && m.group(1).equals(fileDate.toString())) {
+				next = Math.max(next, Integer.parseInt(m.group(2)) + 1);
+			}
+		}
+		Path target = file.resolveSibling(baseName + "." + fileDate + "." + next + extension);
+		Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+
+		List<Path> archives = archives();
+		for (int i = 0; i < archives.size() - maxArchives; i++) {
+			Files.deleteIfExists(archives.get(i));
+		}
+	}
+
+	// the rotated files, oldest first
+	public List<Path> archives() throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		List<Path> archives = new ArrayList<>();
+		if (dir == null || !Files.isDirectory(dir)) {
+			return archives;
+		}
+		try (Stream<Path> files = Files.list(dir)) {
+			files.filter(p -> archiveName.matcher(p.getFileName().toString()).matches()).forEach(archives::add);
+		}
+		archives.sort(Comparator.comparing((Path p) -> archiveGroup(p, 1))
+				.thenComparingInt(p -> Integer.parseInt(archiveGroup(p, 2))));
+		return archives;
+	}
+
+	// the current file, then the archives from the newest: the order the viewer reads them
+	public List<Path> newestFirst() throws IOException {
+		List<Path> files = new ArrayList<>();
+		if (Files.exists(file)) {
+			files.add(file);
+		}
+		List<Path> archives = archives();
+		for (int i = archives.size() - 1; i >= 0; i--) {
+			files.add(archives.get(i));
+		}
+		return files;
+	}
+
+	private String archiveGroup(Path archive, int group) {
+		Matcher m = archiveName.matcher(archive.getFileName().toString());
+		m.matches();
+		return m.group(group);
+	}
+
+}
@@ -8,40 +8,344 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class LogService {
+public class LogService implements AutoCloseable {
 
-	private static final String LOG_FILE_PATH = "C:\\temp\\out\\log_equipments.txt";
+	public static final String LOG_FILE_PATH = "C:\\temp\\out\\log_equipments.txt";
+
+	// Defining the formatter (12/11/2025 14:35:20)
+	static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+	public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+	private static final int QUEUE_CAPACITY = 8192;
+	private static final int WRITER_BUFFER_SIZE = 64 * 1024;
+	private static final int LINE_SEPARATOR_LENGTH = System.lineSeparator().length();
+
+	private final String logFile;
+	private final LogRotation rotation;
+	private boolean rotationFailing; // guarded by rotation
+	private LocalDate pendingRotation; // synchronous mode: day of the file that could not be rotated, guarded by rotation
+
+	// asynchronous mode only: lines waiting for the writer thread
+	private final BlockingQueue<String> queue;
+	private final long flushIntervalMillis;
+	private Thread writer;
+	// closed only changes holding enqueueLock and a line is only queued holding it while closed is
+	// false, so once the queue is drained after closing no line is left in it
+	private final ReentrantLock enqueueLock = new ReentrantLock();
+	private volatile boolean closed;
+
+	private long enqueued; // guarded by this
+	private long flushed; // guarded by this
+
+	// synchronous mode: every call opens, writes and closes the file
+	public LogService() {
+		this(Paths.get(LOG_FILE_PATH));
+	}
+
+	public LogService(Path logFile) {
+		this(new LogRotation(logFile));
+	}
+
+	public LogService(LogRotation rotation) {
+		this.logFile = rotation.getFile().toString();
+		this.rotation = rotation;
+		this.queue = null;
+		this.flushIntervalMillis = 0;
+	}
+
+	// asynchronous mode: one writer thread keeps the file open and flushes in groups
+	public LogService(long flushIntervalMillis) {
+		this(Paths.get(LOG_FILE_PATH), flushIntervalMillis);
+	}
+
+	public LogService(Path logFile, long flushIntervalMillis) {
+		this(new LogRotation(logFile), flushIntervalMillis);
+	}
+
+	public LogService(LogRotation rotation, long flushIntervalMillis) {
+		this.logFile = rotation.getFile().toString();
+		this.rotation = rotation;
+		if (flushIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Flush interval must be positive");
+		}
+		this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.writer = new Thread(this::writeLoop, "log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close, "log-shutdown"));
+	}
+
+	public static LogService async() {
+		return new LogService(DEFAULT_FLUSH_INTERVAL_MILLIS);
+	}
+
+	public boolean isAsync() {
+		return queue != null;
+	}
 
 	public void saveLog(String msg) {
-		try (BufferedWriter bw = new BufferedWriter(new FileWriter(LOG_FILE_PATH, true))) {
-			// Gets the current date and time from the system
-			LocalDateTime dateTime = LocalDateTime.now();
+		// Set up the logging line
+		String line = "[" + LocalDateTime.now().format(FORMATTER) + "] " + msg;
+
+		if (queue == null) {
+			writeNow(line);
+			return;
+		}
 
-			// Defining the formatter (12/11/2025 14:35:20)
-			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
-			String dateTimeFormatter = dateTime.format(formatter);
+		enqueueLock.lock();
+		try {
+			if (!closed) {
+				synchronized (this) {
+					enqueued++;
+				}
+				queue.put(line); // waits when the writer is behind
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			writeNow(line);
+			markFlushed(1);
+			return;
+		} finally {
+			enqueueLock.unlock();
+		}
+		writeNow(line);
+	}
 
-			// Set up the logging line
-			String line = "[" + dateTimeFormatter + "] " + msg;
+	private void writeNow(String line) {
+		synchronized (rotation) {
+			try {
+				// after a failed rotation the file is already due, whatever its size and date say now
+				LocalDate fileDate = pendingRotation != null ? pendingRotation : rotation.fileDate();
+				if (pendingRotation != null || rotation.isDue(fileSize(), fileDate, LocalDate.now())) {
+					pendingRotation = tryRotate(fileDate) ? null : fileDate;
+				}
+			} catch (IOException e) {
+				System.out.println("Error: " + e.getMessage());
+			}
+			try (BufferedWriter bw = new BufferedWriter(new FileWriter(logFile, true))) {
+				// Writes the line to the file and moves on to the next one
+				bw.write(line);
+				bw.newLine();
+				bw.flush();
 
-			// Writes the line to the file and moves on to the next one
-			bw.write(line);
-			bw.newLine();
+			} catch (IOException e) {
+				System.out.println("Error: " + e.getMessage());
+			}
+		}
+	}
+
+	// writer thread: drains the queue in batches and flushes at most once per interval
+	private void writeLoop() {
+		List<String> batch = new ArrayList<>(1024);
+		int written = 0; // lines of the batch already given to bw
+		BufferedWriter bw = null;
+
+		try {
+			// bytes and day of the entries of the open file (null while it is empty), for the rotation
+			long size;
+			LocalDate fileDate;
+			synchronized (rotation) {
+				if (rotation.isDue(fileSize(), rotation.fileDate(), LocalDate.now())) {
+					tryRotate(rotation.fileDate());
+				}
+				size = fileSize();
+				fileDate = rotation.fileDate();
+				bw = open();
+			}
+			long pending = 0;
+			long nextFlush = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+			while (!closed || !queue.isEmpty()) {
+				String first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch);
+					LocalDate today = LocalDate.now();
+					// a failed rotation is tried again on the next batch, not on every line
+					boolean rotationTried = false;
+					for (written = 0; written < batch.size(); written++) {
+						String line = batch.get(written);
+						if (!rotationTried && rotation.isDue(size, fileDate, today)) {
+							rotationTried = true;
+							bw.close();
+							synchronized (rotation) {
+								if (tryRotate(fileDate)) {
+									size = 0;
+									fileDate = null;
+								}
+								bw = open();
+							}
+						}
+						bw.write(line);
+						bw.newLine();
+						size += line.length() + LINE_SEPARATOR_LENGTH;
+						if (fileDate == null) {
+							fileDate = today;
+						}
+					}
+					pending += batch.size();
+					batch.clear();
+					written = 0;
+				}
+
+				if (pending > 0 && (first == null || System.nanoTime() >= nextFlush)) {
+					bw.flush();
+					markFlushed(pending);
+					pending = 0;
+					nextFlush = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+				}
+			}
 			bw.flush();
+			markFlushed(pending);
 
 		} catch (IOException e) {
 			System.out.println("Error: " + e.getMessage());
+			// the lines not given to bw yet are written one by one, like after close
+			List<String> rest = new ArrayList<>(batch.subList(written, batch.size()));
+			markFlushed(written);
+			stopQueueing(rest);
+			for (String line : rest) {
+				writeNow(line);
+				markFlushed(1);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (bw != null) {
+				try {
+					bw.close();
+				} catch (IOException e) {
+					System.out.println("Error: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	// moves the file aside; a failure (the file may be held open by another program) is reported
+	// once and the lines go on to the same file until a later write rotates it. Called holding rotation
+	private boolean tryRotate(LocalDate fileDate) {
+		try {
+			rotation.rotate(fileDate);
+			rotationFailing = false;
+			return true;
+		} catch (IOException e) {
+			if (!rotationFailing) {
+				System.out.println("Error rotating log (tried again on the next write): " + e.getMessage());
+			}
+			rotationFailing = true;
+			return false;
 		}
+	}
 
+	private long fileSize() throws IOException {
+		return Files.exists(rotation.getFile()) ? Files.size(rotation.getFile()) : 0;
+	}
+
+	private BufferedWriter open() throws IOException {
+		return new BufferedWriter(new FileWriter(logFile, true), WRITER_BUFFER_SIZE);
+	}
+
+	private synchronized void markFlushed(long lines) {
+		flushed += lines;
+		notifyAll();
+	}
+
+	// waits until every line logged so far is in the file
+	public void flush() {
+		if (queue == null) {
+			return;
+		}
+		synchronized (this) {
+			long target = enqueued;
+			try {
+				while (flushed < target && writer.isAlive()) {
+					wait(flushIntervalMillis);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// drains the pending lines and stops the writer thread
+	@Override
+	public void close() {
+		if (queue == null || closed) {
+			return;
+		}
+		stopQueueing(new ArrayList<>());
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// lines queued while the writer was stopping
+		String line;
+		while ((line = queue.poll()) != null) {
+			writeNow(line);
+			markFlushed(1);
+		}
+	}
+
+	// sets closed once no line is being queued. A sender holds enqueueLock while it waits for room
+	// in the queue, so the writer thread drains the queue into rest until it gets the lock
+	private void stopQueueing(List<String> rest) {
+		boolean drain = Thread.currentThread() == writer;
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (enqueueLock.tryLock(10, TimeUnit.MILLISECONDS)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+			if (drain) {
+				queue.drainTo(rest);
+			}
+		}
+		try {
+			closed = true;
+		} finally {
+			enqueueLock.unlock();
+		}
+		if (drain) {
+			queue.drainTo(rest);
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public LogRotation getRotation() {
+		return rotation;
+	}
+
+	// reads this log (and its rotated files) from the end, after the pending lines are written
+	public LogViewer viewer() {
+		flush();
+		return new LogViewer(rotation);
 	}
 
 	public boolean printLog() {
 
+		flush();
+
 		// Converts the file path String to a Path object
-		Path path = Paths.get(LOG_FILE_PATH);
+		Path path = Paths.get(logFile);
 
 		if (!Files.exists(path)) {
 			return false;
@@ -0,0 +1,278 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import service.render.RenderBuffer;
+
+// Reads the error log from the end: the last entries that match a query, newest file first.
+//
+// Each file is read in windows of WINDOW_SIZE bytes from its end into one heap buffer and scanned
+// backwards for line breaks, so only the lines that are visited are read. The file is not mapped:
+// on Windows a mapped file stays locked until the buffer is collected, and rotation has to move
+// it. The time and the import line of an entry are taken from its bytes; the text is decoded only
+// for the entries that pass them.
+// Entries are in time order, so the scan stops at the first one older than the query start.
+public class LogViewer {
+
+	static final int WINDOW_SIZE = 1024 * 1024;
+
+	// "[12/11/2025 14:35:20] " before every message
+	private static final int TIME_LENGTH = 21;
+	private static final byte[] LINE_PREFIX = "Line ".getBytes(Charset.defaultCharset());
+
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+	private static final DateTimeFormatter MINUTE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+	private final LogRotation rotation;
+
+	public LogViewer(Path logFile) {
+		this(new LogRotation(logFile));
+	}
+
+	public LogViewer(LogRotation rotation) {
+		this.rotation = rotation;
+	}
+
+	// a line of the log: its time (null when it has none), the import line it is about (0 when
+	// it is not about one) and the message after the time
+	public record Entry(LocalDateTime time, int line, String message) {
+
+		// the message without numbers and IPs: "This # already was registered"
+		public String reason() {
+			return EquipmentService.rejectionReason(message);
+		}
+
+		public String text() {
+			return time == null ? message : "[" + time.format(LogService.FORMATTER) + "] " + message;
+		}
+	}
+
+	// the last limit entries (0 = all) about the import line (0 = any), whose message contains
+	// reason (ignoring case; null = any) and whose time is from..to (inclusive; null = open)
+	public record Query(int limit, int line, String reason, LocalDateTime from, LocalDateTime to) {
+
+		public Query {
+			if (limit < 0) {
+				throw new IllegalArgumentException("Number of entries cannot be negative");
+			}
+			if (line < 0) {
+				throw new IllegalArgumentException("Line number cannot be negative");
+			}
+			if (from != null && to != null && from.isAfter(to)) {
+				throw new IllegalArgumentException("Start of the period is after its end");
+			}
+			reason = reason == null || reason.isBlank() ? null : reason.trim().toLowerCase(Locale.ROOT);
+		}
+
+		public static Query last(int limit) {
+			return new Query(limit, 0, null, null, null);
+		}
+
+		// "dd/MM/yyyy", "dd/MM/yyyy HH:mm" or "dd/MM/yyyy HH:mm:ss"; the end of a period takes the
+		// last second of the day or minute given. null when blank
+		public static LocalDateTime parseTime(String text, boolean endOfPeriod) {
+			if (text == null || text.isBlank()) {
+				return null;
+			}
+			String t = text.trim();
+			try {
+				return switch (t.length()) {
+					case 10 -> {
+						LocalDateTime day = LocalDate.parse(t, DATE_FORMATTER).atStartOfDay();
+						yield endOfPeriod ? day.plusDays(1).minusSeconds(1) : day;
+					}
+					case 16 -> {
+						LocalDateTime minute = LocalDateTime.parse(t, MINUTE_FORMATTER);
+						yield endOfPeriod ? minute.plusSeconds(59) : minute;
+					}
+					default -> LocalDateTime.parse(t, LogService.FORMATTER);
+				};
+			} catch (DateTimeParseException e) {
+				throw new IllegalArgumentException("Invalid time '" + t + "' (use dd/MM/yyyy [HH:mm[:ss]])");
+			}
+		}
+	}
+
+	// the matching entries, oldest first
+	public List<Entry> find(Query query) throws IOException {
+		List<Entry> found = new ArrayList<>();
+		for (Path file : rotation.newestFirst()) {
+			if (!scan(file, query, found)) {
+				break;
+			}
+		}
+		Collections.reverse(found);
+		return found;
+	}
+
+	// prints the matching entries, oldest first; false when there is no log
+	public boolean print(Query query, RenderBuffer out) throws IOException {
+		if (rotation.newestFirst().isEmpty()) {
+			return false;
+		}
+		List<Entry> entries = find(query);
+		for (Entry e : entries) {
+			out.line(e.text());
+		}
+		out.append(entries.size()).append(entries.size() == 1 ? " entry" : " entries").newLine();
+		out.flush();
+		return true;
+	}
+
+	// adds the matching entries of the file, newest first; false when the search is over
+	private boolean scan(Path file, Query query, List<Entry> found) throws IOException {
+		ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long end = channel.size();
+			while (end > 0) {
+				long start = Math.max(0, end - window.capacity());
+				int length = (int) (end - start);
+				read(channel, window, start, length);
+				int lineEnd = length;
+				for (int i = lineEnd - 1; i >= 0; i--) {
+					if (window.get(i) == '\n') {
+						if (!visit(window, i + 1, lineEnd, query, found)) {
+							return false;
+						}
+						lineEnd = i;
+					}
+				}
+				if (start == 0) {
+					// the first line of the file
+					return visit(window, 0, lineEnd, query, found);
+				}
+				if (lineEnd == length) {
+					// a line longer than the window: read it again with a larger one
+					window = ByteBuffer.allocate(window.capacity() * 2);
+				} else {
+					// the line cut at the start of the window is read with the next one
+					end = start + lineEnd;
+				}
+			}
+		} catch (NoSuchFileException e) {
+			// rotated away since it was listed
+		}
+		return true;
+	}
+
+	// length bytes from position into the start of the window
+	private static void read(FileChannel channel, ByteBuffer window, long position, int length) throws IOException {
+		window.clear().limit(length);
+		while (window.hasRemaining()) {
+			if (channel.read(window, position + window.position()) < 0) {
+				throw new IOException("Log file shrank while it was read");
+			}
+		}
+	}
+
+	// checks the line from..to of the window; false when the search is over
+	private boolean visit(ByteBuffer window, int from, int to, Query query, List<Entry> found) {
+		if (to > from && window.get(to - 1) == '\r') {
+			to--;
+		}
+		if (to <= from) {
+			return true;
+		}
+
+		LocalDateTime time = parseTime(window, from, to);
+		if (time == null) {
+			if (query.from() != null || query.to() != null) {
+				return true;
+			}
+		} else {
+			if (query.from() != null && time.isBefore(query.from())) {
+				return false;
+			}
+			if (query.to() != null && time.isAfter(query.to())) {
+				return true;
+			}
+		}
+
+		int textStart = time == null ? from : from + TIME_LENGTH + 1;
+		int line = parseLine(window, textStart, to);
+		if (query.line() != 0 && line != query.line()) {
+			return true;
+		}
+
+		String message = new String(window.array(), textStart, to - textStart, Charset.defaultCharset());
+		if (query.reason() != null && !message.toLowerCase(Locale.ROOT).contains(query.reason())) {
+			return true;
+		}
+
+		found.add(new Entry(time, line, message));
+		return query.limit() == 0 || found.size() < query.limit();
+	}
+
+	// "[dd/MM/yyyy HH:mm:ss] " at the start of the line, or null
+	private static LocalDateTime parseTime(ByteBuffer window, int from, int to) {
+		if (to - from <= TIME_LENGTH || window.get(from) != '[' || window.get(from + TIME_LENGTH - 1) != ']'
+				|| window.get(from + TIME_LENGTH) != ' ') {
+			return null;
+		}
+		int day = digits(window, from + 1, 2);
+		int month = digits(window, from + 4, 2);
+		int year = digits(window, from + 7, 4);
+		int hour = digits(window, from + 12, 2);
+		int minute = digits(window, from + 15, 2);
+		int second = digits(window, from + 18, 2);
+		if ((day | month | year | hour | minute | second) < 0) {
+			return null;
+		}
+		try {
+			return LocalDateTime.of(year, month, day, hour, minute, second);
+		} catch (DateTimeException e) {
+			return null;
+		}
+	}
+
+	// "Line 12 ..." -> 12; 0 when the message does not start that way
+	private static int parseLine(ByteBuffer window, int from, int to) {
+		if (to - from <= LINE_PREFIX.length) {
+			return 0;
+		}
+		for (int i = 0; i < LINE_PREFIX.length; i++) {
+			if (window.get(from + i) != LINE_PREFIX[i]) {
+				return 0;
+			}
+		}
+		int line = 0;
+		int i = from + LINE_PREFIX.length;
+		for (; i < to && i - from < LINE_PREFIX.length + 9; i++) {
+			byte b = window.get(i);
+			if (b < '0' || b > '9') {
+				break;
+			}
+			line = line * 10 + (b - '0');
+		}
+		return line;
+	}
+
+	// the decimal number in count bytes, or -1
+	private static int digits(ByteBuffer window, int at, int count) {
+		int value = 0;
+		for (int i = at; i < at + count; i++) {
+			byte b = window.get(i);
+			if (b < '0' || b > '9') {
+				return -1;
+			}
+			value = value * 10 + (b - '0');
+		}
+		return value;
+	}
+
+}
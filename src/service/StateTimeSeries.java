@@ -0,0 +1,592 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.EquipmentType;
+import model.IpAddress;
+import model.Subnet;
+
+// When each device was really ON, and with what power, to compute the actual kWh of any time window.
+//
+// Every state change (and power change) is a transition: time, ON/OFF, watts. Each device keeps its
+// last transitions in a ring buffer (12 bytes each, grown on demand up to the capacity), so memory
+// stays bounded however many transitions a day brings; a window older than what a ring still holds
+// only counts from its oldest transition. A removed device ends with an OFF transition and its
+// track is kept for past windows, up to maxRemoved of them (the longest removed go first).
+//
+// For long ranges the transitions can also go to append-only segment files, one per day:
+// <name>.<yyyy-MM-dd><ext> next to the path given to openSegment (state_transitions.2025-11-12.seg).
+// Opening the segment and starting the file of a new day write the current state of every device
+// first, so each file can be read without the ones before it and a device that never changes is
+// still counted. consumption() reads the files of the window's days, in one sequential pass, when
+// the window starts before oldestTransition(), the time from which memory holds every transition.
+//
+// Segment record (big endian, RECORD_SIZE bytes): long time (ms), int ip, byte type, byte state,
+// short unused, float watts.
+public class StateTimeSeries implements EquipmentListener, AutoCloseable {
+
+	public static final int DEFAULT_CAPACITY = 64;
+	public static final int DEFAULT_MAX_REMOVED = 4096;
+
+	static final int RECORD_SIZE = 20;
+	private static final int SEGMENT_BUFFER_SIZE = 64 * 1024;
+	private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+	private static final EquipmentType[] TYPES = EquipmentType.values();
+	private static final EquipmentState[] STATES = EquipmentState.values();
+
+	private final int capacity;
+	private final int maxRemoved;
+	private final ConcurrentHashMap<Integer, Track> tracks = new ConcurrentHashMap<>();
+	private final LongAdder transitions = new LongAdder();
+	private volatile LongSupplier clock = System::currentTimeMillis;
+
+	// tracks of the removed devices, the longest removed first; guarded by itself
+	private final LinkedHashMap<Integer, Track> removed = new LinkedHashMap<>();
+
+	// memory holds every transition from the first one recorded, except where a ring dropped some
+	private final AtomicLong firstRecord = new AtomicLong(Long.MAX_VALUE);
+	private final LongAccumulator droppedUntil = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+	private final Object segmentLock = new Object();
+	private volatile FileChannel segment; // written under segmentLock
+	private volatile Path segmentPath; // as given to openSegment; the files are named after it
+	private LocalDate segmentDay; // day of the open file, guarded by segmentLock
+	private ByteBuffer segmentBuffer;
+
+	// the kWh of a window by type and by site, and whether they come from the segment file
+	public record Consumption(Map<EquipmentType, Double> byType, Map<Subnet, Double> bySite, boolean fromSegment) {
+	}
+
+	// transitions of one device, oldest first from head
+	private static final class Track {
+		final int ip;
+		EquipmentType type;
+		long[] times = new long[2]; // time << 1 | 1 when ON
+		float[] watts = new float[2];
+		int head;
+		int count;
+		volatile boolean removed;
+
+		Track(int ip, EquipmentType type) {
+			this.ip = ip;
+			this.type = type;
+		}
+
+		// the time of the oldest transition left when a full ring drops one, otherwise Long.MIN_VALUE
+		synchronized long append(long time, boolean on, double power, int capacity) {
+			if (count == times.length && count < capacity) {
+				int length = Math.min(capacity, times.length * 2);
+				long[] newTimes = new long[length];
+				float[] newWatts = new float[length];
+				for (int i = 0; i < count; i++) {
+					newTimes[i] = times[(head + i) % times.length];
+					newWatts[i] = watts[(head + i) % times.length];
+				}
+				times = newTimes;
+				watts = newWatts;
+				head = 0;
+			}
+			int slot;
+			long dropped = Long.MIN_VALUE;
+			if (count == times.length) {
+				// full: the oldest one is dropped
+				slot = head;
+				head = (head + 1) % times.length;
+				dropped = times[head] >> 1;
+			} else {
+				slot = (head + count) % times.length;
+				count++;
+			}
+			times[slot] = time << 1 | (on ? 1 : 0);
+			watts[slot] = (float) power;
+			return dropped;
+		}
+
+		synchronized boolean isOn() {
+			return count > 0 && (times[(head + count - 1) % times.length] & 1) == 1;
+		}
+
+		synchronized float power() {
+			return count == 0 ? 0 : watts[(head + count - 1) % times.length];
+		}
+
+		synchronized double kwh(long from, long to, long now) {
+			double wattHours = 0;
+			for (int i = 0; i < count; i++) {
+				int slot = (head + i) % times.length;
+				if ((times[slot] & 1) == 0) {
+					continue;
+				}
+				long start = times[slot] >> 1;
+				long end = i + 1 < count ? times[(slot + 1) % times.length] >> 1 : now;
+				wattHours += (double) watts[slot] * overlap(start, end, from, to) / MILLIS_PER_HOUR;
+			}
+			return wattHours / 1000;
+		}
+
+		synchronized long oldest() {
+			return count == 0 ? Long.MAX_VALUE : times[head] >> 1;
+		}
+	}
+
+	public StateTimeSeries() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_REMOVED);
+	}
+
+	// capacity: transitions kept per device; maxRemoved: removed devices whose track is kept
+	public StateTimeSeries(int capacity, int maxRemoved) {
+		if (capacity < 2) {
+			throw new IllegalArgumentException("Capacity must be at least 2");
+		}
+		if (maxRemoved < 0) {
+			throw new IllegalArgumentException("Number of removed devices kept cannot be negative");
+		}
+		this.capacity = capacity;
+		this.maxRemoved = maxRemoved;
+	}
+
+	// time source in ms (tests and benchmarks)
+	public void setClock(LongSupplier clock) {
+		this.clock = clock;
+	}
+
+	// from now on every transition is also appended to the file of its day, after the current state
+	// of every device
+	public void openSegment(Path path) throws IOException {
+		synchronized (segmentLock) {
+			closeSegment();
+			if (path.getParent() != null) {
+				Files.createDirectories(path.getParent());
+			}
+			segmentBuffer = ByteBuffer.allocateDirect(SEGMENT_BUFFER_SIZE);
+			long now = clock.getAsLong();
+			openDay(path, now, now);
+			segmentPath = path;
+		}
+	}
+
+	// opens the file of the day of now and writes the state of every device in it, as of since;
+	// under segmentLock
+	private void openDay(Path path, long now, long since) throws IOException {
+		LocalDate day = dayOf(now);
+		segment = FileChannel.open(dayFile(path, day), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		segmentDay = day;
+		for (Track track : tracks.values()) {
+			if (!track.removed) {
+				appendSegment(since, track.ip, track.type, track.isOn() ? EquipmentState.ON : EquipmentState.OFF,
+						track.power());
+			}
+		}
+		flushSegment();
+	}
+
+	// the file of the previous day is closed when the first transition of a new day comes. Nothing
+	// changed since midnight before it, so the new file starts with the state at midnight; under segmentLock
+	private void rollIfNewDay(long now) {
+		LocalDate day = dayOf(now);
+		if (!day.isAfter(segmentDay)) {
+			return;
+		}
+		flushSegment();
+		try {
+			segment.close();
+			openDay(segmentPath, now, day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+		} catch (IOException e) {
+			System.out.println("Error writing transitions: " + e.getMessage());
+			segment = null;
+			segmentPath = null;
+			segmentBuffer = null;
+		}
+	}
+
+	@Override
+	public void onAdded(Equipment e) {
+		record(e, e.getState());
+	}
+
+	@Override
+	public void onRemoved(Equipment e) {
+		// no consumption after the removal; the history stays for past windows
+		markRemoved(record(e, EquipmentState.OFF));
+	}
+
+	@Override
+	public void onStateChanged(Equipment e, EquipmentState previous) {
+		record(e, e.getState());
+	}
+
+	@Override
+	public void onEnergyChanged(Equipment e, Double previous) {
+		record(e, e.getState());
+	}
+
+	@Override
+	public void onCleared() {
+		// every device is removed at once
+		for (Track track : tracks.values()) {
+			if (!track.removed) {
+				append(track, clock.getAsLong(), EquipmentState.OFF, track.power());
+				markRemoved(track);
+			}
+		}
+	}
+
+	private Track record(Equipment e, EquipmentState state) {
+		double power = e.getEnergyConsumption() == null ? 0 : e.getEnergyConsumption();
+		Track track = tracks.get(e.getPackedIp());
+		if (track == null) {
+			track = tracks.computeIfAbsent(e.getPackedIp(), ip -> new Track(ip, e.getType()));
+		} else if (track.removed) {
+			track = revive(track, e.getType());
+		}
+		track.type = e.getType();
+		append(track, clock.getAsLong(), state, power);
+		return track;
+	}
+
+	private void append(Track track, long now, EquipmentState state, double power) {
+		firstRecord.compareAndSet(Long.MAX_VALUE, now);
+		if (segment != null) {
+			// the track too changes under the lock, so the file of a new day starts with the states
+			// from before this transition
+			synchronized (segmentLock) {
+				if (segment != null) {
+					rollIfNewDay(now);
+				}
+				appendTrack(track, now, state, power);
+				if (segment != null) {
+					appendSegment(now, track.ip, track.type, state, power);
+				}
+			}
+		} else {
+			appendTrack(track, now, state, power);
+		}
+		transitions.increment();
+	}
+
+	private void appendTrack(Track track, long now, EquipmentState state, double power) {
+		long dropped = track.append(now, state == EquipmentState.ON, power, capacity);
+		if (dropped != Long.MIN_VALUE) {
+			droppedUntil.accumulate(dropped);
+		}
+	}
+
+	// keeps the track for past windows; beyond maxRemoved the longest removed one is dropped
+	private void markRemoved(Track track) {
+		synchronized (removed) {
+			track.removed = true;
+			removed.remove(track.ip);
+			removed.put(track.ip, track);
+			Iterator<Track> oldest = removed.values().iterator();
+			while (removed.size() > maxRemoved) {
+				Track evicted = oldest.next();
+				oldest.remove();
+				tracks.remove(evicted.ip, evicted);
+			}
+		}
+	}
+
+	// a device added again with the IP of a removed one goes on with its track
+	private Track revive(Track track, EquipmentType type) {
+		synchronized (removed) {
+			if (removed.remove(track.ip, track)) {
+				track.removed = false;
+				return track;
+			}
+		}
+		// dropped meanwhile
+		return tracks.computeIfAbsent(track.ip, ip -> new Track(ip, type));
+	}
+
+	private void appendSegment(long time, int ip, EquipmentType type, EquipmentState state, double power) {
+		if (segmentBuffer.remaining() < RECORD_SIZE) {
+			flushSegment();
+		}
+		segmentBuffer.putLong(time).putInt(ip).put((byte) type.ordinal()).put((byte) state.ordinal())
+				.putShort((short) 0).putFloat((float) power);
+	}
+
+	// writes the buffered segment records
+	public void flush() {
+		synchronized (segmentLock) {
+			if (segment != null) {
+				flushSegment();
+			}
+		}
+	}
+
+	private void flushSegment() {
+		segmentBuffer.flip();
+		try {
+			while (segmentBuffer.hasRemaining()) {
+				segment.write(segmentBuffer);
+			}
+		} catch (IOException e) {
+			System.out.println("Error writing transitions: " + e.getMessage());
+		}
+		segmentBuffer.clear();
+	}
+
+	@Override
+	public void close() {
+		synchronized (segmentLock) {
+			closeSegment();
+		}
+	}
+
+	private void closeSegment() {
+		if (segment == null) {
+			return;
+		}
+		segmentPath = null;
+		flushSegment();
+		try {
+			segment.close();
+		} catch (IOException e) {
+			System.out.println("Error: " + e.getMessage());
+		}
+		segment = null;
+		segmentDay = null;
+		segmentBuffer = null;
+	}
+
+	public long getTransitionCount() {
+		return transitions.sum();
+	}
+
+	// time of the oldest transition still kept for the device (Long.MAX_VALUE when none)
+	public long oldestTransition(int packedIp) {
+		Track track = tracks.get(packedIp);
+		return track == null ? Long.MAX_VALUE : track.oldest();
+	}
+
+	// from when memory holds every transition of every device (Long.MAX_VALUE before the first one):
+	// the first one recorded, or later when a full ring dropped its oldest
+	public long oldestTransition() {
+		return Math.max(firstRecord.get(), droppedUntil.get());
+	}
+
+	// the kWh of the window by type and by site (see kwhBySite), from memory when it holds the
+	// whole window, otherwise from the segment files of its days
+	public Consumption consumption(long from, long to, int sitePrefix) throws IOException {
+		if (sitePrefix < 0 || sitePrefix > 32) {
+			throw new IllegalArgumentException("Site prefix must be between 0 and 32");
+		}
+		Path path = segmentPath;
+		if (from >= oldestTransition() || path == null) {
+			return new Consumption(kwhByType(from, to), kwhBySite(sitePrefix, from, to), false);
+		}
+		flush();
+		Map<Integer, Double> byDevice = new HashMap<>();
+		// a device still ON at the end of the file counts until now, not until the end of the window
+		long end = Math.min(to, clock.getAsLong());
+		Map<EquipmentType, Double> byType = readSegments(segmentFiles(path, from, end), from, end, byDevice);
+		Map<Integer, Double> byNetwork = new HashMap<>();
+		int mask = Subnet.mask(sitePrefix);
+		byDevice.forEach((ip, kwh) -> byNetwork.merge(ip & mask, kwh, Double::sum));
+		return new Consumption(byType, sites(byNetwork, sitePrefix), true);
+	}
+
+	// Window queries: from and to in ms since the epoch, from included, to excluded.
+
+	public double kwh(int packedIp, long from, long to) {
+		Track track = tracks.get(packedIp);
+		return track == null ? 0 : track.kwh(from, to, clock.getAsLong());
+	}
+
+	public double kwh(Subnet subnet, long from, long to) {
+		long now = clock.getAsLong();
+		double total = 0;
+		for (Track track : tracks.values()) {
+			if (subnet.contains(track.ip)) {
+				total += track.kwh(from, to, now);
+			}
+		}
+		return total;
+	}
+
+	// only the types with consumption in the window
+	public Map<EquipmentType, Double> kwhByType(long from, long to) {
+		long now = clock.getAsLong();
+		double[] totals = new double[TYPES.length];
+		for (Track track : tracks.values()) {
+			totals[track.type.ordinal()] += track.kwh(from, to, now);
+		}
+		Map<EquipmentType, Double> result = new EnumMap<>(EquipmentType.class);
+		for (EquipmentType type : TYPES) {
+			if (totals[type.ordinal()] > 0) {
+				result.put(type, totals[type.ordinal()]);
+			}
+		}
+		return result;
+	}
+
+	// a site is the subnet of the given prefix length around each device (e.g. 24 = one rack)
+	public Map<Subnet, Double> kwhBySite(int prefixLength, long from, long to) {
+		long now = clock.getAsLong();
+		Map<Integer, Double> byNetwork = new HashMap<>();
+		int mask = Subnet.mask(prefixLength);
+		for (Track track : tracks.values()) {
+			double kwh = track.kwh(from, to, now);
+			if (kwh > 0) {
+				byNetwork.merge(track.ip & mask, kwh, Double::sum);
+			}
+		}
+		return sites(byNetwork, prefixLength);
+	}
+
+	// network -> kWh as subnets in IP order
+	private static Map<Subnet, Double> sites(Map<Integer, Double> byNetwork, int prefixLength) {
+		Map<Subnet, Double> result = new TreeMap<>((a, b) -> IpAddress.compare(a.getNetwork(), b.getNetwork()));
+		byNetwork.forEach((network, kwh) -> result.put(new Subnet(network, prefixLength), kwh));
+		return result;
+	}
+
+	public static LocalDate dayOf(long time) {
+		return LocalDate.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+	}
+
+	// the segment file of one day
+	public static Path dayFile(Path path, LocalDate day) {
+		String name = path.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? path.resolveSibling(name.substring(0, dot) + "." + day + name.substring(dot))
+				: path.resolveSibling(name + "." + day);
+	}
+
+	// the segment files to read for the window, oldest first: from the last day starting no later
+	// than from (its first records give the state of every device then) to the day of to
+	public static List<Path> segmentFiles(Path path, long from, long to) throws IOException {
+		String name = path.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		String base = dot > 0 ? name.substring(0, dot) : name;
+		String extension = dot > 0 ? name.substring(dot) : "";
+		Pattern dayName = Pattern.compile(Pattern.quote(base) + "\\.(\\d{4}-\\d{2}-\\d{2})" + Pattern.quote(extension));
+		Path dir = path.toAbsolutePath().getParent();
+		TreeMap<LocalDate, Path> days = new TreeMap<>();
+		if (dir != null && Files.isDirectory(dir)) {
+			try (Stream<Path> files = Files.list(dir)) {
+				files.forEach(p -> {
+					Matcher m = dayName.matcher(p.getFileName().toString());
+					if (m.matches()) {
+						days.put(LocalDate.parse(m.group(1)), p);
+					}
+				});
+			}
+		}
+		LocalDate first = days.floorKey(dayOf(from));
+		LocalDate last = dayOf(Math.max(from, to - 1));
+		return new ArrayList<>(days.subMap(first != null ? first : LocalDate.MIN, true, last, true).values());
+	}
+
+	// Totals of a window from one segment file, by device (packed IP) and by type; see readSegments
+	public static Map<EquipmentType, Double> readSegment(Path path, long from, long to, Map<Integer, Double> byDevice)
+			throws IOException {
+		return readSegments(List.of(path), from, to, byDevice);
+	}
+
+	// Totals of a window from segment files read one after the other, by device (packed IP) and by
+	// type. The records of a device are in time order in the files, so one pass is enough; a device
+	// still ON at the end of the last file counts until to. Read in blocks into a heap buffer, not
+	// mapped: on Windows a mapped file stays locked, and the open segment is still being appended to.
+	public static Map<EquipmentType, Double> readSegments(List<Path> paths, long from, long to,
+			Map<Integer, Double> byDevice) throws IOException {
+		Map<Integer, long[]> lastOn = new HashMap<>(); // ip -> {time of the last transition, watts bits, type}
+		double[] totals = new double[TYPES.length];
+		ByteBuffer in = ByteBuffer.allocate(SEGMENT_BUFFER_SIZE - SEGMENT_BUFFER_SIZE % RECORD_SIZE);
+
+		for (Path path : paths) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				// a record being written at the end is left out
+				long size = channel.size() - channel.size() % RECORD_SIZE;
+				long position = 0;
+				while (position < size) {
+					in.clear().limit((int) Math.min(in.capacity(), size - position));
+					while (in.hasRemaining()) {
+						if (channel.read(in, position + in.position()) < 0) {
+							throw new IOException("Transitions file truncated: " + path);
+						}
+					}
+					position += in.flip().remaining();
+					while (in.remaining() >= RECORD_SIZE) {
+						long time = in.getLong();
+						int ip = in.getInt();
+						int type = in.get();
+						EquipmentState state = STATES[in.get()];
+						in.getShort();
+						float watts = in.getFloat();
+
+						long[] previous = lastOn.remove(ip);
+						if (previous != null) {
+							accumulate(previous, time, from, to, ip, totals, byDevice);
+						}
+						if (state == EquipmentState.ON) {
+							lastOn.put(ip, new long[] { time, Float.floatToIntBits(watts), type });
+						}
+					}
+				}
+			}
+		}
+		for (Map.Entry<Integer, long[]> open : lastOn.entrySet()) {
+			accumulate(open.getValue(), to, from, to, open.getKey(), totals, byDevice);
+		}
+
+		Map<EquipmentType, Double> result = new EnumMap<>(EquipmentType.class);
+		for (EquipmentType type : TYPES) {
+			if (totals[type.ordinal()] > 0) {
+				result.put(type, totals[type.ordinal()]);
+			}
+		}
+		return result;
+	}
+
+	private static void accumulate(long[] on, long end, long from, long to, int ip, double[] totals,
+			Map<Integer, Double> byDevice) {
+		double kwh = (double) Float.intBitsToFloat((int) on[1]) * overlap(on[0], end, from, to) / MILLIS_PER_HOUR / 1000;
+		if (kwh > 0) {
+			totals[(int) on[2]] += kwh;
+			if (byDevice != null) {
+				byDevice.merge(ip, kwh, Double::sum);
+			}
+		}
+	}
+
+	private static long overlap(long start, long end, long from, long to) {
+		return Math.max(0, Math.min(end, to) - Math.max(start, from));
+	}
+
+	@Override
+	public String toString() {
+		return "StateTimeSeries[devices=" + tracks.size() + ", transitions=" + transitions.sum()
+				+ ", capacity=" + capacity + "]";
+	}
+
+}
@@ -0,0 +1,96 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+import model.Equipment;
+import model.IpAddress;
+
+// Top-k selection with bounded min-heaps: O(n log k) instead of sorting the whole list.
+// Big lists are split in chunks whose heaps are built in parallel and then merged.
+public final class TopK {
+
+	// below this size one thread is faster than splitting the work
+	static final int PARALLEL_THRESHOLD = 50_000;
+
+	private record Scored(double value, Equipment equipment) {
+	}
+
+	// weakest on top: lower value first, then the higher IP loses the tie
+	private static int weakestFirst(Scored a, Scored b) {
+		int byValue = Double.compare(a.value, b.value);
+		return byValue != 0 ? byValue : IpAddress.compare(b.equipment.getPackedIp(), a.equipment.getPackedIp());
+	}
+
+	private TopK() {
+	}
+
+	// the k equipments with the highest metric among the ones accepted by the filter, best first
+	public static List<Equipment> select(List<Equipment> equipments, int k, ToDoubleFunction<Equipment> metric,
+			Predicate<Equipment> filter) {
+		if (k <= 0 || equipments.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		PriorityQueue<Scored> heap;
+		if (equipments.size() < PARALLEL_THRESHOLD) {
+			heap = scan(equipments, 0, equipments.size(), k, metric, filter);
+		} else {
+			int chunks = Runtime.getRuntime().availableProcessors() * 4;
+			int size = equipments.size();
+			heap = IntStream.range(0, chunks).parallel()
+					.mapToObj(c -> scan(equipments, (int) ((long) size * c / chunks),
+							(int) ((long) size * (c + 1) / chunks), k, metric, filter))
+					.reduce((a, b) -> {
+						for (Scored s : b) {
+							offer(a, s, k);
+						}
+						return a;
+					}).orElseGet(() -> new PriorityQueue<>(TopK::weakestFirst));
+		}
+
+		List<Scored> best = new ArrayList<>(heap);
+		best.sort(TopK::weakestFirst);
+		Collections.reverse(best);
+
+		List<Equipment> result = new ArrayList<>(best.size());
+		for (Scored s : best) {
+			result.add(s.equipment);
+		}
+		return result;
+	}
+
+	private static PriorityQueue<Scored> scan(List<Equipment> equipments, int from, int to, int k,
+			ToDoubleFunction<Equipment> metric, Predicate<Equipment> filter) {
+		PriorityQueue<Scored> heap = new PriorityQueue<>(Math.min(k, 1024) + 1, TopK::weakestFirst);
+		for (int i = from; i < to; i++) {
+			Equipment e = equipments.get(i);
+			if (filter != null && !filter.test(e)) {
+				continue;
+			}
+			double value = metric.applyAsDouble(e);
+			if (Double.isNaN(value)) {
+				continue; // the metric does not apply
+			}
+			if (heap.size() < k || value >= heap.peek().value) {
+				offer(heap, new Scored(value, e), k);
+			}
+		}
+		return heap;
+	}
+
+	private static void offer(PriorityQueue<Scored> heap, Scored s, int k) {
+		if (heap.size() < k) {
+			heap.add(s);
+		} else if (weakestFirst(s, heap.peek()) > 0) {
+			heap.poll();
+			heap.add(s);
+		}
+	}
+
+}
@@ -0,0 +1,16 @@
+package service.driver;
+
+// A device did not confirm a command
+public class DeviceCommandException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public DeviceCommandException(String message) {
+		super(message);
+	}
+
+	public DeviceCommandException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
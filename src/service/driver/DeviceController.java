@@ -0,0 +1,198 @@
+package service.driver;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import model.Equipment;
+import model.EquipmentOperation;
+import model.EquipmentType;
+
+// Puts the DriverSettings of each type on top of a DeviceDriver: commands are grouped in
+// batches per type and operation, every attempt has a timeout, and failed attempts are
+// sent again up to the retry limit. The future of a command completes once, with the
+// confirmation or with the last failure.
+public class DeviceController {
+
+	private final DeviceDriver driver;
+	private final Map<EquipmentType, DriverSettings> settings = new EnumMap<>(EquipmentType.class);
+
+	// commands waiting for their batch to fill up, guarded by pending
+	private final Map<BatchKey, List<Command>> pending = new HashMap<>();
+
+	// last command of each device (by packed IP), see sequence
+	private final ConcurrentHashMap<Integer, CompletableFuture<?>> lastByDevice = new ConcurrentHashMap<>();
+
+	private record BatchKey(EquipmentType type, EquipmentOperation operation) {
+	}
+
+	private static final class Command {
+		final Equipment equipment;
+		final EquipmentOperation operation;
+		final CompletableFuture<Void> result = new CompletableFuture<>();
+		int attempt;
+
+		Command(Equipment equipment, EquipmentOperation operation) {
+			this.equipment = equipment;
+			this.operation = operation;
+		}
+	}
+
+	public DeviceController(DeviceDriver driver) {
+		this.driver = driver;
+		for (EquipmentType type : EquipmentType.values()) {
+			settings.put(type, DriverSettings.DEFAULT);
+		}
+	}
+
+	public DeviceDriver getDriver() {
+		return driver;
+	}
+
+	public synchronized DriverSettings getSettings(EquipmentType type) {
+		return settings.get(type);
+	}
+
+	public synchronized void setSettings(EquipmentType type, DriverSettings typeSettings) {
+		settings.put(type, typeSettings);
+	}
+
+	public synchronized void setSettings(DriverSettings allTypes) {
+		for (EquipmentType type : EquipmentType.values()) {
+			settings.put(type, allTypes);
+		}
+	}
+
+	public CompletableFuture<Void> send(Equipment equipment, EquipmentOperation operation) {
+		Command command = new Command(equipment, operation);
+		enqueue(command);
+		return command.result;
+	}
+
+	// Runs step after the previous step of the same device has finished, so the commands of
+	// one device are never interleaved; different devices go on in parallel.
+	public <T> CompletableFuture<T> sequence(Equipment equipment, Supplier<CompletableFuture<T>> step) {
+		int ip = equipment.getPackedIp();
+		CompletableFuture<T> result = new CompletableFuture<>();
+		CompletableFuture<?> previous = lastByDevice.put(ip, result);
+
+		Runnable start = () -> {
+			try {
+				step.get().whenComplete((value, error) -> {
+					if (error != null) {
+						result.completeExceptionally(unwrap(error));
+					} else {
+						result.complete(value);
+					}
+				});
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		};
+
+		if (previous == null) {
+			start.run();
+		} else {
+			previous.whenComplete((value, error) -> start.run());
+		}
+		result.whenComplete((value, error) -> lastByDevice.remove(ip, result));
+		return result;
+	}
+
+	private void enqueue(Command command) {
+		DriverSettings typeSettings = getSettings(command.equipment.getType());
+		if (typeSettings.batchSize() == 1) {
+			dispatch(List.of(command), typeSettings);
+			return;
+		}
+
+		BatchKey key = new BatchKey(command.equipment.getType(), command.operation);
+		List<Command> full = null;
+		boolean first;
+		synchronized (pending) {
+			List<Command> batch = pending.computeIfAbsent(key, k -> new ArrayList<>(typeSettings.batchSize()));
+			first = batch.isEmpty();
+			batch.add(command);
+			if (batch.size() >= typeSettings.batchSize()) {
+				full = pending.remove(key);
+			}
+		}
+
+		if (full != null) {
+			dispatch(full, typeSettings);
+		} else if (first) {
+			// the partial batch leaves after linger, full or not
+			CompletableFuture.delayedExecutor(typeSettings.linger().toMillis(), TimeUnit.MILLISECONDS)
+					.execute(() -> flush(key));
+		}
+	}
+
+	private void flush(BatchKey key) {
+		List<Command> batch;
+		synchronized (pending) {
+			batch = pending.remove(key);
+		}
+		if (batch != null && !batch.isEmpty()) {
+			dispatch(batch, getSettings(key.type()));
+		}
+	}
+
+	private void dispatch(List<Command> batch, DriverSettings typeSettings) {
+		Command head = batch.get(0);
+		List<Equipment> equipments = new ArrayList<>(batch.size());
+		for (Command c : batch) {
+			equipments.add(c.equipment);
+		}
+
+		List<CompletableFuture<Void>> replies;
+		try {
+			replies = batch.size() == 1
+					? List.of(driver.send(head.equipment, head.operation))
+					: driver.sendBatch(head.equipment.getType(), head.operation, equipments);
+		} catch (RuntimeException e) {
+			for (Command c : batch) {
+				retryOrFail(c, e, typeSettings);
+			}
+			return;
+		}
+
+		for (int i = 0; i < batch.size(); i++) {
+			Command c = batch.get(i);
+			replies.get(i)
+				.orTimeout(typeSettings.timeout().toMillis(), TimeUnit.MILLISECONDS)
+				.whenComplete((value, error) -> {
+					if (error == null) {
+						c.result.complete(null);
+					} else {
+						retryOrFail(c, unwrap(error), typeSettings);
+					}
+				});
+		}
+	}
+
+	private void retryOrFail(Command c, Throwable error, DriverSettings typeSettings) {
+		if (c.attempt < typeSettings.retries()) {
+			c.attempt++;
+			CompletableFuture.delayedExecutor(typeSettings.retryDelay().toMillis(), TimeUnit.MILLISECONDS)
+					.execute(() -> enqueue(c));
+			return;
+		}
+		String reason = error instanceof TimeoutException ? "no confirmation after " + typeSettings.timeout().toMillis() + " ms"
+				: error.getMessage();
+		c.result.completeExceptionally(new DeviceCommandException(c.operation + " failed on " + c.equipment.getIp()
+				+ " after " + (c.attempt + 1) + " attempt(s): " + reason, error));
+	}
+
+	private static Throwable unwrap(Throwable error) {
+		return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+	}
+
+}
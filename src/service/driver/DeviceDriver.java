@@ -0,0 +1,28 @@
+package service.driver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import model.Equipment;
+import model.EquipmentOperation;
+import model.EquipmentType;
+
+// Sends lifecycle commands to the devices. A command is done when its future completes;
+// it failed when the future completes exceptionally.
+public interface DeviceDriver {
+
+	CompletableFuture<Void> send(Equipment equipment, EquipmentOperation operation);
+
+	// one round trip for many devices of the same type; one future per device, in the same order.
+	// Drivers that cannot batch send the commands one by one.
+	default List<CompletableFuture<Void>> sendBatch(EquipmentType type, EquipmentOperation operation,
+			List<Equipment> equipments) {
+		List<CompletableFuture<Void>> results = new ArrayList<>(equipments.size());
+		for (Equipment e : equipments) {
+			results.add(send(e, operation));
+		}
+		return results;
+	}
+
+}
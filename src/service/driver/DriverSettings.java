@@ -0,0 +1,43 @@
+package service.driver;
+
+import java.time.Duration;
+
+// How commands for one type of device are sent:
+//   timeout    - time the driver has to confirm one attempt
+//   retries    - attempts after the first one (timeouts and failures)
+//   retryDelay - wait before each new attempt
+//   batchSize  - commands sent in one sendBatch call (1 = no batching)
+//   linger     - how long a partial batch waits for more commands
+public record DriverSettings(Duration timeout, int retries, Duration retryDelay, int batchSize, Duration linger) {
+
+	public static final DriverSettings DEFAULT = new DriverSettings(Duration.ofSeconds(5), 2,
+			Duration.ofMillis(100), 1, Duration.ZERO);
+
+	public DriverSettings {
+		if (timeout.isNegative() || timeout.isZero()) {
+			throw new IllegalArgumentException("Timeout must be positive");
+		}
+		if (retries < 0) {
+			throw new IllegalArgumentException("Retries cannot be negative");
+		}
+		if (retryDelay.isNegative() || linger.isNegative()) {
+			throw new IllegalArgumentException("Delays cannot be negative");
+		}
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1");
+		}
+	}
+
+	public DriverSettings withBatching(int batchSize, Duration linger) {
+		return new DriverSettings(timeout, retries, retryDelay, batchSize, linger);
+	}
+
+	public DriverSettings withRetries(int retries, Duration retryDelay) {
+		return new DriverSettings(timeout, retries, retryDelay, batchSize, linger);
+	}
+
+	public DriverSettings withTimeout(Duration timeout) {
+		return new DriverSettings(timeout, retries, retryDelay, batchSize, linger);
+	}
+
+}
@@ -0,0 +1,18 @@
+package service.driver;
+
+import java.util.concurrent.CompletableFuture;
+
+import model.Equipment;
+import model.EquipmentOperation;
+
+// Confirms every command at once (no real device). It prints nothing: operations also come from
+// the HTTP API, bulk operations and batch mode, so the console prints the equipment's own
+// lifecycle messages itself after a confirmed operation
+public class LocalDeviceDriver implements DeviceDriver {
+
+	@Override
+	public CompletableFuture<Void> send(Equipment equipment, EquipmentOperation operation) {
+		return CompletableFuture.completedFuture(null);
+	}
+
+}
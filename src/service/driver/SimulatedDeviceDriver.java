@@ -0,0 +1,91 @@
+package service.driver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.Equipment;
+import model.EquipmentOperation;
+import model.EquipmentType;
+
+// Fake devices for testing throughput without hardware: every call (single or batch) takes a
+// random latency between minLatencyMillis and maxLatencyMillis, and each command fails with
+// probability failureRate. Nothing is printed and no thread waits while the "device" works.
+public class SimulatedDeviceDriver implements DeviceDriver {
+
+	private final long minLatencyMillis;
+	private final long maxLatencyMillis;
+	private final double failureRate;
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder commands = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+
+	public SimulatedDeviceDriver(long minLatencyMillis, long maxLatencyMillis, double failureRate) {
+		if (minLatencyMillis < 0 || maxLatencyMillis < minLatencyMillis) {
+			throw new IllegalArgumentException("Invalid latency range");
+		}
+		if (failureRate < 0 || failureRate > 1) {
+			throw new IllegalArgumentException("Failure rate must be between 0 and 1");
+		}
+		this.minLatencyMillis = minLatencyMillis;
+		this.maxLatencyMillis = maxLatencyMillis;
+		this.failureRate = failureRate;
+	}
+
+	@Override
+	public CompletableFuture<Void> send(Equipment equipment, EquipmentOperation operation) {
+		return sendBatch(equipment.getType(), operation, List.of(equipment)).get(0);
+	}
+
+	@Override
+	public List<CompletableFuture<Void>> sendBatch(EquipmentType type, EquipmentOperation operation,
+			List<Equipment> equipments) {
+		calls.increment();
+		commands.add(equipments.size());
+
+		List<CompletableFuture<Void>> results = new ArrayList<>(equipments.size());
+		for (int i = 0; i < equipments.size(); i++) {
+			results.add(new CompletableFuture<>());
+		}
+
+		List<Equipment> batch = List.copyOf(equipments);
+		latency().execute(() -> {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			for (int i = 0; i < batch.size(); i++) {
+				if (random.nextDouble() < failureRate) {
+					failures.increment();
+					results.get(i).completeExceptionally(new DeviceCommandException(
+							"Simulated failure: " + operation + " on " + batch.get(i).getIp()));
+				} else {
+					results.get(i).complete(null);
+				}
+			}
+		});
+		return results;
+	}
+
+	private Executor latency() {
+		long millis = minLatencyMillis == maxLatencyMillis ? minLatencyMillis
+				: ThreadLocalRandom.current().nextLong(minLatencyMillis, maxLatencyMillis + 1);
+		return CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS);
+	}
+
+	// sendBatch and send calls received
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	public long getCommands() {
+		return commands.sum();
+	}
+
+	public long getFailures() {
+		return failures.sum();
+	}
+
+}
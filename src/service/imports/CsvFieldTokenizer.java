@@ -0,0 +1,320 @@
+package service.imports;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import model.IpAddress;
+
+// The ';' separated fields of one line of equipments.csv, read straight from the bytes.
+//
+// reset() only records where each field starts and ends; the numbers, booleans, enum names and
+// IPs are parsed from those slices, and a String is created only for a field that is kept
+// (string()). One tokenizer is reused for every line, so a valid row allocates nothing but its
+// text fields and the equipment. The separator is searched as a byte, which is safe for UTF-8
+// and the single-byte charsets. Not thread-safe: one tokenizer per thread.
+public final class CsvFieldTokenizer {
+
+	public static final byte SEPARATOR = ';';
+
+	// mantissas up to 15 digits and powers of ten up to 22 are exact doubles, so their quotient is
+	// rounded like Double.parseDouble
+	private static final int MAX_FAST_DIGITS = 15;
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private final Charset charset;
+	private final FieldChars chars = new FieldChars();
+
+	private ByteBuffer buffer;
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int count;
+
+	// reset(String[]) encodes the fields here; string() copies direct buffers here
+	private ByteBuffer encoded = ByteBuffer.allocate(256);
+	private byte[] scratch = new byte[256];
+
+	public CsvFieldTokenizer() {
+		this(Charset.defaultCharset());
+	}
+
+	public CsvFieldTokenizer(Charset charset) {
+		this.charset = charset;
+	}
+
+	// the line from..to of the buffer (without its line break). The fields are counted like
+	// String.split(";"): the empty ones at the end are dropped, unless there is no separator at all
+	public CsvFieldTokenizer reset(ByteBuffer buffer, int from, int to) {
+		this.buffer = buffer;
+		count = 0;
+		int start = from;
+		for (int i = from; i < to; i++) {
+			if (buffer.get(i) == SEPARATOR) {
+				add(start, i);
+				start = i + 1;
+			}
+		}
+		if (count == 0) {
+			add(from, to);
+			return this;
+		}
+		add(start, to);
+		while (count > 0 && starts[count - 1] == ends[count - 1]) {
+			count--;
+		}
+		return this;
+	}
+
+	// fields that are already split (the HTTP API, the batch commands): each one is encoded as a
+	// slice, so a ';' inside a field stays in it and every field is kept
+	public CsvFieldTokenizer reset(String[] fields) {
+		encoded.clear();
+		count = 0;
+		for (String field : fields) {
+			byte[] bytes = field == null ? new byte[0] : field.getBytes(charset);
+			if (encoded.remaining() < bytes.length) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(encoded.capacity() * 2, encoded.position() + bytes.length));
+				encoded.flip();
+				larger.put(encoded);
+				encoded = larger;
+			}
+			int start = encoded.position();
+			encoded.put(bytes);
+			add(start, encoded.position());
+		}
+		this.buffer = encoded;
+		return this;
+	}
+
+	private void add(int start, int end) {
+		if (count == starts.length) {
+			starts = Arrays.copyOf(starts, count * 2);
+			ends = Arrays.copyOf(ends, count * 2);
+		}
+		starts[count] = start;
+		ends[count] = end;
+		count++;
+	}
+
+	public int count() {
+		return count;
+	}
+
+	public int start(int field) {
+		return starts[check(field)];
+	}
+
+	public int end(int field) {
+		return ends[check(field)];
+	}
+
+	public int length(int field) {
+		return ends[check(field)] - starts[field];
+	}
+
+	// only spaces or control characters, like value.trim().isEmpty()
+	public boolean isBlank(int field) {
+		int end = ends[check(field)];
+		for (int i = starts[field]; i < end; i++) {
+			if ((buffer.get(i) & 0xFF) > ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the field as a new String: only for the values that are kept
+	public String string(int field) {
+		int start = starts[check(field)];
+		int length = ends[field] - start;
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + start, length, charset);
+		}
+		if (scratch.length < length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+		buffer.get(start, scratch, 0, length);
+		return new String(scratch, 0, length, charset);
+	}
+
+	// the field seen as chars (one per byte), without a copy; valid until the next call
+	public CharSequence chars(int field) {
+		chars.start = starts[check(field)];
+		chars.end = ends[field];
+		return chars;
+	}
+
+	// like Integer.parseInt: an optional sign and decimal digits, nothing else. ASCII digits are
+	// read in place; a field with other bytes (digits of other scripts) goes to Integer.parseInt
+	public int parseInt(int field) {
+		int i = starts[check(field)];
+		int end = ends[field];
+		if (i == end) {
+			throw notANumber(field);
+		}
+		boolean negative = false;
+		byte first = buffer.get(i);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			if (++i == end) {
+				throw notANumber(field);
+			}
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b < 0) {
+				return Integer.parseInt(string(field));
+			}
+			int digit = b - '0';
+			if (digit < 0 || digit > 9) {
+				throw notANumber(field);
+			}
+			value = value * 10 + digit;
+			if (value > (long) Integer.MAX_VALUE + 1) {
+				throw notANumber(field);
+			}
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE) {
+			throw notANumber(field);
+		}
+		return (int) value;
+	}
+
+	// like Double.parseDouble; plain decimals ("1500", "-0.75") are read in place and anything
+	// else (exponents, NaN, long mantissas) goes to Double.parseDouble
+	public double parseDouble(int field) {
+		int i = starts[check(field)];
+		int end = ends[field];
+		while (i < end && (buffer.get(i) & 0xFF) <= ' ') {
+			i++;
+		}
+		while (end > i && (buffer.get(end - 1) & 0xFF) <= ' ') {
+			end--;
+		}
+
+		boolean negative = false;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = -1;
+		for (; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b >= '0' && b <= '9') {
+				if (++digits > MAX_FAST_DIGITS) {
+					return Double.parseDouble(string(field));
+				}
+				mantissa = mantissa * 10 + (b - '0');
+				if (decimals >= 0) {
+					decimals++;
+				}
+			} else if (b == '.' && decimals < 0) {
+				decimals = 0;
+			} else {
+				return Double.parseDouble(string(field));
+			}
+		}
+		if (digits == 0) {
+			// "", "-", "." and so on: the same exception as Double.parseDouble
+			return Double.parseDouble(string(field));
+		}
+		double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+		return negative ? -value : value;
+	}
+
+	// "true" or "false", ignoring case and surrounding spaces; IllegalArgumentException otherwise
+	public boolean parseBoolean(int field) {
+		if (equalsIgnoreCase(field, "true")) {
+			return true;
+		}
+		if (equalsIgnoreCase(field, "false")) {
+			return false;
+		}
+		throw new IllegalArgumentException("Invalid boolean value: " + string(field));
+	}
+
+	// the constant named by the field, ignoring case and surrounding spaces, like
+	// valueOf(value.trim().toUpperCase()); IllegalArgumentException when there is none
+	public <E extends Enum<E>> E parseEnum(int field, E[] values) {
+		for (E value : values) {
+			if (equalsIgnoreCase(field, value.name())) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("No constant for '" + string(field) + "'");
+	}
+
+	// the packed address, or IpAddress.INVALID
+	public long parseIp(int field) {
+		CharSequence ip = chars(field);
+		return IpAddress.parse(ip, 0, ip.length());
+	}
+
+	// the trimmed field against an ASCII name
+	private boolean equalsIgnoreCase(int field, String name) {
+		int i = starts[check(field)];
+		int end = ends[field];
+		while (i < end && (buffer.get(i) & 0xFF) <= ' ') {
+			i++;
+		}
+		while (end > i && (buffer.get(end - 1) & 0xFF) <= ' ') {
+			end--;
+		}
+		if (end - i != name.length()) {
+			return false;
+		}
+		for (int k = 0; k < name.length(); k++, i++) {
+			char b = (char) (buffer.get(i) & 0xFF);
+			char c = name.charAt(k);
+			if (b != c && Character.toUpperCase(b) != Character.toUpperCase(c)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private NumberFormatException notANumber(int field) {
+		return new NumberFormatException("For input string: \"" + string(field) + "\"");
+	}
+
+	private int check(int field) {
+		if (field < 0 || field >= count) {
+			throw new IndexOutOfBoundsException("Field " + field + " of " + count);
+		}
+		return field;
+	}
+
+	// a field as chars, one per byte (the IPs are ASCII)
+	private final class FieldChars implements CharSequence {
+		int start;
+		int end;
+
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (buffer.get(start + index) & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			return toString().substring(from, to);
+		}
+
+		@Override
+		public String toString() {
+			byte[] bytes = new byte[end - start];
+			buffer.get(start, bytes);
+			return new String(bytes, charset);
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+package service.imports;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import service.render.RenderBuffer;
+
+// The rejected lines of an import, grouped by reason and field.
+//
+// Only the count, the first and last line and a few samples of each group stay in memory, so a
+// 1M-row import full of bad rows still costs a few KB. When a reject file is given, every
+// rejection is also written there as "line;field;reason;value" for other tools.
+public class ImportDiagnostics {
+
+	public static final int DEFAULT_SAMPLES = 5;
+	public static final String REJECT_FILE_HEADER = "line;field;reason;value";
+
+	private final int samplesPerGroup;
+
+	// reason + field -> group, guarded by this
+	private final Map<String, Counter> groups = new LinkedHashMap<>();
+	private long total;
+
+	private Path rejectFile;
+	private BufferedWriter rejectWriter;
+
+	public ImportDiagnostics() {
+		this(DEFAULT_SAMPLES);
+	}
+
+	public ImportDiagnostics(int samplesPerGroup) {
+		if (samplesPerGroup < 0) {
+			throw new IllegalArgumentException("Number of samples cannot be negative");
+		}
+		this.samplesPerGroup = samplesPerGroup;
+	}
+
+	// the rejections of one group: how many, where the first and last are and some examples
+	public record Group(RejectReason reason, String field, long count, int firstLine, int lastLine,
+			List<Rejection> samples) {
+	}
+
+	private static class Counter {
+		final RejectReason reason;
+		final String field;
+		final List<Rejection> samples = new ArrayList<>();
+		long count;
+		int firstLine;
+		int lastLine;
+
+		Counter(RejectReason reason, String field) {
+			this.reason = reason;
+			this.field = field;
+		}
+	}
+
+	// starts a new import: clears the counts and, with a reject file (null = none), replaces the
+	// old one. The file is created at the first rejection
+	public synchronized void begin(Path rejectFile) {
+		closeRejectFile();
+		groups.clear();
+		total = 0;
+		this.rejectFile = rejectFile;
+		if (rejectFile != null) {
+			try {
+				Files.deleteIfExists(rejectFile);
+			} catch (IOException e) {
+				System.out.println("Error: " + e.getMessage());
+				this.rejectFile = null;
+			}
+		}
+	}
+
+	public synchronized void record(Rejection rejection) {
+		total++;
+		String key = rejection.reason().name() + ' ' + rejection.field();
+		Counter counter = groups.computeIfAbsent(key, k -> new Counter(rejection.reason(), rejection.field()));
+		if (counter.count++ == 0) {
+			counter.firstLine = rejection.line();
+		}
+		counter.lastLine = rejection.line();
+		if (counter.samples.size() < samplesPerGroup) {
+			counter.samples.add(rejection);
+		}
+		if (rejectFile != null) {
+			writeReject(rejection);
+		}
+	}
+
+	// the end of the import: closes the reject file
+	public synchronized void end() {
+		closeRejectFile();
+		rejectFile = null;
+	}
+
+	public synchronized long total() {
+		return total;
+	}
+
+	// the groups, the most frequent first
+	public synchronized List<Group> groups() {
+		List<Group> result = new ArrayList<>(groups.size());
+		for (Counter c : groups.values()) {
+			result.add(new Group(c.reason, c.field, c.count, c.firstLine, c.lastLine, List.copyOf(c.samples)));
+		}
+		result.sort(Comparator.comparingLong(Group::count).reversed());
+		return result;
+	}
+
+	// one row per reason and field, optionally followed by its samples
+	public void printSummary(RenderBuffer out, boolean withSamples) {
+		List<Group> groups = groups();
+		long total = total();
+		out.line("=== IMPORT REJECTIONS ===");
+		if (total == 0) {
+			out.line("No line was rejected.");
+			out.flush();
+			return;
+		}
+		out.left("Reason", 16).append(' ').left("Field", 26).append(' ').right("Lines", 10).append(' ')
+				.left("%", 7).append("  First-Last").newLine();
+		out.repeat('-', 80).newLine();
+		for (Group g : groups) {
+			out.left(g.reason().name(), 16).append(' ').left(g.field(), 26).append(' ')
+					.right(Long.toString(g.count()), 10).append(' ');
+			out.fixedLeft(100.0 * g.count() / total, 2, 7);
+			out.append("  ").append(g.firstLine()).append('-').append(g.lastLine()).newLine();
+			if (withSamples) {
+				for (Rejection r : g.samples()) {
+					out.append("    line ").append(r.line()).append(": ").append(r.description());
+					if (r.value() != null) {
+						out.append(" [").append(r.value()).append(']');
+					}
+					out.newLine();
+				}
+			}
+		}
+		out.repeat('-', 80).newLine();
+		out.append(total).append(total == 1 ? " line was rejected" : " lines were rejected").newLine();
+		out.flush();
+	}
+
+	private void writeReject(Rejection rejection) {
+		try {
+			if (rejectWriter == null) {
+				rejectWriter = Files.newBufferedWriter(rejectFile, Charset.defaultCharset());
+				rejectWriter.write(REJECT_FILE_HEADER);
+				rejectWriter.newLine();
+			}
+			rejectWriter.write(Integer.toString(rejection.line()));
+			rejectWriter.write(';');
+			rejectWriter.write(rejection.field());
+			rejectWriter.write(';');
+			rejectWriter.write(rejection.reason().name());
+			rejectWriter.write(';');
+			if (rejection.value() != null) {
+				rejectWriter.write(rejection.value());
+			}
+			rejectWriter.newLine();
+		} catch (IOException e) {
+			// the counts go on without the file
+			System.out.println("Error writing reject file: " + e.getMessage());
+			closeRejectFile();
+			rejectFile = null;
+		}
+	}
+
+	private void closeRejectFile() {
+		if (rejectWriter != null) {
+			try {
+				rejectWriter.close();
+			} catch (IOException e) {
+				System.out.println("Error: " + e.getMessage());
+			}
+			rejectWriter = null;
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package service.imports;
+
+// Why a line of the import was rejected; the field of the Rejection says which value
+public enum RejectReason {
+
+	MISSING_FIELDS("missing fields"),
+	INVALID_TYPE("invalid equipment type"),
+	BLANK_VALUE("empty value"),
+	INVALID_IP("invalid IP format"),
+	DUPLICATE_IP("IP already registered"),
+	INVALID_STATE("invalid equipment state"),
+	NOT_A_NUMBER("not a number"),
+	OUT_OF_RANGE("value out of range"),
+	INVALID_BOOLEAN("not true or false"),
+	INVALID_CHARACTER("';' or line break in a field");
+
+	private final String description;
+
+	RejectReason(String description) {
+		this.description = description;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+}
@@ -0,0 +1,12 @@
+package service.imports;
+
+// A rejected line of the import: its number, the field and value at fault (value is null when
+// the field is missing), the reason and the message written to the error log
+public record Rejection(int line, String field, RejectReason reason, String value, String message) {
+
+	// the message without the "Line N ignored :" prefix
+	public String description() {
+		return message.replaceFirst("^Line \\d+ ignored\\s*:\\s*", "");
+	}
+
+}
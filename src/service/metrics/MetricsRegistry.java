@@ -0,0 +1,167 @@
+package service.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters, latency histograms and gauges of the service, by name (e.g. "file.load").
+//
+// Counters are LongAdders and histograms are lock-free, so recording from many threads costs a
+// few atomic adds and never blocks; a report reads the current values without stopping anyone.
+// The names are created on first use. The report can also be written to a file periodically.
+public class MetricsRegistry implements AutoCloseable {
+
+	private static final double NANOS_PER_MICRO = 1_000.0;
+	private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+	private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Double> gauges = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService dumper;
+	private volatile Path dumpPath;
+
+	public LongAdder counter(String name) {
+		return counters.computeIfAbsent(name, n -> new LongAdder());
+	}
+
+	public void increment(String name) {
+		counter(name).increment();
+	}
+
+	public long count(String name) {
+		LongAdder counter = counters.get(name);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	public LatencyHistogram histogram(String name) {
+		return histograms.computeIfAbsent(name, LatencyHistogram::new);
+	}
+
+	// last value wins (e.g. rows/sec of the last load)
+	public void gauge(String name, double value) {
+		gauges.put(name, value);
+	}
+
+	public Double gaugeValue(String name) {
+		return gauges.get(name);
+	}
+
+	// a pass over rows (load, save): its time, the rows in total and the rows/sec of this pass
+	public void recordRows(String name, long rows, long nanos) {
+		histogram(name).record(nanos);
+		counter(name + ".rows").add(rows);
+		if (nanos > 0) {
+			gauge(name + ".rowsPerSec", rows * NANOS_PER_SECOND / nanos);
+		}
+	}
+
+	public void reset() {
+		counters.values().forEach(LongAdder::reset);
+		histograms.values().forEach(LatencyHistogram::reset);
+		gauges.clear();
+	}
+
+	// text report, names in alphabetical order; latencies in microseconds
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("================ METRICS ================\n");
+
+		Map<String, LatencyHistogram> sortedHistograms = new TreeMap<>(histograms);
+		if (!sortedHistograms.isEmpty()) {
+			sb.append(String.format("%nLatency (us)%n%-32s %10s %12s %12s %12s %12s%n", "Name", "Count", "Mean", "p50",
+					"p99", "Max"));
+			for (LatencyHistogram h : sortedHistograms.values()) {
+				long count = h.getCount();
+				if (count == 0) {
+					continue;
+				}
+				sb.append(String.format("%-32s %10d %12.1f %12.1f %12.1f %12.1f%n", h.getName(), count,
+						h.getTotalNanos() / NANOS_PER_MICRO / count, h.percentileNanos(50) / NANOS_PER_MICRO,
+						h.percentileNanos(99) / NANOS_PER_MICRO, h.getMaxNanos() / NANOS_PER_MICRO));
+			}
+		}
+
+		Map<String, LongAdder> sortedCounters = new TreeMap<>(counters);
+		Map<String, Double> sortedGauges = new TreeMap<>(gauges);
+		int width = 32;
+		for (String name : sortedCounters.keySet()) {
+			width = Math.max(width, name.length());
+		}
+		for (String name : sortedGauges.keySet()) {
+			width = Math.max(width, name.length());
+		}
+		String counterFormat = "%-" + width + "s %12d%n";
+		String gaugeFormat = "%-" + width + "s %12.1f%n";
+
+		if (!sortedCounters.isEmpty()) {
+			sb.append(String.format("%nCounters%n"));
+			sortedCounters.forEach((name, counter) -> sb.append(String.format(counterFormat, name, counter.sum())));
+		}
+		if (!sortedGauges.isEmpty()) {
+			sb.append(String.format("%nGauges%n"));
+			sortedGauges.forEach((name, value) -> sb.append(String.format(gaugeFormat, name, value)));
+		}
+		return sb.toString();
+	}
+
+	// writes the report to the file every period, on a daemon thread (replacing the previous one)
+	public synchronized void startDump(Path path, long period, TimeUnit unit) {
+		stopDump();
+		dumpPath = path;
+		dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "metrics-dump");
+			t.setDaemon(true);
+			return t;
+		});
+		dumper.scheduleAtFixedRate(this::dump, period, period, unit);
+	}
+
+	// stops the periodic dump after writing the report one last time
+	public synchronized void stopDump() {
+		if (dumper == null) {
+			return;
+		}
+		dumper.shutdownNow();
+		dumper = null;
+		dump();
+	}
+
+	@Override
+	public void close() {
+		stopDump();
+	}
+
+	// the report goes to a temp file that then replaces the old one, so readers never see half a report
+	private void dump() {
+		Path path = dumpPath;
+		if (path == null) {
+			return;
+		}
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		try {
+			if (path.getParent() != null) {
+				Files.createDirectories(path.getParent());
+			}
+			Files.writeString(temp, report(), StandardCharsets.UTF_8);
+			try {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			System.out.println("Error writing metrics: " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,161 @@
+package service.query;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.EquipmentType;
+import model.IpAddress;
+import model.Subnet;
+
+// Parsed form of a filter expression
+public sealed interface Condition extends Predicate<Equipment> {
+
+	enum Field {
+		TYPE, STATE, MANUFACTURER, MODEL, IP, ENERGY, HOURS, KWH;
+
+		static Field fromString(String name) {
+			try {
+				return valueOf(name.trim().toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("unknown field '" + name
+						+ "' (use type, state, manufacturer, model, ip, energy, hours or kwh)");
+			}
+		}
+	}
+
+	enum Operator {
+		EQ("="), NE("!="), GT(">"), GE(">="), LT("<"), LE("<="), IN("in");
+
+		final String symbol;
+
+		Operator(String symbol) {
+			this.symbol = symbol;
+		}
+
+		boolean accepts(int comparison) {
+			return switch (this) {
+				case EQ -> comparison == 0;
+				case NE -> comparison != 0;
+				case GT -> comparison > 0;
+				case GE -> comparison >= 0;
+				case LT -> comparison < 0;
+				case LE -> comparison <= 0;
+				case IN -> throw new IllegalStateException("IN is not a comparison");
+			};
+		}
+	}
+
+	record And(List<Condition> terms) implements Condition {
+		@Override
+		public boolean test(Equipment e) {
+			for (Condition c : terms) {
+				if (!c.test(e)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return join(terms, " and ");
+		}
+	}
+
+	record Or(List<Condition> terms) implements Condition {
+		@Override
+		public boolean test(Equipment e) {
+			for (Condition c : terms) {
+				if (c.test(e)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "(" + join(terms, " or ") + ")";
+		}
+	}
+
+	record Not(Condition term) implements Condition {
+		@Override
+		public boolean test(Equipment e) {
+			return !term.test(e);
+		}
+
+		@Override
+		public String toString() {
+			return "not " + term;
+		}
+	}
+
+	// field op value; value is already converted: EquipmentType, EquipmentState, String,
+	// Integer (packed IP), Subnet (IP IN) or Double
+	record Compare(Field field, Operator operator, Object value) implements Condition {
+		@Override
+		public boolean test(Equipment e) {
+			return switch (field) {
+				case TYPE -> operator.accepts(e.getType() == value ? 0 : 1);
+				case STATE -> operator.accepts(e.getState() == value ? 0 : 1);
+				case MANUFACTURER -> operator.accepts(compareText(e.getManufacturer()));
+				case MODEL -> operator.accepts(compareText(e.getModel()));
+				case IP -> operator == Operator.IN ? ((Subnet) value).contains(e.getPackedIp())
+						: operator.accepts(IpAddress.compare(e.getPackedIp(), (Integer) value));
+				case ENERGY -> compareNumber(e.getEnergyConsumption());
+				case HOURS -> compareNumber(e.getQtdHourConsumption() == null ? null : e.getQtdHourConsumption().doubleValue());
+				case KWH -> compareNumber(e.getEnergyConsumption() == null || e.getQtdHourConsumption() == null ? null
+						: e.getEnergyConsumption() * e.getQtdHourConsumption() / 1000);
+			};
+		}
+
+		private int compareText(String text) {
+			return text == null ? -1 : text.trim().compareToIgnoreCase((String) value);
+		}
+
+		private boolean compareNumber(Double number) {
+			return number != null && operator.accepts(Double.compare(number, (Double) value));
+		}
+
+		@Override
+		public String toString() {
+			String text = switch (field) {
+				case IP -> value instanceof Integer ip ? IpAddress.format(ip) : value.toString();
+				case TYPE, STATE -> value.toString();
+				default -> value.toString().contains(" ") ? "\"" + value + "\"" : value.toString();
+			};
+			String separator = operator == Operator.IN ? " in " : operator.symbol;
+			return field.name().toLowerCase(Locale.ROOT) + separator + text;
+		}
+
+		// equality on a field that has a bitmap index
+		boolean isIndexedEquality() {
+			return operator == Operator.EQ
+					&& (field == Field.TYPE || field == Field.STATE || field == Field.MANUFACTURER);
+		}
+
+		EquipmentType type() {
+			return (EquipmentType) value;
+		}
+
+		EquipmentState state() {
+			return (EquipmentState) value;
+		}
+	}
+
+	private static String join(List<Condition> terms, String separator) {
+		StringBuilder sb = new StringBuilder();
+		for (Condition c : terms) {
+			if (sb.length() > 0) {
+				sb.append(separator);
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,252 @@
+package service.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+import model.Equipment;
+import model.EquipmentState;
+import model.EquipmentType;
+import model.IpAddress;
+import model.Subnet;
+
+// Filter expression over the inventory, e.g.
+//   type=SERVER and state=ON and energy>400 and ip in 10.0.0.0/8
+//
+// Fields: type, state, manufacturer, model, ip, energy (W), hours (per day), kwh (per day).
+// Operators: = != > >= < <= and "ip in <cidr>"; terms are joined with and / or / not and
+// parentheses. Texts are compared ignoring case and may be quoted ("Cisco Systems").
+public final class EquipmentFilter implements Predicate<Equipment> {
+
+	private final String expression;
+	private final Condition condition;
+
+	private EquipmentFilter(String expression, Condition condition) {
+		this.expression = expression;
+		this.condition = condition;
+	}
+
+	// throws IllegalArgumentException with the reason when the expression is invalid
+	public static EquipmentFilter parse(String expression) {
+		if (expression == null || expression.isBlank()) {
+			return all();
+		}
+		Parser parser = new Parser(expression);
+		Condition condition = parser.parseExpression();
+		if (parser.hasMore()) {
+			throw parser.error("unexpected '" + parser.peek() + "'");
+		}
+		return new EquipmentFilter(expression.trim(), condition);
+	}
+
+	public static EquipmentFilter all() {
+		return new EquipmentFilter("", new Condition.And(List.of()));
+	}
+
+	public Condition getCondition() {
+		return condition;
+	}
+
+	public boolean isAll() {
+		return condition instanceof Condition.And and && and.terms().isEmpty();
+	}
+
+	@Override
+	public boolean test(Equipment e) {
+		return condition.test(e);
+	}
+
+	@Override
+	public String toString() {
+		return isAll() ? "(all)" : expression;
+	}
+
+	// recursive descent: expression = term {or term}; term = factor {and factor};
+	// factor = not factor | ( expression ) | field op value
+	private static final class Parser {
+		private final String text;
+		private final List<String> tokens;
+		private int position;
+
+		Parser(String text) {
+			this.text = text;
+			this.tokens = tokenize(text);
+		}
+
+		Condition parseExpression() {
+			List<Condition> terms = new ArrayList<>();
+			terms.add(parseTerm());
+			while (acceptKeyword("or")) {
+				terms.add(parseTerm());
+			}
+			return terms.size() == 1 ? terms.get(0) : new Condition.Or(List.copyOf(terms));
+		}
+
+		private Condition parseTerm() {
+			List<Condition> factors = new ArrayList<>();
+			factors.add(parseFactor());
+			while (acceptKeyword("and")) {
+				factors.add(parseFactor());
+			}
+			return factors.size() == 1 ? factors.get(0) : new Condition.And(List.copyOf(factors));
+		}
+
+		private Condition parseFactor() {
+			if (acceptKeyword("not")) {
+				return new Condition.Not(parseFactor());
+			}
+			if (accept("(")) {
+				Condition inner = parseExpression();
+				if (!accept(")")) {
+					throw error("missing ')'");
+				}
+				return inner;
+			}
+			return parseComparison();
+		}
+
+		private Condition parseComparison() {
+			Condition.Field field;
+			try {
+				field = Condition.Field.fromString(next("field"));
+			} catch (IllegalArgumentException e) {
+				throw error(e.getMessage());
+			}
+			String symbol = next("operator");
+			Condition.Operator operator = null;
+			for (Condition.Operator op : Condition.Operator.values()) {
+				if (op.symbol.equalsIgnoreCase(symbol)) {
+					operator = op;
+				}
+			}
+			if (operator == null) {
+				throw error("invalid operator '" + symbol + "'");
+			}
+			String value = next("value");
+
+			return switch (field) {
+				case TYPE, STATE -> {
+					if (operator != Condition.Operator.EQ && operator != Condition.Operator.NE) {
+						throw error(name(field) + " only accepts = and !=");
+					}
+					try {
+						Object constant = field == Condition.Field.TYPE ? EquipmentType.fromString(value)
+								: EquipmentState.fromString(value);
+						yield new Condition.Compare(field, operator, constant);
+					} catch (IllegalArgumentException e) {
+						throw error("invalid " + name(field) + " '" + value + "'");
+					}
+				}
+				case MANUFACTURER, MODEL -> {
+					if (operator == Condition.Operator.IN) {
+						throw error(name(field) + " does not accept in");
+					}
+					yield new Condition.Compare(field, operator, value.trim());
+				}
+				case IP -> {
+					if (operator == Condition.Operator.IN) {
+						try {
+							yield new Condition.Compare(field, operator, Subnet.parse(value));
+						} catch (IllegalArgumentException e) {
+							throw error("invalid subnet '" + value + "'");
+						}
+					}
+					long ip = IpAddress.parse(value);
+					if (ip == IpAddress.INVALID) {
+						throw error("invalid IP '" + value + "'");
+					}
+					yield new Condition.Compare(field, operator, (int) ip);
+				}
+				case ENERGY, HOURS, KWH -> {
+					if (operator == Condition.Operator.IN) {
+						throw error(name(field) + " does not accept in");
+					}
+					try {
+						yield new Condition.Compare(field, operator, Double.parseDouble(value));
+					} catch (NumberFormatException e) {
+						throw error("invalid number '" + value + "'");
+					}
+				}
+			};
+		}
+
+		boolean hasMore() {
+			return position < tokens.size();
+		}
+
+		String peek() {
+			return tokens.get(position);
+		}
+
+		private String next(String expected) {
+			if (!hasMore()) {
+				throw error("missing " + expected);
+			}
+			return tokens.get(position++);
+		}
+
+		private boolean accept(String token) {
+			if (hasMore() && peek().equals(token)) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private boolean acceptKeyword(String keyword) {
+			if (hasMore() && peek().equalsIgnoreCase(keyword)) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		IllegalArgumentException error(String reason) {
+			return new IllegalArgumentException("Invalid filter '" + text + "': " + reason);
+		}
+
+		private static String name(Condition.Field field) {
+			return field.name().toLowerCase(Locale.ROOT);
+		}
+
+		// words, quoted texts, operators and parentheses
+		private List<String> tokenize(String text) {
+			List<String> result = new ArrayList<>();
+			int i = 0;
+			while (i < text.length()) {
+				char c = text.charAt(i);
+				if (Character.isWhitespace(c)) {
+					i++;
+				} else if (c == '(' || c == ')') {
+					result.add(String.valueOf(c));
+					i++;
+				} else if (c == '"' || c == '\'') {
+					int end = text.indexOf(c, i + 1);
+					if (end < 0) {
+						throw error("missing closing quote");
+					}
+					result.add(text.substring(i + 1, end));
+					i = end + 1;
+				} else if (c == '=' || c == '!' || c == '<' || c == '>') {
+					int end = i + 1;
+					if (end < text.length() && text.charAt(end) == '=') {
+						end++;
+					}
+					result.add(text.substring(i, end));
+					i = end;
+				} else {
+					int end = i;
+					while (end < text.length() && !Character.isWhitespace(text.charAt(end))
+							&& "()=!<>\"'".indexOf(text.charAt(end)) < 0) {
+						end++;
+					}
+					result.add(text.substring(i, end));
+					i = end;
+				}
+			}
+			return result;
+		}
+	}
+
+}
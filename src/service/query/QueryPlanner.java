@@ -0,0 +1,158 @@
+package service.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import model.Equipment;
+import model.Subnet;
+import service.CompressedBitmap;
+import service.EquipmentBitmapIndex;
+import service.EquipmentService;
+
+// Chooses how a filter reads the inventory.
+//
+// The candidates are an IP lookup (ip = x), the radix trie (ip in cidr) and the bitmap indexes
+// (type, state and manufacturer equalities, combined with AND/OR/NOT on the bitmaps). Each
+// candidate knows its exact row count, the smallest one is read, and the rest of the filter is
+// applied to those rows only. Bitmap plans work on ids until the last step, so only the
+// matching equipments are looked up. Without a usable index the plan is a full scan; a service
+// without a bitmap index is planned with the IP lookup and the subnets only.
+public class QueryPlanner {
+
+	private final EquipmentService equipmentService;
+
+	public QueryPlanner(EquipmentService equipmentService) {
+		this.equipmentService = equipmentService;
+	}
+
+	public QueryPlan plan(EquipmentFilter filter) {
+		Condition condition = filter.getCondition();
+		EquipmentBitmapIndex index = equipmentService.getBitmapIndex();
+
+		// the whole filter can be answered by the bitmaps
+		CompressedBitmap exact = index == null ? null : bitmapOf(condition, index);
+		if (exact != null) {
+			return QueryPlan.ofIds("bitmap " + describe(condition), exact, index, null, filter);
+		}
+
+		List<Condition> terms = condition instanceof Condition.And and ? and.terms() : List.of(condition);
+
+		QueryPlan best = QueryPlan.scan(equipmentService, filter);
+		CompressedBitmap ids = null;
+		List<Condition> indexed = new ArrayList<>();
+		for (Condition term : terms) {
+			if (term instanceof Condition.Compare c && c.field() == Condition.Field.IP
+					&& c.operator() == Condition.Operator.EQ) {
+				Equipment e = equipmentService.ipSearch((Integer) c.value());
+				return QueryPlan.ofList("ip lookup " + c, e == null ? List.of() : List.of(e), filter);
+			}
+			if (term instanceof Condition.Compare c && c.field() == Condition.Field.IP
+					&& c.operator() == Condition.Operator.IN) {
+				Subnet subnet = (Subnet) c.value();
+				int rows = equipmentService.countInSubnet(subnet);
+				if (rows < best.estimatedRows()) {
+					best = QueryPlan.ofSubnet("subnet " + subnet, equipmentService, subnet, rows, filter);
+				}
+				continue;
+			}
+			CompressedBitmap bitmap = index == null ? null : bitmapOf(term, index);
+			if (bitmap != null) {
+				ids = ids == null ? bitmap : CompressedBitmap.and(ids, bitmap);
+				indexed.add(term);
+			}
+		}
+
+		if (ids != null && ids.cardinality() <= best.estimatedRows()) {
+			List<Condition> rest = new ArrayList<>(terms);
+			rest.removeAll(indexed);
+			Condition residual = rest.isEmpty() ? null
+					: rest.size() == 1 ? rest.get(0) : new Condition.And(List.copyOf(rest));
+			best = QueryPlan.ofIds("bitmap " + describe(new Condition.And(indexed)), ids, index, residual, filter);
+		}
+		return best;
+	}
+
+	// ids of the equipments that match, when only indexed fields are used; null otherwise
+	private static CompressedBitmap bitmapOf(Condition condition, EquipmentBitmapIndex index) {
+		if (condition instanceof Condition.Compare c) {
+			if (c.isIndexedEquality() || (c.operator() == Condition.Operator.NE
+					&& (c.field() == Condition.Field.TYPE || c.field() == Condition.Field.STATE))) {
+				CompressedBitmap equal = switch (c.field()) {
+					case TYPE -> index.ofType(c.type());
+					case STATE -> index.ofState(c.state());
+					default -> index.ofManufacturer((String) c.value());
+				};
+				return c.operator() == Condition.Operator.EQ ? equal : CompressedBitmap.andNot(index.all(), equal);
+			}
+			return null;
+		}
+		if (condition instanceof Condition.Not not) {
+			CompressedBitmap inner = bitmapOf(not.term(), index);
+			return inner == null ? null : CompressedBitmap.andNot(index.all(), inner);
+		}
+		List<Condition> terms = condition instanceof Condition.And and ? and.terms() : ((Condition.Or) condition).terms();
+		if (terms.isEmpty()) {
+			return index.all();
+		}
+		CompressedBitmap result = null;
+		for (Condition term : terms) {
+			CompressedBitmap bitmap = bitmapOf(term, index);
+			if (bitmap == null) {
+				return null;
+			}
+			if (result == null) {
+				result = bitmap;
+			} else {
+				result = condition instanceof Condition.And ? CompressedBitmap.and(result, bitmap)
+						: CompressedBitmap.or(result, bitmap);
+			}
+		}
+		return result;
+	}
+
+	private static String describe(Condition condition) {
+		String text = condition.toString();
+		return text.isEmpty() ? "(all)" : text;
+	}
+
+	// How the rows are read: description is for the console ("explain"), estimatedRows is the
+	// exact number of rows read before the residual filter.
+	public record QueryPlan(String description, long estimatedRows, Stream<Equipment> rows) {
+
+		static QueryPlan scan(EquipmentService service, EquipmentFilter filter) {
+			Stream<Equipment> stream = Stream.of(service).flatMap(s -> s.getEquipments().stream());
+			return new QueryPlan("full scan, filter " + filter, service.size(), stream.filter(filter));
+		}
+
+		static QueryPlan ofList(String description, List<Equipment> rows, EquipmentFilter filter) {
+			return new QueryPlan(description + ", filter " + filter, rows.size(), rows.stream().filter(filter));
+		}
+
+		static QueryPlan ofSubnet(String description, EquipmentService service, Subnet subnet, int rows,
+				EquipmentFilter filter) {
+			// the subnet is only read when the stream is consumed
+			Stream<Equipment> stream = Stream.of(subnet).flatMap(s -> service.equipmentsInSubnet(s).stream());
+			return new QueryPlan(description + ", filter " + filter, rows, stream.filter(filter));
+		}
+
+		// An id may be given to another equipment between the bitmap and the lookup, so the rows
+		// are checked against the whole filter; only the residual part shows in the description.
+		static QueryPlan ofIds(String description, CompressedBitmap ids, EquipmentBitmapIndex index,
+				Condition residual, EquipmentFilter filter) {
+			Stream<Equipment> stream = IntStream.of(ids.toArray()).mapToObj(index::equipment)
+					.filter(e -> e != null && filter.test(e));
+			if (residual != null) {
+				description += ", filter " + residual;
+			}
+			return new QueryPlan(description, ids.cardinality(), stream);
+		}
+
+		@Override
+		public String toString() {
+			return description + " (" + estimatedRows + " rows read)";
+		}
+	}
+
+}
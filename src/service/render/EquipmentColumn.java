@@ -0,0 +1,164 @@
+package service.render;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import model.Equipment;
+import model.Firewall;
+import model.IpAddress;
+import model.Router;
+import model.Server;
+import model.Switch;
+
+// A column of the equipment list: its header, width, how a cell is written and how rows are
+// sorted by it. Cells are written straight into the RenderBuffer.
+public enum EquipmentColumn {
+
+	TYPE("Type", 10, Comparator.comparing(Equipment::getType)) {
+		@Override
+		void write(RenderBuffer out, Equipment e) {
+			out.left(e.getType().name(), width);
+		}
+	},
+	MODEL("Model", 25, Comparator.comparing(Equipment::getModel, String.CASE_INSENSITIVE_ORDER)) {
+		@Override
+		void write(RenderBuffer out, Equipment e) {
+			out.left(e.getModel(), width);
+		}
+	},
+	IP("IP", 18, (a, b) -> IpAddress.compare(a.getPackedIp(), b.getPackedIp())) {
+		@Override
+		void write(RenderBuffer out, Equipment e) {
+			out.left(e.getIp(), width);
+		}
+	},
+	MANUFACTURER("Manufacturer", 15, Comparator.comparing(Equipment::getManufacturer, String.CASE_INSENSITIVE_ORDER)) {
+		@Override
+		void write(RenderBuffer out, Equipment e) {
+			out.left(e.getManufacturer(), width);
+		}
+	},
+	STATE("State", 10, Comparator.comparing(Equipment::getState)) {
+		@Override
+		void write(RenderBuffer out, Equipment e) {
+			out.left(e.getState().name(), width);
+		}
+	},
+	ENERGY("Energy(W)", 12, Comparator.comparingDouble(EquipmentColumn::energy)) {
+		@Override
+		void write(RenderBuffer out, Equipment e) {
+			out.fixedLeft(energy(e), 2, width);
+		}
+	},
+	HOURS("Consumption/Day(KWh)", 22, Comparator.comparingInt(EquipmentColumn::hours)) {
+		@Override
+		void write(RenderBuffer out, Equipment e) {
+			int mark = out.mark();
+			out.append(hours(e));
+			out.padFrom(mark, width);
+		}
+	},
+	KWH("kWh/Day", 10, Comparator.comparingDouble(EquipmentColumn::kwh)) {
+		@Override
+		void write(RenderBuffer out, Equipment e) {
+			out.fixedLeft(kwh(e), 2, width);
+		}
+	},
+	// the same text as Equipment.getDetails(), without String.format
+	DETAILS("Specific Info", 50, Comparator.comparing(e -> e.getType().ordinal())) {
+		@Override
+		void write(RenderBuffer out, Equipment e) {
+			int mark = out.mark();
+			if (e instanceof Router r) {
+				out.append("WiFi: ").append(String.valueOf(r.getSuportWifi())).append(" | Mbps: ").append(r.getMbps());
+			} else if (e instanceof Switch s) {
+				out.append("Capacity: ").fixed(s.getPortCapacityGB(), 2).append(" GB");
+			} else if (e instanceof Server s) {
+				out.append("OS: ").append(s.getOpSystem()).append(" | RAM: ").append(s.getRamCapacity())
+						.append(" GB | Disk: ").append(s.getDiskCapacity()).append(" GB");
+			} else if (e instanceof Firewall f) {
+				out.append("SPI: ").append(String.valueOf(f.isStatefullPacketInspection())).append(" | Block DoS: ")
+						.append(String.valueOf(f.isBlockDoS()));
+			} else {
+				out.append(e.getDetails());
+			}
+			out.padFrom(mark, width);
+		}
+	};
+
+	// the columns of the list when none are chosen
+	public static final List<EquipmentColumn> DEFAULT = List.of(TYPE, MODEL, IP, MANUFACTURER, STATE, ENERGY, HOURS,
+			DETAILS);
+
+	final String header;
+	final int width;
+	final Comparator<Equipment> order;
+
+	EquipmentColumn(String header, int width, Comparator<Equipment> order) {
+		this.header = header;
+		this.width = width;
+		this.order = order;
+	}
+
+	abstract void write(RenderBuffer out, Equipment e);
+
+	public String getHeader() {
+		return header;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public Comparator<Equipment> getOrder() {
+		return order;
+	}
+
+	public static EquipmentColumn fromString(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown column '" + name.trim() + "' (use " + names() + ")");
+		}
+	}
+
+	// "ip, type, energy" -> [IP, TYPE, ENERGY]; blank = DEFAULT
+	public static List<EquipmentColumn> parseList(String names) {
+		if (names == null || names.isBlank()) {
+			return DEFAULT;
+		}
+		List<EquipmentColumn> columns = new ArrayList<>();
+		for (String name : names.split(",")) {
+			if (!name.isBlank()) {
+				columns.add(fromString(name));
+			}
+		}
+		return List.copyOf(columns);
+	}
+
+	public static String names() {
+		StringBuilder sb = new StringBuilder();
+		for (EquipmentColumn c : values()) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(c.name().toLowerCase(Locale.ROOT));
+		}
+		return sb.toString();
+	}
+
+	private static double energy(Equipment e) {
+		return e.getEnergyConsumption() == null ? 0 : e.getEnergyConsumption();
+	}
+
+	private static int hours(Equipment e) {
+		return e.getQtdHourConsumption() == null ? 0 : e.getQtdHourConsumption();
+	}
+
+	private static double kwh(Equipment e) {
+		return energy(e) * hours(e) / 1000;
+	}
+
+}
@@ -0,0 +1,110 @@
+package service.render;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import model.Equipment;
+
+// The equipment list as a table: chosen columns, optional sort and pages of pageSize rows
+// (0 = one page with every row). Sort once with sort(), then render the pages of the result.
+public class EquipmentTable {
+
+	public static final int DEFAULT_PAGE_SIZE = 50;
+
+	private List<EquipmentColumn> columns = EquipmentColumn.DEFAULT;
+	private EquipmentColumn sortColumn;
+	private boolean descending;
+	private int pageSize;
+
+	public EquipmentTable columns(List<EquipmentColumn> columns) {
+		if (columns.isEmpty()) {
+			throw new IllegalArgumentException("Choose at least one column");
+		}
+		this.columns = List.copyOf(columns);
+		return this;
+	}
+
+	// null = the order of the list
+	public EquipmentTable sortBy(EquipmentColumn column, boolean descending) {
+		this.sortColumn = column;
+		this.descending = descending;
+		return this;
+	}
+
+	public EquipmentTable pageSize(int pageSize) {
+		if (pageSize < 0) {
+			throw new IllegalArgumentException("Page size cannot be negative");
+		}
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	// a sorted copy (the list itself when there is no sort); ties keep the IP order
+	public List<Equipment> sort(List<Equipment> rows) {
+		if (sortColumn == null) {
+			return rows;
+		}
+		Comparator<Equipment> order = descending ? sortColumn.order.reversed() : sortColumn.order;
+		if (sortColumn != EquipmentColumn.IP) {
+			order = order.thenComparing(EquipmentColumn.IP.order);
+		}
+		List<Equipment> sorted = new ArrayList<>(rows);
+		sorted.sort(order);
+		return sorted;
+	}
+
+	public int pageCount(int rows) {
+		return pageSize == 0 || rows == 0 ? 1 : (rows + pageSize - 1) / pageSize;
+	}
+
+	// header, the rows of the page (1 = first) and, with pages, where the page is
+	public void renderPage(List<Equipment> rows, int page, RenderBuffer out) {
+		int pages = pageCount(rows.size());
+		if (page < 1 || page > pages) {
+			throw new IllegalArgumentException("Page must be from 1 to " + pages);
+		}
+		int from = pageSize == 0 ? 0 : (page - 1) * pageSize;
+		int to = pageSize == 0 ? rows.size() : Math.min(rows.size(), from + pageSize);
+
+		int width = -1;
+		for (EquipmentColumn c : columns) {
+			out.left(c.header, c.width).append(' ');
+			width += c.width + 1;
+		}
+		out.newLine();
+		out.repeat('-', width).newLine();
+
+		for (int i = from; i < to; i++) {
+			Equipment e = rows.get(i);
+			for (EquipmentColumn c : columns) {
+				c.write(out, e);
+				out.append(' ');
+			}
+			out.newLine();
+		}
+
+		out.repeat('-', width).newLine();
+		if (pageSize > 0) {
+			out.append("Page ").append(page).append(" of ").append(pages).append(" (rows ")
+					.append(rows.isEmpty() ? 0 : from + 1).append('-').append(to).append(" of ").append(rows.size())
+					.append(')').newLine();
+		}
+	}
+
+	// every row, without pages
+	public void render(List<Equipment> rows, RenderBuffer out) {
+		int saved = pageSize;
+		pageSize = 0;
+		try {
+			renderPage(rows, 1, out);
+		} finally {
+			pageSize = saved;
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+package service.render;
+
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+// Text output built in one reusable buffer and written in large blocks.
+//
+// Rows and reports are appended field by field (numbers are formatted here, without
+// String.format) and the buffer goes to the stream only when it holds BLOCK_SIZE chars or on
+// flush, so a list of 500k rows is a few hundred writes instead of one printf per row.
+public class RenderBuffer {
+
+	static final int BLOCK_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<RenderBuffer> STDOUT = ThreadLocal.withInitial(() -> new RenderBuffer(System.out));
+	private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1_000, 10_000, 100_000, 1_000_000 };
+	// distance from .5 under which the binary product may be on the wrong side of a decimal tie
+	private static final double TIE_MARGIN = 1e-6;
+
+	private final StringBuilder buffer = new StringBuilder(BLOCK_SIZE + 1024);
+	private PrintStream out;
+
+	public RenderBuffer(PrintStream out) {
+		this.out = out;
+	}
+
+	// the buffer of this thread, writing to the current System.out (which batch mode replaces)
+	public static RenderBuffer stdout() {
+		RenderBuffer buffer = STDOUT.get();
+		if (buffer.out != System.out) {
+			buffer.flush();
+			buffer.out = System.out;
+		}
+		return buffer;
+	}
+
+	public RenderBuffer append(String text) {
+		buffer.append(text);
+		return this;
+	}
+
+	public RenderBuffer append(char c) {
+		buffer.append(c);
+		return this;
+	}
+
+	public RenderBuffer append(long value) {
+		buffer.append(value);
+		return this;
+	}
+
+	// the text, then spaces up to the width (the text is not cut, like %-Ns)
+	public RenderBuffer left(String text, int width) {
+		int mark = mark();
+		buffer.append(text);
+		return padFrom(mark, width);
+	}
+
+	// spaces, then the text (like %Ns)
+	public RenderBuffer right(String text, int width) {
+		spaces(width - text.length());
+		buffer.append(text);
+		return this;
+	}
+
+	public RenderBuffer spaces(int count) {
+		return repeat(' ', count);
+	}
+
+	public RenderBuffer repeat(char c, int count) {
+		for (int i = 0; i < count; i++) {
+			buffer.append(c);
+		}
+		return this;
+	}
+
+	// the value with the decimals, rounded half up like %.Nf with '.' in any locale (decimals from
+	// 0 to 6). %.Nf rounds the shortest decimal form of the double (Double.toString), so 1.005
+	// gives 1.01 although the binary value is a bit below; near such ties the digits are rounded
+	// with BigDecimal
+	public RenderBuffer fixed(double value, int decimals) {
+		if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+			throw new IllegalArgumentException("Decimals must be from 0 to " + (POWERS_OF_TEN.length - 1));
+		}
+		long scale = POWERS_OF_TEN[decimals];
+		if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= Long.MAX_VALUE / (double) scale / 10) {
+			buffer.append(String.format(Locale.ROOT, "%." + decimals + "f", value));
+			return this;
+		}
+		double scaled = Math.abs(value) * scale;
+		double rest = scaled - Math.floor(scaled);
+		long rounded;
+		if (Math.abs(rest - 0.5) <= Math.max(TIE_MARGIN, 8 * Math.ulp(scaled))) {
+			rounded = BigDecimal.valueOf(Math.abs(value)).setScale(decimals, RoundingMode.HALF_UP).unscaledValue()
+					.longValue();
+		} else {
+			rounded = Math.round(scaled);
+		}
+		if (value < 0 || (value == 0 && 1 / value < 0)) {
+			buffer.append('-');
+		}
+		buffer.append(rounded / scale);
+		if (decimals > 0) {
+			buffer.append('.');
+			long fraction = rounded % scale;
+			for (long digit = scale / 10; digit > 0; digit /= 10) {
+				buffer.append((char) ('0' + fraction / digit % 10));
+			}
+		}
+		return this;
+	}
+
+	// fixed, then spaces up to the width (like %-N.Mf)
+	public RenderBuffer fixedLeft(double value, int decimals, int width) {
+		int mark = mark();
+		fixed(value, decimals);
+		return padFrom(mark, width);
+	}
+
+	// ends the line; writes the buffer when it is full
+	public RenderBuffer newLine() {
+		buffer.append(System.lineSeparator());
+		if (buffer.length() >= BLOCK_SIZE) {
+			write();
+		}
+		return this;
+	}
+
+	public RenderBuffer line(String text) {
+		return append(text).newLine();
+	}
+
+	// a cell built from several parts: mark() before it, then padFrom(mark, width)
+	public int mark() {
+		return buffer.length();
+	}
+
+	public RenderBuffer padFrom(int mark, int width) {
+		return spaces(width - (buffer.length() - mark));
+	}
+
+	public void flush() {
+		write();
+		out.flush();
+	}
+
+	private void write() {
+		if (buffer.length() > 0) {
+			out.append(buffer);
+			buffer.setLength(0);
+		}
+	}
+
+}